@@ -2,6 +2,8 @@ package net.thomas.kata.geometry;
 
 import java.util.Collection;
 
+import net.thomas.kata.geometry.objects.PackedPolygons;
+import net.thomas.kata.geometry.objects.PackedTriangles;
 import net.thomas.kata.geometry.objects.PolygonTriangle;
 import net.thomas.kata.geometry.objects.PolygonVertex;
 import net.thomas.kata.geometry.pathfinding.PathfindingUtil;
@@ -11,5 +13,23 @@ public interface PolygonUtil {
 
 	public Collection<PolygonTriangle> triangulateMonotonePolygons(Collection<PolygonVertex> monotonePolygons);
 
+	/***
+	 * Optional stage after {@link #triangulateMonotonePolygons(Collection)}, flipping diagonals until
+	 * the triangulation is the constrained Delaunay triangulation of the same polygons. Polygon edges
+	 * are kept, and sliver triangles are avoided wherever they allow it. The triangles are changed in
+	 * place, and the triangle graphs of neighbouring monotone pieces end up connected to each other.
+	 */
+	public Collection<PolygonTriangle> refineToConstrainedDelaunay(Collection<PolygonTriangle> triangleGraphs);
+
+	public PackedPolygons getMonotoneParts(PackedPolygons polygons);
+
+	public PackedTriangles triangulateMonotonePolygons(PackedPolygons monotonePolygons);
+
 	public PathfindingUtil buildPathFindingUtil(Collection<PolygonTriangle> triangleGraphs);
+
+	/***
+	 * Same as {@link #buildPathFindingUtil(Collection)}, but with a hierarchical layer on top of the
+	 * portal graph, grouping at most nodesPerRegion portals in each region.
+	 */
+	public PathfindingUtil buildPathFindingUtil(Collection<PolygonTriangle> triangleGraphs, int nodesPerRegion);
 }
@@ -0,0 +1,136 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.util.Collections.newSetFromMap;
+import static net.thomas.kata.geometry.algorithms.GeometricPredicates.incircle;
+import static net.thomas.kata.geometry.algorithms.GeometricPredicates.orient2d;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide.SIDE_1;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide.SIDE_2;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide.SIDE_3;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide.TRIANGLE_SIDES;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide.matchingVertex;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_1;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_2;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_3;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.matchingSide;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import net.thomas.kata.geometry.objects.PolygonTriangle;
+import net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide;
+import net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+
+/***
+ * Lawson's flip algorithm, turning a triangulation of polygons into their constrained Delaunay
+ * triangulation.<BR>
+ * The monotone pieces are connected to each other first, so the diagonals between them can be
+ * flipped as well. Every side with a neighbour is then checked, and replaced by the other diagonal
+ * of its quadrilateral if the opposite vertex lies inside the circumcircle of the triangle. Sides
+ * without a neighbour are polygon edges and are never touched. Each flip queues the two triangles
+ * it changed, so only the area around a flip is checked again.<BR>
+ * Triangles are changed in place and keep the {@link PolygonTriangle} neighbour conventions.
+ */
+class ConstrainedDelaunayRefiner {
+	private final Collection<PolygonTriangle> triangleGraphs;
+
+	public ConstrainedDelaunayRefiner(Collection<PolygonTriangle> triangleGraphs) {
+		this.triangleGraphs = triangleGraphs;
+	}
+
+	public Collection<PolygonTriangle> refine() {
+		final List<PolygonTriangle> triangles = collectTriangles();
+		TriangleEdgeIndex.connectAdjacentPieces(triangles);
+		final ArrayDeque<PolygonTriangle> pendingTriangles = new ArrayDeque<>(triangles);
+		while (!pendingTriangles.isEmpty()) {
+			final PolygonTriangle triangle = pendingTriangles.pop();
+			for (final TriangleSide side : TRIANGLE_SIDES) {
+				final PolygonTriangle neighbour = triangle.getNeighbour(side);
+				if (neighbour != null && flipIfNotDelaunay(triangle, side, neighbour)) {
+					pendingTriangles.push(triangle);
+					pendingTriangles.push(neighbour);
+					break;
+				}
+			}
+		}
+		return triangleGraphs;
+	}
+
+	private List<PolygonTriangle> collectTriangles() {
+		final List<PolygonTriangle> triangles = new ArrayList<>();
+		final Set<PolygonTriangle> seen = newSetFromMap(new IdentityHashMap<>());
+		final ArrayDeque<PolygonTriangle> pendingTriangles = new ArrayDeque<>();
+		for (final PolygonTriangle root : triangleGraphs) {
+			if (seen.add(root)) {
+				pendingTriangles.push(root);
+			}
+			while (!pendingTriangles.isEmpty()) {
+				final PolygonTriangle triangle = pendingTriangles.pop();
+				triangles.add(triangle);
+				for (final TriangleSide side : TRIANGLE_SIDES) {
+					final PolygonTriangle neighbour = triangle.getNeighbour(side);
+					if (neighbour != null && seen.add(neighbour)) {
+						pendingTriangles.push(neighbour);
+					}
+				}
+			}
+		}
+		return triangles;
+	}
+
+	/***
+	 * The triangle is (a, b, c) with side a -> b shared with the neighbour (b, a, d). If the side is
+	 * flipped, the triangle becomes (a, d, c) and the neighbour (d, b, c).
+	 */
+	private boolean flipIfNotDelaunay(PolygonTriangle triangle, TriangleSide side, PolygonTriangle neighbour) {
+		final TriangleVertex aId = matchingSide(side);
+		final PolygonVertex a = triangle.getVertex(aId);
+		final PolygonVertex b = triangle.getVertex(aId.next());
+		final PolygonVertex c = triangle.getVertex(aId.next().next());
+		final TriangleVertex bIdInNeighbour = neighbour.getVertexId(b);
+		if (bIdInNeighbour == null || !a.equals(neighbour.getVertex(bIdInNeighbour.next()))) {
+			throw new RuntimeException("Triangle " + triangle + " is not connected back from its neighbour " + neighbour);
+		}
+		final PolygonVertex d = neighbour.getVertex(bIdInNeighbour.next().next());
+		if (incircle(a.x, a.y, b.x, b.y, c.x, c.y, d.x, d.y) <= 0) {
+			return false;
+		}
+		if (orient2d(a.x, a.y, d.x, d.y, c.x, c.y) <= 0 || orient2d(d.x, d.y, b.x, b.y, c.x, c.y) <= 0) {
+			return false;
+		}
+		final PolygonTriangle neighbourBC = triangle.getNeighbour(matchingVertex(aId.next()));
+		final PolygonTriangle neighbourCA = triangle.getNeighbour(matchingVertex(aId.next().next()));
+		final PolygonTriangle neighbourAD = neighbour.getNeighbour(matchingVertex(bIdInNeighbour.next()));
+		final PolygonTriangle neighbourDB = neighbour.getNeighbour(matchingVertex(bIdInNeighbour.next().next()));
+		setTriangle(triangle, a, d, c, neighbourAD, neighbour, neighbourCA);
+		setTriangle(neighbour, d, b, c, neighbourDB, neighbourBC, triangle);
+		replaceNeighbour(neighbourAD, neighbour, triangle);
+		replaceNeighbour(neighbourBC, triangle, neighbour);
+		return true;
+	}
+
+	private void setTriangle(PolygonTriangle triangle, PolygonVertex vertex1, PolygonVertex vertex2, PolygonVertex vertex3, PolygonTriangle neighbour1,
+			PolygonTriangle neighbour2, PolygonTriangle neighbour3) {
+		triangle.setVertex(VERTEX_1, vertex1);
+		triangle.setVertex(VERTEX_2, vertex2);
+		triangle.setVertex(VERTEX_3, vertex3);
+		triangle.setNeighbour(SIDE_1, neighbour1);
+		triangle.setNeighbour(SIDE_2, neighbour2);
+		triangle.setNeighbour(SIDE_3, neighbour3);
+	}
+
+	private void replaceNeighbour(PolygonTriangle triangle, PolygonTriangle oldNeighbour, PolygonTriangle newNeighbour) {
+		if (triangle != null) {
+			for (final TriangleSide side : TRIANGLE_SIDES) {
+				if (triangle.getNeighbour(side) == oldNeighbour) {
+					triangle.setNeighbour(side, newNeighbour);
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static net.thomas.kata.geometry.algorithms.GeometricPredicates.orient2d;
+
+import net.thomas.kata.geometry.objects.PolygonVertex;
+
+class Edge {
+	private final PolygonVertex start;
+	private final PolygonVertex end;
+	private PolygonVertex helper;
+	private Edge twin;
+
+	public Edge(PolygonVertex start, PolygonVertex end) {
+		this.start = start;
+		this.end = end;
+		twin = null;
+	}
+
+	public PolygonVertex getStartVertex() {
+		return start;
+	}
+
+	public PolygonVertex getEndVertex() {
+		return end;
+	}
+
+	public void setTwin(Edge twin) {
+		this.twin = twin;
+	}
+
+	public Edge getTwin() {
+		return twin;
+	}
+
+	public PolygonVertex getTopVertex() {
+		return startIsTop(start.x, start.y, end.x, end.y) ? start : end;
+	}
+
+	public static boolean startIsTop(double startX, double startY, double endX, double endY) {
+		if (startY > endY) {
+			return true;
+		} else if (startY < endY) {
+			return false;
+		} else {
+			return startX < endX;
+		}
+	}
+
+	public PolygonVertex getBottomVertex() {
+		if (start.y < end.y) {
+			return start;
+		} else if (start.y > end.y) {
+			return end;
+		} else {
+			return start.x > end.x ? start : end;
+		}
+	}
+
+	public PolygonVertex getHelper() {
+		return helper;
+	}
+
+	public void setHelper(PolygonVertex helper) {
+		this.helper = helper;
+	}
+
+	public boolean isLeftOf(PolygonVertex vertex) {
+		return isLeftOf(start.x, start.y, end.x, end.y, vertex.x, vertex.y);
+	}
+
+	/***
+	 * True if the vertex lies on the edge or to its left, seen from above. The test is exact, and a
+	 * horizontal edge is treated as if its left end, the top by {@link #startIsTop}, were slightly
+	 * higher, so vertices below it are to its left.
+	 */
+	public static boolean isLeftOf(double startX, double startY, double endX, double endY, double vertexX, double vertexY) {
+		if (startIsTop(startX, startY, endX, endY)) {
+			return orient2d(endX, endY, startX, startY, vertexX, vertexY) >= 0;
+		} else {
+			return orient2d(startX, startY, endX, endY, vertexX, vertexY) >= 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return start + " -> " + end + (helper != null ? " (Helper: " + helper + ")" : "");
+	}
+}
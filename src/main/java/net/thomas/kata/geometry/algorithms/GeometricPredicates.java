@@ -0,0 +1,163 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.fma;
+import static java.util.Arrays.copyOf;
+
+/***
+ * Orientation and incircle predicates after Shewchuk. Each predicate is first evaluated in plain
+ * floating point together with a bound on its rounding error. Only when the bound does not decide
+ * the sign is the determinant evaluated again exactly, using expansion arithmetic where a value is
+ * kept as a sum of non overlapping doubles. The sign of the result is therefore always exact, and
+ * the common case costs a handful of multiplications.
+ */
+public final class GeometricPredicates {
+	private static final double MACHINE_EPSILON = Math.ulp(1.0) / 2;
+	private static final double ORIENT_ERROR_BOUND = (3.0 + 16.0 * MACHINE_EPSILON) * MACHINE_EPSILON;
+	private static final double INCIRCLE_ERROR_BOUND = (10.0 + 96.0 * MACHINE_EPSILON) * MACHINE_EPSILON;
+
+	private GeometricPredicates() {
+	}
+
+	/***
+	 * @return A positive value if a, b and c are in counterclockwise order, a negative value if they
+	 *         are in clockwise order and zero if they are collinear. The sign is exact, the magnitude
+	 *         is an approximation of twice the signed area of the triangle.
+	 */
+	public static double orient2d(double ax, double ay, double bx, double by, double cx, double cy) {
+		final double left = (ax - cx) * (by - cy);
+		final double right = (ay - cy) * (bx - cx);
+		final double determinant = left - right;
+		final double errorBound = ORIENT_ERROR_BOUND * (abs(left) + abs(right));
+		if (determinant > errorBound || -determinant > errorBound) {
+			return determinant;
+		}
+		return exactOrient2d(ax, ay, bx, by, cx, cy);
+	}
+
+	/***
+	 * @return A positive value if d lies inside the circle through a, b and c, a negative value if it
+	 *         lies outside and zero if the four points are cocircular. a, b and c must be in
+	 *         counterclockwise order, otherwise the sign is reversed. The sign is exact.
+	 */
+	public static double incircle(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy) {
+		final double adx = ax - dx;
+		final double ady = ay - dy;
+		final double bdx = bx - dx;
+		final double bdy = by - dy;
+		final double cdx = cx - dx;
+		final double cdy = cy - dy;
+		final double bdxcdy = bdx * cdy;
+		final double cdxbdy = cdx * bdy;
+		final double cdxady = cdx * ady;
+		final double adxcdy = adx * cdy;
+		final double adxbdy = adx * bdy;
+		final double bdxady = bdx * ady;
+		final double alift = adx * adx + ady * ady;
+		final double blift = bdx * bdx + bdy * bdy;
+		final double clift = cdx * cdx + cdy * cdy;
+		final double determinant = alift * (bdxcdy - cdxbdy) + blift * (cdxady - adxcdy) + clift * (adxbdy - bdxady);
+		final double permanent = (abs(bdxcdy) + abs(cdxbdy)) * alift + (abs(cdxady) + abs(adxcdy)) * blift + (abs(adxbdy) + abs(bdxady)) * clift;
+		final double errorBound = INCIRCLE_ERROR_BOUND * permanent;
+		if (determinant > errorBound || -determinant > errorBound) {
+			return determinant;
+		}
+		return exactIncircle(ax, ay, bx, by, cx, cy, dx, dy);
+	}
+
+	static double exactOrient2d(double ax, double ay, double bx, double by, double cx, double cy) {
+		double[] sum = product(ax, by);
+		sum = add(sum, product(-ay, bx));
+		sum = add(sum, product(bx, cy));
+		sum = add(sum, product(-by, cx));
+		sum = add(sum, product(cx, ay));
+		sum = add(sum, product(-cy, ax));
+		return mostSignificant(sum);
+	}
+
+	static double exactIncircle(double ax, double ay, double bx, double by, double cx, double cy, double dx, double dy) {
+		final double[] adx = difference(ax, dx);
+		final double[] ady = difference(ay, dy);
+		final double[] bdx = difference(bx, dx);
+		final double[] bdy = difference(by, dy);
+		final double[] cdx = difference(cx, dx);
+		final double[] cdy = difference(cy, dy);
+		final double[] bc = add(multiply(bdx, cdy), negate(multiply(cdx, bdy)));
+		final double[] ca = add(multiply(cdx, ady), negate(multiply(adx, cdy)));
+		final double[] ab = add(multiply(adx, bdy), negate(multiply(bdx, ady)));
+		double[] sum = multiply(add(multiply(adx, adx), multiply(ady, ady)), bc);
+		sum = add(sum, multiply(add(multiply(bdx, bdx), multiply(bdy, bdy)), ca));
+		sum = add(sum, multiply(add(multiply(cdx, cdx), multiply(cdy, cdy)), ab));
+		return mostSignificant(sum);
+	}
+
+	private static double[] product(double a, double b) {
+		final double product = a * b;
+		return new double[] { fma(a, b, -product), product };
+	}
+
+	private static double[] difference(double a, double b) {
+		final double difference = a - b;
+		final double virtualB = a - difference;
+		final double virtualA = difference + virtualB;
+		return new double[] { a - virtualA + (virtualB - b), difference };
+	}
+
+	/***
+	 * Sum of two expansions, with components in increasing order of magnitude and zeroes removed
+	 */
+	private static double[] add(double[] e, double[] f) {
+		double[] sum = e;
+		for (final double component : f) {
+			sum = grow(sum, component);
+		}
+		return sum;
+	}
+
+	private static double[] grow(double[] e, double b) {
+		final double[] sum = new double[e.length + 1];
+		int length = 0;
+		double q = b;
+		for (final double component : e) {
+			final double x = q + component;
+			final double virtualB = x - q;
+			final double error = q - (x - virtualB) + (component - virtualB);
+			q = x;
+			if (error != 0.0) {
+				sum[length++] = error;
+			}
+		}
+		if (q != 0.0 || length == 0) {
+			sum[length++] = q;
+		}
+		return copyOf(sum, length);
+	}
+
+	private static double[] multiply(double[] e, double[] f) {
+		double[] product = new double[] { 0.0 };
+		for (final double component : f) {
+			product = add(product, scale(e, component));
+		}
+		return product;
+	}
+
+	private static double[] scale(double[] e, double b) {
+		double[] scaled = new double[] { 0.0 };
+		for (final double component : e) {
+			scaled = add(scaled, product(component, b));
+		}
+		return scaled;
+	}
+
+	private static double[] negate(double[] e) {
+		final double[] negated = new double[e.length];
+		for (int i = 0; i < e.length; i++) {
+			negated[i] = -e[i];
+		}
+		return negated;
+	}
+
+	private static double mostSignificant(double[] e) {
+		return e[e.length - 1];
+	}
+}
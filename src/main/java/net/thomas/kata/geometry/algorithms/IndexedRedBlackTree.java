@@ -0,0 +1,292 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.lang.Math.max;
+import static java.util.Arrays.copyOf;
+
+/***
+ * Red / black tree over nodes identified by non negative ids, stored in arrays indexed by id. Based
+ * on Cormen, Leiserson, Rivest & Stein - Introduction to Algorithms (3rd ed.) <BR>
+ * Chapter 13 - Red-Black Trees
+ *
+ * Nodes are ordered by where they lie relative to the point they were inserted at, as told by
+ * {@link #isLeftOf}. The sentinel is kept at index 0, so a node is stored one index after its id.
+ * The arrays grow with the largest id inserted, and nothing is allocated once they are large
+ * enough.
+ ***/
+abstract class IndexedRedBlackTree {
+	static final int NO_NODE = -1;
+	private static final int NIL = 0;
+	private static final boolean RED = true;
+	private static final boolean BLACK = false;
+
+	private int[] left;
+	private int[] right;
+	private int[] parent;
+	private boolean[] color;
+	private boolean[] present;
+	private int root;
+
+	IndexedRedBlackTree(int capacity) {
+		left = new int[capacity + 1];
+		right = new int[capacity + 1];
+		parent = new int[capacity + 1];
+		color = new boolean[capacity + 1];
+		present = new boolean[capacity + 1];
+		root = NIL;
+	}
+
+	/***
+	 * @return True if the node lies to the left of the point (x, y)
+	 */
+	protected abstract boolean isLeftOf(int id, double x, double y);
+
+	protected void insert(int id, double x, double y) {
+		final int node = id + 1;
+		ensureCapacity(node);
+		int currentParent = NIL;
+		int current = root;
+		boolean insertToTheRight = false;
+		while (current != NIL) {
+			currentParent = current;
+			insertToTheRight = isLeftOf(current - 1, x, y);
+			current = insertToTheRight ? right[current] : left[current];
+		}
+		parent[node] = currentParent;
+		left[node] = right[node] = NIL;
+		color[node] = RED;
+		present[node] = true;
+		if (currentParent == NIL) {
+			root = node;
+		} else if (insertToTheRight) {
+			right[currentParent] = node;
+		} else {
+			left[currentParent] = node;
+		}
+		restoreAfterInsertion(node);
+	}
+
+	protected void delete(int id) {
+		final int node = id + 1;
+		if (node < present.length && present[node]) {
+			present[node] = false;
+			removeNode(node);
+		}
+	}
+
+	/***
+	 * @return The id of the nearest node to the left of the point (x, y), or {@link #NO_NODE}
+	 */
+	protected int locateNearestToTheLeft(double x, double y) {
+		int current = root;
+		int closest = NIL;
+		while (current != NIL) {
+			if (isLeftOf(current - 1, x, y)) {
+				current = right[current];
+			} else {
+				closest = current;
+				current = left[current];
+			}
+		}
+		return closest - 1;
+	}
+
+	int height() {
+		return height(root);
+	}
+
+	private int height(int node) {
+		return node == NIL ? 0 : 1 + max(height(left[node]), height(right[node]));
+	}
+
+	private void ensureCapacity(int node) {
+		if (node >= left.length) {
+			final int capacity = max(node + 1, left.length * 2);
+			left = copyOf(left, capacity);
+			right = copyOf(right, capacity);
+			parent = copyOf(parent, capacity);
+			color = copyOf(color, capacity);
+			present = copyOf(present, capacity);
+		}
+	}
+
+	private void restoreAfterInsertion(int node) {
+		while (color[parent[node]] == RED) {
+			final int grandParent = parent[parent[node]];
+			if (parent[node] == left[grandParent]) {
+				final int uncle = right[grandParent];
+				if (color[uncle] == RED) {
+					color[parent[node]] = BLACK;
+					color[uncle] = BLACK;
+					color[grandParent] = RED;
+					node = grandParent;
+				} else {
+					if (node == right[parent[node]]) {
+						node = parent[node];
+						rotateLeft(node);
+					}
+					color[parent[node]] = BLACK;
+					color[parent[parent[node]]] = RED;
+					rotateRight(parent[parent[node]]);
+				}
+			} else {
+				final int uncle = left[grandParent];
+				if (color[uncle] == RED) {
+					color[parent[node]] = BLACK;
+					color[uncle] = BLACK;
+					color[grandParent] = RED;
+					node = grandParent;
+				} else {
+					if (node == left[parent[node]]) {
+						node = parent[node];
+						rotateRight(node);
+					}
+					color[parent[node]] = BLACK;
+					color[parent[parent[node]]] = RED;
+					rotateLeft(parent[parent[node]]);
+				}
+			}
+		}
+		color[root] = BLACK;
+	}
+
+	private void removeNode(int node) {
+		int replacement;
+		int movedNode = node;
+		boolean removedColor = color[movedNode];
+		if (left[node] == NIL) {
+			replacement = right[node];
+			transplant(node, right[node]);
+		} else if (right[node] == NIL) {
+			replacement = left[node];
+			transplant(node, left[node]);
+		} else {
+			movedNode = minimum(right[node]);
+			removedColor = color[movedNode];
+			replacement = right[movedNode];
+			if (parent[movedNode] == node) {
+				parent[replacement] = movedNode;
+			} else {
+				transplant(movedNode, right[movedNode]);
+				right[movedNode] = right[node];
+				parent[right[movedNode]] = movedNode;
+			}
+			transplant(node, movedNode);
+			left[movedNode] = left[node];
+			parent[left[movedNode]] = movedNode;
+			color[movedNode] = color[node];
+		}
+		if (removedColor == BLACK) {
+			restoreAfterRemoval(replacement);
+		}
+		parent[NIL] = NIL;
+	}
+
+	private void restoreAfterRemoval(int node) {
+		while (node != root && color[node] == BLACK) {
+			if (node == left[parent[node]]) {
+				int sibling = right[parent[node]];
+				if (color[sibling] == RED) {
+					color[sibling] = BLACK;
+					color[parent[node]] = RED;
+					rotateLeft(parent[node]);
+					sibling = right[parent[node]];
+				}
+				if (color[left[sibling]] == BLACK && color[right[sibling]] == BLACK) {
+					color[sibling] = RED;
+					node = parent[node];
+				} else {
+					if (color[right[sibling]] == BLACK) {
+						color[left[sibling]] = BLACK;
+						color[sibling] = RED;
+						rotateRight(sibling);
+						sibling = right[parent[node]];
+					}
+					color[sibling] = color[parent[node]];
+					color[parent[node]] = BLACK;
+					color[right[sibling]] = BLACK;
+					rotateLeft(parent[node]);
+					node = root;
+				}
+			} else {
+				int sibling = left[parent[node]];
+				if (color[sibling] == RED) {
+					color[sibling] = BLACK;
+					color[parent[node]] = RED;
+					rotateRight(parent[node]);
+					sibling = left[parent[node]];
+				}
+				if (color[right[sibling]] == BLACK && color[left[sibling]] == BLACK) {
+					color[sibling] = RED;
+					node = parent[node];
+				} else {
+					if (color[left[sibling]] == BLACK) {
+						color[right[sibling]] = BLACK;
+						color[sibling] = RED;
+						rotateLeft(sibling);
+						sibling = left[parent[node]];
+					}
+					color[sibling] = color[parent[node]];
+					color[parent[node]] = BLACK;
+					color[left[sibling]] = BLACK;
+					rotateRight(parent[node]);
+					node = root;
+				}
+			}
+		}
+		color[node] = BLACK;
+	}
+
+	private void rotateLeft(int node) {
+		final int pivot = right[node];
+		right[node] = left[pivot];
+		if (left[pivot] != NIL) {
+			parent[left[pivot]] = node;
+		}
+		parent[pivot] = parent[node];
+		if (parent[node] == NIL) {
+			root = pivot;
+		} else if (node == left[parent[node]]) {
+			left[parent[node]] = pivot;
+		} else {
+			right[parent[node]] = pivot;
+		}
+		left[pivot] = node;
+		parent[node] = pivot;
+	}
+
+	private void rotateRight(int node) {
+		final int pivot = left[node];
+		left[node] = right[pivot];
+		if (right[pivot] != NIL) {
+			parent[right[pivot]] = node;
+		}
+		parent[pivot] = parent[node];
+		if (parent[node] == NIL) {
+			root = pivot;
+		} else if (node == right[parent[node]]) {
+			right[parent[node]] = pivot;
+		} else {
+			left[parent[node]] = pivot;
+		}
+		right[pivot] = node;
+		parent[node] = pivot;
+	}
+
+	private void transplant(int target, int replacement) {
+		if (parent[target] == NIL) {
+			root = replacement;
+		} else if (target == left[parent[target]]) {
+			left[parent[target]] = replacement;
+		} else {
+			right[parent[target]] = replacement;
+		}
+		parent[replacement] = parent[target];
+	}
+
+	private int minimum(int node) {
+		while (left[node] != NIL) {
+			node = left[node];
+		}
+		return node;
+	}
+}
@@ -0,0 +1,229 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.lang.Double.compare;
+import static java.util.Arrays.copyOf;
+import static net.thomas.kata.geometry.algorithms.VertexType.MERGE;
+import static net.thomas.kata.geometry.algorithms.VertexType.determineType;
+import static net.thomas.kata.geometry.objects.PackedPolygons.NONE;
+
+import net.thomas.kata.geometry.objects.PackedPolygons;
+
+/***
+ * The monotone polygon extraction from {@link PolygonUtilImpl}, running directly on
+ * {@link PackedPolygons}. Each edge is identified by its start vertex in the original polygons, so
+ * edges, helpers and vertex types are all plain arrays indexed by vertex.
+ */
+class PackedMonotonePolygonExtractor {
+	private final PackedPolygons polygons;
+	private final int[] edgeEnds;
+	private final int[] edgeStarts;
+	private final VertexType[] vertexTypes;
+	private final int[] helpers;
+	private final int[] sweepline;
+	private final PackedStatusSearchTree status;
+	private int[] copies;
+
+	public PackedMonotonePolygonExtractor(PackedPolygons originalPolygons) {
+		polygons = new PackedPolygons(originalPolygons);
+		final int vertexCount = polygons.getVertexCount();
+		edgeEnds = new int[vertexCount];
+		edgeStarts = new int[vertexCount];
+		vertexTypes = new VertexType[vertexCount];
+		helpers = new int[vertexCount];
+		for (int vertex = 0; vertex < vertexCount; vertex++) {
+			edgeEnds[vertex] = polygons.getNext(vertex);
+			edgeStarts[vertex] = polygons.getPrevious(vertex);
+		}
+		for (int vertex = 0; vertex < vertexCount; vertex++) {
+			vertexTypes[vertex] = getVertexType(vertex);
+		}
+		sweepline = buildSweepline(vertexCount);
+		status = new PackedStatusSearchTree(polygons, edgeEnds);
+		copies = new int[8];
+	}
+
+	private VertexType getVertexType(int vertex) {
+		final int before = edgeStarts[vertex];
+		final int after = edgeEnds[vertex];
+		return determineType(polygons.getX(before), polygons.getY(before), polygons.getX(vertex), polygons.getY(vertex), polygons.getX(after),
+				polygons.getY(after));
+	}
+
+	private int[] buildSweepline(int vertexCount) {
+		final int[] sweepline = new int[vertexCount];
+		for (int vertex = 0; vertex < vertexCount; vertex++) {
+			sweepline[vertex] = vertex;
+		}
+		sortVertices(sweepline, new int[vertexCount], 0, vertexCount);
+		return sweepline;
+	}
+
+	private void sortVertices(int[] vertices, int[] scratch, int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+		final int middle = (from + to) >>> 1;
+		sortVertices(vertices, scratch, from, middle);
+		sortVertices(vertices, scratch, middle, to);
+		System.arraycopy(vertices, from, scratch, from, to - from);
+		int leftIndex = from;
+		int rightIndex = middle;
+		for (int i = from; i < to; i++) {
+			if (rightIndex >= to || leftIndex < middle && compareVertices(scratch[leftIndex], scratch[rightIndex]) <= 0) {
+				vertices[i] = scratch[leftIndex++];
+			} else {
+				vertices[i] = scratch[rightIndex++];
+			}
+		}
+	}
+
+	private int compareVertices(int left, int right) {
+		final int difference = compare(polygons.getY(left), polygons.getY(right));
+		if (difference == 0) {
+			return compare(polygons.getX(left), polygons.getX(right));
+		} else {
+			return -difference;
+		}
+	}
+
+	public PackedPolygons calculateMonotonePolygons() {
+		polygons.clearPolygonRoots();
+		for (final int vertex : sweepline) {
+			switch (vertexTypes[vertex]) {
+				case START:
+					handleStartVertex(vertex);
+					break;
+				case MERGE:
+					handleMergeVertex(vertex);
+					break;
+				case REGULAR:
+					handleRegularVertex(vertex);
+					break;
+				case SPLIT:
+					handleSplitVertex(vertex);
+					break;
+				case END:
+					handleEndVertex(vertex);
+					break;
+			}
+		}
+		return polygons;
+	}
+
+	private void handleStartVertex(int vertex) {
+		helpers[vertex] = vertex;
+		status.insert(vertex);
+	}
+
+	private void handleMergeVertex(int vertex) {
+		final int edgeBeforeVertex = edgeStarts[vertex];
+		if (vertexTypes[helpers[edgeBeforeVertex]] == MERGE) {
+			polygons.addPolygonRoot(cutOutMonotonePiece(helpers[edgeBeforeVertex], vertex));
+		}
+		status.deleteEdge(edgeBeforeVertex);
+		final int edgeLeftOfVertex = status.locateNearestEdgeToTheLeft(vertex);
+		if (vertexTypes[helpers[edgeLeftOfVertex]] == MERGE) {
+			polygons.addPolygonRoot(cutOutMonotonePiece(vertex, helpers[edgeLeftOfVertex]));
+		}
+		helpers[edgeLeftOfVertex] = vertex;
+	}
+
+	private void handleRegularVertex(int vertex) {
+		if (interiorIsToTheRight(vertex)) {
+			final int edgeBeforeVertex = edgeStarts[vertex];
+			if (vertexTypes[helpers[edgeBeforeVertex]] == MERGE) {
+				polygons.addPolygonRoot(cutOutMonotonePiece(helpers[edgeBeforeVertex], vertex));
+			}
+			status.deleteEdge(edgeBeforeVertex);
+			helpers[vertex] = vertex;
+			status.insert(vertex);
+		} else {
+			final int edgeToTheLeft = status.locateNearestEdgeToTheLeft(vertex);
+			if (vertexTypes[helpers[edgeToTheLeft]] == MERGE) {
+				polygons.addPolygonRoot(cutOutMonotonePiece(vertex, helpers[edgeToTheLeft]));
+			}
+			helpers[edgeToTheLeft] = vertex;
+		}
+	}
+
+	private void handleSplitVertex(int vertex) {
+		final int edgeToTheLeft = status.locateNearestEdgeToTheLeft(vertex);
+		cutOutMonotonePiece(helpers[edgeToTheLeft], vertex);
+		helpers[edgeToTheLeft] = vertex;
+		helpers[vertex] = vertex;
+		status.insert(vertex);
+	}
+
+	private void handleEndVertex(int vertex) {
+		final int edge = edgeStarts[vertex];
+		if (vertexTypes[helpers[edge]] == MERGE) {
+			polygons.addPolygonRoot(cutOutMonotonePiece(vertex, helpers[edge]));
+		}
+		status.deleteEdge(edge);
+		polygons.addPolygonRoot(vertex);
+	}
+
+	private boolean interiorIsToTheRight(int vertex) {
+		final int after = edgeEnds[vertex];
+		final int before = edgeStarts[vertex];
+		return polygons.getY(after) < polygons.getY(before) || polygons.getY(after) == polygons.getY(before) && polygons.getX(after) > polygons.getX(before);
+	}
+
+	private int cutOutMonotonePiece(int before, int after) {
+		final int start = selectCopyFacing(before, after);
+		return polygons.cutIntoTwoPolygons(start, selectCopyFacing(after, start));
+	}
+
+	/***
+	 * As in {@link PolygonUtilImpl}, a diagonal is cut from the copy of a cut vertex whose interior
+	 * angle it leaves through
+	 */
+	private int selectCopyFacing(int vertex, int target) {
+		if (!polygons.hasTwins(vertex)) {
+			return vertex;
+		}
+		final int copyCount = collectCopies(vertex);
+		for (int copy = 0; copy < copyCount; copy++) {
+			if (isInsideInteriorAngle(copies[copy], target)) {
+				return copies[copy];
+			}
+		}
+		return vertex;
+	}
+
+	/***
+	 * Follows the twin entries breadth first, using the copies found so far as the queue
+	 */
+	private int collectCopies(int vertex) {
+		copies[0] = vertex;
+		int copyCount = 1;
+		for (int pending = 0; pending < copyCount; pending++) {
+			for (int entry = polygons.getFirstTwinEntry(copies[pending]); entry != NONE; entry = polygons.getNextTwinEntry(entry)) {
+				final int twin = polygons.getTwin(entry);
+				if (!contains(copies, copyCount, twin)) {
+					if (copyCount == copies.length) {
+						copies = copyOf(copies, copyCount * 2);
+					}
+					copies[copyCount++] = twin;
+				}
+			}
+		}
+		return copyCount;
+	}
+
+	private static boolean contains(int[] values, int count, int value) {
+		for (int i = 0; i < count; i++) {
+			if (values[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isInsideInteriorAngle(int vertex, int target) {
+		final int after = polygons.getNext(vertex);
+		final int before = polygons.getPrevious(vertex);
+		return VertexType.isInsideInteriorAngle(polygons.getX(before), polygons.getY(before), polygons.getX(vertex), polygons.getY(vertex),
+				polygons.getX(after), polygons.getY(after), polygons.getX(target), polygons.getY(target));
+	}
+}
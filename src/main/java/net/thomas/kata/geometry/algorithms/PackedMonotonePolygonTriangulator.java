@@ -0,0 +1,175 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.lang.Double.compare;
+import static net.thomas.kata.geometry.algorithms.GeometricPredicates.orient2d;
+import static net.thomas.kata.geometry.objects.PackedPolygons.NONE;
+
+import net.thomas.kata.geometry.objects.PackedPolygons;
+import net.thomas.kata.geometry.objects.PackedTriangles;
+
+/***
+ * The monotone polygon triangulation from {@link PolygonUtilImpl}, running directly on
+ * {@link PackedPolygons}. The sweep line for each piece is built by merging its two chains, and
+ * neighbours are connected by pairing up the two sides of each diagonal.
+ */
+class PackedMonotonePolygonTriangulator {
+	private final PackedPolygons monotonePolygons;
+	private final PackedTriangles triangles;
+	private final UndirectedEdgeMap unpairedEdges;
+	private int[] sweepline;
+	private boolean[] isOnLeftSide;
+	private int[] unprocessedVertices;
+	private int stackSize;
+
+	public PackedMonotonePolygonTriangulator(PackedPolygons monotonePolygons) {
+		this.monotonePolygons = monotonePolygons;
+		final int vertexCount = monotonePolygons.getVertexCount();
+		triangles = new PackedTriangles(monotonePolygons, vertexCount);
+		unpairedEdges = new UndirectedEdgeMap(vertexCount);
+		sweepline = new int[0];
+	}
+
+	public PackedTriangles buildTriangles() {
+		for (int polygon = 0; polygon < monotonePolygons.getPolygonCount(); polygon++) {
+			final int root = monotonePolygons.getPolygonRoot(polygon);
+			final int vertexCount = monotonePolygons.countVertices(root);
+			if (vertexCount >= 3) {
+				prepareScratchSpace(vertexCount);
+				buildSweepline(root, vertexCount);
+				triangulate(vertexCount);
+			}
+		}
+		return triangles;
+	}
+
+	private void prepareScratchSpace(int vertexCount) {
+		if (sweepline.length < vertexCount) {
+			sweepline = new int[vertexCount];
+			isOnLeftSide = new boolean[vertexCount];
+			unprocessedVertices = new int[vertexCount];
+		}
+		stackSize = 0;
+	}
+
+	private void buildSweepline(int root, int vertexCount) {
+		int top = root;
+		int bottom = root;
+		int current = root;
+		do {
+			if (compareVertices(current, top) < 0) {
+				top = current;
+			}
+			if (compareVertices(current, bottom) > 0) {
+				bottom = current;
+			}
+			current = monotonePolygons.getNext(current);
+		} while (current != root);
+		int nextOnLeftSide = monotonePolygons.getNext(top);
+		int nextOnRightSide = monotonePolygons.getPrevious(top);
+		sweepline[0] = top;
+		for (int i = 1; i < vertexCount - 1; i++) {
+			if (nextOnRightSide == bottom || nextOnLeftSide != bottom && compareVertices(nextOnLeftSide, nextOnRightSide) <= 0) {
+				sweepline[i] = nextOnLeftSide;
+				isOnLeftSide[i] = true;
+				nextOnLeftSide = monotonePolygons.getNext(nextOnLeftSide);
+			} else {
+				sweepline[i] = nextOnRightSide;
+				isOnLeftSide[i] = false;
+				nextOnRightSide = monotonePolygons.getPrevious(nextOnRightSide);
+			}
+		}
+		sweepline[vertexCount - 1] = bottom;
+	}
+
+	private int compareVertices(int left, int right) {
+		final int difference = compare(monotonePolygons.getY(left), monotonePolygons.getY(right));
+		if (difference == 0) {
+			return compare(monotonePolygons.getX(left), monotonePolygons.getX(right));
+		} else {
+			return -difference;
+		}
+	}
+
+	/***
+	 * Entries on the stack are positions in the sweep line, so the side of each vertex is known.
+	 */
+	private void triangulate(int vertexCount) {
+		push(0);
+		push(1);
+		boolean currentSideIsLeft = isOnLeftSide[1];
+		for (int next = 2; next < vertexCount - 1; next++) {
+			final boolean nextSideIsLeft = isOnLeftSide[next];
+			if (nextSideIsLeft != currentSideIsLeft) {
+				int nextOtherSideVertex = unprocessedVertices[0];
+				for (int i = 1; i < stackSize; i++) {
+					final int nextNextOtherSideVertex = unprocessedVertices[i];
+					addTriangle(nextSideIsLeft, next, nextOtherSideVertex, nextNextOtherSideVertex);
+					nextOtherSideVertex = nextNextOtherSideVertex;
+				}
+				stackSize = 0;
+				push(nextOtherSideVertex);
+			} else {
+				int lastVertex = pop();
+				while (stackSize > 0 && edgeIsInsidePolygon(currentSideIsLeft, next, peek(), lastVertex)) {
+					addTriangle(nextSideIsLeft, next, lastVertex, peek());
+					lastVertex = pop();
+				}
+				push(lastVertex);
+			}
+			push(next);
+			currentSideIsLeft = nextSideIsLeft;
+		}
+		final int bottom = vertexCount - 1;
+		int secondLast = unprocessedVertices[0];
+		for (int i = 1; i < stackSize; i++) {
+			final int last = unprocessedVertices[i];
+			addTriangle(isOnLeftSide[last], bottom, last, secondLast);
+			secondLast = last;
+		}
+	}
+
+	private void push(int position) {
+		unprocessedVertices[stackSize++] = position;
+	}
+
+	private int pop() {
+		return unprocessedVertices[--stackSize];
+	}
+
+	private int peek() {
+		return unprocessedVertices[stackSize - 1];
+	}
+
+	private void addTriangle(boolean sideIsLeft, int next, int last, int secondLast) {
+		final int triangle;
+		if (sideIsLeft) {
+			triangle = triangles.addTriangle(sweepline[secondLast], sweepline[last], sweepline[next]);
+		} else {
+			triangle = triangles.addTriangle(sweepline[secondLast], sweepline[next], sweepline[last]);
+		}
+		connectToNeighbours(triangle);
+	}
+
+	private void connectToNeighbours(int triangle) {
+		for (int side = 0; side < 3; side++) {
+			final int start = triangles.getVertex(triangle, side);
+			final int end = triangles.getVertex(triangle, (side + 1) % 3);
+			final int neighbourSide = unpairedEdges.remove(start, end);
+			if (neighbourSide == NONE) {
+				unpairedEdges.put(start, end, triangle * 3 + side);
+			} else {
+				triangles.setNeighbour(triangle, side, neighbourSide / 3);
+				triangles.setNeighbour(neighbourSide / 3, neighbourSide % 3, triangle);
+			}
+		}
+	}
+
+	private boolean edgeIsInsidePolygon(boolean currentSideIsLeft, int current, int previous, int secondPrevious) {
+		final int a = sweepline[current];
+		final int b = sweepline[previous];
+		final int c = sweepline[secondPrevious];
+		final double orientation = orient2d(monotonePolygons.getX(a), monotonePolygons.getY(a), monotonePolygons.getX(b), monotonePolygons.getY(b),
+				monotonePolygons.getX(c), monotonePolygons.getY(c));
+		return currentSideIsLeft ? orientation > 0 : orientation < 0;
+	}
+}
@@ -0,0 +1,52 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static net.thomas.kata.geometry.algorithms.Edge.startIsTop;
+
+import net.thomas.kata.geometry.objects.PackedPolygons;
+
+/***
+ * Array backed counterpart to {@link StatusSearchTree}. Edges are identified by the index of their
+ * start vertex, which is also their id in the tree, so the tree does not allocate anything after
+ * construction.
+ ***/
+class PackedStatusSearchTree extends IndexedRedBlackTree {
+	private final PackedPolygons polygons;
+	private final int[] edgeEnds;
+
+	/***
+	 * @param edgeEnds
+	 *            The end vertex for each edge, indexed by its start vertex
+	 */
+	PackedStatusSearchTree(PackedPolygons polygons, int[] edgeEnds) {
+		super(edgeEnds.length);
+		this.polygons = polygons;
+		this.edgeEnds = edgeEnds;
+	}
+
+	public void insert(int edge) {
+		final int topVertex = getTopVertex(edge);
+		insert(edge, polygons.getX(topVertex), polygons.getY(topVertex));
+	}
+
+	public void deleteEdge(int edge) {
+		delete(edge);
+	}
+
+	/***
+	 * @return The nearest edge to the left of the vertex, or {@link PackedPolygons#NONE}
+	 */
+	public int locateNearestEdgeToTheLeft(int vertex) {
+		return locateNearestToTheLeft(polygons.getX(vertex), polygons.getY(vertex));
+	}
+
+	@Override
+	protected boolean isLeftOf(int edge, double x, double y) {
+		final int end = edgeEnds[edge];
+		return Edge.isLeftOf(polygons.getX(edge), polygons.getY(edge), polygons.getX(end), polygons.getY(end), x, y);
+	}
+
+	private int getTopVertex(int edge) {
+		final int end = edgeEnds[edge];
+		return startIsTop(polygons.getX(edge), polygons.getY(edge), polygons.getX(end), polygons.getY(end)) ? edge : end;
+	}
+}
@@ -0,0 +1,105 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.lang.Double.compare;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.thomas.kata.geometry.objects.PolygonVertex;
+
+/***
+ * Splits a set of polygons into groups that can be swept independently. Two polygons end up in the
+ * same group if their bounding boxes overlap or touch, either directly or through other polygons.
+ * Holes are always inside the bounding box of their outer polygon, so they stay with it.<BR>
+ * Groups are ordered by their first polygon in the input, and polygons keep their input order
+ * within each group.
+ */
+class PolygonGrouper {
+	private final PolygonVertex[] polygons;
+	private final double[] minXs;
+	private final double[] minYs;
+	private final double[] maxXs;
+	private final double[] maxYs;
+	private final int[] groupParents;
+
+	public PolygonGrouper(Collection<PolygonVertex> polygons) {
+		this.polygons = polygons.toArray(new PolygonVertex[polygons.size()]);
+		final int polygonCount = this.polygons.length;
+		minXs = new double[polygonCount];
+		minYs = new double[polygonCount];
+		maxXs = new double[polygonCount];
+		maxYs = new double[polygonCount];
+		groupParents = new int[polygonCount];
+		for (int polygon = 0; polygon < polygonCount; polygon++) {
+			calculateBoundingBox(polygon);
+			groupParents[polygon] = polygon;
+		}
+	}
+
+	private void calculateBoundingBox(int polygon) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (final PolygonVertex vertex : polygons[polygon]) {
+			minX = min(minX, vertex.x);
+			minY = min(minY, vertex.y);
+			maxX = max(maxX, vertex.x);
+			maxY = max(maxY, vertex.y);
+		}
+		minXs[polygon] = minX;
+		minYs[polygon] = minY;
+		maxXs[polygon] = maxX;
+		maxYs[polygon] = maxY;
+	}
+
+	public List<List<PolygonVertex>> groupOverlappingPolygons() {
+		final List<Integer> active = new ArrayList<>();
+		for (final int polygon : sortByMinX()) {
+			active.removeIf(other -> maxXs[other] < minXs[polygon]);
+			for (final int other : active) {
+				if (minYs[other] <= maxYs[polygon] && minYs[polygon] <= maxYs[other]) {
+					join(polygon, other);
+				}
+			}
+			active.add(polygon);
+		}
+		final Map<Integer, List<PolygonVertex>> groups = new LinkedHashMap<>();
+		for (int polygon = 0; polygon < polygons.length; polygon++) {
+			groups.computeIfAbsent(findGroup(polygon), group -> new ArrayList<>()).add(polygons[polygon]);
+		}
+		return new ArrayList<>(groups.values());
+	}
+
+	private List<Integer> sortByMinX() {
+		final List<Integer> order = new ArrayList<>(polygons.length);
+		for (int polygon = 0; polygon < polygons.length; polygon++) {
+			order.add(polygon);
+		}
+		order.sort((left, right) -> compare(minXs[left], minXs[right]));
+		return order;
+	}
+
+	private void join(int polygon, int other) {
+		final int group = findGroup(polygon);
+		final int otherGroup = findGroup(other);
+		if (group < otherGroup) {
+			groupParents[otherGroup] = group;
+		} else if (otherGroup < group) {
+			groupParents[group] = otherGroup;
+		}
+	}
+
+	private int findGroup(int polygon) {
+		while (groupParents[polygon] != polygon) {
+			groupParents[polygon] = groupParents[groupParents[polygon]];
+			polygon = groupParents[polygon];
+		}
+		return polygon;
+	}
+}
@@ -1,12 +1,9 @@
 package net.thomas.kata.geometry.algorithms;
 
-import static java.lang.Math.PI;
-import static java.lang.Math.abs;
-import static java.lang.Math.atan2;
-import static java.util.stream.Collectors.toSet;
-import static net.thomas.kata.geometry.algorithms.PolygonUtilImpl.EPSILON;
-import static net.thomas.kata.geometry.algorithms.VertexRelation.ABOVE;
-import static net.thomas.kata.geometry.algorithms.VertexRelation.BELOW;
+import static java.lang.Math.max;
+import static java.util.Arrays.asList;
+import static java.util.Collections.newSetFromMap;
+import static net.thomas.kata.geometry.algorithms.GeometricPredicates.orient2d;
 import static net.thomas.kata.geometry.algorithms.VertexSide.LEFT;
 import static net.thomas.kata.geometry.algorithms.VertexType.END;
 import static net.thomas.kata.geometry.algorithms.VertexType.MERGE;
@@ -14,24 +11,29 @@ import static net.thomas.kata.geometry.algorithms.VertexType.REGULAR;
 import static net.thomas.kata.geometry.algorithms.VertexType.SPLIT;
 import static net.thomas.kata.geometry.algorithms.VertexType.START;
 import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide.TRIANGLE_SIDES;
-import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.TRIANGLE_VERTICES;
 import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_1;
 import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_2;
 import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_3;
 import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.matchingSide;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
 
 import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.objects.PackedPolygons;
+import net.thomas.kata.geometry.objects.PackedTriangles;
 import net.thomas.kata.geometry.objects.PolygonTriangle;
 import net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide;
 import net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex;
@@ -43,21 +45,111 @@ import net.thomas.kata.geometry.pathfinding.objects.PortalGraphNode;
 import net.thomas.kata.geometry.pathfinding.objects.Triangle;
 
 public class PolygonUtilImpl implements PolygonUtil {
-	public static final double EPSILON = 0.0000001d;
+	private final ForkJoinPool pool;
+
+	public PolygonUtilImpl() {
+		pool = null;
+	}
+
+	/***
+	 * Runs independent parts of the work on pool:<BR>
+	 * Input polygons are split into groups with disjoint bounding boxes, and each group is swept
+	 * separately. Holes always end up in the same group as the polygon containing them.<BR>
+	 * Monotone polygons are triangulated one by one.<BR>
+	 * Results are merged in input order, so they do not depend on how the work was scheduled.
+	 */
+	public PolygonUtilImpl(ForkJoinPool pool) {
+		this.pool = pool;
+	}
 
 	@Override
 	public Collection<PolygonVertex> getMonotoneParts(Collection<PolygonVertex> polygons) {
+		if (pool != null && polygons.size() > 1) {
+			final List<List<PolygonVertex>> groups = new PolygonGrouper(polygons).groupOverlappingPolygons();
+			if (groups.size() > 1) {
+				final Collection<PolygonVertex> monotonePolygons = new LinkedList<>();
+				for (final Collection<PolygonVertex> parts : runInParallel(groups, group -> new MonotonePolygonExtractor(group).calculateMonotonePolygons())) {
+					monotonePolygons.addAll(parts);
+				}
+				return monotonePolygons;
+			}
+		}
 		return new MonotonePolygonExtractor(polygons).calculateMonotonePolygons();
 	}
 
 	@Override
 	public Collection<PolygonTriangle> triangulateMonotonePolygons(Collection<PolygonVertex> monotonePolygons) {
+		if (pool != null && monotonePolygons.size() > 1) {
+			final MonotonePolygonTriangulator triangulator = new MonotonePolygonTriangulator(monotonePolygons);
+			return new LinkedList<>(runInParallel(new ArrayList<>(monotonePolygons), triangulator::buildTriangleGraph));
+		}
 		return new MonotonePolygonTriangulator(monotonePolygons).buildTriangleGraphs();
 	}
 
+	@Override
+	public Collection<PolygonTriangle> refineToConstrainedDelaunay(Collection<PolygonTriangle> triangleGraphs) {
+		return new ConstrainedDelaunayRefiner(triangleGraphs).refine();
+	}
+
+	private <I, O> List<O> runInParallel(List<I> inputs, Function<I, O> function) {
+		@SuppressWarnings("unchecked")
+		final O[] outputs = (O[]) new Object[inputs.size()];
+		final int inputsPerTask = max(1, inputs.size() / (pool.getParallelism() * 8));
+		pool.invoke(new OrderedTask<>(inputs, outputs, function, 0, inputs.size(), inputsPerTask));
+		return asList(outputs);
+	}
+
+	private static class OrderedTask<I, O> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<I> inputs;
+		private final O[] outputs;
+		private final Function<I, O> function;
+		private final int from;
+		private final int to;
+		private final int inputsPerTask;
+
+		public OrderedTask(List<I> inputs, O[] outputs, Function<I, O> function, int from, int to, int inputsPerTask) {
+			this.inputs = inputs;
+			this.outputs = outputs;
+			this.function = function;
+			this.from = from;
+			this.to = to;
+			this.inputsPerTask = inputsPerTask;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= inputsPerTask) {
+				for (int i = from; i < to; i++) {
+					outputs[i] = function.apply(inputs.get(i));
+				}
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new OrderedTask<>(inputs, outputs, function, from, middle, inputsPerTask),
+						new OrderedTask<>(inputs, outputs, function, middle, to, inputsPerTask));
+			}
+		}
+	}
+
+	@Override
+	public PackedPolygons getMonotoneParts(PackedPolygons polygons) {
+		return new PackedMonotonePolygonExtractor(polygons).calculateMonotonePolygons();
+	}
+
+	@Override
+	public PackedTriangles triangulateMonotonePolygons(PackedPolygons monotonePolygons) {
+		return new PackedMonotonePolygonTriangulator(monotonePolygons).buildTriangles();
+	}
+
 	@Override
 	public PathfindingUtil buildPathFindingUtil(Collection<PolygonTriangle> triangleGraphs) {
-		return new TriangleGraphConverter(triangleGraphs).buildPathFindingUtil();
+		return new TriangleGraphConverter(triangleGraphs, 0).buildPathFindingUtil();
+	}
+
+	@Override
+	public PathfindingUtil buildPathFindingUtil(Collection<PolygonTriangle> triangleGraphs, int nodesPerRegion) {
+		return new TriangleGraphConverter(triangleGraphs, nodesPerRegion).buildPathFindingUtil();
 	}
 
 	/***
@@ -111,46 +203,9 @@ public class PolygonUtilImpl implements PolygonUtil {
 		}
 
 		private VertexType getVertexType(PolygonVertex vertex) {
-			final VertexRelation before = determineRelation(vertex, vertex.getBefore());
-			final VertexRelation after = determineRelation(vertex, vertex.getAfter());
-			final double interiorAngle = calculateInteriorAngleFor(vertex);
-
-			if (oneIsBelowAndOneIsAbove(before, after)) {
-				return REGULAR;
-			} else if (before == BELOW) {
-				return interiorAngle < PI ? END : MERGE;
-			} else {
-				return interiorAngle < PI ? START : SPLIT;
-			}
-		}
-
-		private VertexRelation determineRelation(PolygonVertex vertex, PolygonVertex neighbour) {
-			if (vertex.y > neighbour.y) {
-				return ABOVE;
-			} else if (vertex.y < neighbour.y) {
-				return BELOW;
-			} else {
-				return vertex.x < neighbour.x ? ABOVE : BELOW;
-			}
-		}
-
-		private double calculateInteriorAngleFor(PolygonVertex vertex) {
-			double angle = atan2(vertex.y - vertex.getAfter().y, vertex.x - vertex.getAfter().x)
-					- atan2(vertex.getBefore().y - vertex.y, vertex.getBefore().x - vertex.x);
-			if (angle < 0) {
-				angle += PI * 2;
-			}
-			if (abs(angle) < EPSILON) {
-				return 0.0;
-			}
-			if (abs(angle - PI) < EPSILON) {
-				return PI;
-			}
-			return angle;
-		}
-
-		private boolean oneIsBelowAndOneIsAbove(final VertexRelation before, final VertexRelation after) {
-			return before != after;
+			final PolygonVertex before = vertex.getBefore();
+			final PolygonVertex after = vertex.getAfter();
+			return VertexType.determineType(before.x, before.y, vertex.x, vertex.y, after.x, after.y);
 		}
 
 		public Collection<PolygonVertex> calculateMonotonePolygons() {
@@ -239,7 +294,43 @@ public class PolygonUtilImpl implements PolygonUtil {
 		}
 
 		private PolygonVertex cutOutMonotonePiece(PolygonVertex before, PolygonVertex after) {
-			return before.cutIntoTwoPolygons(after);
+			final PolygonVertex start = selectCopyFacing(before, after);
+			return start.cutIntoTwoPolygons(selectCopyFacing(after, start));
+		}
+
+		/***
+		 * Once a vertex has been cut, it and its twins each belong to a different piece. A new
+		 * diagonal has to be cut from the copy whose interior angle it leaves through, or it ends up
+		 * connecting two pieces instead of splitting one. This happens when a helper is used for more
+		 * than one diagonal, which is common around holes.
+		 */
+		private PolygonVertex selectCopyFacing(PolygonVertex vertex, PolygonVertex target) {
+			if (vertex.getTwins().isEmpty()) {
+				return vertex;
+			}
+			final Set<PolygonVertex> copies = newSetFromMap(new IdentityHashMap<>());
+			final ArrayDeque<PolygonVertex> pendingCopies = new ArrayDeque<>();
+			copies.add(vertex);
+			pendingCopies.push(vertex);
+			while (!pendingCopies.isEmpty()) {
+				for (final PolygonVertex twin : pendingCopies.pop().getTwins()) {
+					if (copies.add(twin)) {
+						pendingCopies.push(twin);
+					}
+				}
+			}
+			for (final PolygonVertex copy : copies) {
+				if (isInsideInteriorAngle(copy, target)) {
+					return copy;
+				}
+			}
+			return vertex;
+		}
+
+		private boolean isInsideInteriorAngle(PolygonVertex vertex, PolygonVertex target) {
+			final PolygonVertex after = vertex.getAfter();
+			final PolygonVertex before = vertex.getBefore();
+			return VertexType.isInsideInteriorAngle(before.x, before.y, vertex.x, vertex.y, after.x, after.y, target.x, target.y);
 		}
 	}
 
@@ -309,31 +400,41 @@ public class PolygonUtilImpl implements PolygonUtil {
 			return builder.build();
 		}
 
+		/***
+		 * Connects each new triangle to the earlier triangles it shares an edge with. A triangle is
+		 * loose until a later triangle connects to it, and a monotone piece should end up with exactly
+		 * one loose triangle.
+		 */
 		private static class TriangleGraphBuilder {
-			private final Set<PolygonTriangle> looseTriangles;
+			private final TriangleEdgeIndex edges;
+			private final List<Boolean> looseTriangles;
+			private int looseTriangleCount;
 
 			public TriangleGraphBuilder() {
-				looseTriangles = new HashSet<>();
+				edges = new TriangleEdgeIndex();
+				looseTriangles = new ArrayList<>();
+				looseTriangleCount = 0;
 			}
 
 			public TriangleGraphBuilder add(PolygonTriangle triangle) {
-				final Set<PolygonTriangle> absorbedTriangles = new HashSet<>();
-				for (final PolygonTriangle looseTriangle : looseTriangles) {
-					if (looseTriangle.isNeighbourTo(triangle)) {
-						looseTriangle.connect(triangle);
-						absorbedTriangles.add(looseTriangle);
+				final int index = edges.add(triangle);
+				for (final TriangleSide side : TRIANGLE_SIDES) {
+					final int neighbour = edges.connect(index, side);
+					if (neighbour != TriangleEdgeIndex.NONE && looseTriangles.get(neighbour)) {
+						looseTriangles.set(neighbour, false);
+						looseTriangleCount--;
 					}
 				}
-				looseTriangles.removeAll(absorbedTriangles);
-				looseTriangles.add(triangle);
+				looseTriangles.add(true);
+				looseTriangleCount++;
 				return this;
 			}
 
 			public PolygonTriangle build() {
-				if (looseTriangles.size() > 1) {
-					throw new RuntimeException("Number of loose triangles was " + looseTriangles.size() + ". It should have been 1. " + looseTriangles);
+				if (looseTriangleCount > 1) {
+					throw new RuntimeException("Number of loose triangles was " + looseTriangleCount + ". It should have been 1.");
 				}
-				return looseTriangles.iterator().next();
+				return edges.getTriangle(looseTriangles.size() - 1);
 			}
 		}
 
@@ -356,152 +457,111 @@ public class PolygonUtilImpl implements PolygonUtil {
 		}
 
 		private boolean edgeIsInsidePolygon(VertexSide currentSide, PolygonVertex current, PolygonVertex previous, PolygonVertex secondPrevious) {
-			final PolygonVertex a = current;
-			final PolygonVertex b = previous;
-			final PolygonVertex c = secondPrevious;
-			final double determinant = (c.x - b.x) * (b.y - a.y) - (b.x - a.x) * (c.y - b.y);
-			return currentSide == LEFT ? determinant < 0 : determinant > 0;
+			final double orientation = orient2d(current.x, current.y, previous.x, previous.y, secondPrevious.x, secondPrevious.y);
+			return currentSide == LEFT ? orientation > 0 : orientation < 0;
 		}
 	}
 
 	private static class TriangleGraphConverter {
 		private final Collection<PolygonTriangle> intermediateTriangleGraphs;
+		private final int nodesPerRegion;
 
-		public TriangleGraphConverter(Collection<PolygonTriangle> intermediateTriangleGraphs) {
+		public TriangleGraphConverter(Collection<PolygonTriangle> intermediateTriangleGraphs, int nodesPerRegion) {
 			this.intermediateTriangleGraphs = intermediateTriangleGraphs;
+			this.nodesPerRegion = nodesPerRegion;
 		}
 
 		public PathfindingUtil buildPathFindingUtil() {
-			connectAllAdjacentTriangles(intermediateTriangleGraphs);
-			final HashSet<PolygonTriangle> pendingNodes = extractAllUniqueTriangles(intermediateTriangleGraphs);
-			return convertToPathFindingUtil(pendingNodes);
-		}
-
-		private void connectAllAdjacentTriangles(Collection<PolygonTriangle> intermediateTriangleGraphs) {
-			final Map<PolygonVertex, Set<PolygonTriangle>> verticesWithTwins = new HashMap<>();
-			final Set<PolygonTriangle> visitedTriangles = new HashSet<>();
-			for (final PolygonTriangle triangle : intermediateTriangleGraphs) {
-				visitTriangle(triangle, visitedTriangles, verticesWithTwins);
-			}
-			for (final Set<PolygonTriangle> triangles : verticesWithTwins.values()) {
-				for (final PolygonTriangle triangle : triangles) {
-					connectAdjacentTriangles(verticesWithTwins, triangle);
+			final Map<PolygonTriangle, Integer> triangleIds = new IdentityHashMap<>();
+			final List<PolygonTriangle> triangles = collectAllTriangles(intermediateTriangleGraphs, triangleIds);
+			TriangleEdgeIndex.connectAdjacentPieces(triangles);
+			return convertToPathFindingUtil(triangles, triangleIds);
+		}
+
+		/***
+		 * Walks the triangle graphs with an explicit work stack, giving each triangle an id in the
+		 * order it is found. Ids are assigned by identity, so no triangle is ever hashed by its
+		 * vertices.
+		 */
+		private List<PolygonTriangle> collectAllTriangles(Collection<PolygonTriangle> intermediateTriangleGraphs, Map<PolygonTriangle, Integer> triangleIds) {
+			final List<PolygonTriangle> triangles = new ArrayList<>();
+			final ArrayDeque<PolygonTriangle> pendingTriangles = new ArrayDeque<>();
+			for (final PolygonTriangle root : intermediateTriangleGraphs) {
+				assignId(root, triangles, triangleIds, pendingTriangles);
+				while (!pendingTriangles.isEmpty()) {
+					final PolygonTriangle triangle = pendingTriangles.pop();
+					for (final TriangleSide side : TRIANGLE_SIDES) {
+						assignId(triangle.getNeighbour(side), triangles, triangleIds, pendingTriangles);
+					}
 				}
 			}
+			return triangles;
 		}
 
-		private void connectAdjacentTriangles(final Map<PolygonVertex, Set<PolygonTriangle>> verticesWithTwins, final PolygonTriangle triangle) {
-			final Set<PolygonTriangle> neighbourCandidates = new HashSet<>();
-			for (final TriangleVertex vertexId : TRIANGLE_VERTICES) {
-				final Set<PolygonTriangle> twinTriangles = verticesWithTwins.get(triangle.getVertex(vertexId));
-				if (twinTriangles != null) {
-					neighbourCandidates.addAll(twinTriangles.stream().filter((potentialCandidate) -> {
-						return isTrueCandidate(triangle, potentialCandidate);
-					}).collect(toSet()));
-				}
-			}
-			if (!neighbourCandidates.isEmpty()) {
-				for (final PolygonTriangle candidate : neighbourCandidates) {
-					candidate.connect(triangle);
-				}
+		private void assignId(PolygonTriangle triangle, List<PolygonTriangle> triangles, Map<PolygonTriangle, Integer> triangleIds,
+				ArrayDeque<PolygonTriangle> pendingTriangles) {
+			if (triangle != null && triangleIds.putIfAbsent(triangle, triangles.size()) == null) {
+				triangles.add(triangle);
+				pendingTriangles.push(triangle);
 			}
 		}
 
-		private boolean isTrueCandidate(final PolygonTriangle triangle, PolygonTriangle candidate) {
-			return candidate != triangle && triangle.isNeighbourTo(candidate) && !triangle.isConnectedTo(candidate);
-		}
-
-		private void visitTriangle(final PolygonTriangle triangle, final Set<PolygonTriangle> visitedTriangles,
-				final Map<PolygonVertex, Set<PolygonTriangle>> verticesWithTwins) {
-			if (triangle != null) {
-				visitedTriangles.add(triangle);
-				checkForTwinVertices(triangle, verticesWithTwins);
-				visitSides(triangle, visitedTriangles, verticesWithTwins);
+		/***
+		 * Converts the triangles in a single pass over their ids. Neighbours are stored as ids, three
+		 * per triangle, and the portal node for a side is stored for both triangles sharing it when
+		 * it is created, so the neighbour picks it up without a lookup by portal.
+		 */
+		private PathfindingUtil convertToPathFindingUtil(List<PolygonTriangle> triangles, Map<PolygonTriangle, Integer> triangleIds) {
+			final int[] neighbours = buildNeighbourIds(triangles, triangleIds);
+			final PortalGraphNode[] portalNodes = new PortalGraphNode[neighbours.length];
+			final Builder builder = new PathfindingUtil.Builder().setNodesPerRegion(nodesPerRegion);
+			for (int triangle = 0; triangle < triangles.size(); triangle++) {
+				convertTriangle(triangles.get(triangle), triangle, neighbours, portalNodes, builder);
 			}
+			return builder.build();
 		}
 
-		private void checkForTwinVertices(final PolygonTriangle triangle, final Map<PolygonVertex, Set<PolygonTriangle>> verticesWithTwins) {
-			for (final TriangleVertex vertexId : TRIANGLE_VERTICES) {
-				final PolygonVertex vertex = triangle.getVertex(vertexId);
-				if (!vertex.getTwins().isEmpty()) {
-					if (!verticesWithTwins.containsKey(vertex)) {
-						verticesWithTwins.put(vertex, new HashSet<>());
-					}
-					verticesWithTwins.get(vertex).add(triangle);
+		private int[] buildNeighbourIds(List<PolygonTriangle> triangles, Map<PolygonTriangle, Integer> triangleIds) {
+			final int[] neighbours = new int[triangles.size() * 3];
+			for (int triangle = 0; triangle < triangles.size(); triangle++) {
+				for (final TriangleSide side : TRIANGLE_SIDES) {
+					final PolygonTriangle neighbour = triangles.get(triangle).getNeighbour(side);
+					neighbours[triangle * 3 + side.ordinal()] = neighbour == null ? TriangleEdgeIndex.NONE : triangleIds.get(neighbour);
 				}
 			}
+			return neighbours;
 		}
 
-		private void visitSides(final PolygonTriangle triangle, final Set<PolygonTriangle> visitedTriangles,
-				final Map<PolygonVertex, Set<PolygonTriangle>> verticesWithTwins) {
+		private void convertTriangle(PolygonTriangle triangle, int id, int[] neighbours, PortalGraphNode[] portalNodes, Builder builder) {
+			final List<PortalGraphNode> relevantPortalNodes = new ArrayList<>();
 			for (final TriangleSide side : TRIANGLE_SIDES) {
-				final PolygonTriangle neighbour = triangle.getNeighbour(side);
-				if (!visitedTriangles.contains(neighbour)) {
-					visitTriangle(neighbour, visitedTriangles, verticesWithTwins);
+				final int neighbour = neighbours[id * 3 + side.ordinal()];
+				if (neighbour != TriangleEdgeIndex.NONE) {
+					if (portalNodes[id * 3 + side.ordinal()] == null) {
+						final PortalGraphNode node = new PortalGraphNode(buildPortal(triangle, side));
+						portalNodes[id * 3 + side.ordinal()] = node;
+						portalNodes[neighbour * 3 + sideTowards(neighbours, neighbour, id)] = node;
+					}
+					relevantPortalNodes.add(portalNodes[id * 3 + side.ordinal()]);
 				}
 			}
+			connectPortals(relevantPortalNodes);
+			final Triangle cleanTriangle = new Triangle(triangle.getVertex(VERTEX_1), triangle.getVertex(VERTEX_2), triangle.getVertex(VERTEX_3));
+			builder.addTriangleWithNodes(cleanTriangle, relevantPortalNodes);
 		}
 
-		private HashSet<PolygonTriangle> extractAllUniqueTriangles(Collection<PolygonTriangle> intermediateTriangleGraphs) {
-			final HashSet<PolygonTriangle> pendingNodes = new HashSet<>();
-			for (final PolygonTriangle triangle : intermediateTriangleGraphs) {
-				pendingNodes.add(triangle);
-				addNeighbours(pendingNodes, triangle);
-			}
-			return pendingNodes;
-		}
-
-		private void addNeighbours(HashSet<PolygonTriangle> nodes, PolygonTriangle currentTriangle) {
-			for (final TriangleSide side : TRIANGLE_SIDES) {
-				addNeighbourIfNotPresent(nodes, currentTriangle, side);
-			}
-		}
-
-		private void addNeighbourIfNotPresent(HashSet<PolygonTriangle> nodes, PolygonTriangle currentTriangle, TriangleSide side) {
-			final PolygonTriangle neighbour = currentTriangle.getNeighbour(side);
-			if (neighbour != null && !nodes.contains(neighbour)) {
-				nodes.add(neighbour);
-				addNeighbours(nodes, neighbour);
-			}
-		}
-
-		private PathfindingUtil convertToPathFindingUtil(final HashSet<PolygonTriangle> pendingNodes) {
-			final Map<Portal, PortalGraphNode> portalGraphs = new HashMap<>();
-			final Set<PolygonTriangle> visitedTriangles = new HashSet<>();
-			final Builder builder = new PathfindingUtil.Builder();
-			for (final PolygonTriangle triangle : pendingNodes) {
-				convertNodeWithNeighbours(triangle, portalGraphs, visitedTriangles, builder);
-			}
-			return builder.build();
+		private Portal buildPortal(PolygonTriangle triangle, TriangleSide side) {
+			final TriangleVertex rightVertex = matchingSide(side);
+			return new Portal(triangle.getVertex(rightVertex.next()), triangle.getVertex(rightVertex));
 		}
 
-		private void convertNodeWithNeighbours(PolygonTriangle triangle, Map<Portal, PortalGraphNode> portalGraphs, Set<PolygonTriangle> visitedTriangles,
-				Builder builder) {
-			if (!visitedTriangles.contains(triangle)) {
-				visitedTriangles.add(triangle);
-				final List<PortalGraphNode> relevantPortalNodes = new ArrayList<>();
-				for (final TriangleSide side : TRIANGLE_SIDES) {
-					if (triangle.getNeighbour(side) != null) {
-						final PortalGraphNode node = buildGraphForSide(triangle, portalGraphs, visitedTriangles, side, builder);
-						relevantPortalNodes.add(node);
-					}
+		private int sideTowards(int[] neighbours, int triangle, int neighbour) {
+			for (int side = 0; side < 3; side++) {
+				if (neighbours[triangle * 3 + side] == neighbour) {
+					return side;
 				}
-				connectPortals(relevantPortalNodes);
-				final Triangle cleanTriangle = new Triangle(triangle.getVertex(VERTEX_1), triangle.getVertex(VERTEX_2), triangle.getVertex(VERTEX_3));
-				builder.addTriangleWithNodes(cleanTriangle, relevantPortalNodes);
-			}
-		}
-
-		private PortalGraphNode buildGraphForSide(PolygonTriangle triangle, Map<Portal, PortalGraphNode> portalGraphs, Set<PolygonTriangle> visitedTriangles,
-				final TriangleSide side, Builder builder) {
-			final TriangleVertex rightVertex = matchingSide(side);
-			final Portal portal = new Portal(triangle.getVertex(rightVertex.next()), triangle.getVertex(rightVertex));
-			if (!portalGraphs.containsKey(portal)) {
-				portalGraphs.put(portal, new PortalGraphNode(portal));
 			}
-			final PortalGraphNode node = portalGraphs.get(portal);
-			convertNodeWithNeighbours(triangle.getNeighbour(side), portalGraphs, visitedTriangles, builder);
-			return node;
+			throw new RuntimeException("Triangle " + triangle + " is not connected back to its neighbour " + neighbour);
 		}
 
 		private void connectPortals(final List<PortalGraphNode> relevantNodes) {
@@ -517,11 +577,6 @@ public class PolygonUtilImpl implements PolygonUtil {
 	}
 }
 
-enum VertexRelation {
-	ABOVE,
-	BELOW
-}
-
 enum VertexSide {
 	TOP,
 	LEFT,
@@ -529,14 +584,6 @@ enum VertexSide {
 	BOTTOM
 }
 
-enum VertexType {
-	START,
-	END,
-	REGULAR,
-	SPLIT,
-	MERGE
-}
-
 class SweeplineBuilder {
 	private final List<PolygonVertex> polygons;
 
@@ -578,211 +625,51 @@ class SweeplineBuilder {
 }
 
 /***
- * TODO: This should be a balanced search tree (e.g. red / black tree), if O(n*log(n)) is to be
- * guaranteed
+ * Red / black tree holding the edges currently intersected by the sweep line, ordered by where they
+ * intersect it. Each edge gets an id in the tree the first time it is inserted.
+ *
+ * Edges are deleted through the node they were inserted into, since the order of two edges can
+ * only be determined reliably while they are both intersected by the sweep line.
  ***/
-class StatusSearchTree {
-	class Node {
-		public Node left;
-		public Node right;
-		public Edge contents;
+class StatusSearchTree extends IndexedRedBlackTree {
+	private static final int INITIAL_CAPACITY = 16;
 
-		public Node(Edge contents) {
-			this.contents = contents;
-			left = right = null;
-		}
-	}
-
-	private Node root;
+	private final Map<Edge, Integer> ids;
+	private final List<Edge> edges;
 
 	StatusSearchTree() {
-		root = null;
+		super(INITIAL_CAPACITY);
+		ids = new HashMap<>();
+		edges = new ArrayList<>();
 	}
 
 	public void insert(Edge edge) {
-		if (root == null) {
-			root = new Node(edge);
-		} else {
-			Node current = root;
-			boolean searching = true;
-			while (searching) {
-				if (current.contents.isLeftOf(edge.getTopVertex())) {
-					if (current.right != null) {
-						current = current.right;
-					} else {
-						current.right = new Node(edge);
-						searching = false;
-					}
-				} else {
-					if (current.left != null) {
-						current = current.left;
-					} else {
-						current.left = new Node(edge);
-						searching = false;
-					}
-				}
-			}
-		}
+		Integer id = ids.get(edge);
+		if (id == null) {
+			id = edges.size();
+			ids.put(edge, id);
+			edges.add(edge);
+		}
+		final PolygonVertex topVertex = edge.getTopVertex();
+		insert(id, topVertex.x, topVertex.y);
 	}
 
 	public void deleteEdge(Edge edge) {
-		if (root.contents == edge) {
-			root = removeElement(root);
-			return;
-		}
-
-		Node current = root;
-		boolean searching = true;
-		while (searching) {
-			if (current.contents.isLeftOf(edge.getBottomVertex())) {
-				if (current.right.contents == edge) {
-					current.right = removeElement(current.right);
-					searching = false;
-				} else {
-					current = current.right;
-				}
-			} else {
-				if (current.left.contents == edge) {
-					current.left = removeElement(current.left);
-					searching = false;
-				} else {
-					current = current.left;
-				}
-			}
+		final Integer id = ids.get(edge);
+		if (id != null) {
+			delete(id);
 		}
 	}
 
 	public Edge locateNearestEdgeToTheLeft(final PolygonVertex vertex) {
-		Node current = root;
-		Node closest = null;
-		while (true) {
-			if (current == null) {
-				return closest != null ? closest.contents : null;
-			} else if (current.contents.isLeftOf(vertex)) {
-				current = current.right;
-			} else {
-				closest = current;
-				current = current.left;
-			}
-		}
+		final int id = locateNearestToTheLeft(vertex.x, vertex.y);
+		return id != NO_NODE ? edges.get(id) : null;
 	}
 
-	private Node removeElement(Node element) {
-		if (element.left != null) {
-			Node current = element.left;
-			if (current.right == null) {
-				current.right = element.right;
-				return current;
-			}
-			while (current.right.right != null) {
-				current = current.right;
-			}
-			final Node newRoot = current.right;
-			current.right = current.right.left;
-			newRoot.left = element.left;
-			newRoot.right = element.right;
-			return newRoot;
-		} else if (element.right != null) {
-			Node current = element.right;
-			if (current.left == null) {
-				return current;
-			}
-			while (current.left.left != null) {
-				current = current.left;
-			}
-			final Node newRoot = current.left;
-			current.left = current.left.right;
-			newRoot.left = element.left;
-			newRoot.right = element.right;
-			return newRoot;
-		}
-		return null;
+	@Override
+	protected boolean isLeftOf(int id, double x, double y) {
+		final Edge edge = edges.get(id);
+		return Edge.isLeftOf(edge.getStartVertex().x, edge.getStartVertex().y, edge.getEndVertex().x, edge.getEndVertex().y, x, y);
 	}
 }
 
-class Edge {
-	private final PolygonVertex start;
-	private final PolygonVertex end;
-	private PolygonVertex helper;
-	private Edge twin;
-
-	public Edge(PolygonVertex start, PolygonVertex end) {
-		this.start = start;
-		this.end = end;
-		twin = null;
-	}
-
-	public PolygonVertex getStartVertex() {
-		return start;
-	}
-
-	public PolygonVertex getEndVertex() {
-		return end;
-	}
-
-	public void setTwin(Edge twin) {
-		this.twin = twin;
-	}
-
-	public Edge getTwin() {
-		return twin;
-	}
-
-	public PolygonVertex getTopVertex() {
-		if (start.y > end.y) {
-			return start;
-		} else if (start.y < end.y) {
-			return end;
-		} else {
-			return start.x < end.x ? start : end;
-		}
-	}
-
-	public PolygonVertex getBottomVertex() {
-		if (start.y < end.y) {
-			return start;
-		} else if (start.y > end.y) {
-			return end;
-		} else {
-			return start.x > end.x ? start : end;
-		}
-	}
-
-	public PolygonVertex getHelper() {
-		return helper;
-	}
-
-	public void setHelper(PolygonVertex helper) {
-		this.helper = helper;
-	}
-
-	public boolean isLeftOf(PolygonVertex vertex) {
-		final double projectionX = determineProjectionOfVertexY(vertex.y);
-		if (projectionX >= vertex.x - EPSILON) {
-			return true;
-		}
-		return false;
-	}
-
-	private double determineProjectionOfVertexY(double vertexY) {
-		final double deltaX = end.x - start.x;
-		if (abs(deltaX) < EPSILON) {// vertical line
-			return start.x;
-		} else {
-			return calculateProjection(vertexY, deltaX);
-		}
-	}
-
-	private double calculateProjection(double vertexY, final double deltaX) {
-		final double deltaY = end.y - start.y;
-		final double a = deltaY / deltaX;
-		final double b = end.y - a * end.x;
-		final double projection = (vertexY - b) / a;
-		return projection;
-	}
-
-	@Override
-	public String toString() {
-		return start + " -> " + end + (helper != null ? " (Helper: " + helper + ")" : "");
-	}
-}
\ No newline at end of file
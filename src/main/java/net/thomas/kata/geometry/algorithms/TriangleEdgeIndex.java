@@ -0,0 +1,105 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide.TRIANGLE_SIDES;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.matchingSide;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.thomas.kata.geometry.objects.PackedPolygons;
+import net.thomas.kata.geometry.objects.PolygonTriangle;
+import net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide;
+import net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+
+/***
+ * Pairs up {@link PolygonTriangle}s sharing an edge in constant time per side. Vertices are given
+ * ids by coordinates, matching {@link PolygonVertex#equals(Object)}, so twins share the same id.
+ * Each open side is stored in an {@link UndirectedEdgeMap} until the triangle on the other side of
+ * it is added, at which point both triangles are connected and the side is removed again.
+ */
+class TriangleEdgeIndex {
+	public static final int NONE = PackedPolygons.NONE;
+
+	private final Map<PolygonVertex, Integer> vertexIds;
+	private final List<PolygonTriangle> triangles;
+	private final UndirectedEdgeMap openSides;
+
+	public TriangleEdgeIndex() {
+		vertexIds = new HashMap<>();
+		triangles = new ArrayList<>();
+		openSides = new UndirectedEdgeMap(16);
+	}
+
+	/***
+	 * Connects the triangles of different monotone pieces to each other. Monotone pieces are only
+	 * adjacent along the diagonals used to cut them out, and both ends of such a diagonal have twins.
+	 * Only open sides between two twinned vertices are considered.
+	 */
+	public static void connectAdjacentPieces(Collection<PolygonTriangle> triangles) {
+		final TriangleEdgeIndex edges = new TriangleEdgeIndex();
+		for (final PolygonTriangle triangle : triangles) {
+			int index = NONE;
+			for (final TriangleSide side : TRIANGLE_SIDES) {
+				if (triangle.getNeighbour(side) == null && isBetweenTwins(triangle, side)) {
+					if (index == NONE) {
+						index = edges.add(triangle);
+					}
+					edges.connect(index, side);
+				}
+			}
+		}
+	}
+
+	private static boolean isBetweenTwins(PolygonTriangle triangle, TriangleSide side) {
+		final TriangleVertex start = matchingSide(side);
+		return !triangle.getVertex(start).getTwins().isEmpty() && !triangle.getVertex(start.next()).getTwins().isEmpty();
+	}
+
+	/***
+	 * @return The index of the triangle in this index
+	 */
+	public int add(PolygonTriangle triangle) {
+		triangles.add(triangle);
+		return triangles.size() - 1;
+	}
+
+	public PolygonTriangle getTriangle(int triangle) {
+		return triangles.get(triangle);
+	}
+
+	/***
+	 * Connects the side of the triangle to the triangle previously registered for the same edge, or
+	 * registers the side as open if no such triangle exists.
+	 *
+	 * @return The index of the triangle that was connected, or {@link #NONE} if the side is now open
+	 */
+	public int connect(int triangle, TriangleSide side) {
+		final PolygonTriangle instance = triangles.get(triangle);
+		final TriangleVertex startId = matchingSide(side);
+		final int start = getVertexId(instance.getVertex(startId));
+		final int end = getVertexId(instance.getVertex(startId.next()));
+		final int openSide = openSides.remove(start, end);
+		if (openSide == NONE) {
+			openSides.put(start, end, triangle * 3 + side.ordinal());
+			return NONE;
+		} else {
+			final int neighbour = openSide / 3;
+			instance.setNeighbour(side, triangles.get(neighbour));
+			triangles.get(neighbour).setNeighbour(TRIANGLE_SIDES[openSide % 3], instance);
+			return neighbour;
+		}
+	}
+
+	private int getVertexId(PolygonVertex vertex) {
+		final Integer id = vertexIds.get(vertex);
+		if (id == null) {
+			vertexIds.put(vertex, vertexIds.size());
+			return vertexIds.size() - 1;
+		}
+		return id;
+	}
+}
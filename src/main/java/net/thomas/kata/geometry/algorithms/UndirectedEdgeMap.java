@@ -0,0 +1,125 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.lang.Integer.highestOneBit;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Arrays.fill;
+
+import net.thomas.kata.geometry.objects.PackedPolygons;
+
+/***
+ * Open addressing hash map from undirected edges, given as a pair of vertex indices, to an int
+ * value. Used to pair up the two triangles sharing an edge without allocating per entry.
+ */
+class UndirectedEdgeMap {
+	private static final int NONE = PackedPolygons.NONE;
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+
+	public UndirectedEdgeMap(int expectedSize) {
+		final int capacity = highestOneBit(max(expectedSize, 8) * 2) * 2;
+		keys = new long[capacity];
+		values = new int[capacity];
+		fill(keys, EMPTY);
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void put(int vertex1, int vertex2, int value) {
+		if ((size + 1) * 2 > keys.length) {
+			grow();
+		}
+		final long key = toKey(vertex1, vertex2);
+		int slot = slotFor(key);
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = slot + 1 & mask;
+		}
+		if (keys[slot] == EMPTY) {
+			size++;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+	}
+
+	public int get(int vertex1, int vertex2) {
+		final long key = toKey(vertex1, vertex2);
+		for (int slot = slotFor(key); keys[slot] != EMPTY; slot = slot + 1 & mask) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+		}
+		return NONE;
+	}
+
+	/***
+	 * @return The value that was stored for the edge, or {@link PackedPolygons#NONE} if it was not
+	 *         present
+	 */
+	public int remove(int vertex1, int vertex2) {
+		final long key = toKey(vertex1, vertex2);
+		for (int slot = slotFor(key); keys[slot] != EMPTY; slot = slot + 1 & mask) {
+			if (keys[slot] == key) {
+				final int value = values[slot];
+				removeSlot(slot);
+				size--;
+				return value;
+			}
+		}
+		return NONE;
+	}
+
+	private void removeSlot(int slot) {
+		int gap = slot;
+		int current = slot;
+		while (true) {
+			current = current + 1 & mask;
+			if (keys[current] == EMPTY) {
+				break;
+			}
+			final int home = slotFor(keys[current]);
+			if ((current - home & mask) >= (current - gap & mask)) {
+				keys[gap] = keys[current];
+				values[gap] = values[current];
+				gap = current;
+			}
+		}
+		keys[gap] = EMPTY;
+	}
+
+	private void grow() {
+		final long[] oldKeys = keys;
+		final int[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new int[oldValues.length * 2];
+		fill(keys, EMPTY);
+		mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = slotFor(oldKeys[i]);
+				while (keys[slot] != EMPTY) {
+					slot = slot + 1 & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private long toKey(int vertex1, int vertex2) {
+		return (long) min(vertex1, vertex2) << 32 | max(vertex1, vertex2) & 0xffffffffL;
+	}
+
+	private int slotFor(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		hash ^= hash >>> 32;
+		return (int) hash & mask;
+	}
+}
@@ -0,0 +1,71 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static net.thomas.kata.geometry.algorithms.GeometricPredicates.orient2d;
+import static net.thomas.kata.geometry.algorithms.VertexRelation.ABOVE;
+import static net.thomas.kata.geometry.algorithms.VertexRelation.BELOW;
+
+enum VertexType {
+	START,
+	END,
+	REGULAR,
+	SPLIT,
+	MERGE;
+
+	public static VertexType determineType(double beforeX, double beforeY, double x, double y, double afterX, double afterY) {
+		final VertexRelation before = determineRelation(x, y, beforeX, beforeY);
+		final VertexRelation after = determineRelation(x, y, afterX, afterY);
+
+		if (oneIsBelowAndOneIsAbove(before, after)) {
+			return REGULAR;
+		}
+		final boolean convex = orient2d(beforeX, beforeY, x, y, afterX, afterY) > 0;
+		if (before == BELOW) {
+			return convex ? END : MERGE;
+		} else {
+			return convex ? START : SPLIT;
+		}
+	}
+
+	/***
+	 * Used to pick the copy of a cut vertex that a new diagonal leaves from, in both the object and
+	 * the packed pipeline
+	 *
+	 * @return True if the target lies strictly inside the interior angle at (x, y), which runs
+	 *         counterclockwise from the edge to the vertex after it to the edge from the vertex before
+	 *         it
+	 */
+	public static boolean isInsideInteriorAngle(double beforeX, double beforeY, double x, double y, double afterX, double afterY, double targetX,
+			double targetY) {
+		final boolean leftOfAfter = orient2d(x, y, afterX, afterY, targetX, targetY) > 0;
+		final boolean rightOfBefore = orient2d(x, y, targetX, targetY, beforeX, beforeY) > 0;
+		return isConvex(beforeX, beforeY, x, y, afterX, afterY) ? leftOfAfter && rightOfBefore : leftOfAfter || rightOfBefore;
+	}
+
+	/***
+	 * A straight angle counts as convex, while a spike where both edges leave in the same direction
+	 * does not
+	 */
+	private static boolean isConvex(double beforeX, double beforeY, double x, double y, double afterX, double afterY) {
+		final double orientation = orient2d(x, y, afterX, afterY, beforeX, beforeY);
+		return orientation > 0 || orientation == 0 && (afterX - x) * (beforeX - x) + (afterY - y) * (beforeY - y) < 0;
+	}
+
+	private static VertexRelation determineRelation(double x, double y, double neighbourX, double neighbourY) {
+		if (y > neighbourY) {
+			return ABOVE;
+		} else if (y < neighbourY) {
+			return BELOW;
+		} else {
+			return x < neighbourX ? ABOVE : BELOW;
+		}
+	}
+
+	private static boolean oneIsBelowAndOneIsAbove(final VertexRelation before, final VertexRelation after) {
+		return before != after;
+	}
+}
+
+enum VertexRelation {
+	ABOVE,
+	BELOW
+}
@@ -0,0 +1,249 @@
+package net.thomas.kata.geometry.objects;
+
+import static java.lang.Math.max;
+import static java.util.Arrays.copyOf;
+
+import java.util.Collection;
+
+/***
+ * Struct-of-arrays representation of a set of polygons, following the same conventions as
+ * {@link PolygonVertex}. Vertices are identified by their index: coordinates are kept in two double
+ * arrays, polygon order in next / previous index arrays, and twins in an int multimap where each
+ * vertex points to a chain of twin entries. Each polygon is registered by the index of one of its
+ * vertices.
+ */
+public class PackedPolygons {
+	public static final int NONE = -1;
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private double[] xs;
+	private double[] ys;
+	private int[] next;
+	private int[] previous;
+	private int[] firstTwinEntry;
+	private int vertexCount;
+	private int[] twins;
+	private int[] nextTwinEntry;
+	private int twinEntryCount;
+	private int[] polygons;
+	private int polygonCount;
+
+	public PackedPolygons() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public PackedPolygons(int expectedVertexCount) {
+		final int capacity = max(expectedVertexCount, 1);
+		xs = new double[capacity];
+		ys = new double[capacity];
+		next = new int[capacity];
+		previous = new int[capacity];
+		firstTwinEntry = new int[capacity];
+		twins = new int[DEFAULT_CAPACITY];
+		nextTwinEntry = new int[DEFAULT_CAPACITY];
+		polygons = new int[DEFAULT_CAPACITY];
+		vertexCount = twinEntryCount = polygonCount = 0;
+	}
+
+	public PackedPolygons(PackedPolygons other) {
+		xs = copyOf(other.xs, other.xs.length);
+		ys = copyOf(other.ys, other.ys.length);
+		next = copyOf(other.next, other.next.length);
+		previous = copyOf(other.previous, other.previous.length);
+		firstTwinEntry = copyOf(other.firstTwinEntry, other.firstTwinEntry.length);
+		vertexCount = other.vertexCount;
+		twins = copyOf(other.twins, other.twins.length);
+		nextTwinEntry = copyOf(other.nextTwinEntry, other.nextTwinEntry.length);
+		twinEntryCount = other.twinEntryCount;
+		polygons = copyOf(other.polygons, other.polygons.length);
+		polygonCount = other.polygonCount;
+	}
+
+	public static PackedPolygons pack(Collection<PolygonVertex> polygons) {
+		int vertexCount = 0;
+		for (final PolygonVertex polygon : polygons) {
+			PolygonVertex current = polygon;
+			do {
+				vertexCount++;
+				current = current.getAfter();
+			} while (current != polygon);
+		}
+		final PackedPolygons packedPolygons = new PackedPolygons(vertexCount);
+		for (final PolygonVertex polygon : polygons) {
+			int last = NONE;
+			for (final PolygonVertex vertex : polygon) {
+				final int current = packedPolygons.addVertex(vertex.x, vertex.y);
+				if (last == NONE) {
+					packedPolygons.addPolygonRoot(current);
+				} else {
+					packedPolygons.insertAfter(last, current);
+				}
+				last = current;
+			}
+		}
+		return packedPolygons;
+	}
+
+	/***
+	 * @param coordinates
+	 *            x1, y1, x2, y2, ... for the vertices in counterclockwise order
+	 * @return The index of the first vertex in the polygon
+	 */
+	public int addPolygon(double... coordinates) {
+		final int root = addVertex(coordinates[0], coordinates[1]);
+		int last = root;
+		for (int i = 2; i < coordinates.length; i += 2) {
+			final int current = addVertex(coordinates[i], coordinates[i + 1]);
+			insertAfter(last, current);
+			last = current;
+		}
+		addPolygonRoot(root);
+		return root;
+	}
+
+	public int addVertex(double x, double y) {
+		ensureVertexCapacity(vertexCount + 1);
+		final int vertex = vertexCount++;
+		xs[vertex] = x;
+		ys[vertex] = y;
+		next[vertex] = vertex;
+		previous[vertex] = vertex;
+		firstTwinEntry[vertex] = NONE;
+		return vertex;
+	}
+
+	public void insertAfter(int vertex, int newVertex) {
+		final int after = next[vertex];
+		previous[after] = newVertex;
+		next[newVertex] = after;
+		previous[newVertex] = vertex;
+		next[vertex] = newVertex;
+	}
+
+	public void addPolygonRoot(int vertex) {
+		if (polygonCount == polygons.length) {
+			polygons = copyOf(polygons, polygons.length * 2);
+		}
+		polygons[polygonCount++] = vertex;
+	}
+
+	public void clearPolygonRoots() {
+		polygonCount = 0;
+	}
+
+	public void setTwin(int vertex, int twin) {
+		addTwinEntry(vertex, twin);
+		addTwinEntry(twin, vertex);
+	}
+
+	private void addTwinEntry(int vertex, int twin) {
+		if (twinEntryCount == twins.length) {
+			twins = copyOf(twins, twins.length * 2);
+			nextTwinEntry = copyOf(nextTwinEntry, nextTwinEntry.length * 2);
+		}
+		final int entry = twinEntryCount++;
+		twins[entry] = twin;
+		nextTwinEntry[entry] = firstTwinEntry[vertex];
+		firstTwinEntry[vertex] = entry;
+	}
+
+	/***
+	 * Same semantics as {@link PolygonVertex#cutIntoTwoPolygons(PolygonVertex)}
+	 *
+	 * @return The clone of vertex, that is now part of the new polygon
+	 */
+	public int cutIntoTwoPolygons(int vertex, int targetVertex) {
+		final int nextInNewPolygon = next[vertex];
+		final int secondLastInNewPolygon = previous[targetVertex];
+		final int vertexClone = cloneVertex(vertex);
+		final int targetClone = cloneVertex(targetVertex);
+		setTwin(vertexClone, vertex);
+		setTwin(targetClone, targetVertex);
+		next[vertex] = targetVertex;
+		previous[targetVertex] = vertex;
+		next[vertexClone] = nextInNewPolygon;
+		previous[nextInNewPolygon] = vertexClone;
+		previous[targetClone] = secondLastInNewPolygon;
+		next[secondLastInNewPolygon] = targetClone;
+		previous[vertexClone] = targetClone;
+		next[targetClone] = vertexClone;
+		return vertexClone;
+	}
+
+	private int cloneVertex(int vertex) {
+		final int clone = addVertex(xs[vertex], ys[vertex]);
+		for (int entry = firstTwinEntry[vertex]; entry != NONE; entry = nextTwinEntry[entry]) {
+			addTwinEntry(clone, twins[entry]);
+		}
+		return clone;
+	}
+
+	private void ensureVertexCapacity(int capacity) {
+		if (capacity > xs.length) {
+			final int newCapacity = max(capacity, xs.length * 2);
+			xs = copyOf(xs, newCapacity);
+			ys = copyOf(ys, newCapacity);
+			next = copyOf(next, newCapacity);
+			previous = copyOf(previous, newCapacity);
+			firstTwinEntry = copyOf(firstTwinEntry, newCapacity);
+		}
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public int getPolygonCount() {
+		return polygonCount;
+	}
+
+	public int getPolygonRoot(int polygon) {
+		return polygons[polygon];
+	}
+
+	public double getX(int vertex) {
+		return xs[vertex];
+	}
+
+	public double getY(int vertex) {
+		return ys[vertex];
+	}
+
+	public int getNext(int vertex) {
+		return next[vertex];
+	}
+
+	public int getPrevious(int vertex) {
+		return previous[vertex];
+	}
+
+	public boolean hasTwins(int vertex) {
+		return firstTwinEntry[vertex] != NONE;
+	}
+
+	/***
+	 * Twins are iterated as a chain of entries, ending in {@link #NONE}:<BR>
+	 * for (int entry = getFirstTwinEntry(vertex); entry != NONE; entry = getNextTwinEntry(entry))
+	 */
+	public int getFirstTwinEntry(int vertex) {
+		return firstTwinEntry[vertex];
+	}
+
+	public int getNextTwinEntry(int entry) {
+		return nextTwinEntry[entry];
+	}
+
+	public int getTwin(int entry) {
+		return twins[entry];
+	}
+
+	public int countVertices(int polygonRoot) {
+		int count = 0;
+		int current = polygonRoot;
+		do {
+			count++;
+			current = next[current];
+		} while (current != polygonRoot);
+		return count;
+	}
+}
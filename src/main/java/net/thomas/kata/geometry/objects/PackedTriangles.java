@@ -0,0 +1,59 @@
+package net.thomas.kata.geometry.objects;
+
+import static java.lang.Math.max;
+import static java.util.Arrays.copyOf;
+import static net.thomas.kata.geometry.objects.PackedPolygons.NONE;
+
+/***
+ * Struct-of-arrays counterpart to {@link PolygonTriangle}. Triangles are identified by their index
+ * and store three counterclockwise vertex indices into the {@link PackedPolygons} they were built
+ * from. Neighbour 0 is connected by edge(vertex 0 -> vertex 1), neighbour 1 by edge(vertex 1 ->
+ * vertex 2), and so forth. Missing neighbours are {@link PackedPolygons#NONE}.
+ */
+public class PackedTriangles {
+	private final PackedPolygons vertices;
+	private int[] corners;
+	private int[] neighbours;
+	private int triangleCount;
+
+	public PackedTriangles(PackedPolygons vertices, int expectedTriangleCount) {
+		this.vertices = vertices;
+		final int capacity = max(expectedTriangleCount, 1);
+		corners = new int[capacity * 3];
+		neighbours = new int[capacity * 3];
+		triangleCount = 0;
+	}
+
+	public int addTriangle(int vertex1, int vertex2, int vertex3) {
+		if ((triangleCount + 1) * 3 > corners.length) {
+			corners = copyOf(corners, corners.length * 2);
+			neighbours = copyOf(neighbours, neighbours.length * 2);
+		}
+		final int triangle = triangleCount++;
+		corners[triangle * 3] = vertex1;
+		corners[triangle * 3 + 1] = vertex2;
+		corners[triangle * 3 + 2] = vertex3;
+		neighbours[triangle * 3] = neighbours[triangle * 3 + 1] = neighbours[triangle * 3 + 2] = NONE;
+		return triangle;
+	}
+
+	public void setNeighbour(int triangle, int side, int neighbour) {
+		neighbours[triangle * 3 + side] = neighbour;
+	}
+
+	public PackedPolygons getVertices() {
+		return vertices;
+	}
+
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+
+	public int getVertex(int triangle, int corner) {
+		return corners[triangle * 3 + corner];
+	}
+
+	public int getNeighbour(int triangle, int side) {
+		return neighbours[triangle * 3 + side];
+	}
+}
@@ -64,6 +64,9 @@ public class PolygonTriangle {
 	}
 
 	public void setVertex(TriangleVertex vertexId, PolygonVertex instance) {
+		if (vertices[vertexId.ordinal()] != null) {
+			vertexIds.remove(vertices[vertexId.ordinal()], vertexId);
+		}
 		vertices[vertexId.ordinal()] = instance;
 		vertexIds.put(instance, vertexId);
 	}
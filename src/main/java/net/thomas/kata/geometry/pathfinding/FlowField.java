@@ -0,0 +1,285 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.lang.Math.sqrt;
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.fill;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.NO_NODE;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.NO_SHORTCUT;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Point2D;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.thomas.kata.geometry.pathfinding.objects.Portal;
+
+/***
+ * Distance to a single destination from every portal of the mesh, for crowds moving to the same
+ * place. Each portal node stores the cost of the shortest route from its center to the destination
+ * and the next portal along it, found by Dijkstra from the destination. An agent looks up its
+ * triangle, picks the portal of the triangle with the lowest total cost and steers towards it,
+ * without a search of its own.<BR>
+ * When the mesh has regions, Dijkstra runs over the shortcuts first, which settles every entrance.
+ * The inside of each region is then filled in from its entrances, one region per task on a
+ * {@link ForkJoinPool}. Every task writes only the nodes of its own region.<BR>
+ * A flow field belongs to one version of the mesh and is read only once built.
+ */
+public class FlowField {
+	private static final int REGIONS_PER_TASK = 8;
+	private static final ThreadLocal<SearchScratchSpace> SCRATCH_SPACES = ThreadLocal.withInitial(SearchScratchSpace::new);
+
+	private final Point2D destination;
+	private final PortalGraph portalGraph;
+	private final TriangleGrid triangleGrid;
+	private final HierarchicalPortalGraph hierarchy;
+	private final int goalTriangle;
+	private final double[] distances;
+	private final int[] nextNodes;
+
+	FlowField(PathfindingUtil.Snapshot snapshot, Point2D destination, ForkJoinPool pool) {
+		this.destination = destination;
+		portalGraph = snapshot.portalGraph;
+		triangleGrid = snapshot.triangleGrid;
+		hierarchy = snapshot.hierarchy;
+		goalTriangle = triangleGrid.locateTriangleAt(destination.getX(), destination.getY());
+		distances = new double[portalGraph.getNodeCount()];
+		nextNodes = new int[portalGraph.getNodeCount()];
+		fill(distances, Double.POSITIVE_INFINITY);
+		fill(nextNodes, NO_NODE);
+		if (goalTriangle != NavMesh.NONE) {
+			final SearchScratchSpace scratchSpace = SCRATCH_SPACES.get();
+			settleFromDestination(scratchSpace);
+			if (hierarchy != null) {
+				fillRegions(scratchSpace, pool);
+			}
+		}
+	}
+
+	/***
+	 * Dijkstra from the destination. Without regions this settles every node. With regions, only
+	 * the regions of the goal portals are searched node by node, and everywhere else the search moves
+	 * between regions and along shortcuts, settling the entrances only.
+	 */
+	private void settleFromDestination(SearchScratchSpace scratchSpace) {
+		scratchSpace.prepare(portalGraph.getNodeCount());
+		final IndexedIntHeap openNodes = scratchSpace.openNodes;
+		for (int entry = portalGraph.getFirstTriangleNodeEntry(goalTriangle); entry < portalGraph.getFirstTriangleNodeEntry(goalTriangle + 1); entry++) {
+			final int node = portalGraph.getTriangleNode(entry);
+			if (hierarchy != null) {
+				scratchSpace.markAsLocalRegion(hierarchy.getRegion(node));
+			}
+			considerNode(scratchSpace, node, NO_NODE, portalGraph.distance(node, destination.getX(), destination.getY()));
+		}
+		while (!openNodes.isEmpty()) {
+			final int node = openNodes.poll();
+			scratchSpace.markAsClosed(node);
+			final double distance = scratchSpace.gScores[node];
+			final boolean local = hierarchy == null || scratchSpace.isLocalRegion(hierarchy.getRegion(node));
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				final int neighbour = portalGraph.getNeighbour(entry);
+				if (!scratchSpace.isClosed(neighbour) && (local || hierarchy.getRegion(neighbour) != hierarchy.getRegion(node))) {
+					considerNode(scratchSpace, neighbour, node, distance + portalGraph.distance(node, neighbour));
+				}
+			}
+			if (!local) {
+				for (int entry = hierarchy.getFirstShortcutEntry(node); entry < hierarchy.getFirstShortcutEntry(node + 1); entry++) {
+					final int target = hierarchy.getShortcutTarget(entry);
+					if (!scratchSpace.isClosed(target) && considerNode(scratchSpace, target, node, distance + hierarchy.getShortcutCost(entry))) {
+						scratchSpace.markAsReachedByShortcut(target, entry);
+					}
+				}
+			}
+		}
+		for (int node = 0; node < distances.length; node++) {
+			if (scratchSpace.isClosed(node) && (hierarchy == null || scratchSpace.isLocalRegion(hierarchy.getRegion(node))
+					|| scratchSpace.shortcutsUsed[node] == NO_SHORTCUT)) {
+				distances[node] = scratchSpace.gScores[node];
+				nextNodes[node] = scratchSpace.previousNodes[node];
+			}
+		}
+	}
+
+	private static boolean considerNode(SearchScratchSpace scratchSpace, int node, int previousNode, double distance) {
+		if (!scratchSpace.isSeen(node) || distance < scratchSpace.gScores[node]) {
+			scratchSpace.markAsSeen(node, distance, previousNode);
+			scratchSpace.openNodes.insertOrDecrease(node, distance);
+			return true;
+		}
+		return false;
+	}
+
+	/***
+	 * The regions searched node by node are complete already, every other region is filled in
+	 */
+	private void fillRegions(SearchScratchSpace scratchSpace, ForkJoinPool pool) {
+		final int regionCount = hierarchy.getRegionCount();
+		final boolean[] completeRegions = new boolean[regionCount];
+		for (int region = 0; region < regionCount; region++) {
+			completeRegions[region] = scratchSpace.isLocalRegion(region);
+		}
+		final int[] regionOffsets = new int[regionCount + 1];
+		for (int node = 0; node < distances.length; node++) {
+			regionOffsets[hierarchy.getRegion(node) + 1]++;
+		}
+		for (int region = 0; region < regionCount; region++) {
+			regionOffsets[region + 1] += regionOffsets[region];
+		}
+		final int[] regionNodes = new int[distances.length];
+		final int[] nextEntry = copyOf(regionOffsets, regionCount);
+		for (int node = 0; node < distances.length; node++) {
+			regionNodes[nextEntry[hierarchy.getRegion(node)]++] = node;
+		}
+		pool.invoke(new RegionTask(completeRegions, regionOffsets, regionNodes, 0, regionCount));
+	}
+
+	/***
+	 * Dijkstra inside one region, starting from the entrances settled through a neighbour in another
+	 * region. Entrances settled through a shortcut are reached again from inside, so their next node
+	 * becomes a neighbour.
+	 */
+	private void fillRegion(int[] regionOffsets, int[] regionNodes, int region, SearchScratchSpace scratchSpace) {
+		final int first = regionOffsets[region];
+		final int last = regionOffsets[region + 1];
+		scratchSpace.prepare(portalGraph.getNodeCount());
+		for (int index = first; index < last; index++) {
+			final int node = regionNodes[index];
+			if (distances[node] != Double.POSITIVE_INFINITY) {
+				considerNode(scratchSpace, node, nextNodes[node], distances[node]);
+			}
+		}
+		final IndexedIntHeap openNodes = scratchSpace.openNodes;
+		while (!openNodes.isEmpty()) {
+			final int node = openNodes.poll();
+			scratchSpace.markAsClosed(node);
+			final double distance = scratchSpace.gScores[node];
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				final int neighbour = portalGraph.getNeighbour(entry);
+				if (hierarchy.getRegion(neighbour) == region && !scratchSpace.isClosed(neighbour)) {
+					considerNode(scratchSpace, neighbour, node, distance + portalGraph.distance(node, neighbour));
+				}
+			}
+		}
+		for (int index = first; index < last; index++) {
+			final int node = regionNodes[index];
+			if (scratchSpace.isClosed(node)) {
+				distances[node] = scratchSpace.gScores[node];
+				nextNodes[node] = scratchSpace.previousNodes[node];
+			}
+		}
+	}
+
+	private class RegionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final boolean[] completeRegions;
+		private final int[] regionOffsets;
+		private final int[] regionNodes;
+		private final int from;
+		private final int to;
+
+		public RegionTask(boolean[] completeRegions, int[] regionOffsets, int[] regionNodes, int from, int to) {
+			this.completeRegions = completeRegions;
+			this.regionOffsets = regionOffsets;
+			this.regionNodes = regionNodes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= REGIONS_PER_TASK) {
+				final SearchScratchSpace scratchSpace = SCRATCH_SPACES.get();
+				for (int region = from; region < to; region++) {
+					if (!completeRegions[region]) {
+						fillRegion(regionOffsets, regionNodes, region, scratchSpace);
+					}
+				}
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new RegionTask(completeRegions, regionOffsets, regionNodes, from, middle),
+						new RegionTask(completeRegions, regionOffsets, regionNodes, middle, to));
+			}
+		}
+	}
+
+	public Point2D getDestination() {
+		return destination;
+	}
+
+	boolean hasDestinationInMesh() {
+		return goalTriangle != NavMesh.NONE;
+	}
+
+	/***
+	 * @return The cost of the route from location to the destination, through portal centers, or
+	 *         infinity if the destination cannot be reached from location
+	 */
+	public double getDistance(Point2D location) {
+		final int triangle = triangleGrid.locateTriangleAt(location.getX(), location.getY());
+		if (triangle == NavMesh.NONE) {
+			return Double.POSITIVE_INFINITY;
+		} else if (triangle == goalTriangle) {
+			return location.distance(destination);
+		}
+		final int node = findExit(triangle, location.getX(), location.getY());
+		return node != NO_NODE ? distances[node] + portalGraph.distance(node, location.getX(), location.getY()) : Double.POSITIVE_INFINITY;
+	}
+
+	/***
+	 * @return The portal to leave the triangle at location through, or null if location is in the
+	 *         triangle of the destination or cannot reach it
+	 */
+	public Portal getNextPortal(Point2D location) {
+		final int triangle = triangleGrid.locateTriangleAt(location.getX(), location.getY());
+		if (triangle == NavMesh.NONE || triangle == goalTriangle) {
+			return null;
+		}
+		final int node = findExit(triangle, location.getX(), location.getY());
+		return node != NO_NODE ? portalGraph.getPortal(node) : null;
+	}
+
+	/***
+	 * The direction points at the best point of the next portal, for a straight line towards the
+	 * portal after it, or at the destination once inside its triangle.
+	 *
+	 * @return A unit vector, a zero vector at the destination, or null if location cannot reach the
+	 *         destination
+	 */
+	public Point2D getDirection(Point2D location) {
+		final double x = location.getX();
+		final double y = location.getY();
+		final int triangle = triangleGrid.locateTriangleAt(x, y);
+		if (triangle == NavMesh.NONE) {
+			return null;
+		} else if (triangle == goalTriangle) {
+			return normalize(destination.getX() - x, destination.getY() - y);
+		}
+		final int node = findExit(triangle, x, y);
+		if (node == NO_NODE) {
+			return null;
+		}
+		final Point2D after = nextNodes[node] != NO_NODE ? portalGraph.getPortal(nextNodes[node]).getCenter() : destination;
+		final Point2D waypoint = portalGraph.getPortal(node).getBestIntersectionPoint(new Line2D.Double(location, after));
+		final Point2D direction = normalize(waypoint.getX() - x, waypoint.getY() - y);
+		return direction.getX() != 0.0 || direction.getY() != 0.0 ? direction : normalize(after.getX() - x, after.getY() - y);
+	}
+
+	private int findExit(int triangle, double x, double y) {
+		int bestNode = NO_NODE;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+			final int node = portalGraph.getTriangleNode(entry);
+			final double distance = distances[node] + portalGraph.distance(node, x, y);
+			if (distance < bestDistance) {
+				bestNode = node;
+				bestDistance = distance;
+			}
+		}
+		return bestNode;
+	}
+
+	private static Point2D normalize(double dx, double dy) {
+		final double length = sqrt(dx * dx + dy * dy);
+		return length > 0.0 ? new Point2D.Double(dx / length, dy / length) : new Point2D.Double(0.0, 0.0);
+	}
+}
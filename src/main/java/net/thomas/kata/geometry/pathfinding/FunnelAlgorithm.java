@@ -0,0 +1,127 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
+import net.thomas.kata.geometry.pathfinding.objects.Portal;
+
+/***
+ * The simple stupid funnel algorithm. It pulls the path taut through the portals in the route, so
+ * the resulting waypoints are exactly the portal end points the shortest path bends around.<BR>
+ * The funnel is kept as an apex plus a left and a right boundary point. Each portal narrows the
+ * funnel, and when one side crosses the other, the crossed side becomes a waypoint and the new
+ * apex.
+ */
+class FunnelAlgorithm {
+	private final Path path;
+	private final Portal[] portals;
+	private final double[] leftXs;
+	private final double[] leftYs;
+	private final double[] rightXs;
+	private final double[] rightYs;
+
+	public FunnelAlgorithm(Path path) {
+		this(path, 0.0);
+	}
+
+	/***
+	 * Funnel for a round agent. Each portal is narrowed by the radius at both ends, so the corners the
+	 * path bends around are passed at that distance.
+	 */
+	public FunnelAlgorithm(Path path, double radius) {
+		this.path = path;
+		final List<PortalStep> route = path.route;
+		final int count = route.size() + 2;
+		portals = new Portal[count];
+		leftXs = new double[count];
+		leftYs = new double[count];
+		rightXs = new double[count];
+		rightYs = new double[count];
+		setSides(0, path.origin.getX(), path.origin.getY(), path.origin.getX(), path.origin.getY());
+		double referenceX = path.origin.getX();
+		double referenceY = path.origin.getY();
+		int index = 1;
+		for (final PortalStep step : route) {
+			portals[index] = step.portal;
+			final Portal portal = radius > 0 ? step.portal.shrink(radius) : step.portal;
+			if (cross(referenceX, referenceY, portal.x1, portal.y1, portal.x2, portal.y2) > 0) {
+				setSides(index, portal.x2, portal.y2, portal.x1, portal.y1);
+			} else {
+				setSides(index, portal.x1, portal.y1, portal.x2, portal.y2);
+			}
+			referenceX = (portal.x1 + portal.x2) / 2;
+			referenceY = (portal.y1 + portal.y2) / 2;
+			index++;
+		}
+		setSides(index, path.destination.getX(), path.destination.getY(), path.destination.getX(), path.destination.getY());
+	}
+
+	private void setSides(int index, double leftX, double leftY, double rightX, double rightY) {
+		leftXs[index] = leftX;
+		leftYs[index] = leftY;
+		rightXs[index] = rightX;
+		rightYs[index] = rightY;
+	}
+
+	public Path pullString() {
+		final Path tautPath = new Path(path.origin, path.destination);
+		double apexX = path.origin.getX();
+		double apexY = path.origin.getY();
+		double leftX = apexX;
+		double leftY = apexY;
+		double rightX = apexX;
+		double rightY = apexY;
+		int leftIndex = 0;
+		int rightIndex = 0;
+		for (int i = 1; i < portals.length; i++) {
+			if (cross(apexX, apexY, rightX, rightY, rightXs[i], rightYs[i]) >= 0) {
+				if (isSamePoint(apexX, apexY, rightX, rightY) || cross(apexX, apexY, leftX, leftY, rightXs[i], rightYs[i]) < 0) {
+					rightX = rightXs[i];
+					rightY = rightYs[i];
+					rightIndex = i;
+				} else {
+					if (!isSamePoint(apexX, apexY, leftX, leftY) && isPortal(leftIndex)) {
+						tautPath.addPortal(portals[leftIndex], new Point2D.Double(leftX, leftY));
+					}
+					apexX = rightX = leftX;
+					apexY = rightY = leftY;
+					rightIndex = i = leftIndex;
+					continue;
+				}
+			}
+			if (cross(apexX, apexY, leftX, leftY, leftXs[i], leftYs[i]) <= 0) {
+				if (isSamePoint(apexX, apexY, leftX, leftY) || cross(apexX, apexY, rightX, rightY, leftXs[i], leftYs[i]) > 0) {
+					leftX = leftXs[i];
+					leftY = leftYs[i];
+					leftIndex = i;
+				} else {
+					if (!isSamePoint(apexX, apexY, rightX, rightY) && isPortal(rightIndex)) {
+						tautPath.addPortal(portals[rightIndex], new Point2D.Double(rightX, rightY));
+					}
+					apexX = leftX = rightX;
+					apexY = leftY = rightY;
+					leftIndex = i = rightIndex;
+					continue;
+				}
+			}
+		}
+		return tautPath;
+	}
+
+	private boolean isPortal(int index) {
+		return index > 0 && index < portals.length - 1;
+	}
+
+	private boolean isSamePoint(double x1, double y1, double x2, double y2) {
+		return x1 == x2 && y1 == y2;
+	}
+
+	/***
+	 * Positive when (x3, y3) is to the left of the line from (x1, y1) to (x2, y2)
+	 */
+	private static double cross(double x1, double y1, double x2, double y2, double x3, double y3) {
+		return (x2 - x1) * (y3 - y1) - (y2 - y1) * (x3 - x1);
+	}
+}
@@ -0,0 +1,391 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.fill;
+import static net.thomas.kata.geometry.pathfinding.NavMesh.NONE;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/***
+ * Abstraction layer on top of {@link PortalGraph}, in the style of HPA*.<BR>
+ * Portal nodes are grouped into connected regions of a bounded size. Nodes with a neighbour in
+ * another region are entrances, and for every pair of entrances in the same region the cost of the
+ * shortest route between them, staying inside the region, is precomputed as a shortcut. The nodes
+ * along each shortcut are stored as well, so refining a shortcut is a copy rather than a search.<BR>
+ * A search can then use the base graph inside the regions it starts and ends in, and shortcuts
+ * everywhere else.<BR>
+ * After a {@link NavMeshPatch} only the regions holding changed nodes are grouped again, and every
+ * other region keeps its id, entrances and shortcuts. Region ids left over by the regrouping stay
+ * empty.
+ */
+class HierarchicalPortalGraph {
+	private static final int NO_REGION = -1;
+
+	private final PortalGraph portalGraph;
+	private final int[] regions;
+	private final int regionCount;
+	private final boolean[] entrances;
+	private final int[] shortcutOffsets;
+	private final int[] shortcutTargets;
+	private final double[] shortcutCosts;
+	private final int[] shortcutRouteOffsets;
+	private final int[] shortcutRoutes;
+
+	public HierarchicalPortalGraph(PortalGraph portalGraph, int nodesPerRegion) {
+		this.portalGraph = portalGraph;
+		final int nodeCount = portalGraph.getNodeCount();
+		regions = new int[nodeCount];
+		regionCount = buildRegions(nodesPerRegion);
+		entrances = new boolean[nodeCount];
+		markEntrances();
+		shortcutOffsets = new int[nodeCount + 1];
+		final ShortcutList shortcuts = buildShortcuts();
+		shortcutTargets = copyOf(shortcuts.targets, shortcuts.size);
+		shortcutCosts = copyOf(shortcuts.costs, shortcuts.size);
+		shortcutRouteOffsets = copyOf(shortcuts.routeOffsets, shortcuts.size + 1);
+		shortcutRoutes = copyOf(shortcuts.routes, shortcuts.routeOffsets[shortcuts.size]);
+	}
+
+	/***
+	 * Copy of a hierarchy for the graph of a patch. The regions holding removed or changed nodes are
+	 * grouped again, together with the added nodes, reusing their region ids before new ones. Their
+	 * entrances and shortcuts are built again, and everything else is copied over.
+	 */
+	public HierarchicalPortalGraph(HierarchicalPortalGraph hierarchy, NavMeshPatch patch, int nodesPerRegion) {
+		portalGraph = patch.getPortalGraph();
+		final int nodeCount = portalGraph.getNodeCount();
+		final PatchIds nodeIds = patch.getNodeIds();
+		final SortedMap<Integer, Integer> regionSeeds = new TreeMap<>();
+		for (final int node : nodeIds.getRemovedIds()) {
+			regionSeeds.putIfAbsent(hierarchy.regions[node], node);
+		}
+		final SortedSet<Integer> regroupedNodes = new TreeSet<>();
+		for (final int node : patch.getChangedNodes()) {
+			if (nodeIds.isAdded(node)) {
+				regroupedNodes.add(node);
+			} else {
+				regionSeeds.putIfAbsent(hierarchy.regions[nodeIds.getOldId(node)], nodeIds.getOldId(node));
+			}
+		}
+		for (final int seed : regionSeeds.values()) {
+			hierarchy.collectRegion(seed, nodeIds, regroupedNodes);
+		}
+		regions = copyOf(hierarchy.regions, nodeCount);
+		for (final int node : regroupedNodes) {
+			regions[node] = NO_REGION;
+		}
+		final int[] queue = new int[min(nodesPerRegion, nodeCount)];
+		final Iterator<Integer> freeRegions = regionSeeds.keySet().iterator();
+		int regionCount = hierarchy.regionCount;
+		for (final int seed : regroupedNodes) {
+			if (regions[seed] == NO_REGION) {
+				growRegion(seed, freeRegions.hasNext() ? freeRegions.next() : regionCount++, nodesPerRegion, queue);
+			}
+		}
+		this.regionCount = regionCount;
+		entrances = copyOf(hierarchy.entrances, nodeCount);
+		final Map<Integer, List<Integer>> regionEntrances = new HashMap<>();
+		for (final int node : regroupedNodes) {
+			markEntrance(node);
+			if (entrances[node]) {
+				regionEntrances.computeIfAbsent(regions[node], key -> new ArrayList<>()).add(node);
+			}
+		}
+		shortcutOffsets = new int[nodeCount + 1];
+		final ShortcutList shortcuts = new ShortcutList();
+		final SearchScratchSpace scratchSpace = new SearchScratchSpace();
+		int firstUnchanged = 0;
+		for (final int node : regroupedNodes) {
+			copyShortcuts(hierarchy, firstUnchanged, node, shortcuts);
+			shortcutOffsets[node] = shortcuts.size;
+			if (entrances[node]) {
+				exploreRegion(node, scratchSpace);
+				for (final int otherEntrance : regionEntrances.get(regions[node])) {
+					if (otherEntrance != node && scratchSpace.isSeen(otherEntrance)) {
+						shortcuts.add(otherEntrance, scratchSpace.gScores[otherEntrance], scratchSpace.previousNodes);
+					}
+				}
+			}
+			firstUnchanged = node + 1;
+		}
+		copyShortcuts(hierarchy, firstUnchanged, nodeCount, shortcuts);
+		shortcutOffsets[nodeCount] = shortcuts.size;
+		shortcutTargets = copyOf(shortcuts.targets, shortcuts.size);
+		shortcutCosts = copyOf(shortcuts.costs, shortcuts.size);
+		shortcutRouteOffsets = copyOf(shortcuts.routeOffsets, shortcuts.size + 1);
+		shortcutRoutes = copyOf(shortcuts.routes, shortcuts.routeOffsets[shortcuts.size]);
+	}
+
+	private int buildRegions(int nodesPerRegion) {
+		fill(regions, NO_REGION);
+		final int[] queue = new int[regions.length];
+		int regionCount = 0;
+		for (int seed = 0; seed < regions.length; seed++) {
+			if (regions[seed] == NO_REGION) {
+				growRegion(seed, regionCount++, nodesPerRegion, queue);
+			}
+		}
+		return regionCount;
+	}
+
+	/***
+	 * Breadth first from seed, adds nodes without a region to the region until it is full
+	 */
+	private void growRegion(int seed, int region, int nodesPerRegion, int[] queue) {
+		int head = 0;
+		int tail = 0;
+		regions[seed] = region;
+		queue[tail++] = seed;
+		while (head < tail && tail < nodesPerRegion) {
+			final int node = queue[head++];
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1) && tail < nodesPerRegion; entry++) {
+				final int neighbour = portalGraph.getNeighbour(entry);
+				if (regions[neighbour] == NO_REGION) {
+					regions[neighbour] = region;
+					queue[tail++] = neighbour;
+				}
+			}
+		}
+	}
+
+	/***
+	 * Adds the patched ids of the nodes in the region of seed to nodes, leaving out removed nodes
+	 */
+	private void collectRegion(int seed, PatchIds nodeIds, Collection<Integer> nodes) {
+		final Set<Integer> members = new HashSet<>();
+		final Deque<Integer> queue = new ArrayDeque<>();
+		members.add(seed);
+		queue.add(seed);
+		while (!queue.isEmpty()) {
+			final int node = queue.poll();
+			if (nodeIds.getNewId(node) != NONE) {
+				nodes.add(nodeIds.getNewId(node));
+			}
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				final int neighbour = portalGraph.getNeighbour(entry);
+				if (regions[neighbour] == regions[seed] && members.add(neighbour)) {
+					queue.add(neighbour);
+				}
+			}
+		}
+	}
+
+	private void markEntrances() {
+		for (int node = 0; node < regions.length; node++) {
+			markEntrance(node);
+		}
+	}
+
+	private void markEntrance(int node) {
+		entrances[node] = false;
+		for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+			if (regions[portalGraph.getNeighbour(entry)] != regions[node]) {
+				entrances[node] = true;
+			}
+		}
+	}
+
+	/***
+	 * Copies the shortcuts of the nodes from firstNode up to endNode, whose regions did not change
+	 */
+	private void copyShortcuts(HierarchicalPortalGraph hierarchy, int firstNode, int endNode, ShortcutList shortcuts) {
+		if (endNode > firstNode) {
+			final int shift = shortcuts.size - hierarchy.shortcutOffsets[firstNode];
+			for (int node = firstNode; node < endNode; node++) {
+				shortcutOffsets[node] = hierarchy.shortcutOffsets[node] + shift;
+			}
+			shortcuts.addAll(hierarchy, hierarchy.shortcutOffsets[firstNode], hierarchy.shortcutOffsets[endNode]);
+		}
+	}
+
+	private ShortcutList buildShortcuts() {
+		final int[] regionOffsets = new int[regionCount + 1];
+		for (int node = 0; node < regions.length; node++) {
+			if (entrances[node]) {
+				regionOffsets[regions[node] + 1]++;
+			}
+		}
+		for (int region = 0; region < regionCount; region++) {
+			regionOffsets[region + 1] += regionOffsets[region];
+		}
+		final int[] regionEntrances = new int[regionOffsets[regionCount]];
+		final int[] nextEntry = copyOf(regionOffsets, regionCount);
+		for (int node = 0; node < regions.length; node++) {
+			if (entrances[node]) {
+				regionEntrances[nextEntry[regions[node]]++] = node;
+			}
+		}
+		final ShortcutList shortcuts = new ShortcutList();
+		final SearchScratchSpace scratchSpace = new SearchScratchSpace();
+		for (int node = 0; node < regions.length; node++) {
+			shortcutOffsets[node] = shortcuts.size;
+			if (entrances[node]) {
+				exploreRegion(node, scratchSpace);
+				final int region = regions[node];
+				for (int index = regionOffsets[region]; index < regionOffsets[region + 1]; index++) {
+					final int otherEntrance = regionEntrances[index];
+					if (otherEntrance != node && scratchSpace.isSeen(otherEntrance)) {
+						shortcuts.add(otherEntrance, scratchSpace.gScores[otherEntrance], scratchSpace.previousNodes);
+					}
+				}
+			}
+		}
+		shortcutOffsets[regions.length] = shortcuts.size;
+		return shortcuts;
+	}
+
+	/***
+	 * Dijkstra from origin, restricted to the region of origin. Afterwards the scratch space holds
+	 * the distance to, and the previous node for, every node reached.
+	 */
+	private void exploreRegion(int origin, SearchScratchSpace scratchSpace) {
+		scratchSpace.prepare(portalGraph.getNodeCount());
+		final int region = regions[origin];
+		final IndexedIntHeap openNodes = scratchSpace.openNodes;
+		scratchSpace.markAsSeen(origin, 0.0, PathfindingUtil.NO_NODE);
+		openNodes.insertOrDecrease(origin, 0.0);
+		while (!openNodes.isEmpty()) {
+			final int node = openNodes.poll();
+			scratchSpace.markAsClosed(node);
+			final double distanceTravelled = scratchSpace.gScores[node];
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				final int neighbour = portalGraph.getNeighbour(entry);
+				if (regions[neighbour] == region && !scratchSpace.isClosed(neighbour)) {
+					final double distance = distanceTravelled + portalGraph.distance(node, neighbour);
+					if (!scratchSpace.isSeen(neighbour) || distance < scratchSpace.gScores[neighbour]) {
+						scratchSpace.markAsSeen(neighbour, distance, node);
+						openNodes.insertOrDecrease(neighbour, distance);
+					}
+				}
+			}
+		}
+	}
+
+	public int getRegion(int node) {
+		return regions[node];
+	}
+
+	public int getRegionCount() {
+		return regionCount;
+	}
+
+	public boolean isEntrance(int node) {
+		return entrances[node];
+	}
+
+	/***
+	 * Shortcuts are iterated as a range of entries:<BR>
+	 * for (int entry = getFirstShortcutEntry(node); entry < getFirstShortcutEntry(node + 1); entry++)
+	 */
+	public int getFirstShortcutEntry(int node) {
+		return shortcutOffsets[node];
+	}
+
+	public int getShortcutTarget(int entry) {
+		return shortcutTargets[entry];
+	}
+
+	public double getShortcutCost(int entry) {
+		return shortcutCosts[entry];
+	}
+
+	public int getShortcutCount() {
+		return shortcutTargets.length;
+	}
+
+	/***
+	 * Shortcut routes are iterated as a range of entries, starting with the node after the shortcut
+	 * origin and ending with the shortcut target:<BR>
+	 * for (int entry = getFirstRouteEntry(shortcut); entry < getFirstRouteEntry(shortcut + 1); entry++)
+	 */
+	public int getFirstRouteEntry(int shortcut) {
+		return shortcutRouteOffsets[shortcut];
+	}
+
+	public int getRouteNode(int entry) {
+		return shortcutRoutes[entry];
+	}
+
+	public int getShortcutRouteLength() {
+		return shortcutRoutes.length;
+	}
+
+	private static class ShortcutList {
+		private int[] targets = new int[16];
+		private double[] costs = new double[16];
+		private int[] routeOffsets = new int[17];
+		private int[] routes = new int[16];
+		private int size = 0;
+
+		/***
+		 * Stores the route to target by walking back through previousNodes, until the origin with no
+		 * previous node is reached
+		 */
+		public void add(int target, double cost, int[] previousNodes) {
+			ensureCapacity(size + 1);
+			int length = 0;
+			for (int node = target; previousNodes[node] != PathfindingUtil.NO_NODE; node = previousNodes[node]) {
+				length++;
+			}
+			final int start = routeOffsets[size];
+			ensureRouteCapacity(start + length);
+			int entry = start + length;
+			for (int node = target; previousNodes[node] != PathfindingUtil.NO_NODE; node = previousNodes[node]) {
+				routes[--entry] = node;
+			}
+			targets[size] = target;
+			costs[size] = cost;
+			routeOffsets[size + 1] = start + length;
+			size++;
+		}
+
+		/***
+		 * Stores the shortcuts from firstShortcut up to endShortcut of another graph, with their routes
+		 */
+		public void addAll(HierarchicalPortalGraph hierarchy, int firstShortcut, int endShortcut) {
+			final int count = endShortcut - firstShortcut;
+			final int firstRouteEntry = hierarchy.shortcutRouteOffsets[firstShortcut];
+			final int routeLength = hierarchy.shortcutRouteOffsets[endShortcut] - firstRouteEntry;
+			ensureCapacity(size + count);
+			ensureRouteCapacity(routeOffsets[size] + routeLength);
+			System.arraycopy(hierarchy.shortcutTargets, firstShortcut, targets, size, count);
+			System.arraycopy(hierarchy.shortcutCosts, firstShortcut, costs, size, count);
+			System.arraycopy(hierarchy.shortcutRoutes, firstRouteEntry, routes, routeOffsets[size], routeLength);
+			final int shift = routeOffsets[size] - firstRouteEntry;
+			for (int shortcut = 1; shortcut <= count; shortcut++) {
+				routeOffsets[size + shortcut] = hierarchy.shortcutRouteOffsets[firstShortcut + shortcut] + shift;
+			}
+			size += count;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > targets.length) {
+				final int newCapacity = max(targets.length * 2, capacity);
+				targets = copyOf(targets, newCapacity);
+				costs = copyOf(costs, newCapacity);
+				routeOffsets = copyOf(routeOffsets, newCapacity + 1);
+			}
+		}
+
+		private void ensureRouteCapacity(int capacity) {
+			if (capacity > routes.length) {
+				routes = copyOf(routes, max(routes.length * 2, capacity));
+			}
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.lang.Math.max;
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.fill;
+
+/***
+ * Binary min heap of integer ids, ordered by a double priority per id. The position of each id in
+ * the heap is tracked, so the priority of an id already in the heap can be decreased in place.
+ */
+class IndexedIntHeap {
+	private static final int ABSENT = -1;
+
+	private int[] heap;
+	private int[] positions;
+	private double[] priorities;
+	private int size;
+
+	public IndexedIntHeap(int capacity) {
+		heap = new int[max(capacity, 1)];
+		positions = new int[max(capacity, 1)];
+		priorities = new double[max(capacity, 1)];
+		fill(positions, ABSENT);
+		size = 0;
+	}
+
+	/***
+	 * Makes room for ids from 0 to capacity - 1
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > positions.length) {
+			final int oldCapacity = positions.length;
+			heap = copyOf(heap, capacity);
+			positions = copyOf(positions, capacity);
+			priorities = copyOf(priorities, capacity);
+			fill(positions, oldCapacity, capacity, ABSENT);
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int id) {
+		return positions[id] != ABSENT;
+	}
+
+	/***
+	 * Adds id with the given priority, or lowers its priority if it is already in the heap. A higher
+	 * priority for an id already in the heap is ignored.
+	 */
+	public void insertOrDecrease(int id, double priority) {
+		if (positions[id] == ABSENT) {
+			heap[size] = id;
+			positions[id] = size;
+			priorities[id] = priority;
+			siftUp(size++);
+		} else if (priority < priorities[id]) {
+			priorities[id] = priority;
+			siftUp(positions[id]);
+		}
+	}
+
+	/***
+	 * @return The priority of the id that poll would return next. The heap must not be empty.
+	 */
+	public double peekPriority() {
+		return priorities[heap[0]];
+	}
+
+	public int poll() {
+		final int top = heap[0];
+		positions[top] = ABSENT;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[heap[i]] = ABSENT;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int position) {
+		final int id = heap[position];
+		final double priority = priorities[id];
+		while (position > 0) {
+			final int parent = (position - 1) >>> 1;
+			if (priorities[heap[parent]] <= priority) {
+				break;
+			}
+			moveTo(heap[parent], position);
+			position = parent;
+		}
+		moveTo(id, position);
+	}
+
+	private void siftDown(int position) {
+		final int id = heap[position];
+		final double priority = priorities[id];
+		final int half = size >>> 1;
+		while (position < half) {
+			int child = 2 * position + 1;
+			if (child + 1 < size && priorities[heap[child + 1]] < priorities[heap[child]]) {
+				child++;
+			}
+			if (priority <= priorities[heap[child]]) {
+				break;
+			}
+			moveTo(heap[child], position);
+			position = child;
+		}
+		moveTo(id, position);
+	}
+
+	private void moveTo(int id, int position) {
+		heap[position] = id;
+		positions[id] = position;
+	}
+}
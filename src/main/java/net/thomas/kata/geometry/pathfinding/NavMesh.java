@@ -0,0 +1,227 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.lang.Math.min;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.thomas.kata.geometry.pathfinding.objects.Portal;
+import net.thomas.kata.geometry.pathfinding.objects.Triangle;
+
+/***
+ * Geometry of the navigation mesh in flat arrays. Vertices are shared between triangles and portals,
+ * each triangle is three vertex indices and each portal is two vertex indices, left boundary first.
+ * When the mesh is built from {@link Triangle} and {@link Portal} objects those are handed back as
+ * is, otherwise objects are only created when asked for. A mesh loaded by {@link NavMeshFile} reads
+ * its arrays straight from the mapped file.
+ */
+class NavMesh {
+	public static final int NONE = -1;
+
+	private final DoubleBuffer vertexXs;
+	private final DoubleBuffer vertexYs;
+	private final IntBuffer triangleVertices;
+	private final IntBuffer portalVertices;
+	private final Triangle[] triangles;
+	private final Portal[] portals;
+
+	public NavMesh(Triangle[] triangles, Portal[] portals) {
+		final Map<Point2D, Integer> vertexIds = new HashMap<>();
+		final int[] triangleVertices = new int[triangles.length * 3];
+		for (int triangle = 0; triangle < triangles.length; triangle++) {
+			triangleVertices[triangle * 3] = identify(triangles[triangle].getP1(), vertexIds);
+			triangleVertices[triangle * 3 + 1] = identify(triangles[triangle].getP2(), vertexIds);
+			triangleVertices[triangle * 3 + 2] = identify(triangles[triangle].getP3(), vertexIds);
+		}
+		final int[] portalVertices = new int[portals.length * 2];
+		for (int portal = 0; portal < portals.length; portal++) {
+			portalVertices[portal * 2] = identify(portals[portal].getP1(), vertexIds);
+			portalVertices[portal * 2 + 1] = identify(portals[portal].getP2(), vertexIds);
+		}
+		final double[] vertexXs = new double[vertexIds.size()];
+		final double[] vertexYs = new double[vertexIds.size()];
+		for (final Map.Entry<Point2D, Integer> vertex : vertexIds.entrySet()) {
+			vertexXs[vertex.getValue()] = vertex.getKey().getX();
+			vertexYs[vertex.getValue()] = vertex.getKey().getY();
+		}
+		this.vertexXs = DoubleBuffer.wrap(vertexXs);
+		this.vertexYs = DoubleBuffer.wrap(vertexYs);
+		this.triangleVertices = IntBuffer.wrap(triangleVertices);
+		this.portalVertices = IntBuffer.wrap(portalVertices);
+		this.triangles = triangles;
+		this.portals = portals;
+	}
+
+	private int identify(Point2D point, Map<Point2D, Integer> vertexIds) {
+		final Point2D key = new Point2D.Double(point.getX(), point.getY());
+		Integer id = vertexIds.get(key);
+		if (id == null) {
+			id = vertexIds.size();
+			vertexIds.put(key, id);
+		}
+		return id;
+	}
+
+	NavMesh(double[] vertexXs, double[] vertexYs, int[] triangleVertices, int[] portalVertices) {
+		this(DoubleBuffer.wrap(vertexXs), DoubleBuffer.wrap(vertexYs), IntBuffer.wrap(triangleVertices), IntBuffer.wrap(portalVertices));
+	}
+
+	private NavMesh(DoubleBuffer vertexXs, DoubleBuffer vertexYs, IntBuffer triangleVertices, IntBuffer portalVertices) {
+		this.vertexXs = vertexXs;
+		this.vertexYs = vertexYs;
+		this.triangleVertices = triangleVertices;
+		this.portalVertices = portalVertices;
+		triangles = null;
+		portals = null;
+	}
+
+	public static NavMesh read(ByteBuffer buffer) throws IOException {
+		NavMeshFile.requireRemaining(buffer, 3 * 4);
+		final int vertexCount = buffer.getInt();
+		final int triangleCount = buffer.getInt();
+		final int portalCount = buffer.getInt();
+		final DoubleBuffer vertexXs = NavMeshFile.readDoubles(buffer, vertexCount);
+		final DoubleBuffer vertexYs = NavMeshFile.readDoubles(buffer, vertexCount);
+		final IntBuffer triangleVertices = NavMeshFile.readInts(buffer, triangleCount * 3L);
+		final IntBuffer portalVertices = NavMeshFile.readInts(buffer, portalCount * 2L);
+		return new NavMesh(vertexXs, vertexYs, triangleVertices, portalVertices);
+	}
+
+	public void write(ByteBuffer buffer) {
+		buffer.putInt(getVertexCount());
+		buffer.putInt(getTriangleCount());
+		buffer.putInt(getPortalCount());
+		NavMeshFile.writeDoubles(buffer, vertexXs);
+		NavMeshFile.writeDoubles(buffer, vertexYs);
+		NavMeshFile.writeInts(buffer, triangleVertices);
+		NavMeshFile.writeInts(buffer, portalVertices);
+	}
+
+	public long getByteSize() {
+		return 3 * 4L + vertexXs.capacity() * 16L + triangleVertices.capacity() * 4L + portalVertices.capacity() * 4L;
+	}
+
+	/***
+	 * @return A copy of the x coordinates, cut off or padded with zeroes to vertexCount
+	 */
+	double[] copyVertexXs(int vertexCount) {
+		return copyOf(vertexXs, vertexCount);
+	}
+
+	/***
+	 * @return A copy of the y coordinates, cut off or padded with zeroes to vertexCount
+	 */
+	double[] copyVertexYs(int vertexCount) {
+		return copyOf(vertexYs, vertexCount);
+	}
+
+	/***
+	 * @return A copy of the triangle vertex indices, cut off or padded with zeroes to triangleCount
+	 */
+	int[] copyTriangleVertices(int triangleCount) {
+		return copyOf(triangleVertices, triangleCount * 3);
+	}
+
+	/***
+	 * @return A copy of the portal vertex indices, cut off or padded with zeroes to portalCount
+	 */
+	int[] copyPortalVertices(int portalCount) {
+		return copyOf(portalVertices, portalCount * 2);
+	}
+
+	private static double[] copyOf(DoubleBuffer values, int length) {
+		final double[] copy = new double[length];
+		NavMeshFile.copyDoubles(values, 0, copy, 0, min(length, values.capacity()));
+		return copy;
+	}
+
+	private static int[] copyOf(IntBuffer values, int length) {
+		final int[] copy = new int[length];
+		NavMeshFile.copyInts(values, 0, copy, 0, min(length, values.capacity()));
+		return copy;
+	}
+
+	public int getVertexCount() {
+		return vertexXs.capacity();
+	}
+
+	public int getTriangleCount() {
+		return triangleVertices.capacity() / 3;
+	}
+
+	public int getPortalCount() {
+		return portalVertices.capacity() / 2;
+	}
+
+	public double getVertexX(int vertex) {
+		return vertexXs.get(vertex);
+	}
+
+	public double getVertexY(int vertex) {
+		return vertexYs.get(vertex);
+	}
+
+	public int getTriangleVertex(int triangle, int corner) {
+		return triangleVertices.get(triangle * 3 + corner);
+	}
+
+	public int getPortalVertex(int portal, int end) {
+		return portalVertices.get(portal * 2 + end);
+	}
+
+	public double getTriangleX(int triangle, int corner) {
+		return getVertexX(getTriangleVertex(triangle, corner));
+	}
+
+	public double getTriangleY(int triangle, int corner) {
+		return getVertexY(getTriangleVertex(triangle, corner));
+	}
+
+	/***
+	 * Points on the boundary of the triangle are counted as inside. Triangles without area contain
+	 * nothing.
+	 */
+	public boolean contains(int triangle, double x, double y) {
+		final double x1 = getTriangleX(triangle, 0);
+		final double y1 = getTriangleY(triangle, 0);
+		final double x2 = getTriangleX(triangle, 1);
+		final double y2 = getTriangleY(triangle, 1);
+		final double x3 = getTriangleX(triangle, 2);
+		final double y3 = getTriangleY(triangle, 2);
+		final double area = (x2 - x1) * (y3 - y1) - (y2 - y1) * (x3 - x1);
+		if (area == 0.0) {
+			return false;
+		}
+		final double side1 = (x2 - x1) * (y - y1) - (y2 - y1) * (x - x1);
+		final double side2 = (x3 - x2) * (y - y2) - (y3 - y2) * (x - x2);
+		final double side3 = (x1 - x3) * (y - y3) - (y1 - y3) * (x - x3);
+		if (area > 0) {
+			return side1 >= 0 && side2 >= 0 && side3 >= 0;
+		} else {
+			return side1 <= 0 && side2 <= 0 && side3 <= 0;
+		}
+	}
+
+	public Triangle getTriangle(int triangle) {
+		if (triangles != null) {
+			return triangles[triangle];
+		}
+		return new Triangle(getVertex(getTriangleVertex(triangle, 0)), getVertex(getTriangleVertex(triangle, 1)), getVertex(getTriangleVertex(triangle, 2)));
+	}
+
+	public Portal getPortal(int portal) {
+		if (portals != null) {
+			return portals[portal];
+		}
+		return new Portal(getVertex(getPortalVertex(portal, 0)), getVertex(getPortalVertex(portal, 1)));
+	}
+
+	private Point2D getVertex(int vertex) {
+		return new Point2D.Double(getVertexX(vertex), getVertexY(vertex));
+	}
+}
@@ -0,0 +1,147 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/***
+ * Binary file format for a finished {@link PathfindingUtil}, so the mesh does not have to be
+ * triangulated and converted again on every start.<BR>
+ * The file is little endian and starts with a magic number and a format version. It then holds the
+ * sections of the mesh in the same layout as the arrays they are loaded into: vertex coordinates,
+ * triangle and portal vertex indices, portal centers and adjacency, the portal nodes of each
+ * triangle, and the triangle grid used for point location. Each section starts with its counts.<BR>
+ * Both saving and loading go through {@link FileChannel#map}. Saving copies each array in bulk,
+ * while a loaded mesh reads its arrays in place through read only views of the mapping, so nothing
+ * is copied to the heap and processes loading the same file share its pages. The mapping stays
+ * valid after the file is closed, and is released once the loaded mesh is no longer referenced.
+ * The hierarchical layer and the path cache are not stored, as they depend on settings given when
+ * loading.
+ */
+public class NavMeshFile {
+	public static final int MAGIC = 0x4B4E4156;
+	public static final int VERSION = 1;
+	private static final int HEADER_SIZE = 2 * 4;
+
+	private NavMeshFile() {
+	}
+
+	public static void save(PathfindingUtil util, File file) throws IOException {
+		final PathfindingUtil.Snapshot snapshot = util.getSnapshot();
+		final PortalGraph portalGraph = snapshot.portalGraph;
+		final TriangleGrid triangleGrid = snapshot.triangleGrid;
+		final NavMesh mesh = portalGraph.getMesh();
+		final long size = HEADER_SIZE + mesh.getByteSize() + portalGraph.getByteSize() + triangleGrid.getByteSize();
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Navmesh of " + size + " bytes is too large for a single mapped file");
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), READ, WRITE, CREATE, TRUNCATE_EXISTING)) {
+			final MappedByteBuffer buffer = channel.map(READ_WRITE, 0, size);
+			buffer.order(LITTLE_ENDIAN);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			mesh.write(buffer);
+			portalGraph.write(buffer);
+			triangleGrid.write(buffer);
+			buffer.force();
+		}
+	}
+
+	public static PathfindingUtil load(File file) throws IOException {
+		return load(file, 0, 0);
+	}
+
+	/***
+	 * @param nodesPerRegion
+	 *            See {@link PathfindingUtil#PathfindingUtil(java.util.Map, int, int)}
+	 * @param pathCacheSize
+	 *            See {@link PathfindingUtil#PathfindingUtil(java.util.Map, int, int)}
+	 */
+	public static PathfindingUtil load(File file, int nodesPerRegion, int pathCacheSize) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+			final MappedByteBuffer buffer = channel.map(READ_ONLY, 0, channel.size());
+			buffer.order(LITTLE_ENDIAN);
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+				throw new IOException(file + " is not a navmesh file");
+			}
+			final int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException(file + " has navmesh format version " + version + ", expected " + VERSION);
+			}
+			final NavMesh mesh = NavMesh.read(buffer);
+			final PortalGraph portalGraph = PortalGraph.read(mesh, buffer);
+			final TriangleGrid triangleGrid = TriangleGrid.read(mesh, buffer);
+			return new PathfindingUtil(portalGraph, triangleGrid, nodesPerRegion, pathCacheSize);
+		}
+	}
+
+	/***
+	 * The counts in a file are not trusted, so a truncated or corrupt file is rejected before any
+	 * section is read past its end
+	 */
+	static void requireRemaining(ByteBuffer buffer, long byteCount) throws IOException {
+		if (byteCount < 0 || byteCount > buffer.remaining()) {
+			throw new IOException("Navmesh file is truncated or corrupt: a section needs " + byteCount + " bytes, but only " + buffer.remaining() + " remain");
+		}
+	}
+
+	/***
+	 * @return A read only view of the values, which stay in the buffer
+	 */
+	static DoubleBuffer readDoubles(ByteBuffer buffer, long count) throws IOException {
+		requireRemaining(buffer, count * 8);
+		final DoubleBuffer values = buffer.asDoubleBuffer().limit((int) count).slice().asReadOnlyBuffer();
+		buffer.position(buffer.position() + (int) count * 8);
+		return values;
+	}
+
+	/***
+	 * @return A read only view of the values, which stay in the buffer
+	 */
+	static IntBuffer readInts(ByteBuffer buffer, long count) throws IOException {
+		requireRemaining(buffer, count * 4);
+		final IntBuffer values = buffer.asIntBuffer().limit((int) count).slice().asReadOnlyBuffer();
+		buffer.position(buffer.position() + (int) count * 4);
+		return values;
+	}
+
+	/***
+	 * Copies length values, from index from onwards, into target in bulk
+	 */
+	static void copyDoubles(DoubleBuffer values, int from, double[] target, int offset, int length) {
+		final DoubleBuffer source = values.duplicate();
+		source.position(from);
+		source.get(target, offset, length);
+	}
+
+	/***
+	 * Copies length values, from index from onwards, into target in bulk
+	 */
+	static void copyInts(IntBuffer values, int from, int[] target, int offset, int length) {
+		final IntBuffer source = values.duplicate();
+		source.position(from);
+		source.get(target, offset, length);
+	}
+
+	static void writeDoubles(ByteBuffer buffer, DoubleBuffer values) {
+		buffer.asDoubleBuffer().put(values.duplicate().rewind());
+		buffer.position(buffer.position() + values.capacity() * 8);
+	}
+
+	static void writeInts(ByteBuffer buffer, IntBuffer values) {
+		buffer.asIntBuffer().put(values.duplicate().rewind());
+		buffer.position(buffer.position() + values.capacity() * 4);
+	}
+}
@@ -0,0 +1,628 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.signum;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.newSetFromMap;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide.TRIANGLE_SIDES;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_1;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_2;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_3;
+import static net.thomas.kata.geometry.pathfinding.NavMesh.NONE;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.GeometricPredicates;
+import net.thomas.kata.geometry.objects.PolygonBuilder;
+import net.thomas.kata.geometry.objects.PolygonTriangle;
+import net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+
+/***
+ * Adds and removes holes in a finished mesh, retriangulating only the triangles around them.<BR>
+ * The triangles whose bounding box overlaps a hole are selected, together with the ring of
+ * triangles sharing a vertex with them. The boundary of the selection is walked into polygons, holes
+ * being removed are dropped from it, holes being added are put inside it, and the polygons are
+ * triangulated again. The new triangles are connected to each other and, along the boundary, to the
+ * triangles left in place.<BR>
+ * The selection and its boundary are found from the grid cells around the holes and the sides of
+ * the selected triangles, so building a patch only visits triangles near the holes. The result is a
+ * new {@link PortalGraph} and {@link TriangleGrid}, in which kept elements keep their ids as
+ * described by {@link PatchIds}. Everything outside the selection is copied over in bulk, and the
+ * original structures are left untouched, so they can be searched while the patch is built.
+ */
+class NavMeshPatch {
+	private final NavMesh mesh;
+	private final PortalGraph portalGraph;
+	private final TriangleGrid triangleGrid;
+	private final Set<Integer> selected;
+	private final Map<Point2D, Integer> knownVertices;
+	private final List<Point2D> newVertices;
+	private final Rectangle2D bounds;
+	private final PatchIds vertexIds;
+	private final PatchIds triangleIds;
+	private final PatchIds nodeIds;
+	private final Set<Integer> changedNodes;
+	private final PortalGraph patchedPortalGraph;
+	private final TriangleGrid patchedTriangleGrid;
+
+	/***
+	 * @param addedHoles
+	 *            Clockwise polygons inside the walkable area, not touching its walls or each other
+	 * @param removedHoles
+	 *            Holes in the mesh, with the same vertices as when they were added
+	 */
+	public NavMeshPatch(PortalGraph portalGraph, TriangleGrid triangleGrid, PolygonUtil polygonUtil, Collection<PolygonVertex> addedHoles,
+			Collection<PolygonVertex> removedHoles) {
+		this.portalGraph = portalGraph;
+		this.triangleGrid = triangleGrid;
+		mesh = portalGraph.getMesh();
+		selected = new TreeSet<>();
+		selectTriangles(addedHoles);
+		selectTriangles(removedHoles);
+		selectTrianglesAround(getVerticesOfSelectedTriangles());
+		Map<Integer, List<Integer>> boundary = buildBoundary();
+		while (selectTrianglesAround(getPinchedVertices(boundary))) {
+			boundary = buildBoundary();
+		}
+		knownVertices = new HashMap<>();
+		newVertices = new ArrayList<>();
+		final Set<Integer> selectedVertices = getVerticesOfSelectedTriangles();
+		for (final int vertex : selectedVertices) {
+			knownVertices.put(new Point2D.Double(mesh.getVertexX(vertex), mesh.getVertexY(vertex)), vertex);
+		}
+		bounds = calculateBounds(selectedVertices);
+		removeHoles(boundary, removedHoles);
+		final Collection<PolygonVertex> polygons = walkBoundary(boundary);
+		for (final PolygonVertex hole : addedHoles) {
+			polygons.add(checkAddedHole(hole).createClone());
+		}
+		final int[] newTriangleVertices = identifyVertices(collectTriangles(polygonUtil.triangulateMonotonePolygons(polygonUtil.getMonotoneParts(polygons))));
+		final List<int[]> newPortals = connectNewTriangles(newTriangleVertices);
+		vertexIds = new PatchIds(mesh.getVertexCount(), findUnusedVertices(selectedVertices, newTriangleVertices), newVertices.size());
+		triangleIds = new PatchIds(mesh.getTriangleCount(), selected, newTriangleVertices.length / 3);
+		nodeIds = new PatchIds(portalGraph.getNodeCount(), getNodesOfSelectedTriangles(), newPortals.size());
+		final NavMesh patchedMesh = buildPatchedMesh(newTriangleVertices, newPortals);
+		final SortedMap<Integer, int[]> changedTriangleNodes = buildChangedTriangleNodes(newPortals);
+		final SortedMap<Integer, int[]> changedNodeTriangles = buildChangedNodeTriangles(changedTriangleNodes);
+		changedNodes = changedNodeTriangles.keySet();
+		patchedPortalGraph = new PortalGraph(portalGraph, patchedMesh, changedTriangleNodes, changedNodeTriangles);
+		patchedTriangleGrid = new TriangleGrid(triangleGrid, patchedMesh, triangleIds);
+	}
+
+	public PortalGraph getPortalGraph() {
+		return patchedPortalGraph;
+	}
+
+	public TriangleGrid getTriangleGrid() {
+		return patchedTriangleGrid;
+	}
+
+	public PatchIds getTriangleIds() {
+		return triangleIds;
+	}
+
+	public PatchIds getNodeIds() {
+		return nodeIds;
+	}
+
+	/***
+	 * @return The nodes, by patched id, whose neighbours or triangles changed: the added and moved
+	 *         nodes, and the kept nodes sharing a triangle with an added, moved or removed node
+	 */
+	public Set<Integer> getChangedNodes() {
+		return changedNodes;
+	}
+
+	/***
+	 * @return The bounding box of the retriangulated area, which holds every added and removed
+	 *         triangle
+	 */
+	public Rectangle2D getBounds() {
+		return bounds;
+	}
+
+	private int getOtherTriangle(int node, int triangle) {
+		return portalGraph.getNodeTriangle(node, 0) == triangle ? portalGraph.getNodeTriangle(node, 1) : portalGraph.getNodeTriangle(node, 0);
+	}
+
+	private void selectTriangles(Collection<PolygonVertex> holes) {
+		for (final PolygonVertex hole : holes) {
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for (final PolygonVertex vertex : hole) {
+				minX = min(minX, vertex.x);
+				minY = min(minY, vertex.y);
+				maxX = max(maxX, vertex.x);
+				maxY = max(maxY, vertex.y);
+			}
+			triangleGrid.collectTrianglesOverlapping(minX, minY, maxX, maxY, selected);
+		}
+	}
+
+	private Set<Integer> getVerticesOfSelectedTriangles() {
+		final Set<Integer> vertices = new TreeSet<>();
+		for (final int triangle : selected) {
+			for (int corner = 0; corner < 3; corner++) {
+				vertices.add(mesh.getTriangleVertex(triangle, corner));
+			}
+		}
+		return vertices;
+	}
+
+	/***
+	 * Vertices with more than one boundary side leaving them, where the selection touches itself.
+	 * Selecting the triangles around them as well keeps the polygons walked from the boundary simple,
+	 * unless the vertex is where walls meet.
+	 */
+	private Set<Integer> getPinchedVertices(Map<Integer, List<Integer>> boundary) {
+		final Set<Integer> vertices = new TreeSet<>();
+		for (final Map.Entry<Integer, List<Integer>> sides : boundary.entrySet()) {
+			if (sides.getValue().size() > 1) {
+				vertices.add(sides.getKey());
+			}
+		}
+		return vertices;
+	}
+
+	/***
+	 * @return True if any triangle was selected that was not already
+	 */
+	private boolean selectTrianglesAround(Collection<Integer> vertices) {
+		boolean changed = false;
+		for (final int vertex : vertices) {
+			changed |= selected.addAll(getTrianglesAround(vertex));
+		}
+		return changed;
+	}
+
+	/***
+	 * @return The triangles with the vertex as a corner, looked up in the grid cell it lies in
+	 */
+	private List<Integer> getTrianglesAround(int vertex) {
+		final double x = mesh.getVertexX(vertex);
+		final double y = mesh.getVertexY(vertex);
+		final Set<Integer> candidates = new TreeSet<>();
+		triangleGrid.collectTrianglesOverlapping(x, y, x, y, candidates);
+		final List<Integer> triangles = new ArrayList<>();
+		for (final int triangle : candidates) {
+			if (mesh.getTriangleVertex(triangle, 0) == vertex || mesh.getTriangleVertex(triangle, 1) == vertex || mesh.getTriangleVertex(triangle, 2) == vertex) {
+				triangles.add(triangle);
+			}
+		}
+		return triangles;
+	}
+
+	/***
+	 * Sides of selected triangles that are not shared with another selected triangle, in the
+	 * counterclockwise direction of the triangle, as a list of end vertices for each start vertex
+	 */
+	private Map<Integer, List<Integer>> buildBoundary() {
+		final Set<Long> sides = new HashSet<>();
+		for (final int triangle : selected) {
+			for (int corner = 0; corner < 3; corner++) {
+				sides.add(toKey(mesh.getTriangleVertex(triangle, corner), mesh.getTriangleVertex(triangle, (corner + 1) % 3)));
+			}
+		}
+		final Map<Integer, List<Integer>> boundary = new HashMap<>();
+		for (final int triangle : selected) {
+			for (int corner = 0; corner < 3; corner++) {
+				final int start = mesh.getTriangleVertex(triangle, corner);
+				final int end = mesh.getTriangleVertex(triangle, (corner + 1) % 3);
+				if (!sides.contains(toKey(end, start))) {
+					boundary.computeIfAbsent(start, key -> new LinkedList<>()).add(end);
+				}
+			}
+		}
+		return boundary;
+	}
+
+	private Rectangle2D calculateBounds(Collection<Integer> vertices) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (final int vertex : vertices) {
+			minX = min(minX, mesh.getVertexX(vertex));
+			minY = min(minY, mesh.getVertexY(vertex));
+			maxX = max(maxX, mesh.getVertexX(vertex));
+			maxY = max(maxY, mesh.getVertexY(vertex));
+		}
+		return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+	}
+
+	private void removeHoles(Map<Integer, List<Integer>> boundary, Collection<PolygonVertex> removedHoles) {
+		for (final PolygonVertex hole : removedHoles) {
+			for (final PolygonVertex vertex : hole) {
+				final Integer start = knownVertices.get(new Point2D.Double(vertex.x, vertex.y));
+				final Integer end = knownVertices.get(new Point2D.Double(vertex.getAfter().x, vertex.getAfter().y));
+				if (start == null || end == null || !removeSide(boundary, start, end) && !removeSide(boundary, end, start)) {
+					throw new IllegalArgumentException(hole.allToString() + " is not a hole in the mesh");
+				}
+			}
+		}
+	}
+
+	private boolean removeSide(Map<Integer, List<Integer>> boundary, int start, int end) {
+		final List<Integer> ends = boundary.get(start);
+		if (ends != null && ends.remove((Integer) end)) {
+			if (ends.isEmpty()) {
+				boundary.remove(start);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/***
+	 * Walks the boundary into closed polygons, counterclockwise around the selection and clockwise
+	 * around holes in it. Where several sides leave the same vertex, the walk takes the first one
+	 * clockwise from the side it arrived by, so it keeps to the area it is walking around.
+	 */
+	private Collection<PolygonVertex> walkBoundary(Map<Integer, List<Integer>> boundary) {
+		final Collection<PolygonVertex> polygons = new LinkedList<>();
+		while (!boundary.isEmpty()) {
+			final int start = boundary.keySet().iterator().next();
+			final PolygonBuilder builder = new PolygonBuilder();
+			int previous = start;
+			int current = takeSide(boundary, start, NONE);
+			builder.add(mesh.getVertexX(start), mesh.getVertexY(start));
+			while (current != start) {
+				builder.add(mesh.getVertexX(current), mesh.getVertexY(current));
+				final int next = takeSide(boundary, current, previous);
+				previous = current;
+				current = next;
+			}
+			polygons.add(builder.build());
+		}
+		return polygons;
+	}
+
+	private int takeSide(Map<Integer, List<Integer>> boundary, int vertex, int previous) {
+		final List<Integer> ends = boundary.get(vertex);
+		if (ends == null) {
+			throw new IllegalArgumentException("Holes removed from the mesh must not share walls with other holes");
+		}
+		Integer bestEnd = ends.get(0);
+		if (ends.size() > 1 && previous != NONE) {
+			for (final Integer end : ends) {
+				if (isTurnedToBefore(vertex, previous, end, bestEnd)) {
+					bestEnd = end;
+				}
+			}
+		}
+		ends.remove(bestEnd);
+		if (ends.isEmpty()) {
+			boundary.remove(vertex);
+		}
+		return bestEnd;
+	}
+
+	/***
+	 * True if the side to end is reached before the side to other when turning clockwise around the
+	 * vertex from the side back to previous. Sides are first told apart by the half turn they lie in,
+	 * and then ordered within it, all with exact orientation tests.
+	 */
+	private boolean isTurnedToBefore(int vertex, int previous, int end, int other) {
+		final int endHalf = getClockwiseHalf(vertex, previous, end);
+		final int otherHalf = getClockwiseHalf(vertex, previous, other);
+		if (endHalf != otherHalf) {
+			return endHalf < otherHalf;
+		}
+		return orient2d(vertex, end, other) < 0;
+	}
+
+	/***
+	 * @return 0 for sides up to half a turn clockwise from the side back to previous, 1 for sides
+	 *         further round and 2 for a side along the one back to previous
+	 */
+	private int getClockwiseHalf(int vertex, int previous, int end) {
+		final double orientation = orient2d(vertex, previous, end);
+		if (orientation < 0) {
+			return 0;
+		} else if (orientation > 0) {
+			return 1;
+		}
+		final boolean isAlong = signum(mesh.getVertexX(end) - mesh.getVertexX(vertex)) == signum(mesh.getVertexX(previous) - mesh.getVertexX(vertex))
+				&& signum(mesh.getVertexY(end) - mesh.getVertexY(vertex)) == signum(mesh.getVertexY(previous) - mesh.getVertexY(vertex));
+		return isAlong ? 2 : 0;
+	}
+
+	private double orient2d(int first, int second, int third) {
+		return GeometricPredicates.orient2d(mesh.getVertexX(first), mesh.getVertexY(first), mesh.getVertexX(second), mesh.getVertexY(second), mesh.getVertexX(third),
+				mesh.getVertexY(third));
+	}
+
+	private PolygonVertex checkAddedHole(PolygonVertex hole) {
+		double doubleArea = 0.0;
+		for (final PolygonVertex vertex : hole) {
+			if (triangleGrid.locateTriangleAt(vertex.x, vertex.y) == NONE) {
+				throw new IllegalArgumentException(hole.allToString() + " is not inside the mesh");
+			}
+			doubleArea += vertex.x * vertex.getAfter().y - vertex.getAfter().x * vertex.y;
+		}
+		if (doubleArea >= 0) {
+			throw new IllegalArgumentException(hole.allToString() + " is not clockwise");
+		}
+		return hole;
+	}
+
+	private List<PolygonTriangle> collectTriangles(Collection<PolygonTriangle> triangleGraphs) {
+		final List<PolygonTriangle> triangles = new ArrayList<>();
+		final Set<PolygonTriangle> seen = newSetFromMap(new IdentityHashMap<>());
+		final ArrayDeque<PolygonTriangle> pendingTriangles = new ArrayDeque<>();
+		for (final PolygonTriangle root : triangleGraphs) {
+			if (seen.add(root)) {
+				pendingTriangles.push(root);
+			}
+			while (!pendingTriangles.isEmpty()) {
+				final PolygonTriangle triangle = pendingTriangles.pop();
+				triangles.add(triangle);
+				for (final TriangleSide side : TRIANGLE_SIDES) {
+					final PolygonTriangle neighbour = triangle.getNeighbour(side);
+					if (neighbour != null && seen.add(neighbour)) {
+						pendingTriangles.push(neighbour);
+					}
+				}
+			}
+		}
+		return triangles;
+	}
+
+	/***
+	 * @return Three vertices for each new triangle, vertices not in the mesh being named by the
+	 *         vertex count plus their index
+	 */
+	private int[] identifyVertices(List<PolygonTriangle> triangles) {
+		final int[] triangleVertices = new int[triangles.size() * 3];
+		for (int triangle = 0; triangle < triangles.size(); triangle++) {
+			triangleVertices[triangle * 3] = identify(triangles.get(triangle).getVertex(VERTEX_1));
+			triangleVertices[triangle * 3 + 1] = identify(triangles.get(triangle).getVertex(VERTEX_2));
+			triangleVertices[triangle * 3 + 2] = identify(triangles.get(triangle).getVertex(VERTEX_3));
+		}
+		return triangleVertices;
+	}
+
+	private int identify(Point2D point) {
+		final Point2D key = new Point2D.Double(point.getX(), point.getY());
+		Integer id = knownVertices.get(key);
+		if (id == null) {
+			id = mesh.getVertexCount() + newVertices.size();
+			knownVertices.put(key, id);
+			newVertices.add(key);
+		}
+		return id;
+	}
+
+	/***
+	 * Pairs up the sides of the new triangles with each other, and with the kept triangles that
+	 * bordered the selection. New triangles are named by the triangle count plus their index.
+	 *
+	 * @return A portal for each pair: two vertices followed by the two triangles
+	 */
+	private List<int[]> connectNewTriangles(int[] newTriangleVertices) {
+		final Map<Long, Integer> openSides = new HashMap<>();
+		for (final int triangle : selected) {
+			for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+				final int node = portalGraph.getTriangleNode(entry);
+				final int neighbour = getOtherTriangle(node, triangle);
+				if (neighbour != NONE && !selected.contains(neighbour)) {
+					openSides.put(toUndirectedKey(mesh.getPortalVertex(node, 0), mesh.getPortalVertex(node, 1)), neighbour);
+				}
+			}
+		}
+		final List<int[]> portals = new ArrayList<>();
+		for (int index = 0; index < newTriangleVertices.length / 3; index++) {
+			final int triangle = mesh.getTriangleCount() + index;
+			for (int corner = 0; corner < 3; corner++) {
+				final int start = newTriangleVertices[index * 3 + corner];
+				final int end = newTriangleVertices[index * 3 + (corner + 1) % 3];
+				final Integer neighbour = openSides.remove(toUndirectedKey(start, end));
+				if (neighbour != null) {
+					portals.add(new int[] { end, start, neighbour, triangle });
+				} else {
+					openSides.put(toUndirectedKey(start, end), triangle);
+				}
+			}
+		}
+		return portals;
+	}
+
+	/***
+	 * @return The vertices of the selected triangles that neither a kept nor a new triangle uses
+	 */
+	private List<Integer> findUnusedVertices(Collection<Integer> selectedVertices, int[] newTriangleVertices) {
+		final Set<Integer> newlyUsedVertices = new HashSet<>();
+		for (final int vertex : newTriangleVertices) {
+			newlyUsedVertices.add(vertex);
+		}
+		final List<Integer> unusedVertices = new ArrayList<>();
+		for (final int vertex : selectedVertices) {
+			if (!newlyUsedVertices.contains(vertex) && selected.containsAll(getTrianglesAround(vertex))) {
+				unusedVertices.add(vertex);
+			}
+		}
+		return unusedVertices;
+	}
+
+	private Set<Integer> getNodesOfSelectedTriangles() {
+		final Set<Integer> nodes = new TreeSet<>();
+		for (final int triangle : selected) {
+			for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+				nodes.add(portalGraph.getTriangleNode(entry));
+			}
+		}
+		return nodes;
+	}
+
+	/***
+	 * Copies the arrays of the mesh in bulk, and then writes the vertices, triangles and portals that
+	 * were added or moved, and the kept triangles and portals that use a moved vertex
+	 */
+	private NavMesh buildPatchedMesh(int[] newTriangleVertices, List<int[]> newPortals) {
+		final double[] vertexXs = mesh.copyVertexXs(vertexIds.getCount());
+		final double[] vertexYs = mesh.copyVertexYs(vertexIds.getCount());
+		for (final int vertex : vertexIds.getChangedIds()) {
+			final int oldVertex = vertexIds.getOldId(vertex);
+			final boolean isAdded = vertexIds.isAdded(vertex);
+			vertexXs[vertex] = isAdded ? newVertices.get(oldVertex - mesh.getVertexCount()).getX() : mesh.getVertexX(oldVertex);
+			vertexYs[vertex] = isAdded ? newVertices.get(oldVertex - mesh.getVertexCount()).getY() : mesh.getVertexY(oldVertex);
+		}
+		final int[] triangleVertices = mesh.copyTriangleVertices(triangleIds.getCount());
+		for (final int triangle : triangleIds.getChangedIds()) {
+			final int oldTriangle = triangleIds.getOldId(triangle);
+			for (int corner = 0; corner < 3; corner++) {
+				final int vertex = triangleIds.isAdded(triangle) ? newTriangleVertices[(oldTriangle - mesh.getTriangleCount()) * 3 + corner]
+						: mesh.getTriangleVertex(oldTriangle, corner);
+				triangleVertices[triangle * 3 + corner] = vertexIds.getNewId(vertex);
+			}
+		}
+		final int[] portalVertices = mesh.copyPortalVertices(nodeIds.getCount());
+		for (final int node : nodeIds.getChangedIds()) {
+			final int oldNode = nodeIds.getOldId(node);
+			for (int end = 0; end < 2; end++) {
+				final int vertex = nodeIds.isAdded(node) ? newPortals.get(oldNode - portalGraph.getNodeCount())[end] : mesh.getPortalVertex(oldNode, end);
+				portalVertices[node * 2 + end] = vertexIds.getNewId(vertex);
+			}
+		}
+		for (final int vertex : vertexIds.getChangedIds()) {
+			if (!vertexIds.isAdded(vertex)) {
+				renumberMovedVertex(vertexIds.getOldId(vertex), vertex, triangleVertices, portalVertices);
+			}
+		}
+		return new NavMesh(vertexXs, vertexYs, triangleVertices, portalVertices);
+	}
+
+	private void renumberMovedVertex(int oldVertex, int vertex, int[] triangleVertices, int[] portalVertices) {
+		for (final int triangle : getTrianglesAround(oldVertex)) {
+			final int patchedTriangle = triangleIds.getNewId(triangle);
+			if (patchedTriangle != NONE) {
+				for (int corner = 0; corner < 3; corner++) {
+					if (mesh.getTriangleVertex(triangle, corner) == oldVertex) {
+						triangleVertices[patchedTriangle * 3 + corner] = vertex;
+					}
+				}
+				for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+					final int node = portalGraph.getTriangleNode(entry);
+					for (int end = 0; end < 2; end++) {
+						if (nodeIds.getNewId(node) != NONE && mesh.getPortalVertex(node, end) == oldVertex) {
+							portalVertices[nodeIds.getNewId(node) * 2 + end] = vertex;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/***
+	 * @return The portal nodes, by patched ids, of every triangle that was added or moved, or that
+	 *         lost or gained a node. Kept nodes stay in their original order, and added nodes follow.
+	 */
+	private SortedMap<Integer, int[]> buildChangedTriangleNodes(List<int[]> newPortals) {
+		final Map<Integer, List<Integer>> addedNodes = new HashMap<>();
+		for (int portal = 0; portal < newPortals.size(); portal++) {
+			final int node = nodeIds.getNewId(portalGraph.getNodeCount() + portal);
+			addedNodes.computeIfAbsent(newPortals.get(portal)[2], key -> new ArrayList<>()).add(node);
+			addedNodes.computeIfAbsent(newPortals.get(portal)[3], key -> new ArrayList<>()).add(node);
+		}
+		final Set<Integer> changedTriangles = new HashSet<>(addedNodes.keySet());
+		for (final int triangle : triangleIds.getChangedIds()) {
+			changedTriangles.add(triangleIds.getOldId(triangle));
+		}
+		for (final int node : nodeIds.getRemovedIds()) {
+			addKeptTriangles(node, changedTriangles);
+		}
+		for (final int node : nodeIds.getChangedIds()) {
+			if (!nodeIds.isAdded(node)) {
+				addKeptTriangles(nodeIds.getOldId(node), changedTriangles);
+			}
+		}
+		final SortedMap<Integer, int[]> changedTriangleNodes = new TreeMap<>();
+		for (final int triangle : changedTriangles) {
+			final List<Integer> nodes = new ArrayList<>();
+			if (triangle < mesh.getTriangleCount()) {
+				for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+					final int node = nodeIds.getNewId(portalGraph.getTriangleNode(entry));
+					if (node != NONE) {
+						nodes.add(node);
+					}
+				}
+			}
+			nodes.addAll(addedNodes.getOrDefault(triangle, emptyList()));
+			final int[] nodeArray = new int[nodes.size()];
+			for (int index = 0; index < nodeArray.length; index++) {
+				nodeArray[index] = nodes.get(index);
+			}
+			changedTriangleNodes.put(triangleIds.getNewId(triangle), nodeArray);
+		}
+		return changedTriangleNodes;
+	}
+
+	private void addKeptTriangles(int node, Collection<Integer> triangles) {
+		for (int side = 0; side < 2; side++) {
+			final int triangle = portalGraph.getNodeTriangle(node, side);
+			if (triangle != NONE && !selected.contains(triangle)) {
+				triangles.add(triangle);
+			}
+		}
+	}
+
+	/***
+	 * @return The two triangles, by patched ids and lowest first, of every node in a changed triangle
+	 */
+	private SortedMap<Integer, int[]> buildChangedNodeTriangles(SortedMap<Integer, int[]> changedTriangleNodes) {
+		final SortedMap<Integer, int[]> changedNodeTriangles = new TreeMap<>();
+		for (final Map.Entry<Integer, int[]> triangle : changedTriangleNodes.entrySet()) {
+			for (final int node : triangle.getValue()) {
+				addTriangle(changedNodeTriangles.computeIfAbsent(node, key -> new int[] { NONE, NONE }), triangle.getKey());
+			}
+		}
+		for (final Map.Entry<Integer, int[]> node : changedNodeTriangles.entrySet()) {
+			if (!nodeIds.isAdded(node.getKey())) {
+				for (int side = 0; side < 2; side++) {
+					final int triangle = triangleIds.getNewId(portalGraph.getNodeTriangle(nodeIds.getOldId(node.getKey()), side));
+					if (triangle != NONE && !changedTriangleNodes.containsKey(triangle)) {
+						addTriangle(node.getValue(), triangle);
+					}
+				}
+			}
+			final int[] triangles = node.getValue();
+			if (triangles[1] != NONE && triangles[1] < triangles[0]) {
+				final int lowest = triangles[1];
+				triangles[1] = triangles[0];
+				triangles[0] = lowest;
+			}
+		}
+		return changedNodeTriangles;
+	}
+
+	private static void addTriangle(int[] triangles, int triangle) {
+		triangles[triangles[0] == NONE ? 0 : 1] = triangle;
+	}
+
+	private static long toKey(int start, int end) {
+		return (long) start << 32 | end & 0xffffffffL;
+	}
+
+	private static long toUndirectedKey(int vertex1, int vertex2) {
+		return toKey(min(vertex1, vertex2), max(vertex1, vertex2));
+	}
+}
@@ -0,0 +1,60 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import java.nio.IntBuffer;
+import java.util.Map;
+import java.util.SortedMap;
+
+/***
+ * Patched copy of ranges of values stored back to back in a single array, with an offset per
+ * range, the layout used by {@link PortalGraph} and {@link TriangleGrid}.<BR>
+ * Only the changed ranges are written one by one. The runs of unchanged ranges between them are
+ * copied in bulk, with their offsets shifted by how much the changed ranges before them grew or
+ * shrank.
+ */
+class PackedRanges {
+	final int[] offsets;
+	final int[] values;
+
+	/***
+	 * @param rangeCount
+	 *            The number of ranges in the copy, ranges past it are dropped
+	 * @param changedRanges
+	 *            The values of each changed range, by range. Every range past the original ones must
+	 *            be given.
+	 */
+	public PackedRanges(IntBuffer originalOffsets, IntBuffer originalValues, int rangeCount, SortedMap<Integer, int[]> changedRanges) {
+		final SortedMap<Integer, int[]> ranges = changedRanges.headMap(rangeCount);
+		int size = 0;
+		int firstUnchanged = 0;
+		for (final Map.Entry<Integer, int[]> changedRange : ranges.entrySet()) {
+			size += getRunSize(originalOffsets, firstUnchanged, changedRange.getKey()) + changedRange.getValue().length;
+			firstUnchanged = changedRange.getKey() + 1;
+		}
+		size += getRunSize(originalOffsets, firstUnchanged, rangeCount);
+		offsets = new int[rangeCount + 1];
+		values = new int[size];
+		firstUnchanged = 0;
+		for (final Map.Entry<Integer, int[]> changedRange : ranges.entrySet()) {
+			final int range = changedRange.getKey();
+			copyRun(originalOffsets, originalValues, firstUnchanged, range);
+			System.arraycopy(changedRange.getValue(), 0, values, offsets[range], changedRange.getValue().length);
+			offsets[range + 1] = offsets[range] + changedRange.getValue().length;
+			firstUnchanged = range + 1;
+		}
+		copyRun(originalOffsets, originalValues, firstUnchanged, rangeCount);
+	}
+
+	private static int getRunSize(IntBuffer originalOffsets, int first, int end) {
+		return end > first ? originalOffsets.get(end) - originalOffsets.get(first) : 0;
+	}
+
+	private void copyRun(IntBuffer originalOffsets, IntBuffer originalValues, int first, int end) {
+		if (end > first) {
+			final int shift = offsets[first] - originalOffsets.get(first);
+			for (int range = first; range < end; range++) {
+				offsets[range + 1] = originalOffsets.get(range + 1) + shift;
+			}
+			NavMeshFile.copyInts(originalValues, originalOffsets.get(first), values, offsets[first], getRunSize(originalOffsets, first, end));
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static net.thomas.kata.geometry.pathfinding.NavMesh.NONE;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/***
+ * Ids of one kind of mesh element, vertices, triangles or portals, before and after a
+ * {@link NavMeshPatch}.<BR>
+ * Kept elements keep their id, and added elements take the ids of removed ones, or new ids after
+ * the last. Where fewer elements are added than removed, the kept elements with the highest ids are
+ * moved into the ids left over, so ids stay dense without renumbering the rest of the mesh. Added
+ * elements are named by the old count plus their index, so both old ids and added elements are
+ * mapped with {@link #getNewId}.
+ */
+class PatchIds {
+	private final int oldCount;
+	private final int count;
+	private final SortedSet<Integer> removedIds;
+	private final Map<Integer, Integer> newIds;
+	private final Map<Integer, Integer> oldIds;
+
+	public PatchIds(int oldCount, Collection<Integer> removedIds, int addedCount) {
+		this.oldCount = oldCount;
+		this.removedIds = new TreeSet<>(removedIds);
+		count = oldCount - this.removedIds.size() + addedCount;
+		newIds = new HashMap<>();
+		oldIds = new HashMap<>();
+		final List<Integer> freeIds = new ArrayList<>(this.removedIds.headSet(count));
+		for (int id = oldCount; id < count; id++) {
+			freeIds.add(id);
+		}
+		int nextFreeId = 0;
+		for (int added = 0; added < addedCount; added++) {
+			assign(oldCount + added, freeIds.get(nextFreeId++));
+		}
+		for (int id = count; id < oldCount; id++) {
+			if (!this.removedIds.contains(id)) {
+				assign(id, freeIds.get(nextFreeId++));
+			}
+		}
+	}
+
+	private void assign(int id, int newId) {
+		newIds.put(id, newId);
+		oldIds.put(newId, id);
+	}
+
+	public int getOldCount() {
+		return oldCount;
+	}
+
+	/***
+	 * @return The number of elements after the patch
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	public Collection<Integer> getRemovedIds() {
+		return removedIds;
+	}
+
+	/***
+	 * @return The id after the patch of an element from before it, or of an added element, or
+	 *         {@link NavMesh#NONE} if the element was removed
+	 */
+	public int getNewId(int id) {
+		if (id < oldCount && removedIds.contains(id)) {
+			return NONE;
+		}
+		return newIds.getOrDefault(id, id);
+	}
+
+	/***
+	 * @return The id before the patch of an element after it, or the old count plus the index of an
+	 *         added element
+	 */
+	public int getOldId(int newId) {
+		return oldIds.getOrDefault(newId, newId);
+	}
+
+	public boolean isAdded(int newId) {
+		return getOldId(newId) >= oldCount;
+	}
+
+	/***
+	 * @return The ids after the patch of the elements that were added or moved
+	 */
+	public Set<Integer> getChangedIds() {
+		return oldIds.keySet();
+	}
+}
@@ -0,0 +1,139 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Bounded cache of portal corridors, keyed by the ids of the triangles a route starts and ends in.<BR>
+ * The cache is split into segments, each a small least recently used map behind its own lock, so
+ * threads looking up different triangle pairs rarely wait on each other. Eviction is least
+ * recently used within each segment.
+ */
+public class PathCache {
+	private static final int MAX_SEGMENT_COUNT = 16;
+
+	private final Segment[] segments;
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+
+	public PathCache(int capacity) {
+		this(capacity, min(MAX_SEGMENT_COUNT, max(capacity / MAX_SEGMENT_COUNT, 1)));
+	}
+
+	PathCache(int capacity, int segmentCount) {
+		segments = new Segment[segmentCount];
+		final int segmentCapacity = max((capacity + segmentCount - 1) / segmentCount, 1);
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+		hits = new LongAdder();
+		misses = new LongAdder();
+		evictions = new LongAdder();
+	}
+
+	/***
+	 * @return The portal node ids along the cached route, or null if the route is not cached
+	 */
+	int[] get(int start, int end) {
+		final long key = toKey(start, end);
+		final int[] corridor = segmentFor(key).get(key);
+		if (corridor != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		return corridor;
+	}
+
+	void put(int start, int end, int[] corridor) {
+		final long key = toKey(start, end);
+		segmentFor(key).put(key, corridor);
+	}
+
+	private long toKey(int start, int end) {
+		return (long) start << 32 | end & 0xffffffffL;
+	}
+
+	private Segment segmentFor(long key) {
+		int hash = Long.hashCode(key);
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		return segments[(hash & Integer.MAX_VALUE) % segments.length];
+	}
+
+	/***
+	 * Drops all cached routes. Counters are kept.
+	 */
+	public void invalidate() {
+		for (final Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	public int size() {
+		int size = 0;
+		for (final Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "PathCache[size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+	private class Segment {
+		private final LinkedHashMap<Long, int[]> routes;
+
+		public Segment(int capacity) {
+			routes = new LinkedHashMap<Long, int[]>(capacity * 4 / 3 + 1, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+					if (size() > capacity) {
+						evictions.increment();
+						return true;
+					} else {
+						return false;
+					}
+				}
+			};
+		}
+
+		public synchronized int[] get(long key) {
+			return routes.get(key);
+		}
+
+		public synchronized void put(long key, int[] corridor) {
+			routes.put(key, corridor);
+		}
+
+		public synchronized void clear() {
+			routes.clear();
+		}
+
+		public synchronized int size() {
+			return routes.size();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Arrays.asList;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.PathQuery;
+
+/***
+ * Answers batches of path queries in parallel on a {@link ForkJoinPool}. The batch is split into
+ * ranges until each range is small enough to run as a single task, and every worker thread reuses
+ * its own {@link SearchScratchSpace}.<BR>
+ * The paths are returned in the same order as the queries, with null for queries that have no
+ * path.
+ */
+public class PathQueryService {
+	private static final int QUERIES_PER_TASK = 16;
+
+	private final PathfindingUtil pathfindingUtil;
+	private final ForkJoinPool pool;
+	private final ThreadLocal<SearchScratchSpace> scratchSpaces;
+
+	public PathQueryService(PathfindingUtil pathfindingUtil) {
+		this(pathfindingUtil, ForkJoinPool.commonPool());
+	}
+
+	public PathQueryService(PathfindingUtil pathfindingUtil, ForkJoinPool pool) {
+		this.pathfindingUtil = pathfindingUtil;
+		this.pool = pool;
+		scratchSpaces = ThreadLocal.withInitial(SearchScratchSpace::new);
+	}
+
+	public Path buildPath(PathQuery query, OptimizationTechnique technique) {
+		return pathfindingUtil.buildPath(query.origin, query.destination, technique, scratchSpaces.get());
+	}
+
+	public List<Path> buildPaths(List<PathQuery> queries, OptimizationTechnique technique) {
+		final PathQuery[] queryArray = queries.toArray(new PathQuery[queries.size()]);
+		final Path[] paths = new Path[queryArray.length];
+		if (queryArray.length > 0) {
+			pool.invoke(new PathQueryTask(queryArray, paths, technique, 0, queryArray.length));
+		}
+		return asList(paths);
+	}
+
+	private class PathQueryTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final PathQuery[] queries;
+		private final Path[] paths;
+		private final OptimizationTechnique technique;
+		private final int from;
+		private final int to;
+
+		public PathQueryTask(PathQuery[] queries, Path[] paths, OptimizationTechnique technique, int from, int to) {
+			this.queries = queries;
+			this.paths = paths;
+			this.technique = technique;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= QUERIES_PER_TASK) {
+				final SearchScratchSpace scratchSpace = scratchSpaces.get();
+				for (int i = from; i < to; i++) {
+					paths[i] = pathfindingUtil.buildPath(queries[i].origin, queries[i].destination, technique, scratchSpace);
+				}
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new PathQueryTask(queries, paths, technique, from, middle), new PathQueryTask(queries, paths, technique, middle, to));
+			}
+		}
+	}
+}
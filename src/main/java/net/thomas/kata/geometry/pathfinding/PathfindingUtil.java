@@ -1,8 +1,7 @@
 package net.thomas.kata.geometry.pathfinding;
 
-import static java.lang.Math.max;
 import static java.lang.Math.min;
-import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableMap;
 
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
@@ -11,15 +10,14 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Set;
-import java.util.Stack;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
-import net.thomas.kata.geometry.pathfinding.PathfindingUtil.TrianglePosition;
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.objects.PolygonVertex;
 import net.thomas.kata.geometry.pathfinding.objects.Path;
 import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
 import net.thomas.kata.geometry.pathfinding.objects.Portal;
@@ -27,35 +25,216 @@ import net.thomas.kata.geometry.pathfinding.objects.PortalGraphNode;
 import net.thomas.kata.geometry.pathfinding.objects.Triangle;
 
 public class PathfindingUtil {
-	private final Map<Triangle, Collection<PortalGraphNode>> triangles2Portals;
-	private final DirtyIntervals intervalsX;
-	private final DirtyIntervals intervalsY;
+	static final int NO_NODE = -1;
+	static final int NO_SHORTCUT = -1;
 
+	private Map<Triangle, Collection<PortalGraphNode>> triangles2Portals;
+	private final int nodesPerRegion;
+	private final int pathCacheSize;
+	private volatile Snapshot snapshot;
+
+	/***
+	 * The portal graph is treated as read only from here on, which makes the instance safe to share
+	 * between threads. Updates to the holes in the mesh build new search structures and swap them in
+	 * as a whole.
+	 */
 	public PathfindingUtil(Map<Triangle, Collection<PortalGraphNode>> triangles2Portals) {
-		this.triangles2Portals = triangles2Portals;
-		intervalsX = buildSegmentTree(triangles2Portals.keySet(), Point2D::getX);
-		intervalsY = buildSegmentTree(triangles2Portals.keySet(), Point2D::getY);
+		this(triangles2Portals, 0, 0);
 	}
 
-	private DirtyIntervals buildSegmentTree(Set<Triangle> keySet, Function<Point2D, Double> fetchFunction) {
-		final List<TrianglePosition> positions = new LinkedList<>();
-		for (final Triangle triangle : keySet) {
-			positions.add(new TrianglePosition(triangle, fetchFunction, true));
-			positions.add(new TrianglePosition(triangle, fetchFunction, false));
-		}
-		positions.sort(null);
-		return new DirtyIntervals(positions);
+	public PathfindingUtil(Map<Triangle, Collection<PortalGraphNode>> triangles2Portals, int nodesPerRegion) {
+		this(triangles2Portals, nodesPerRegion, 0);
+	}
+
+	/***
+	 * @param nodesPerRegion
+	 *            When positive, portal nodes are grouped into regions of at most this size, and
+	 *            searches use precomputed shortcuts through the regions they do not start or end in.
+	 *            Routes are the same as without regions, but long searches expand far fewer nodes.
+	 * @param pathCacheSize
+	 *            When positive, up to this many portal corridors are cached by start and end
+	 *            triangle. On a hit only the smoothing is redone, for the new end points. The cache
+	 *            belongs to this instance, so rebuilding the mesh also starts a new cache.
+	 */
+	public PathfindingUtil(Map<Triangle, Collection<PortalGraphNode>> triangles2Portals, int nodesPerRegion, int pathCacheSize) {
+		this(new PortalGraph(triangles2Portals), nodesPerRegion, pathCacheSize);
+		this.triangles2Portals = unmodifiableMap(triangles2Portals);
+	}
+
+	PathfindingUtil(PortalGraph portalGraph, int nodesPerRegion, int pathCacheSize) {
+		this(portalGraph, new TriangleGrid(portalGraph.getMesh()), nodesPerRegion, pathCacheSize);
+	}
+
+	PathfindingUtil(PortalGraph portalGraph, TriangleGrid triangleGrid, int nodesPerRegion, int pathCacheSize) {
+		this.nodesPerRegion = nodesPerRegion;
+		this.pathCacheSize = pathCacheSize;
+		snapshot = new Snapshot(portalGraph, triangleGrid, nodesPerRegion, pathCacheSize);
 	}
 
 	public Path buildPath(Point2D location, Point2D destination, OptimizationTechnique technique) {
-		return new PathfinderAlgorithm(location, destination).findPath(technique);
+		return buildPath(location, destination, technique, new SearchScratchSpace());
+	}
+
+	/***
+	 * Same as {@link #buildPath(Point2D, Point2D, OptimizationTechnique)}, but reuses the search state
+	 * in scratchSpace. The scratch space must not be used by multiple threads at the same time.
+	 */
+	public Path buildPath(Point2D location, Point2D destination, OptimizationTechnique technique, SearchScratchSpace scratchSpace) {
+		return buildPath(location, destination, 0.0, technique, scratchSpace);
+	}
+
+	public Path buildPath(Point2D location, Point2D destination, double agentRadius, OptimizationTechnique technique) {
+		return buildPath(location, destination, agentRadius, technique, new SearchScratchSpace());
+	}
+
+	/***
+	 * Path for a round agent. Portals and passages through triangles narrower than twice the radius
+	 * are left out of the search, and the waypoints of smoothed paths are kept the radius away from
+	 * the corners they bend around. Searches with a radius do not use the hierarchy or the path
+	 * cache, as both are built for points.
+	 */
+	public Path buildPath(Point2D location, Point2D destination, double agentRadius, OptimizationTechnique technique, SearchScratchSpace scratchSpace) {
+		return new PathfinderAlgorithm(snapshot, location, destination, agentRadius, false, scratchSpace).findPath(technique);
+	}
+
+	public Path buildBidirectionalPath(Point2D location, Point2D destination, OptimizationTechnique technique) {
+		return buildBidirectionalPath(location, destination, technique, new SearchScratchSpace());
+	}
+
+	/***
+	 * Same route as {@link #buildPath(Point2D, Point2D, OptimizationTechnique)}, found by searching
+	 * from both ends at once. Long queries meet in the middle and expand fewer nodes. The hierarchy is
+	 * not used, while the path cache is.
+	 */
+	public Path buildBidirectionalPath(Point2D location, Point2D destination, OptimizationTechnique technique, SearchScratchSpace scratchSpace) {
+		return new PathfinderAlgorithm(snapshot, location, destination, 0.0, true, scratchSpace).findPath(technique);
+	}
+
+	public Path buildPathToNearest(Point2D location, Collection<Point2D> destinations, OptimizationTechnique technique) {
+		return buildPathToNearest(location, destinations, technique, new SearchScratchSpace());
+	}
+
+	/***
+	 * Path to whichever of the destinations has the shortest route, found in a single search. The
+	 * destination of the returned path is the one chosen. Destinations outside the mesh are ignored.
+	 *
+	 * @return The path, or null if no destination can be reached
+	 */
+	public Path buildPathToNearest(Point2D location, Collection<Point2D> destinations, OptimizationTechnique technique, SearchScratchSpace scratchSpace) {
+		return new NearestTargetAlgorithm(snapshot, location, destinations, scratchSpace).findPath(technique);
+	}
+
+	/***
+	 * Flow field towards destination, built on first request and cached until released. Regions are
+	 * filled in on the common {@link ForkJoinPool}. Updates to the holes start a new cache.<BR>
+	 * The field is built outside the cache, so requests for other destinations are never held up by
+	 * it, while requests for the same destination wait for the one building it. The cache has no
+	 * bound: {@link #releaseFlowField} must be called for every destination once no agent is heading
+	 * there any more.
+	 *
+	 * @return The flow field, or null if destination is outside the mesh
+	 */
+	public FlowField getFlowField(Point2D destination) {
+		final Snapshot current = snapshot;
+		final Point2D key = (Point2D) destination.clone();
+		final CompletableFuture<FlowField> building = new CompletableFuture<>();
+		final CompletableFuture<FlowField> cached = current.flowFields.putIfAbsent(key, building);
+		if (cached != null) {
+			return cached.join();
+		}
+		try {
+			final FlowField flowField = new FlowField(current, key, ForkJoinPool.commonPool());
+			if (!flowField.hasDestinationInMesh()) {
+				current.flowFields.remove(key, building);
+				building.complete(null);
+				return null;
+			}
+			building.complete(flowField);
+			return flowField;
+		} catch (final RuntimeException | Error e) {
+			current.flowFields.remove(key, building);
+			building.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/***
+	 * Drops the cached flow field towards destination, once no agent is heading there any more
+	 */
+	public void releaseFlowField(Point2D destination) {
+		snapshot.flowFields.remove(destination);
+	}
+
+	/***
+	 * Adds and removes holes in the mesh, retriangulating only the triangles around them with
+	 * polygonUtil. Clearances and hierarchy regions away from the holes are carried over. Holes to add must be clockwise and lie inside the walkable area without touching
+	 * its walls or each other. Holes to remove must have the same vertices as a hole in the mesh.<BR>
+	 * Searches already running finish on the mesh they started on, and later searches use the updated
+	 * mesh with an empty path cache. Updates are applied one at a time.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If a hole to add is outside the mesh or counterclockwise, or a hole to remove is not
+	 *             in the mesh. The mesh is left unchanged.
+	 */
+	public synchronized void updateHoles(PolygonUtil polygonUtil, Collection<PolygonVertex> addedHoles, Collection<PolygonVertex> removedHoles) {
+		if (!addedHoles.isEmpty() || !removedHoles.isEmpty()) {
+			final Snapshot current = snapshot;
+			final NavMeshPatch patch = new NavMeshPatch(current.portalGraph, current.triangleGrid, polygonUtil, addedHoles, removedHoles);
+			snapshot = new Snapshot(current, patch, nodesPerRegion, pathCacheSize);
+			triangles2Portals = null;
+		}
+	}
+
+	/***
+	 * @return The path cache, or null if caching is disabled
+	 */
+	public PathCache getPathCache() {
+		return snapshot.pathCache;
+	}
+
+	Snapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/***
+	 * The search structures for one version of the mesh
+	 */
+	static class Snapshot {
+		final PortalGraph portalGraph;
+		final TriangleGrid triangleGrid;
+		final HierarchicalPortalGraph hierarchy;
+		final PathCache pathCache;
+		final PortalClearance clearance;
+		final Map<Point2D, CompletableFuture<FlowField>> flowFields;
+
+		Snapshot(PortalGraph portalGraph, TriangleGrid triangleGrid, int nodesPerRegion, int pathCacheSize) {
+			this.portalGraph = portalGraph;
+			this.triangleGrid = triangleGrid;
+			clearance = new PortalClearance(portalGraph);
+			hierarchy = nodesPerRegion > 0 ? new HierarchicalPortalGraph(portalGraph, nodesPerRegion) : null;
+			pathCache = pathCacheSize > 0 ? new PathCache(pathCacheSize) : null;
+			flowFields = new ConcurrentHashMap<>();
+		}
+
+		/***
+		 * The search structures after a patch of the mesh of previous, updated around the patch
+		 */
+		Snapshot(Snapshot previous, NavMeshPatch patch, int nodesPerRegion, int pathCacheSize) {
+			portalGraph = patch.getPortalGraph();
+			triangleGrid = patch.getTriangleGrid();
+			clearance = new PortalClearance(previous.clearance, patch);
+			hierarchy = previous.hierarchy != null ? new HierarchicalPortalGraph(previous.hierarchy, patch, nodesPerRegion) : null;
+			pathCache = pathCacheSize > 0 ? new PathCache(pathCacheSize) : null;
+			flowFields = new ConcurrentHashMap<>();
+		}
 	}
 
 	public static enum OptimizationTechnique {
 		NONE,
 		SINGLE_PASS_SMOOTHING,
 		DUAL_PASS_SMOOTHING,
-		TRIPPLE_PASS_SMOOTHING;
+		TRIPPLE_PASS_SMOOTHING,
+		FUNNEL;
 
 		public OptimizationTechnique getNext() {
 			if (ordinal() < values().length - 1) {
@@ -69,32 +248,37 @@ public class PathfindingUtil {
 	class PathfinderAlgorithm {
 		private final Point2D origin;
 		private final Point2D destination;
-		private final Triangle startTriangle;
-		private final Triangle endTriangle;
-
-		public PathfinderAlgorithm(Point2D origin, Point2D destination) {
+		private final double agentWidth;
+		private final SearchScratchSpace scratchSpace;
+		private final PortalGraph portalGraph;
+		private final HierarchicalPortalGraph hierarchy;
+		private final PathCache pathCache;
+		private final PortalClearance clearance;
+		private final boolean bidirectional;
+		private final int startTriangle;
+		private final int endTriangle;
+		private double bestMeetingCost;
+		private int meetingNode;
+
+		public PathfinderAlgorithm(Snapshot snapshot, Point2D origin, Point2D destination, double agentRadius, boolean bidirectional,
+				SearchScratchSpace scratchSpace) {
 			this.origin = origin;
 			this.destination = destination;
-			startTriangle = lookupTriangleAt(origin);
-			endTriangle = lookupTriangleAt(destination);
-		}
-
-		private Triangle lookupTriangleAt(Point2D point) {
-			final Set<Triangle> trianglesAtX = intervalsX.activeTrianglesAt(point.getX());
-			final Set<Triangle> trianglesAtY = intervalsY.activeTrianglesAt(point.getY());
-			final HashSet<Triangle> candidates = new HashSet<>(trianglesAtX);
-			candidates.retainAll(trianglesAtY);
-			for (final Triangle triangle : candidates) {
-				if (triangle.contains(point)) {
-					return triangle;
-				}
-			}
-			return null;
+			agentWidth = 2 * agentRadius;
+			this.bidirectional = bidirectional;
+			this.scratchSpace = scratchSpace;
+			portalGraph = snapshot.portalGraph;
+			hierarchy = agentRadius > 0 || bidirectional ? null : snapshot.hierarchy;
+			pathCache = agentRadius > 0 ? null : snapshot.pathCache;
+			clearance = snapshot.clearance;
+			final TriangleGrid triangleGrid = snapshot.triangleGrid;
+			startTriangle = triangleGrid.locateTriangleAt(origin.getX(), origin.getY());
+			endTriangle = triangleGrid.locateTriangleAt(destination.getX(), destination.getY());
 		}
 
 		public Path findPath(OptimizationTechnique technique) {
-			if (startTriangle != null && endTriangle != null) {
-				if (startTriangle.equals(endTriangle)) {
+			if (startTriangle != NavMesh.NONE && endTriangle != NavMesh.NONE) {
+				if (startTriangle == endTriangle) {
 					return new Path(origin, destination);
 				} else {
 					return determineBestPath(technique);
@@ -104,71 +288,226 @@ public class PathfindingUtil {
 			}
 		}
 
+		/***
+		 * A* over the indexed portal graph. Costs are Euclidean distances between portal centers, and
+		 * the heuristic is the straight line distance to the destination. For portals bordering the end
+		 * triangle the heuristic is exactly the remaining cost, so the first of those to be settled ends
+		 * the shortest route.
+		 */
 		private Path determineBestPath(OptimizationTechnique technique) {
-			final Set<PortalGraphNode> visitedNodes = new HashSet<>();
-			final PriorityQueue<Step> candidateSteps = prepareInitialCandidates(triangles2Portals.get(startTriangle), visitedNodes);
-			final Collection<PortalGraphNode> endNodes = triangles2Portals.get(endTriangle);
-			final Step finalStep = determinePath(candidateSteps, visitedNodes, endNodes);
-			if (finalStep != null) {
-				final Stack<Step> stepsInOrder = reverseOrderOfSteps(finalStep);
-				return buildPath(stepsInOrder, technique);
+			int[] corridor = pathCache != null ? pathCache.get(startTriangle, endTriangle) : null;
+			if (corridor == null) {
+				corridor = bidirectional ? determineCorridorBidirectionally() : determineCorridor();
+				if (corridor != null && pathCache != null) {
+					pathCache.put(startTriangle, endTriangle, corridor);
+				}
+			}
+			return corridor != null ? buildPath(corridor, technique) : null;
+		}
+
+		private int[] determineCorridor() {
+			scratchSpace.prepare(portalGraph.getNodeCount());
+			for (int entry = portalGraph.getFirstTriangleNodeEntry(endTriangle); entry < portalGraph.getFirstTriangleNodeEntry(endTriangle + 1); entry++) {
+				final int node = portalGraph.getTriangleNode(entry);
+				scratchSpace.markAsGoal(node);
+				markRegionAsLocal(node);
+			}
+			for (int entry = portalGraph.getFirstTriangleNodeEntry(startTriangle); entry < portalGraph.getFirstTriangleNodeEntry(startTriangle + 1); entry++) {
+				final int node = portalGraph.getTriangleNode(entry);
+				markRegionAsLocal(node);
+				if (clearance.getPortalWidth(node) >= agentWidth) {
+					considerNode(node, NO_NODE, portalGraph.distance(node, origin.getX(), origin.getY()));
+				}
+			}
+			final int finalNode = determinePath();
+			if (finalNode != NO_NODE) {
+				return reverseOrderOfNodes(finalNode);
 			} else {
 				return null;
 			}
 		}
 
-		private PriorityQueue<Step> prepareInitialCandidates(final Collection<PortalGraphNode> startNodes, Set<PortalGraphNode> visitedNodes) {
-			final PriorityQueue<Step> candidateSteps = new PriorityQueue<>();
-			for (final PortalGraphNode node : startNodes) {
-				visitedNodes.add(node);
-				candidateSteps.add(buildStep(null, node));
+		private void markRegionAsLocal(int node) {
+			if (hierarchy != null) {
+				scratchSpace.markAsLocalRegion(hierarchy.getRegion(node));
 			}
-			return candidateSteps;
 		}
 
-		private Step determinePath(final PriorityQueue<Step> candidateSteps, Set<PortalGraphNode> visitedNodes, final Collection<PortalGraphNode> endNodes) {
-			Step finalStep = null;
-			while (!candidateSteps.isEmpty()) {
-				final Step currentStep = candidateSteps.poll();
-				if (endNodes.contains(currentStep.node)) {
-					finalStep = currentStep;
-					break;
+		private int determinePath() {
+			final IndexedIntHeap openNodes = scratchSpace.openNodes;
+			while (!openNodes.isEmpty()) {
+				final int node = openNodes.poll();
+				if (scratchSpace.isGoal(node)) {
+					return node;
+				}
+				scratchSpace.markAsClosed(node);
+				scratchSpace.expandedNodeCount++;
+				if (hierarchy == null || scratchSpace.isLocalRegion(hierarchy.getRegion(node))) {
+					expandNeighbours(node, false);
 				} else {
-					for (final PortalGraphNode neighbour : currentStep.node) {
-						if (!visitedNodes.contains(neighbour)) {
-							visitedNodes.add(neighbour);
-							candidateSteps.add(buildStep(currentStep, neighbour));
-						}
+					expandNeighbours(node, true);
+					expandShortcuts(node);
+				}
+			}
+			return NO_NODE;
+		}
+
+		private void expandNeighbours(int node, boolean onlyOtherRegions) {
+			final double distanceTravelled = scratchSpace.gScores[node];
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				final int neighbour = portalGraph.getNeighbour(entry);
+				if (!scratchSpace.isClosed(neighbour) && clearance.getTransitionWidth(entry) >= agentWidth
+						&& (!onlyOtherRegions || hierarchy.getRegion(neighbour) != hierarchy.getRegion(node))) {
+					considerNode(neighbour, node, distanceTravelled + portalGraph.distance(node, neighbour));
+				}
+			}
+		}
+
+		private void expandShortcuts(int node) {
+			final double distanceTravelled = scratchSpace.gScores[node];
+			for (int entry = hierarchy.getFirstShortcutEntry(node); entry < hierarchy.getFirstShortcutEntry(node + 1); entry++) {
+				final int target = hierarchy.getShortcutTarget(entry);
+				if (!scratchSpace.isClosed(target) && considerNode(target, node, distanceTravelled + hierarchy.getShortcutCost(entry))) {
+					scratchSpace.markAsReachedByShortcut(target, entry);
+				}
+			}
+		}
+
+		private boolean considerNode(int node, int previousNode, double distanceTravelled) {
+			if (!scratchSpace.isSeen(node) || distanceTravelled < scratchSpace.gScores[node]) {
+				scratchSpace.markAsSeen(node, distanceTravelled, previousNode);
+				final double remainingDistance = portalGraph.distance(node, destination.getX(), destination.getY());
+				scratchSpace.openNodes.insertOrDecrease(node, distanceTravelled + remainingDistance);
+				return true;
+			} else {
+				return false;
+			}
+		}
+
+		/***
+		 * Walks back from the final node, replacing each shortcut with the nodes along it
+		 */
+		private int[] reverseOrderOfNodes(int finalNode) {
+			int count = 0;
+			for (int node = finalNode; node != NO_NODE; node = scratchSpace.previousNodes[node]) {
+				count += countNodesReaching(node);
+			}
+			final int[] nodesInOrder = new int[count];
+			for (int node = finalNode; node != NO_NODE; node = scratchSpace.previousNodes[node]) {
+				final int shortcut = scratchSpace.shortcutsUsed[node];
+				if (shortcut == NO_SHORTCUT) {
+					nodesInOrder[--count] = node;
+				} else {
+					for (int entry = hierarchy.getFirstRouteEntry(shortcut + 1) - 1; entry >= hierarchy.getFirstRouteEntry(shortcut); entry--) {
+						nodesInOrder[--count] = hierarchy.getRouteNode(entry);
 					}
 				}
 			}
-			return finalStep;
+			return nodesInOrder;
 		}
 
-		private Step buildStep(Step previousStep, PortalGraphNode node) {
-			double distanceTravelled = 0.0;
-			if (previousStep != null) {
-				distanceTravelled += previousStep.squaredDistanceTravelled;
-				distanceTravelled += node.getPortal().getCenter().distanceSq(previousStep.node.getCenterOfPortal());
+		private int countNodesReaching(int node) {
+			final int shortcut = scratchSpace.shortcutsUsed[node];
+			if (shortcut == NO_SHORTCUT) {
+				return 1;
 			} else {
-				distanceTravelled += node.getPortal().getCenter().distanceSq(origin);
+				return hierarchy.getFirstRouteEntry(shortcut + 1) - hierarchy.getFirstRouteEntry(shortcut);
+			}
+		}
+
+		/***
+		 * A* from both ends with balanced potentials: the forward half uses half the difference between
+		 * the distances to the destination and to the origin, and the backward half its negation. The
+		 * half with the lower top priority is expanded next. When a node is reached by both halves,
+		 * their costs add up to a route through it. As the potentials cancel out along any route, the
+		 * search can stop once the two top priorities add up to the best such route.
+		 */
+		private int[] determineCorridorBidirectionally() {
+			final SearchScratchSpace reverseSpace = scratchSpace.getReverseSpace();
+			scratchSpace.prepare(portalGraph.getNodeCount());
+			reverseSpace.prepare(portalGraph.getNodeCount());
+			bestMeetingCost = Double.POSITIVE_INFINITY;
+			meetingNode = NO_NODE;
+			seedHalf(scratchSpace, reverseSpace, startTriangle, origin);
+			seedHalf(reverseSpace, scratchSpace, endTriangle, destination);
+			final IndexedIntHeap forwardNodes = scratchSpace.openNodes;
+			final IndexedIntHeap backwardNodes = reverseSpace.openNodes;
+			while (!forwardNodes.isEmpty() && !backwardNodes.isEmpty()) {
+				final double forwardPriority = forwardNodes.peekPriority();
+				final double backwardPriority = backwardNodes.peekPriority();
+				if (forwardPriority + backwardPriority >= bestMeetingCost) {
+					break;
+				}
+				if (forwardPriority <= backwardPriority) {
+					expandHalf(scratchSpace, reverseSpace);
+				} else {
+					expandHalf(reverseSpace, scratchSpace);
+				}
 			}
-			final double remainingDistance = node.getCenterOfPortal().distanceSq(destination);
-			return new Step(distanceTravelled, remainingDistance, node, previousStep);
+			return meetingNode != NO_NODE ? joinHalves(reverseSpace) : null;
 		}
 
-		private Stack<Step> reverseOrderOfSteps(final Step finalStep) {
-			Step current = finalStep;
-			final Stack<Step> stepsInOrder = new Stack<>();
-			while (current != null) {
-				stepsInOrder.push(current);
-				current = current.previousStep;
+		private void seedHalf(SearchScratchSpace space, SearchScratchSpace otherSpace, int triangle, Point2D start) {
+			for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+				final int node = portalGraph.getTriangleNode(entry);
+				if (clearance.getPortalWidth(node) >= agentWidth) {
+					considerNode(space, otherSpace, node, NO_NODE, portalGraph.distance(node, start.getX(), start.getY()));
+				}
 			}
-			return stepsInOrder;
 		}
 
-		private Path buildPath(final Stack<Step> stepsInOrder, OptimizationTechnique technique) {
-			Path path = buildInitialPath(stepsInOrder);
+		private void expandHalf(SearchScratchSpace space, SearchScratchSpace otherSpace) {
+			final int node = space.openNodes.poll();
+			space.markAsClosed(node);
+			scratchSpace.expandedNodeCount++;
+			final double distanceTravelled = space.gScores[node];
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				final int neighbour = portalGraph.getNeighbour(entry);
+				if (!space.isClosed(neighbour) && clearance.getTransitionWidth(entry) >= agentWidth) {
+					considerNode(space, otherSpace, neighbour, node, distanceTravelled + portalGraph.distance(node, neighbour));
+				}
+			}
+		}
+
+		private void considerNode(SearchScratchSpace space, SearchScratchSpace otherSpace, int node, int previousNode, double distanceTravelled) {
+			if (!space.isSeen(node) || distanceTravelled < space.gScores[node]) {
+				space.markAsSeen(node, distanceTravelled, previousNode);
+				final double potential = (portalGraph.distance(node, destination.getX(), destination.getY())
+						- portalGraph.distance(node, origin.getX(), origin.getY())) / 2;
+				space.openNodes.insertOrDecrease(node, distanceTravelled + (space == scratchSpace ? potential : -potential));
+				if (otherSpace.isSeen(node) && distanceTravelled + otherSpace.gScores[node] < bestMeetingCost) {
+					bestMeetingCost = distanceTravelled + otherSpace.gScores[node];
+					meetingNode = node;
+				}
+			}
+		}
+
+		/***
+		 * The forward half is walked back from the meeting node, and the backward half forward from it
+		 */
+		private int[] joinHalves(SearchScratchSpace reverseSpace) {
+			int forwardCount = 0;
+			for (int node = meetingNode; node != NO_NODE; node = scratchSpace.previousNodes[node]) {
+				forwardCount++;
+			}
+			int count = forwardCount;
+			for (int node = reverseSpace.previousNodes[meetingNode]; node != NO_NODE; node = reverseSpace.previousNodes[node]) {
+				count++;
+			}
+			final int[] nodesInOrder = new int[count];
+			int index = forwardCount;
+			for (int node = meetingNode; node != NO_NODE; node = scratchSpace.previousNodes[node]) {
+				nodesInOrder[--index] = node;
+			}
+			index = forwardCount;
+			for (int node = reverseSpace.previousNodes[meetingNode]; node != NO_NODE; node = reverseSpace.previousNodes[node]) {
+				nodesInOrder[index++] = node;
+			}
+			return nodesInOrder;
+		}
+
+		private Path buildPath(int[] nodesInOrder, OptimizationTechnique technique) {
+			Path path = buildInitialPath(nodesInOrder);
 			switch (technique) {
 				case TRIPPLE_PASS_SMOOTHING:
 					path = optimizePath(path);
@@ -177,6 +516,9 @@ public class PathfindingUtil {
 				case SINGLE_PASS_SMOOTHING:
 					path = optimizePath(path);
 					break;
+				case FUNNEL:
+					path = new FunnelAlgorithm(path, agentWidth / 2).pullString();
+					break;
 				case NONE:
 				default:
 					break;
@@ -184,76 +526,176 @@ public class PathfindingUtil {
 			return path;
 		}
 
-		private Path buildInitialPath(final Stack<Step> stepsInOrder) {
+		private Path buildInitialPath(int[] nodesInOrder) {
 			final Path path = new Path(origin, destination);
-			while (!stepsInOrder.isEmpty()) {
-				final Step step = stepsInOrder.pop();
-				path.addPortal(step.node.getPortal());
+			for (final int node : nodesInOrder) {
+				path.addPortal(portalGraph.getPortal(node));
 			}
 			return path;
 		}
 
+		/***
+		 * Builds a new path rather than moving the existing waypoints, so paths handed out are never
+		 * modified afterwards.
+		 */
 		private Path optimizePath(Path path) {
-			final PathSteps steps = new PathSteps();
-			Point2D twoPointsBack = origin;
-			for (final PortalStep step : path.route) {
-				if (steps.hasAny()) {
-					final PortalStep lastStep = steps.getLastStep();
-					lastStep.waypoint.setLocation(determineBestIntersectionPoint(twoPointsBack, lastStep.portal, step.waypoint));
-					twoPointsBack = lastStep.waypoint;
-				}
-				steps.add(step);
-			}
-			if (steps.hasAny()) {
-				final PortalStep lastStep = steps.getLastStep();
-				lastStep.waypoint.setLocation(determineBestIntersectionPoint(twoPointsBack, lastStep.portal, destination));
+			final Path optimizedPath = new Path(origin, destination);
+			Point2D previousWaypoint = origin;
+			final Iterator<PortalStep> steps = path.route.iterator();
+			PortalStep step = steps.hasNext() ? steps.next() : null;
+			while (step != null) {
+				final PortalStep nextStep = steps.hasNext() ? steps.next() : null;
+				final Point2D nextWaypoint = nextStep != null ? nextStep.waypoint : destination;
+				final Point2D waypoint = determineBestIntersectionPoint(previousWaypoint, step.portal, nextWaypoint);
+				optimizedPath.addPortal(step.portal, waypoint);
+				previousWaypoint = waypoint;
+				step = nextStep;
 			}
-			return path;
+			return optimizedPath;
 		}
 
-		private class PathSteps extends ArrayList<PortalStep> {
-			private static final long serialVersionUID = 1L;
+		private Point2D determineBestIntersectionPoint(Point2D before, Portal portal, Point2D after) {
+			final Line2D.Double currentStretch = new Line2D.Double(before, after);
+			return (agentWidth > 0 ? portal.shrink(agentWidth / 2) : portal).getBestIntersectionPoint(currentStretch);
+		}
+	}
 
-			public boolean hasAny() {
-				return !isEmpty();
+	/***
+	 * A* towards whichever of several destinations is nearest. The portals of each destination triangle
+	 * are goals, connected to an extra sink node by the last stretch to their destination. The
+	 * heuristic is the distance to the nearest destination, which never overestimates, so the sink is
+	 * settled through the destination with the shortest route. The corridor found is then smoothed by
+	 * a {@link PathfinderAlgorithm} for that destination.
+	 */
+	class NearestTargetAlgorithm {
+		private final Snapshot snapshot;
+		private final Point2D origin;
+		private final List<Point2D> destinations;
+		private final SearchScratchSpace scratchSpace;
+		private final PortalGraph portalGraph;
+		private final int startTriangle;
+		private final int sink;
+		private int nearestDestination;
+
+		public NearestTargetAlgorithm(Snapshot snapshot, Point2D origin, Collection<Point2D> destinations, SearchScratchSpace scratchSpace) {
+			this.snapshot = snapshot;
+			this.origin = origin;
+			this.scratchSpace = scratchSpace;
+			portalGraph = snapshot.portalGraph;
+			startTriangle = snapshot.triangleGrid.locateTriangleAt(origin.getX(), origin.getY());
+			this.destinations = new ArrayList<>(destinations.size());
+			for (final Point2D destination : destinations) {
+				if (snapshot.triangleGrid.locateTriangleAt(destination.getX(), destination.getY()) != NavMesh.NONE) {
+					this.destinations.add(destination);
+				}
 			}
+			sink = portalGraph.getNodeCount();
+			nearestDestination = NO_NODE;
+		}
 
-			public PortalStep getLastStep() {
-				return get(size() - 1);
+		public Path findPath(OptimizationTechnique technique) {
+			if (startTriangle == NavMesh.NONE || destinations.isEmpty()) {
+				return null;
+			}
+			scratchSpace.prepare(portalGraph.getNodeCount() + 1);
+			markGoals();
+			for (int entry = portalGraph.getFirstTriangleNodeEntry(startTriangle); entry < portalGraph.getFirstTriangleNodeEntry(startTriangle + 1); entry++) {
+				final int node = portalGraph.getTriangleNode(entry);
+				considerNode(node, NO_NODE, portalGraph.distance(node, origin.getX(), origin.getY()));
+			}
+			if (!determinePath()) {
+				return null;
+			}
+			final Point2D destination = destinations.get(nearestDestination);
+			final int[] corridor = reverseOrderOfNodes(scratchSpace.previousNodes[sink]);
+			if (corridor.length == 0) {
+				return new Path(origin, destination);
 			}
+			return new PathfinderAlgorithm(snapshot, origin, destination, 0.0, false, scratchSpace).buildPath(corridor, technique);
 		}
 
-		private Point2D determineBestIntersectionPoint(Point2D before, Portal portal, Point2D after) {
-			final Line2D.Double currentStretch = new Line2D.Double(before, after);
-			return portal.getBestIntersectionPoint(currentStretch);
+		/***
+		 * A portal between two destination triangles leads to the destination closest to it. A
+		 * destination in the start triangle is reached directly.
+		 */
+		private void markGoals() {
+			for (int target = 0; target < destinations.size(); target++) {
+				final Point2D destination = destinations.get(target);
+				final int triangle = snapshot.triangleGrid.locateTriangleAt(destination.getX(), destination.getY());
+				if (triangle == startTriangle) {
+					considerSink(NO_NODE, origin.distance(destination), target);
+				}
+				for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+					final int node = portalGraph.getTriangleNode(entry);
+					if (!scratchSpace.isGoal(node) || distanceToDestination(node, target) < distanceToDestination(node, scratchSpace.goalTargets[node])) {
+						scratchSpace.markAsGoal(node, target);
+					}
+				}
+			}
 		}
 
-		class Step implements Comparable<Step> {
-			public final double squaredDistanceTravelled;
-			public final double estimatedSquaredDistanceRemaining;
-			public final PortalGraphNode node;
-			public final Step previousStep;
+		private boolean determinePath() {
+			final IndexedIntHeap openNodes = scratchSpace.openNodes;
+			while (!openNodes.isEmpty()) {
+				final int node = openNodes.poll();
+				if (node == sink) {
+					return true;
+				}
+				scratchSpace.markAsClosed(node);
+				scratchSpace.expandedNodeCount++;
+				final double distanceTravelled = scratchSpace.gScores[node];
+				if (scratchSpace.isGoal(node)) {
+					final int target = scratchSpace.goalTargets[node];
+					considerSink(node, distanceTravelled + distanceToDestination(node, target), target);
+				}
+				for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+					final int neighbour = portalGraph.getNeighbour(entry);
+					if (!scratchSpace.isClosed(neighbour)) {
+						considerNode(neighbour, node, distanceTravelled + portalGraph.distance(node, neighbour));
+					}
+				}
+			}
+			return false;
+		}
 
-			public Step(double squaredDistanceTravelled, double estimatedSquaredDistanceRemaining, PortalGraphNode node, Step previousStep) {
-				this.squaredDistanceTravelled = squaredDistanceTravelled;
-				this.estimatedSquaredDistanceRemaining = estimatedSquaredDistanceRemaining;
-				this.node = node;
-				this.previousStep = previousStep;
+		private void considerNode(int node, int previousNode, double distanceTravelled) {
+			if (!scratchSpace.isSeen(node) || distanceTravelled < scratchSpace.gScores[node]) {
+				scratchSpace.markAsSeen(node, distanceTravelled, previousNode);
+				scratchSpace.openNodes.insertOrDecrease(node, distanceTravelled + distanceToNearestDestination(node));
 			}
+		}
 
-			public double getPriceOfRoute() {
-				return squaredDistanceTravelled + estimatedSquaredDistanceRemaining;
+		private void considerSink(int previousNode, double distanceTravelled, int target) {
+			if (!scratchSpace.isSeen(sink) || distanceTravelled < scratchSpace.gScores[sink]) {
+				scratchSpace.markAsSeen(sink, distanceTravelled, previousNode);
+				scratchSpace.openNodes.insertOrDecrease(sink, distanceTravelled);
+				nearestDestination = target;
 			}
+		}
+
+		private double distanceToDestination(int node, int target) {
+			final Point2D destination = destinations.get(target);
+			return portalGraph.distance(node, destination.getX(), destination.getY());
+		}
 
-			@Override
-			public int compareTo(Step other) {
-				return Double.compare(getPriceOfRoute(), other.getPriceOfRoute());
+		private double distanceToNearestDestination(int node) {
+			double distance = Double.POSITIVE_INFINITY;
+			for (int target = 0; target < destinations.size(); target++) {
+				distance = min(distance, distanceToDestination(node, target));
 			}
+			return distance;
+		}
 
-			@Override
-			public String toString() {
-				return getPriceOfRoute() + " to go through " + node;
+		private int[] reverseOrderOfNodes(int finalNode) {
+			int count = 0;
+			for (int node = finalNode; node != NO_NODE; node = scratchSpace.previousNodes[node]) {
+				count++;
+			}
+			final int[] nodesInOrder = new int[count];
+			for (int node = finalNode; node != NO_NODE; node = scratchSpace.previousNodes[node]) {
+				nodesInOrder[--count] = node;
 			}
+			return nodesInOrder;
 		}
 	}
 
@@ -261,101 +703,41 @@ public class PathfindingUtil {
 	 * Only here to be able to render it. Should not be exposed in final version.
 	 */
 	@Deprecated
-	public Map<Triangle, Collection<PortalGraphNode>> getTriangle2PortalNodeMap() {
+	public synchronized Map<Triangle, Collection<PortalGraphNode>> getTriangle2PortalNodeMap() {
+		if (triangles2Portals == null) {
+			triangles2Portals = unmodifiableMap(snapshot.portalGraph.buildTriangles2Portals());
+		}
 		return triangles2Portals;
 	}
 
 	public static class Builder {
 		private final Map<Triangle, Collection<PortalGraphNode>> triangles2Portals;
+		private int nodesPerRegion;
+		private int pathCacheSize;
 
 		public Builder() {
 			triangles2Portals = new HashMap<>();
+			nodesPerRegion = 0;
+			pathCacheSize = 0;
 		}
 
-		public Builder addTriangleWithNodes(Triangle triangle, Collection<PortalGraphNode> nodes) {
-			triangles2Portals.put(triangle, new HashSet<>(nodes));
+		public Builder setPathCacheSize(int pathCacheSize) {
+			this.pathCacheSize = pathCacheSize;
 			return this;
 		}
 
-		public PathfindingUtil build() {
-			return new PathfindingUtil(triangles2Portals);
-		}
-	}
-
-	class TrianglePosition implements Comparable<TrianglePosition> {
-		public final Triangle triangle;
-		public final double position;
-		public final boolean isStartPosition;
-
-		public TrianglePosition(Triangle triangle, Function<Point2D, Double> fetchFunction, boolean isStartPosition) {
-			this.triangle = triangle;
-			this.isStartPosition = isStartPosition;
-			final double value1 = fetchFunction.apply(triangle.getP1());
-			final double value2 = fetchFunction.apply(triangle.getP2());
-			final double value3 = fetchFunction.apply(triangle.getP3());
-			if (isStartPosition) {
-				position = min(value1, min(value2, value3));
-			} else {
-				position = max(value1, max(value2, value3));
-			}
-		}
-
-		@Override
-		public int compareTo(TrianglePosition other) {
-			return Double.compare(position, other.position);
-		}
-
-		@Override
-		public String toString() {
-			return position + ": " + triangle;
+		public Builder setNodesPerRegion(int nodesPerRegion) {
+			this.nodesPerRegion = nodesPerRegion;
+			return this;
 		}
 
-	}
-}
-
-/***
- * Quick and dirty interval "registry" to enable location to triangle lookups. Should be replaced by
- * segment- or interval tree.
- */
-class DirtyIntervals {
-	private final List<ActiveTriangles> intervals;
-
-	public DirtyIntervals(List<TrianglePosition> decisionPoints) {
-		final Set<Triangle> activeTriangles = new HashSet<>();
-		intervals = new LinkedList<>();
-		for (final TrianglePosition decisionPoint : decisionPoints) {
-			if (decisionPoint.isStartPosition) {
-				activeTriangles.add(decisionPoint.triangle);
-				intervals.add(new ActiveTriangles(decisionPoint.position, new HashSet<>(activeTriangles)));
-			} else {
-				activeTriangles.remove(decisionPoint.triangle);
-				intervals.add(new ActiveTriangles(decisionPoint.position, new HashSet<>(activeTriangles)));
-			}
+		public Builder addTriangleWithNodes(Triangle triangle, Collection<PortalGraphNode> nodes) {
+			triangles2Portals.put(triangle, new HashSet<>(nodes));
+			return this;
 		}
-	}
 
-	public Set<Triangle> activeTrianglesAt(double position) {
-		final Iterator<ActiveTriangles> iterator = intervals.iterator();
-		ActiveTriangles correctInterval = null;
-		ActiveTriangles nextInterval = null;
-		do {
-			correctInterval = nextInterval;
-			nextInterval = iterator.next();
-		} while (position >= nextInterval.startPosition && iterator.hasNext());
-		if (correctInterval != null) {
-			return correctInterval.activeTriangles;
-		} else {
-			return emptySet();
+		public PathfindingUtil build() {
+			return new PathfindingUtil(triangles2Portals, nodesPerRegion, pathCacheSize);
 		}
 	}
 }
-
-class ActiveTriangles {
-	public final double startPosition;
-	public final Set<Triangle> activeTriangles;
-
-	public ActiveTriangles(double startPosition, Set<Triangle> activeTriangles) {
-		this.startPosition = startPosition;
-		this.activeTriangles = activeTriangles;
-	}
-}
\ No newline at end of file
@@ -0,0 +1,243 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+import static java.util.Arrays.copyOf;
+import static net.thomas.kata.geometry.pathfinding.NavMesh.NONE;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.TreeSet;
+
+/***
+ * Precomputed widths of the portal graph, used to keep agents with a radius out of passages too
+ * narrow for them.<BR>
+ * The width of a portal is its length, as both its ends are wall vertices. The width of moving from
+ * one portal to a neighbour goes through the triangle they share, and follows Demyen's triangle
+ * width: the two portals meet in a vertex C, and the width is the distance from C to the nearest
+ * wall across the triangle, at most the length of either portal. The nearest wall is searched for
+ * through the triangles beyond, only as far as it can still narrow the width.<BR>
+ * Transition widths are stored per neighbour entry of the {@link PortalGraph}, so the search reads
+ * them from the same entry it reads the neighbour from.<BR>
+ * After a {@link NavMeshPatch} the widths are copied over, and only calculated again near the
+ * patch.
+ */
+class PortalClearance {
+	private final PortalGraph portalGraph;
+	private final NavMesh mesh;
+	private final double[] portalWidths;
+	private final double maxPortalWidth;
+	private final double[] transitionWidths;
+	private final int[] visitedStamps;
+	private int stamp;
+
+	public PortalClearance(PortalGraph portalGraph) {
+		this.portalGraph = portalGraph;
+		mesh = portalGraph.getMesh();
+		portalWidths = new double[portalGraph.getNodeCount()];
+		double maxPortalWidth = 0.0;
+		for (int node = 0; node < portalWidths.length; node++) {
+			portalWidths[node] = distance(mesh.getPortalVertex(node, 0), mesh.getPortalVertex(node, 1));
+			maxPortalWidth = max(maxPortalWidth, portalWidths[node]);
+		}
+		this.maxPortalWidth = maxPortalWidth;
+		transitionWidths = new double[portalGraph.getFirstNeighbourEntry(portalGraph.getNodeCount())];
+		visitedStamps = new int[mesh.getTriangleCount()];
+		stamp = 0;
+		for (int triangle = 0; triangle < mesh.getTriangleCount(); triangle++) {
+			calculateTransitionWidths(triangle);
+		}
+	}
+
+	/***
+	 * Copy of clearance for the graph of a patch. Widths of unchanged nodes are copied over in bulk.
+	 * Transition widths are only calculated again in the triangles of changed nodes, and in the
+	 * triangles whose search could reach the patched area. A search from C never passes a side
+	 * further from C than the shorter of its two portals, so those triangles all overlap the patch
+	 * bounds grown by the widest portal.
+	 */
+	public PortalClearance(PortalClearance clearance, NavMeshPatch patch) {
+		portalGraph = patch.getPortalGraph();
+		mesh = portalGraph.getMesh();
+		portalWidths = copyOf(clearance.portalWidths, portalGraph.getNodeCount());
+		double maxPortalWidth = clearance.maxPortalWidth;
+		for (final int node : patch.getNodeIds().getChangedIds()) {
+			portalWidths[node] = distance(mesh.getPortalVertex(node, 0), mesh.getPortalVertex(node, 1));
+			maxPortalWidth = max(maxPortalWidth, portalWidths[node]);
+		}
+		this.maxPortalWidth = maxPortalWidth;
+		transitionWidths = new double[portalGraph.getFirstNeighbourEntry(portalGraph.getNodeCount())];
+		int firstUnchanged = 0;
+		for (final int node : new TreeSet<>(patch.getChangedNodes())) {
+			copyTransitionWidths(clearance, firstUnchanged, node);
+			firstUnchanged = node + 1;
+		}
+		copyTransitionWidths(clearance, firstUnchanged, portalGraph.getNodeCount());
+		visitedStamps = new int[mesh.getTriangleCount()];
+		stamp = 0;
+		final Set<Integer> triangles = new TreeSet<>();
+		for (final int node : patch.getChangedNodes()) {
+			for (int side = 0; side < 2; side++) {
+				if (portalGraph.getNodeTriangle(node, side) != NONE) {
+					triangles.add(portalGraph.getNodeTriangle(node, side));
+				}
+			}
+		}
+		final Rectangle2D bounds = patch.getBounds();
+		patch.getTriangleGrid().collectTrianglesOverlapping(bounds.getMinX() - maxPortalWidth, bounds.getMinY() - maxPortalWidth, bounds.getMaxX() + maxPortalWidth,
+				bounds.getMaxY() + maxPortalWidth, triangles);
+		for (final int triangle : triangles) {
+			calculateTransitionWidths(triangle);
+		}
+	}
+
+	public double getPortalWidth(int node) {
+		return portalWidths[node];
+	}
+
+	/***
+	 * @return The width of moving from a node to the neighbour at the neighbour entry
+	 */
+	public double getTransitionWidth(int neighbourEntry) {
+		return transitionWidths[neighbourEntry];
+	}
+
+	/***
+	 * Copies the transition widths of the nodes from firstNode up to endNode, whose neighbours did not
+	 * change
+	 */
+	private void copyTransitionWidths(PortalClearance clearance, int firstNode, int endNode) {
+		if (endNode > firstNode) {
+			final int firstEntry = clearance.portalGraph.getFirstNeighbourEntry(firstNode);
+			System.arraycopy(clearance.transitionWidths, firstEntry, transitionWidths, portalGraph.getFirstNeighbourEntry(firstNode),
+					clearance.portalGraph.getFirstNeighbourEntry(endNode) - firstEntry);
+		}
+	}
+
+	private void calculateTransitionWidths(int triangle) {
+		for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+			for (int otherEntry = portalGraph.getFirstTriangleNodeEntry(triangle); otherEntry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); otherEntry++) {
+				if (otherEntry != entry) {
+					final int node = portalGraph.getTriangleNode(entry);
+					final int neighbour = portalGraph.getTriangleNode(otherEntry);
+					setTransitionWidth(node, neighbour, calculateTransitionWidth(triangle, node, neighbour));
+				}
+			}
+		}
+	}
+
+	private void setTransitionWidth(int node, int neighbour, double width) {
+		for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+			if (portalGraph.getNeighbour(entry) == neighbour) {
+				transitionWidths[entry] = width;
+			}
+		}
+	}
+
+	private double calculateTransitionWidth(int triangle, int node, int neighbour) {
+		final int c = sharedVertex(node, neighbour);
+		final int a = otherEnd(node, c);
+		final int b = otherEnd(neighbour, c);
+		final double width = min(distance(c, a), distance(c, b));
+		if (isObtuse(a, c, b) || isObtuse(b, c, a)) {
+			return width;
+		}
+		return searchWidth(c, triangle, a, b, width);
+	}
+
+	/***
+	 * Walks outwards from the side (a, b) of the triangle, through every side that is still closer to
+	 * c than the width found so far. Vertices and walls met on the way narrow the width.
+	 */
+	private double searchWidth(int c, int triangle, int a, int b, double width) {
+		stamp++;
+		visitedStamps[triangle] = stamp;
+		final ArrayDeque<int[]> pendingSides = new ArrayDeque<>();
+		pendingSides.push(new int[] { triangle, a, b });
+		while (!pendingSides.isEmpty()) {
+			final int[] side = pendingSides.pop();
+			final int node = findPortal(side[0], side[1], side[2]);
+			if (node == NONE) {
+				width = min(width, distanceToSegment(c, side[1], side[2]));
+				continue;
+			}
+			final int beyond = portalGraph.getNodeTriangle(node, 0) == side[0] ? portalGraph.getNodeTriangle(node, 1) : portalGraph.getNodeTriangle(node, 0);
+			if (beyond == NONE || visitedStamps[beyond] == stamp) {
+				continue;
+			}
+			visitedStamps[beyond] = stamp;
+			final int d = thirdVertex(beyond, side[1], side[2]);
+			width = min(width, distance(c, d));
+			if (distanceToSegment(c, side[1], d) < width) {
+				pendingSides.push(new int[] { beyond, side[1], d });
+			}
+			if (distanceToSegment(c, d, side[2]) < width) {
+				pendingSides.push(new int[] { beyond, d, side[2] });
+			}
+		}
+		return width;
+	}
+
+	private int findPortal(int triangle, int a, int b) {
+		for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+			final int node = portalGraph.getTriangleNode(entry);
+			final int start = mesh.getPortalVertex(node, 0);
+			final int end = mesh.getPortalVertex(node, 1);
+			if (start == a && end == b || start == b && end == a) {
+				return node;
+			}
+		}
+		return NONE;
+	}
+
+	private int thirdVertex(int triangle, int a, int b) {
+		for (int corner = 0; corner < 3; corner++) {
+			final int vertex = mesh.getTriangleVertex(triangle, corner);
+			if (vertex != a && vertex != b) {
+				return vertex;
+			}
+		}
+		throw new IllegalStateException("Triangle " + triangle + " has no vertex besides " + a + " and " + b);
+	}
+
+	private int sharedVertex(int node, int neighbour) {
+		final int start = mesh.getPortalVertex(node, 0);
+		return start == mesh.getPortalVertex(neighbour, 0) || start == mesh.getPortalVertex(neighbour, 1) ? start : mesh.getPortalVertex(node, 1);
+	}
+
+	private int otherEnd(int node, int vertex) {
+		return mesh.getPortalVertex(node, 0) == vertex ? mesh.getPortalVertex(node, 1) : mesh.getPortalVertex(node, 0);
+	}
+
+	/***
+	 * True if the angle at vertex in the triangle (vertex, c, other) is at least 90 degrees
+	 */
+	private boolean isObtuse(int vertex, int c, int other) {
+		final double x = mesh.getVertexX(vertex);
+		final double y = mesh.getVertexY(vertex);
+		return (mesh.getVertexX(c) - x) * (mesh.getVertexX(other) - x) + (mesh.getVertexY(c) - y) * (mesh.getVertexY(other) - y) <= 0;
+	}
+
+	private double distance(int vertex, int other) {
+		final double dx = mesh.getVertexX(other) - mesh.getVertexX(vertex);
+		final double dy = mesh.getVertexY(other) - mesh.getVertexY(vertex);
+		return sqrt(dx * dx + dy * dy);
+	}
+
+	private double distanceToSegment(int vertex, int start, int end) {
+		final double x = mesh.getVertexX(vertex);
+		final double y = mesh.getVertexY(vertex);
+		final double startX = mesh.getVertexX(start);
+		final double startY = mesh.getVertexY(start);
+		final double dx = mesh.getVertexX(end) - startX;
+		final double dy = mesh.getVertexY(end) - startY;
+		final double lengthSquared = dx * dx + dy * dy;
+		double t = lengthSquared > 0 ? ((x - startX) * dx + (y - startY) * dy) / lengthSquared : 0.0;
+		t = max(0.0, min(1.0, t));
+		final double closestX = startX + t * dx - x;
+		final double closestY = startY + t * dy - y;
+		return sqrt(closestX * closestX + closestY * closestY);
+	}
+}
@@ -0,0 +1,359 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.fill;
+import static net.thomas.kata.geometry.pathfinding.NavMesh.NONE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import net.thomas.kata.geometry.pathfinding.objects.Portal;
+import net.thomas.kata.geometry.pathfinding.objects.PortalGraphNode;
+import net.thomas.kata.geometry.pathfinding.objects.Triangle;
+
+/***
+ * Indexed, read only copy of the portal graph used by the search. Every {@link PortalGraphNode} is
+ * given an integer id, portal centers are stored in two double arrays, and the neighbours of each
+ * node are stored back to back in a single array with an offset per node. The portal nodes of each
+ * triangle are stored the same way, indexed by the triangle ids of the {@link NavMesh}, and the
+ * two triangles of each node are derived from them. A graph loaded by {@link NavMeshFile} reads
+ * its arrays straight from the mapped file, apart from the derived triangles of each node.
+ */
+class PortalGraph {
+	private final NavMesh mesh;
+	private final DoubleBuffer centerXs;
+	private final DoubleBuffer centerYs;
+	private final IntBuffer neighbourOffsets;
+	private final IntBuffer neighbours;
+	private final IntBuffer triangleNodeOffsets;
+	private final IntBuffer triangleNodes;
+	private final int[] nodeTriangles;
+
+	public PortalGraph(Map<Triangle, Collection<PortalGraphNode>> triangles2Portals) {
+		final Map<PortalGraphNode, Integer> ids = new HashMap<>();
+		final List<PortalGraphNode> nodeList = new ArrayList<>();
+		final Triangle[] triangles = triangles2Portals.keySet().toArray(new Triangle[0]);
+		final List<int[]> nodesOfTriangles = new ArrayList<>();
+		final int[] triangleNodeOffsets = new int[triangles.length + 1];
+		for (int triangle = 0; triangle < triangles.length; triangle++) {
+			final Collection<PortalGraphNode> portalNodes = triangles2Portals.get(triangles[triangle]);
+			final int[] nodeIds = new int[portalNodes.size()];
+			int index = 0;
+			for (final PortalGraphNode node : portalNodes) {
+				nodeIds[index++] = identify(node, ids, nodeList);
+			}
+			nodesOfTriangles.add(nodeIds);
+			triangleNodeOffsets[triangle + 1] = triangleNodeOffsets[triangle] + nodeIds.length;
+		}
+		final int[] triangleNodes = new int[triangleNodeOffsets[triangles.length]];
+		for (int triangle = 0; triangle < triangles.length; triangle++) {
+			System.arraycopy(nodesOfTriangles.get(triangle), 0, triangleNodes, triangleNodeOffsets[triangle], nodesOfTriangles.get(triangle).length);
+		}
+		for (int id = 0; id < nodeList.size(); id++) {
+			for (final PortalGraphNode neighbour : nodeList.get(id)) {
+				identify(neighbour, ids, nodeList);
+			}
+		}
+		final PortalGraphNode[] nodes = nodeList.toArray(new PortalGraphNode[nodeList.size()]);
+		final Portal[] portals = new Portal[nodes.length];
+		final double[] centerXs = new double[nodes.length];
+		final double[] centerYs = new double[nodes.length];
+		final int[] neighbourOffsets = new int[nodes.length + 1];
+		for (int id = 0; id < nodes.length; id++) {
+			portals[id] = nodes[id].getPortal();
+			centerXs[id] = (portals[id].x1 + portals[id].x2) / 2;
+			centerYs[id] = (portals[id].y1 + portals[id].y2) / 2;
+			neighbourOffsets[id + 1] = neighbourOffsets[id];
+			for (final PortalGraphNode neighbour : nodes[id]) {
+				if (ids.get(neighbour) != id) {
+					neighbourOffsets[id + 1]++;
+				}
+			}
+		}
+		final int[] neighbours = new int[neighbourOffsets[nodes.length]];
+		for (int id = 0; id < nodes.length; id++) {
+			int entry = neighbourOffsets[id];
+			for (final PortalGraphNode neighbour : nodes[id]) {
+				final int neighbourId = ids.get(neighbour);
+				if (neighbourId != id) {
+					neighbours[entry++] = neighbourId;
+				}
+			}
+		}
+		mesh = new NavMesh(triangles, portals);
+		this.centerXs = DoubleBuffer.wrap(centerXs);
+		this.centerYs = DoubleBuffer.wrap(centerYs);
+		this.neighbourOffsets = IntBuffer.wrap(neighbourOffsets);
+		this.neighbours = IntBuffer.wrap(neighbours);
+		this.triangleNodeOffsets = IntBuffer.wrap(triangleNodeOffsets);
+		this.triangleNodes = IntBuffer.wrap(triangleNodes);
+		nodeTriangles = buildNodeTriangles(nodes.length, triangles.length, this.triangleNodeOffsets, this.triangleNodes);
+	}
+
+	private int identify(PortalGraphNode node, Map<PortalGraphNode, Integer> ids, List<PortalGraphNode> nodeList) {
+		Integer id = ids.get(node);
+		if (id == null) {
+			id = nodeList.size();
+			ids.put(node, id);
+			nodeList.add(node);
+		}
+		return id;
+	}
+
+	/***
+	 * Builds the graph from the portal nodes of each triangle, given as a range of entries per
+	 * triangle. Node ids are portal ids in the mesh, and two nodes are neighbours when they belong to
+	 * the same triangle.
+	 */
+	public PortalGraph(NavMesh mesh, int[] triangleNodeOffsets, int[] triangleNodes) {
+		this.mesh = mesh;
+		this.triangleNodeOffsets = IntBuffer.wrap(triangleNodeOffsets);
+		this.triangleNodes = IntBuffer.wrap(triangleNodes);
+		final int nodeCount = mesh.getPortalCount();
+		final double[] centerXs = new double[nodeCount];
+		final double[] centerYs = new double[nodeCount];
+		for (int node = 0; node < nodeCount; node++) {
+			centerXs[node] = (mesh.getVertexX(mesh.getPortalVertex(node, 0)) + mesh.getVertexX(mesh.getPortalVertex(node, 1))) / 2;
+			centerYs[node] = (mesh.getVertexY(mesh.getPortalVertex(node, 0)) + mesh.getVertexY(mesh.getPortalVertex(node, 1))) / 2;
+		}
+		final int[] neighbourOffsets = new int[nodeCount + 1];
+		for (int triangle = 0; triangle < mesh.getTriangleCount(); triangle++) {
+			final int nodesOfTriangle = triangleNodeOffsets[triangle + 1] - triangleNodeOffsets[triangle];
+			for (int entry = triangleNodeOffsets[triangle]; entry < triangleNodeOffsets[triangle + 1]; entry++) {
+				neighbourOffsets[triangleNodes[entry] + 1] += nodesOfTriangle - 1;
+			}
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			neighbourOffsets[node + 1] += neighbourOffsets[node];
+		}
+		final int[] neighbours = new int[neighbourOffsets[nodeCount]];
+		final int[] nextEntry = new int[nodeCount];
+		System.arraycopy(neighbourOffsets, 0, nextEntry, 0, nodeCount);
+		for (int triangle = 0; triangle < mesh.getTriangleCount(); triangle++) {
+			for (int entry = triangleNodeOffsets[triangle]; entry < triangleNodeOffsets[triangle + 1]; entry++) {
+				for (int otherEntry = triangleNodeOffsets[triangle]; otherEntry < triangleNodeOffsets[triangle + 1]; otherEntry++) {
+					if (otherEntry != entry) {
+						neighbours[nextEntry[triangleNodes[entry]]++] = triangleNodes[otherEntry];
+					}
+				}
+			}
+		}
+		this.centerXs = DoubleBuffer.wrap(centerXs);
+		this.centerYs = DoubleBuffer.wrap(centerYs);
+		this.neighbourOffsets = IntBuffer.wrap(neighbourOffsets);
+		this.neighbours = IntBuffer.wrap(neighbours);
+		nodeTriangles = buildNodeTriangles(nodeCount, mesh.getTriangleCount(), this.triangleNodeOffsets, this.triangleNodes);
+	}
+
+	/***
+	 * Copy of graph for a patched mesh, in which triangles and nodes keep their ids. Unchanged
+	 * triangles and nodes keep their entries, which are copied in bulk, and the neighbours of each
+	 * changed node are found again from its triangles.
+	 *
+	 * @param changedTriangleNodes
+	 *            The portal nodes of every triangle that was added or moved, or lost or gained a node
+	 * @param changedNodeTriangles
+	 *            The two triangles, lowest first, of every node in a changed triangle
+	 */
+	public PortalGraph(PortalGraph graph, NavMesh mesh, SortedMap<Integer, int[]> changedTriangleNodes, SortedMap<Integer, int[]> changedNodeTriangles) {
+		this.mesh = mesh;
+		final int nodeCount = mesh.getPortalCount();
+		final PackedRanges triangleNodes = new PackedRanges(graph.triangleNodeOffsets, graph.triangleNodes, mesh.getTriangleCount(), changedTriangleNodes);
+		final double[] centerXs = new double[nodeCount];
+		final double[] centerYs = new double[nodeCount];
+		NavMeshFile.copyDoubles(graph.centerXs, 0, centerXs, 0, min(nodeCount, graph.getNodeCount()));
+		NavMeshFile.copyDoubles(graph.centerYs, 0, centerYs, 0, min(nodeCount, graph.getNodeCount()));
+		nodeTriangles = copyOf(graph.nodeTriangles, nodeCount * 2);
+		final SortedMap<Integer, int[]> changedNeighbours = new TreeMap<>();
+		for (final Map.Entry<Integer, int[]> changedNode : changedNodeTriangles.entrySet()) {
+			final int node = changedNode.getKey();
+			centerXs[node] = (mesh.getVertexX(mesh.getPortalVertex(node, 0)) + mesh.getVertexX(mesh.getPortalVertex(node, 1))) / 2;
+			centerYs[node] = (mesh.getVertexY(mesh.getPortalVertex(node, 0)) + mesh.getVertexY(mesh.getPortalVertex(node, 1))) / 2;
+			nodeTriangles[node * 2] = changedNode.getValue()[0];
+			nodeTriangles[node * 2 + 1] = changedNode.getValue()[1];
+			changedNeighbours.put(node, findNeighbours(node, triangleNodes));
+		}
+		final PackedRanges neighbours = new PackedRanges(graph.neighbourOffsets, graph.neighbours, nodeCount, changedNeighbours);
+		this.centerXs = DoubleBuffer.wrap(centerXs);
+		this.centerYs = DoubleBuffer.wrap(centerYs);
+		this.neighbourOffsets = IntBuffer.wrap(neighbours.offsets);
+		this.neighbours = IntBuffer.wrap(neighbours.values);
+		this.triangleNodeOffsets = IntBuffer.wrap(triangleNodes.offsets);
+		this.triangleNodes = IntBuffer.wrap(triangleNodes.values);
+	}
+
+	/***
+	 * @return The other nodes of the triangles of node, in the order the full build lists them
+	 */
+	private int[] findNeighbours(int node, PackedRanges triangleNodes) {
+		int count = 0;
+		final int[] neighbours = new int[4];
+		for (int side = 0; side < 2; side++) {
+			final int triangle = nodeTriangles[node * 2 + side];
+			if (triangle != NONE) {
+				for (int entry = triangleNodes.offsets[triangle]; entry < triangleNodes.offsets[triangle + 1]; entry++) {
+					if (triangleNodes.values[entry] != node) {
+						neighbours[count++] = triangleNodes.values[entry];
+					}
+				}
+			}
+		}
+		return copyOf(neighbours, count);
+	}
+
+	private PortalGraph(NavMesh mesh, DoubleBuffer centerXs, DoubleBuffer centerYs, IntBuffer neighbourOffsets, IntBuffer neighbours, IntBuffer triangleNodeOffsets,
+			IntBuffer triangleNodes, int[] nodeTriangles) {
+		this.mesh = mesh;
+		this.centerXs = centerXs;
+		this.centerYs = centerYs;
+		this.neighbourOffsets = neighbourOffsets;
+		this.neighbours = neighbours;
+		this.triangleNodeOffsets = triangleNodeOffsets;
+		this.triangleNodes = triangleNodes;
+		this.nodeTriangles = nodeTriangles;
+	}
+
+	/***
+	 * @return The two triangles sharing the portal of each node, two entries per node, lowest first
+	 */
+	private static int[] buildNodeTriangles(int nodeCount, int triangleCount, IntBuffer triangleNodeOffsets, IntBuffer triangleNodes) {
+		final int[] nodeTriangles = new int[nodeCount * 2];
+		fill(nodeTriangles, NONE);
+		for (int triangle = 0; triangle < triangleCount; triangle++) {
+			for (int entry = triangleNodeOffsets.get(triangle); entry < triangleNodeOffsets.get(triangle + 1); entry++) {
+				final int node = triangleNodes.get(entry);
+				if (nodeTriangles[node * 2 + 1] != NONE) {
+					throw new IllegalArgumentException("Portal node " + node + " is listed by more than two triangles");
+				}
+				nodeTriangles[nodeTriangles[node * 2] == NONE ? node * 2 : node * 2 + 1] = triangle;
+			}
+		}
+		return nodeTriangles;
+	}
+
+	public static PortalGraph read(NavMesh mesh, ByteBuffer buffer) throws IOException {
+		final int nodeCount = mesh.getPortalCount();
+		NavMeshFile.requireRemaining(buffer, 2 * 4);
+		final int neighbourCount = buffer.getInt();
+		final int triangleNodeCount = buffer.getInt();
+		final DoubleBuffer centerXs = NavMeshFile.readDoubles(buffer, nodeCount);
+		final DoubleBuffer centerYs = NavMeshFile.readDoubles(buffer, nodeCount);
+		final IntBuffer neighbourOffsets = NavMeshFile.readInts(buffer, nodeCount + 1L);
+		final IntBuffer neighbours = NavMeshFile.readInts(buffer, neighbourCount);
+		final IntBuffer triangleNodeOffsets = NavMeshFile.readInts(buffer, mesh.getTriangleCount() + 1L);
+		final IntBuffer triangleNodes = NavMeshFile.readInts(buffer, triangleNodeCount);
+		try {
+			final int[] nodeTriangles = buildNodeTriangles(nodeCount, mesh.getTriangleCount(), triangleNodeOffsets, triangleNodes);
+			return new PortalGraph(mesh, centerXs, centerYs, neighbourOffsets, neighbours, triangleNodeOffsets, triangleNodes, nodeTriangles);
+		} catch (final IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("Navmesh file is truncated or corrupt: " + e.getMessage(), e);
+		}
+	}
+
+	public void write(ByteBuffer buffer) {
+		buffer.putInt(neighbours.capacity());
+		buffer.putInt(triangleNodes.capacity());
+		NavMeshFile.writeDoubles(buffer, centerXs);
+		NavMeshFile.writeDoubles(buffer, centerYs);
+		NavMeshFile.writeInts(buffer, neighbourOffsets);
+		NavMeshFile.writeInts(buffer, neighbours);
+		NavMeshFile.writeInts(buffer, triangleNodeOffsets);
+		NavMeshFile.writeInts(buffer, triangleNodes);
+	}
+
+	public long getByteSize() {
+		return 2 * 4L + centerXs.capacity() * 16L
+				+ (neighbourOffsets.capacity() + neighbours.capacity() + triangleNodeOffsets.capacity() + triangleNodes.capacity()) * 4L;
+	}
+
+	public NavMesh getMesh() {
+		return mesh;
+	}
+
+	public int getNodeCount() {
+		return centerXs.capacity();
+	}
+
+	public Portal getPortal(int node) {
+		return mesh.getPortal(node);
+	}
+
+	/***
+	 * Portal nodes of a triangle are iterated as a range of entries:<BR>
+	 * for (int entry = getFirstTriangleNodeEntry(triangle); entry < getFirstTriangleNodeEntry(triangle +
+	 * 1); entry++)
+	 */
+	public int getFirstTriangleNodeEntry(int triangle) {
+		return triangleNodeOffsets.get(triangle);
+	}
+
+	public int getTriangleNode(int entry) {
+		return triangleNodes.get(entry);
+	}
+
+	/***
+	 * @return One of the two triangles sharing the portal of the node, the lowest for side 0, or
+	 *         {@link NavMesh#NONE}
+	 */
+	public int getNodeTriangle(int node, int side) {
+		return nodeTriangles[node * 2 + side];
+	}
+
+	/***
+	 * Neighbours are iterated as a range of entries:<BR>
+	 * for (int entry = getFirstNeighbourEntry(node); entry < getFirstNeighbourEntry(node + 1); entry++)
+	 */
+	public int getFirstNeighbourEntry(int node) {
+		return neighbourOffsets.get(node);
+	}
+
+	public int getNeighbour(int entry) {
+		return neighbours.get(entry);
+	}
+
+	public double distance(int node, int otherNode) {
+		return distance(node, centerXs.get(otherNode), centerYs.get(otherNode));
+	}
+
+	public double distance(int node, double x, double y) {
+		final double dx = centerXs.get(node) - x;
+		final double dy = centerYs.get(node) - y;
+		return sqrt(dx * dx + dy * dy);
+	}
+
+	/***
+	 * Rebuilds the object form of the graph, with one {@link PortalGraphNode} per node
+	 */
+	public Map<Triangle, Collection<PortalGraphNode>> buildTriangles2Portals() {
+		final PortalGraphNode[] nodes = new PortalGraphNode[getNodeCount()];
+		for (int node = 0; node < nodes.length; node++) {
+			nodes[node] = new PortalGraphNode(getPortal(node));
+		}
+		for (int node = 0; node < nodes.length; node++) {
+			for (int entry = getFirstNeighbourEntry(node); entry < getFirstNeighbourEntry(node + 1); entry++) {
+				nodes[node].addNeighbour(nodes[getNeighbour(entry)]);
+			}
+		}
+		final Map<Triangle, Collection<PortalGraphNode>> triangles2Portals = new HashMap<>();
+		for (int triangle = 0; triangle < mesh.getTriangleCount(); triangle++) {
+			final Collection<PortalGraphNode> nodesOfTriangle = new HashSet<>();
+			for (int entry = getFirstTriangleNodeEntry(triangle); entry < getFirstTriangleNodeEntry(triangle + 1); entry++) {
+				nodesOfTriangle.add(nodes[getTriangleNode(entry)]);
+			}
+			triangles2Portals.put(mesh.getTriangle(triangle), nodesOfTriangle);
+		}
+		return triangles2Portals;
+	}
+}
@@ -0,0 +1,121 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Arrays.fill;
+
+/***
+ * Reusable search state for {@link PathfindingUtil}. Keeping one of these per thread avoids
+ * allocating search state for every query.<BR>
+ * Node state is stamped with the generation of the search that wrote it, so starting a new search
+ * only requires bumping the generation instead of clearing the arrays.<BR>
+ * Not thread safe: each instance must only be used by one search at a time.
+ */
+public class SearchScratchSpace {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	final IndexedIntHeap openNodes;
+	double[] gScores;
+	int[] previousNodes;
+	int[] shortcutsUsed;
+	int[] goalTargets;
+	long expandedNodeCount;
+	private int[] seenGenerations;
+	private int[] closedGenerations;
+	private int[] goalGenerations;
+	private int[] localRegionGenerations;
+	private int generation;
+	private SearchScratchSpace reverseSpace;
+
+	public SearchScratchSpace() {
+		openNodes = new IndexedIntHeap(DEFAULT_CAPACITY);
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	private void allocate(int capacity) {
+		gScores = new double[capacity];
+		previousNodes = new int[capacity];
+		shortcutsUsed = new int[capacity];
+		goalTargets = new int[capacity];
+		seenGenerations = new int[capacity];
+		closedGenerations = new int[capacity];
+		goalGenerations = new int[capacity];
+		localRegionGenerations = new int[capacity];
+		generation = 0;
+	}
+
+	void prepare(int nodeCount) {
+		if (nodeCount > gScores.length) {
+			allocate(nodeCount);
+			openNodes.ensureCapacity(nodeCount);
+		}
+		openNodes.clear();
+		if (generation == Integer.MAX_VALUE) {
+			fill(seenGenerations, 0);
+			fill(closedGenerations, 0);
+			fill(goalGenerations, 0);
+			fill(localRegionGenerations, 0);
+			generation = 0;
+		}
+		generation++;
+	}
+
+	boolean isSeen(int node) {
+		return seenGenerations[node] == generation;
+	}
+
+	void markAsSeen(int node, double gScore, int previousNode) {
+		seenGenerations[node] = generation;
+		gScores[node] = gScore;
+		previousNodes[node] = previousNode;
+		shortcutsUsed[node] = PathfindingUtil.NO_SHORTCUT;
+	}
+
+	void markAsReachedByShortcut(int node, int shortcut) {
+		shortcutsUsed[node] = shortcut;
+	}
+
+	boolean isClosed(int node) {
+		return closedGenerations[node] == generation;
+	}
+
+	void markAsClosed(int node) {
+		closedGenerations[node] = generation;
+	}
+
+	boolean isGoal(int node) {
+		return goalGenerations[node] == generation;
+	}
+
+	void markAsGoal(int node) {
+		goalGenerations[node] = generation;
+	}
+
+	/***
+	 * Marks the node as a goal leading to the destination with the given index
+	 */
+	void markAsGoal(int node, int target) {
+		goalGenerations[node] = generation;
+		goalTargets[node] = target;
+	}
+
+	/***
+	 * Regions are numbered from 0, and there are never more regions than nodes
+	 */
+	boolean isLocalRegion(int region) {
+		return localRegionGenerations[region] == generation;
+	}
+
+	void markAsLocalRegion(int region) {
+		localRegionGenerations[region] = generation;
+	}
+
+	/***
+	 * @return A second scratch space for the backward half of bidirectional searches, created on first
+	 *         use
+	 */
+	SearchScratchSpace getReverseSpace() {
+		if (reverseSpace == null) {
+			reverseSpace = new SearchScratchSpace();
+		}
+		return reverseSpace;
+	}
+}
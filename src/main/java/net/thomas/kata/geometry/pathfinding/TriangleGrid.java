@@ -0,0 +1,301 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+import static net.thomas.kata.geometry.pathfinding.NavMesh.NONE;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import net.thomas.kata.geometry.pathfinding.objects.Portal;
+import net.thomas.kata.geometry.pathfinding.objects.Triangle;
+
+/***
+ * Uniform grid over the bounding box of all triangles, used for location to triangle lookups. The
+ * grid has roughly one cell per triangle, and each cell lists the triangles whose bounding box
+ * overlaps it. The lists are stored back to back in a single array, with an offset per cell, so
+ * lookups only touch arrays and do not allocate. Long thin triangles can cover many cells, so the
+ * grid is made coarser until the total number of entries stays within a small multiple of the
+ * triangle count. A grid loaded by {@link NavMeshFile} reads its arrays straight from the mapped
+ * file.
+ */
+class TriangleGrid {
+	private static final int MAX_ENTRIES_PER_TRIANGLE = 16;
+
+	private final NavMesh mesh;
+	private final double minX;
+	private final double minY;
+	private final double cellWidth;
+	private final double cellHeight;
+	private final int columns;
+	private final int rows;
+	private final IntBuffer cellOffsets;
+	private final IntBuffer cellContents;
+
+	public TriangleGrid(Collection<Triangle> triangles) {
+		this(new NavMesh(triangles.toArray(new Triangle[triangles.size()]), new Portal[0]));
+	}
+
+	public TriangleGrid(NavMesh mesh) {
+		this.mesh = mesh;
+		final int triangleCount = mesh.getTriangleCount();
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int triangle = 0; triangle < triangleCount; triangle++) {
+			minX = min(minX, getMinX(triangle));
+			minY = min(minY, getMinY(triangle));
+			maxX = max(maxX, getMaxX(triangle));
+			maxY = max(maxY, getMaxY(triangle));
+		}
+		if (triangleCount == 0) {
+			minX = minY = maxX = maxY = 0.0;
+		}
+		final double width = max(maxX - minX, Double.MIN_NORMAL);
+		final double height = max(maxY - minY, Double.MIN_NORMAL);
+		final double cellSize = sqrt(width * height / max(triangleCount, 1));
+		this.minX = minX;
+		this.minY = minY;
+		int columns = (int) max(1, min(ceil(width / cellSize), triangleCount));
+		int rows = (int) max(1, min(ceil(height / cellSize), triangleCount));
+		final long maxEntries = (long) MAX_ENTRIES_PER_TRIANGLE * triangleCount;
+		while ((columns > 1 || rows > 1) && estimateCellEntries(width / columns, height / rows, columns, rows) > maxEntries) {
+			columns = (columns + 1) / 2;
+			rows = (rows + 1) / 2;
+		}
+		this.columns = columns;
+		this.rows = rows;
+		cellWidth = width / columns;
+		cellHeight = height / rows;
+		final int[] cellOffsets = new int[columns * rows + 1];
+		final int[] cellContents = new int[countCellEntries(cellOffsets)];
+		fillCells(cellOffsets, cellContents);
+		this.cellOffsets = IntBuffer.wrap(cellOffsets);
+		this.cellContents = IntBuffer.wrap(cellContents);
+	}
+
+	private TriangleGrid(NavMesh mesh, double minX, double minY, double cellWidth, double cellHeight, int columns, int rows, IntBuffer cellOffsets,
+			IntBuffer cellContents) {
+		this.mesh = mesh;
+		this.minX = minX;
+		this.minY = minY;
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+		this.columns = columns;
+		this.rows = rows;
+		this.cellOffsets = cellOffsets;
+		this.cellContents = cellContents;
+	}
+
+	/***
+	 * Copy of grid for a patched mesh, keeping the cells of grid. Only the cells overlapped by a
+	 * removed, added or moved triangle are listed again: removed triangles are dropped, moved ones
+	 * renumbered and added ones appended. All other cells are copied in bulk. Added triangles must lie
+	 * within the bounds of the original grid.
+	 */
+	public TriangleGrid(TriangleGrid grid, NavMesh mesh, PatchIds triangleIds) {
+		this.mesh = mesh;
+		minX = grid.minX;
+		minY = grid.minY;
+		cellWidth = grid.cellWidth;
+		cellHeight = grid.cellHeight;
+		columns = grid.columns;
+		rows = grid.rows;
+		final Set<Integer> changedCells = new HashSet<>();
+		for (final int triangle : triangleIds.getRemovedIds()) {
+			grid.collectCells(triangle, changedCells);
+		}
+		for (final int triangle : triangleIds.getChangedIds()) {
+			collectCells(triangle, changedCells);
+		}
+		final SortedMap<Integer, List<Integer>> cells = new TreeMap<>();
+		for (final int cell : changedCells) {
+			final List<Integer> triangles = new ArrayList<>();
+			for (int entry = grid.cellOffsets.get(cell); entry < grid.cellOffsets.get(cell + 1); entry++) {
+				final int triangle = triangleIds.getNewId(grid.cellContents.get(entry));
+				if (triangle != NONE) {
+					triangles.add(triangle);
+				}
+			}
+			cells.put(cell, triangles);
+		}
+		for (final int triangle : new TreeSet<>(triangleIds.getChangedIds())) {
+			if (triangleIds.isAdded(triangle)) {
+				final List<Integer> cellsOfTriangle = new ArrayList<>();
+				collectCells(triangle, cellsOfTriangle);
+				for (final int cell : cellsOfTriangle) {
+					cells.get(cell).add(triangle);
+				}
+			}
+		}
+		final SortedMap<Integer, int[]> changedCellContents = new TreeMap<>();
+		for (final Map.Entry<Integer, List<Integer>> cell : cells.entrySet()) {
+			final int[] triangles = new int[cell.getValue().size()];
+			int index = 0;
+			for (final int triangle : cell.getValue()) {
+				triangles[index++] = triangle;
+			}
+			changedCellContents.put(cell.getKey(), triangles);
+		}
+		final PackedRanges cellContents = new PackedRanges(grid.cellOffsets, grid.cellContents, columns * rows, changedCellContents);
+		this.cellOffsets = IntBuffer.wrap(cellContents.offsets);
+		this.cellContents = IntBuffer.wrap(cellContents.values);
+	}
+
+	private void collectCells(int triangle, Collection<Integer> cells) {
+		for (int row = row(getMinY(triangle)); row <= row(getMaxY(triangle)); row++) {
+			for (int column = column(getMinX(triangle)); column <= column(getMaxX(triangle)); column++) {
+				cells.add(row * columns + column);
+			}
+		}
+	}
+
+	public static TriangleGrid read(NavMesh mesh, ByteBuffer buffer) throws IOException {
+		NavMeshFile.requireRemaining(buffer, 4 * 8 + 3 * 4);
+		final double minX = buffer.getDouble();
+		final double minY = buffer.getDouble();
+		final double cellWidth = buffer.getDouble();
+		final double cellHeight = buffer.getDouble();
+		final int columns = buffer.getInt();
+		final int rows = buffer.getInt();
+		final int entryCount = buffer.getInt();
+		if (columns < 0 || rows < 0) {
+			throw new IOException("Navmesh file has a triangle grid of " + columns + " by " + rows + " cells");
+		}
+		final IntBuffer cellOffsets = NavMeshFile.readInts(buffer, (long) columns * rows + 1);
+		final IntBuffer cellContents = NavMeshFile.readInts(buffer, entryCount);
+		return new TriangleGrid(mesh, minX, minY, cellWidth, cellHeight, columns, rows, cellOffsets, cellContents);
+	}
+
+	public void write(ByteBuffer buffer) {
+		buffer.putDouble(minX);
+		buffer.putDouble(minY);
+		buffer.putDouble(cellWidth);
+		buffer.putDouble(cellHeight);
+		buffer.putInt(columns);
+		buffer.putInt(rows);
+		buffer.putInt(cellContents.capacity());
+		NavMeshFile.writeInts(buffer, cellOffsets);
+		NavMeshFile.writeInts(buffer, cellContents);
+	}
+
+	public long getByteSize() {
+		return 4 * 8L + 3 * 4L + (cellOffsets.capacity() + cellContents.capacity()) * 4L;
+	}
+
+	private long estimateCellEntries(double cellWidth, double cellHeight, int columns, int rows) {
+		long entries = 0;
+		for (int triangle = 0; triangle < mesh.getTriangleCount(); triangle++) {
+			final long coveredColumns = cell(getMaxX(triangle), minX, cellWidth, columns) - cell(getMinX(triangle), minX, cellWidth, columns) + 1;
+			final long coveredRows = cell(getMaxY(triangle), minY, cellHeight, rows) - cell(getMinY(triangle), minY, cellHeight, rows) + 1;
+			entries += coveredColumns * coveredRows;
+		}
+		return entries;
+	}
+
+	private int countCellEntries(int[] cellOffsets) {
+		for (int triangle = 0; triangle < mesh.getTriangleCount(); triangle++) {
+			for (int row = row(getMinY(triangle)); row <= row(getMaxY(triangle)); row++) {
+				for (int column = column(getMinX(triangle)); column <= column(getMaxX(triangle)); column++) {
+					cellOffsets[row * columns + column + 1]++;
+				}
+			}
+		}
+		for (int cell = 1; cell < cellOffsets.length; cell++) {
+			cellOffsets[cell] += cellOffsets[cell - 1];
+		}
+		return cellOffsets[cellOffsets.length - 1];
+	}
+
+	private void fillCells(int[] cellOffsets, int[] cellContents) {
+		final int[] nextEntry = new int[columns * rows];
+		System.arraycopy(cellOffsets, 0, nextEntry, 0, nextEntry.length);
+		for (int triangle = 0; triangle < mesh.getTriangleCount(); triangle++) {
+			for (int row = row(getMinY(triangle)); row <= row(getMaxY(triangle)); row++) {
+				for (int column = column(getMinX(triangle)); column <= column(getMaxX(triangle)); column++) {
+					cellContents[nextEntry[row * columns + column]++] = triangle;
+				}
+			}
+		}
+	}
+
+	public Triangle lookupTriangleAt(Point2D point) {
+		final int triangle = locateTriangleAt(point.getX(), point.getY());
+		return triangle != NONE ? mesh.getTriangle(triangle) : null;
+	}
+
+	/***
+	 * @return The id of the triangle containing the location, or {@link NavMesh#NONE}
+	 */
+	public int locateTriangleAt(double x, double y) {
+		if (x < minX || y < minY || x > minX + cellWidth * columns || y > minY + cellHeight * rows) {
+			return NONE;
+		}
+		final int cell = row(y) * columns + column(x);
+		for (int entry = cellOffsets.get(cell); entry < cellOffsets.get(cell + 1); entry++) {
+			if (mesh.contains(cellContents.get(entry), x, y)) {
+				return cellContents.get(entry);
+			}
+		}
+		return NONE;
+	}
+
+	/***
+	 * Adds every triangle whose bounding box overlaps the box given to triangles
+	 */
+	public void collectTrianglesOverlapping(double minX, double minY, double maxX, double maxY, Collection<Integer> triangles) {
+		for (int row = row(minY); row <= row(maxY); row++) {
+			for (int column = column(minX); column <= column(maxX); column++) {
+				final int cell = row * columns + column;
+				for (int entry = cellOffsets.get(cell); entry < cellOffsets.get(cell + 1); entry++) {
+					final int triangle = cellContents.get(entry);
+					if (getMinX(triangle) <= maxX && getMaxX(triangle) >= minX && getMinY(triangle) <= maxY && getMaxY(triangle) >= minY) {
+						triangles.add(triangle);
+					}
+				}
+			}
+		}
+	}
+
+	private double getMinX(int triangle) {
+		return min(mesh.getTriangleX(triangle, 0), min(mesh.getTriangleX(triangle, 1), mesh.getTriangleX(triangle, 2)));
+	}
+
+	private double getMinY(int triangle) {
+		return min(mesh.getTriangleY(triangle, 0), min(mesh.getTriangleY(triangle, 1), mesh.getTriangleY(triangle, 2)));
+	}
+
+	private double getMaxX(int triangle) {
+		return max(mesh.getTriangleX(triangle, 0), max(mesh.getTriangleX(triangle, 1), mesh.getTriangleX(triangle, 2)));
+	}
+
+	private double getMaxY(int triangle) {
+		return max(mesh.getTriangleY(triangle, 0), max(mesh.getTriangleY(triangle, 1), mesh.getTriangleY(triangle, 2)));
+	}
+
+	private int column(double x) {
+		return cell(x, minX, cellWidth, columns);
+	}
+
+	private int row(double y) {
+		return cell(y, minY, cellHeight, rows);
+	}
+
+	private static int cell(double value, double min, double cellSize, int cellCount) {
+		return min(cellCount - 1, max(0, (int) ((value - min) / cellSize)));
+	}
+}
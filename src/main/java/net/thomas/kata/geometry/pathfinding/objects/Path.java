@@ -19,6 +19,10 @@ public class Path {
 		route.add(new PortalStep(portal));
 	}
 
+	public void addPortal(Portal portal, Point2D waypoint) {
+		route.add(new PortalStep(portal, waypoint));
+	}
+
 	public static class PortalStep {
 		public final Portal portal;
 		public final Point2D waypoint;
@@ -27,5 +31,10 @@ public class Path {
 			this.portal = portal;
 			waypoint = portal.getCenter();
 		}
+
+		public PortalStep(Portal portal, Point2D waypoint) {
+			this.portal = portal;
+			this.waypoint = waypoint;
+		}
 	}
 }
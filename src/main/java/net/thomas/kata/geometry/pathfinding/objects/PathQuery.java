@@ -0,0 +1,18 @@
+package net.thomas.kata.geometry.pathfinding.objects;
+
+import java.awt.geom.Point2D;
+
+public class PathQuery {
+	public final Point2D origin;
+	public final Point2D destination;
+
+	public PathQuery(Point2D origin, Point2D destination) {
+		this.origin = new Point2D.Double(origin.getX(), origin.getY());
+		this.destination = new Point2D.Double(destination.getX(), destination.getY());
+	}
+
+	@Override
+	public String toString() {
+		return origin + " -> " + destination;
+	}
+}
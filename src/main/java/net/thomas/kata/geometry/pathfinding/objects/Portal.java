@@ -1,6 +1,9 @@
 package net.thomas.kata.geometry.pathfinding.objects;
 
 import static java.lang.Double.NaN;
+import static java.lang.Double.isNaN;
+import static java.lang.Math.abs;
+import static net.thomas.kata.geometry.algorithms.GeometricPredicates.orient2d;
 
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
@@ -16,25 +19,39 @@ public class Portal extends Line2D.Double {
 		return new Point2D.Double((getP1().getX() + getP2().getX()) / 2, (getP1().getY() + getP2().getY()) / 2);
 	}
 
+	/***
+	 * @return The portal with both ends moved the distance towards each other, meeting in the center
+	 *         if the portal is shorter than twice the distance
+	 */
+	public Portal shrink(double distance) {
+		final double length = getP1().distance(getP2());
+		if (length <= 2 * distance) {
+			return new Portal(getCenter(), getCenter());
+		}
+		final double dx = (x2 - x1) / length * distance;
+		final double dy = (y2 - y1) / length * distance;
+		return new Portal(new Point2D.Double(x1 + dx, y1 + dy), new Point2D.Double(x2 - dx, y2 - dy));
+	}
+
+	/***
+	 * True if the line through other crosses the portal, including its first end but not its second.
+	 * Decided from which side of the line each end lies on, so the answer is exact.
+	 */
 	public boolean isInsidePortal(Line2D.Double other) {
-		final double t = determineTFromTwoLines(x1, x2, other.x1, other.x2, y1, y2, other.y1, other.y2);
-		return t >= 0 && t < 1;
+		final double first = orient2d(other.x1, other.y1, other.x2, other.y2, x1, y1);
+		final double second = orient2d(other.x1, other.y1, other.x2, other.y2, x2, y2);
+		return second != 0 && (first == 0 || first > 0 != second > 0);
 	}
 
 	public Point2D getBestIntersectionPoint(final Line2D o) {
-		double t = NaN;
-		if (o instanceof Line2D.Double) {
-			final Line2D.Double other = (Line2D.Double) o;
-			t = determineTFromTwoLines(x1, x2, other.x1, other.x2, y1, y2, other.y1, other.y2);
-		} else if (o instanceof Line2D.Float) {
-			final Line2D.Float other = (Line2D.Float) o;
-			t = determineTFromTwoLines(x1, x2, other.x1, other.x2, y1, y2, other.y1, other.y2);
-		}
-		return calculatePointFromT(t);
+		return calculatePointFromT(determineT(o.getX1(), o.getY1(), o.getX2(), o.getY2()));
 	}
 
 	private Point2D calculatePointFromT(double t) {
-		if (t <= 0.0) {
+		if (isNaN(t)) {
+			// Parallel lines have no single intersection point
+			return getCenter();
+		} else if (t <= 0.0) {
 			return getP1();
 		} else if (t >= 1.0) {
 			return getP2();
@@ -45,8 +62,25 @@ public class Portal extends Line2D.Double {
 		}
 	}
 
-	private double determineTFromTwoLines(double x1, double x2, double x3, double x4, double y1, double y2, double y3, double y4) {
-		return ((x1 - x3) * (y3 - y4) - (y1 - y3) * (x3 - x4)) / ((x1 - x2) * (y3 - y4) - (y1 - y2) * (x3 - x4));
+	/***
+	 * Where the line through other crosses the line through the portal, from 0 at the first end to 1
+	 * at the second. Which side of the line each end lies on is decided exactly, so an end on the
+	 * line, a line parallel to the portal and a crossing outside the portal are recognised as such,
+	 * and only a crossing strictly between the ends is computed in floating point.
+	 */
+	private double determineT(double otherX1, double otherY1, double otherX2, double otherY2) {
+		final double first = orient2d(otherX1, otherY1, otherX2, otherY2, x1, y1);
+		final double second = orient2d(otherX1, otherY1, otherX2, otherY2, x2, y2);
+		if (first == second) {
+			return NaN;
+		} else if (first == 0) {
+			return 0.0;
+		} else if (second == 0) {
+			return 1.0;
+		} else if (first > 0 == second > 0) {
+			return abs(first) < abs(second) ? 0.0 : 1.0;
+		}
+		return first / (first - second);
 	}
 
 	@Override
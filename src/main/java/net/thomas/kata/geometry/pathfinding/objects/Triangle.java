@@ -1,6 +1,8 @@
 package net.thomas.kata.geometry.pathfinding.objects;
 
 import static java.awt.geom.Path2D.WIND_NON_ZERO;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
@@ -43,6 +45,26 @@ public class Triangle {
 		return trianglePath.contains(point);
 	}
 
+	public boolean contains(double x, double y) {
+		return trianglePath.contains(x, y);
+	}
+
+	public double getMinX() {
+		return min(p1.getX(), min(p2.getX(), p3.getX()));
+	}
+
+	public double getMinY() {
+		return min(p1.getY(), min(p2.getY(), p3.getY()));
+	}
+
+	public double getMaxX() {
+		return max(p1.getX(), max(p2.getX(), p3.getX()));
+	}
+
+	public double getMaxY() {
+		return max(p1.getY(), max(p2.getY(), p3.getY()));
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -0,0 +1,80 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.locks.LockSupport.parkNanos;
+
+/***
+ * Spins first, then yields, and then parks for periods that double from the minimum to the maximum
+ * park time, but never past the next iteration with work. Short gaps between iterations are
+ * caught by the spinning with little jitter, while an engine with nothing to do ends up parked
+ * most of the time.<BR>
+ * A coarse timer wakes a parked thread later than asked. The strategy keeps track of how late
+ * parking has woken it up, stops parking that long before the next iteration and yields for the
+ * rest of the wait instead.
+ */
+public class BackoffIdleStrategy implements IdleStrategy {
+	public static final int DEFAULT_MAX_SPINS = 100;
+	public static final int DEFAULT_MAX_YIELDS = 10;
+	public static final long DEFAULT_MIN_PARK_TICKS = 1;
+	public static final long DEFAULT_MAX_PARK_TICKS = 1000;
+
+	private final int maxSpins;
+	private final int maxYields;
+	private final long minParkTicks;
+	private final long maxParkTicks;
+	private int spins;
+	private int yields;
+	private long parkTicks;
+	private long parkSlackTicks;
+
+	public BackoffIdleStrategy() {
+		this(DEFAULT_MAX_SPINS, DEFAULT_MAX_YIELDS, DEFAULT_MIN_PARK_TICKS, DEFAULT_MAX_PARK_TICKS);
+	}
+
+	public BackoffIdleStrategy(int maxSpins, int maxYields, long minParkTicks, long maxParkTicks) {
+		this.maxSpins = maxSpins;
+		this.maxYields = maxYields;
+		this.minParkTicks = minParkTicks;
+		this.maxParkTicks = maxParkTicks;
+		parkSlackTicks = 0;
+		reset();
+	}
+
+	@Override
+	public void idle(long ticksToWait) {
+		if (spins < maxSpins) {
+			spins++;
+			Thread.onSpinWait();
+		} else if (yields < maxYields) {
+			yields++;
+			Thread.yield();
+		} else if (ticksToWait > parkSlackTicks) {
+			park(min(parkTicks, ticksToWait - parkSlackTicks));
+			parkTicks = min(parkTicks * 2, maxParkTicks);
+		} else {
+			Thread.yield();
+		}
+	}
+
+	/***
+	 * The slack grows at once to the latest wake up when it was later, and shrinks by an eighth
+	 * after every iteration, so a single late wake up under load does not keep the strategy from
+	 * parking for long
+	 */
+	private void park(long ticks) {
+		final long stamp = nanoTime();
+		parkNanos(ticks * 1000);
+		final long lateTicks = (nanoTime() - stamp) / 1000 - ticks;
+		parkSlackTicks = min(max(lateTicks, parkSlackTicks), maxParkTicks);
+	}
+
+	@Override
+	public void reset() {
+		spins = 0;
+		yields = 0;
+		parkTicks = minParkTicks;
+		parkSlackTicks -= parkSlackTicks >> 3;
+	}
+}
@@ -0,0 +1,15 @@
+package net.thomas.kata.ugp.engine;
+
+/***
+ * Never gives up the core. The lowest jitter, at the price of a full core per engine.
+ */
+public class BusySpinIdleStrategy implements IdleStrategy {
+	@Override
+	public void idle(long ticksToWait) {
+		Thread.onSpinWait();
+	}
+
+	@Override
+	public void reset() {
+	}
+}
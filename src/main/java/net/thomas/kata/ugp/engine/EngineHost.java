@@ -0,0 +1,300 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.CREATED;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Runs many {@link TickingEngine}s on a fixed number of shards, each a single thread, rather than
+ * on a thread per engine. An engine is stepped on its shard as a timed event whenever its next
+ * iteration is due, or when it is woken up, and holds no thread in between. New engines go to the
+ * shard with the fewest engines, and engines can be moved to another shard while they run.<BR>
+ * Engines ticking their tasks in parallel should share a pool, see
+ * {@link TickingEngine.Builder#setPool}.
+ */
+public class EngineHost {
+	private static final int MAX_ITERATIONS_PER_STEP = 16;
+
+	private final Shard[] shards;
+	private final Map<TickingEngine, HostedEngine> hostedEngines;
+	private boolean shuttingDown;
+
+	/***
+	 * One shard per available processor
+	 */
+	public EngineHost() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public EngineHost(int shardCount) {
+		shards = new Shard[shardCount];
+		for (int index = 0; index < shardCount; index++) {
+			shards[index] = new Shard(index);
+		}
+		hostedEngines = new HashMap<>();
+		shuttingDown = false;
+	}
+
+	/***
+	 * Starts the engine on the shard with the fewest engines, or the least busy one of those. The
+	 * engine must not have been started already.
+	 */
+	public synchronized void host(TickingEngine engine) {
+		if (shuttingDown) {
+			throw new IllegalStateException("The host has been shut down");
+		}
+		if (engine.getCurrentState() != CREATED || hostedEngines.containsKey(engine)) {
+			throw new IllegalStateException("Only engines that have not been started can be hosted");
+		}
+		final Shard shard = findLeastLoadedShard();
+		final HostedEngine hostedEngine = new HostedEngine(engine, shard);
+		shard.engineCount++;
+		hostedEngines.put(engine, hostedEngine);
+		engine.setHostWakeUp(hostedEngine::wakeUp);
+		hostedEngine.wakeUp();
+	}
+
+	/***
+	 * Moves the engine to another shard. The engine finishes the step it may be in on its current
+	 * shard, and takes its next step on the new one.
+	 */
+	public synchronized void migrate(TickingEngine engine, int shardIndex) {
+		final HostedEngine hostedEngine = hostedEngines.get(engine);
+		if (hostedEngine == null) {
+			throw new IllegalArgumentException("The engine is not hosted here");
+		}
+		moveTo(hostedEngine, shards[shardIndex]);
+	}
+
+	/***
+	 * Moves engines from the shards with the most engines to those with the fewest, until no two
+	 * shards differ by more than one engine
+	 */
+	public synchronized void rebalance() {
+		while (true) {
+			Shard fullestShard = shards[0];
+			Shard emptiestShard = shards[0];
+			for (final Shard shard : shards) {
+				if (shard.engineCount > fullestShard.engineCount) {
+					fullestShard = shard;
+				}
+				if (shard.engineCount < emptiestShard.engineCount) {
+					emptiestShard = shard;
+				}
+			}
+			if (fullestShard.engineCount - emptiestShard.engineCount <= 1) {
+				return;
+			}
+			moveTo(findEngineAssignedTo(fullestShard), emptiestShard);
+		}
+	}
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	public synchronized int[] getEngineCountPerShard() {
+		final int[] engineCounts = new int[shards.length];
+		for (final Shard shard : shards) {
+			engineCounts[shard.index] = shard.engineCount;
+		}
+		return engineCounts;
+	}
+
+	/***
+	 * @return The nanoseconds each shard has spent stepping engines
+	 */
+	public long[] getBusyTimePerShard() {
+		final long[] busyTimes = new long[shards.length];
+		for (final Shard shard : shards) {
+			busyTimes[shard.index] = shard.busyTime.get();
+		}
+		return busyTimes;
+	}
+
+	/***
+	 * Stops every hosted engine. The shards are shut down once the last engine has terminated its
+	 * tasks, so steps still handing an engine over to another shard are carried out.
+	 */
+	public void shutdown() {
+		final List<TickingEngine> engines;
+		synchronized (this) {
+			shuttingDown = true;
+			engines = new ArrayList<>(hostedEngines.keySet());
+			if (engines.isEmpty()) {
+				shutDownShards();
+			}
+		}
+		engines.forEach(TickingEngine::stop);
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		final long deadline = nanoTime() + unit.toNanos(timeout);
+		for (final Shard shard : shards) {
+			if (!shard.executor.awaitTermination(deadline - nanoTime(), NANOSECONDS)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Shard findLeastLoadedShard() {
+		Shard leastLoadedShard = shards[0];
+		for (final Shard shard : shards) {
+			if (shard.engineCount < leastLoadedShard.engineCount
+					|| shard.engineCount == leastLoadedShard.engineCount && shard.busyTime.get() < leastLoadedShard.busyTime.get()) {
+				leastLoadedShard = shard;
+			}
+		}
+		return leastLoadedShard;
+	}
+
+	private HostedEngine findEngineAssignedTo(Shard shard) {
+		for (final HostedEngine hostedEngine : hostedEngines.values()) {
+			if (hostedEngine.assignedShard == shard) {
+				return hostedEngine;
+			}
+		}
+		throw new IllegalStateException("No engine is assigned to shard " + shard.index);
+	}
+
+	private void moveTo(HostedEngine hostedEngine, Shard shard) {
+		final Shard previousShard = hostedEngine.assignedShard;
+		if (previousShard != shard) {
+			previousShard.engineCount--;
+			shard.engineCount++;
+			hostedEngine.assignedShard = shard;
+			previousShard.executor.execute(() -> hostedEngine.leave(previousShard));
+		}
+	}
+
+	private synchronized Shard getAssignedShard(HostedEngine hostedEngine) {
+		return hostedEngine.assignedShard;
+	}
+
+	private synchronized void finish(HostedEngine hostedEngine) {
+		hostedEngine.assignedShard.engineCount--;
+		hostedEngines.remove(hostedEngine.engine);
+		if (shuttingDown && hostedEngines.isEmpty()) {
+			shutDownShards();
+		}
+	}
+
+	private void shutDownShards() {
+		for (final Shard shard : shards) {
+			shard.executor.shutdown();
+		}
+	}
+
+	private static class Shard {
+		private final int index;
+		private final ScheduledThreadPoolExecutor executor;
+		private final AtomicLong busyTime;
+		private int engineCount;
+
+		public Shard(int index) {
+			this.index = index;
+			executor = new ScheduledThreadPoolExecutor(1, runnable -> new Thread(runnable, "EngineHost shard " + index));
+			executor.setRemoveOnCancelPolicy(true);
+			executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+			busyTime = new AtomicLong();
+			engineCount = 0;
+		}
+	}
+
+	/***
+	 * The shard an engine is assigned to is changed under the host lock, while the shard that steps
+	 * it is only changed by that shard itself, between two steps. The engine is therefore never
+	 * stepped on two shards at once.<BR>
+	 * The shards keep running until every engine has finished, so only a finished engine can have
+	 * a step rejected, and it has nothing left to step.
+	 */
+	private class HostedEngine {
+		private final TickingEngine engine;
+		private final AtomicBoolean wakeUpIsPending;
+		private Shard assignedShard;
+		private volatile Shard shard;
+		private ScheduledFuture<?> nextStep;
+		private volatile boolean finished;
+
+		public HostedEngine(TickingEngine engine, Shard shard) {
+			this.engine = engine;
+			wakeUpIsPending = new AtomicBoolean();
+			assignedShard = shard;
+			this.shard = shard;
+			nextStep = null;
+			finished = false;
+		}
+
+		public void wakeUp() {
+			if (wakeUpIsPending.compareAndSet(false, true)) {
+				final Shard shard = this.shard;
+				try {
+					shard.executor.execute(() -> stepOn(shard));
+				} catch (final RejectedExecutionException e) {
+					if (!finished) {
+						throw e;
+					}
+				}
+			}
+		}
+
+		private void stepOn(Shard executingShard) {
+			if (finished) {
+				return;
+			}
+			final Shard shard = this.shard;
+			if (shard != executingShard) {
+				shard.executor.execute(() -> stepOn(shard));
+				return;
+			}
+			wakeUpIsPending.set(false);
+			cancelNextStep();
+			final long stamp = nanoTime();
+			final long ticksToWait = engine.stepHosted(MAX_ITERATIONS_PER_STEP);
+			shard.busyTime.addAndGet(nanoTime() - stamp);
+			if (ticksToWait < 0) {
+				finished = true;
+				finish(this);
+			} else if (ticksToWait != Long.MAX_VALUE) {
+				nextStep = shard.executor.schedule(() -> stepOn(shard), ticksToWait, MICROSECONDS);
+			}
+		}
+
+		/***
+		 * Only the shard stepping the engine hands it over. A shard the engine has already left has
+		 * nothing to hand over, since the shard it went to was told to leave as well if the engine
+		 * has been moved on since. A finished engine is not handed over at all.
+		 */
+		private void leave(Shard executingShard) {
+			if (shard != executingShard || finished) {
+				return;
+			}
+			final Shard assignedShard = getAssignedShard(this);
+			if (assignedShard != executingShard) {
+				cancelNextStep();
+				shard = assignedShard;
+				assignedShard.executor.execute(() -> stepOn(assignedShard));
+			}
+		}
+
+		private void cancelNextStep() {
+			if (nextStep != null) {
+				nextStep.cancel(false);
+				nextStep = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.lang.Math.max;
+
+import net.thomas.kata.ugp.util.LogHistogram;
+
+/***
+ * Counters kept by the engine thread, safe to read from any thread while the engine runs. Lag is
+ * in ticks, iteration durations in nanoseconds.
+ */
+public class EngineMetrics {
+	private final LogHistogram iterationDurations;
+	private volatile long iterationCount;
+	private volatile long skippedIterationCount;
+	private volatile long lag;
+	private volatile long maxLag;
+
+	public EngineMetrics() {
+		iterationDurations = new LogHistogram();
+		iterationCount = 0;
+		skippedIterationCount = 0;
+		lag = 0;
+		maxLag = 0;
+	}
+
+	void recordIteration(long lag, long durationInNanoseconds) {
+		iterationCount++;
+		this.lag = lag;
+		maxLag = max(maxLag, lag);
+		iterationDurations.record(durationInNanoseconds);
+	}
+
+	void recordSkippedIterations(long count) {
+		skippedIterationCount += count;
+	}
+
+	public long getIterationCount() {
+		return iterationCount;
+	}
+
+	/***
+	 * @return Iterations dropped in real time mode, because the engine had caught up for the maximum
+	 *         number of steps and was still behind
+	 */
+	public long getSkippedIterationCount() {
+		return skippedIterationCount;
+	}
+
+	/***
+	 * @return How far behind the wall clock the last iteration started, always 0 when running as
+	 *         fast as possible
+	 */
+	public long getLag() {
+		return lag;
+	}
+
+	public long getMaxLag() {
+		return maxLag;
+	}
+
+	public LogHistogram getIterationDurations() {
+		return iterationDurations;
+	}
+}
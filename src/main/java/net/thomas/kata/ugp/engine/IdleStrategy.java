@@ -0,0 +1,23 @@
+package net.thomas.kata.ugp.engine;
+
+/***
+ * What the engine thread does while it is ahead of schedule. Strategies may keep state between
+ * calls, so an instance belongs to a single engine.
+ */
+public interface IdleStrategy {
+	/***
+	 * Called repeatedly until the engine has work again. The engine thread is unparked when tasks
+	 * are added or the engine is paused, resumed or stopped, so a strategy may park for all of the
+	 * time given.
+	 *
+	 * @param ticksToWait
+	 *            Ticks until the next iteration with a task to tick, or Long.MAX_VALUE if no task is
+	 *            scheduled
+	 */
+	void idle(long ticksToWait);
+
+	/***
+	 * Called after every iteration
+	 */
+	void reset();
+}
@@ -0,0 +1,77 @@
+package net.thomas.kata.ugp.engine;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+/***
+ * Unbounded queue of tasks with many producers and a single consumer, after Vyukov. A producer
+ * swaps its node in as the tail with one atomic exchange, and then links the previous tail to it,
+ * so adding never blocks or retries. The consumer follows the links from a stub node. A task added
+ * while its predecessor is not linked yet is picked up by a later poll.
+ */
+class MpscTaskQueue {
+	private final AtomicReference<Node> tail;
+	private Node head;
+
+	public MpscTaskQueue() {
+		head = new Node(null);
+		tail = new AtomicReference<>(head);
+	}
+
+	public void add(TickableTask task) {
+		final Node node = new Node(task);
+		tail.getAndSet(node).next = node;
+	}
+
+	/***
+	 * Links the tasks up before taking the tail once, so other producers never come in between them
+	 */
+	public void addAll(Collection<? extends TickableTask> tasks) {
+		Node first = null;
+		Node last = null;
+		for (final TickableTask task : tasks) {
+			final Node node = new Node(task);
+			if (first == null) {
+				first = node;
+			} else {
+				last.next = node;
+			}
+			last = node;
+		}
+		if (first != null) {
+			tail.getAndSet(last).next = first;
+		}
+	}
+
+	/***
+	 * Only called from the consumer thread
+	 *
+	 * @return The oldest task, or null if none is ready
+	 */
+	public TickableTask poll() {
+		final Node next = head.next;
+		if (next == null) {
+			return null;
+		}
+		head = next;
+		final TickableTask task = next.task;
+		next.task = null;
+		return task;
+	}
+
+	/***
+	 * Only called from the consumer thread. Tasks still being added count as present.
+	 */
+	public boolean isEmpty() {
+		return tail.get() == head;
+	}
+
+	private static class Node {
+		private TickableTask task;
+		private volatile Node next;
+
+		public Node(TickableTask task) {
+			this.task = task;
+		}
+	}
+}
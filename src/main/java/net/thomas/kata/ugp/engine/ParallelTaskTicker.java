@@ -0,0 +1,212 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.util.Arrays.asList;
+import static java.util.Arrays.copyOf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/***
+ * Ticks the tasks due in an iteration on a {@link ForkJoinPool}. The due tasks are drained from the
+ * scheduler in rounds, and every task of a round has ticked before any of them is rescheduled, so
+ * the pool is a barrier between rounds. A task that is due again within the same iteration ticks in
+ * the next round.<BR>
+ * Tasks sharing a conflict group tick serially on one thread, in the order they were drained. After
+ * the barrier, tasks added from within a tick, rescheduled tasks and finished tasks are handled on
+ * the calling thread in that same order, so the outcome does not depend on the number of threads.
+ */
+class ParallelTaskTicker {
+	private static final int UNITS_PER_TASK = 32;
+	private static final int NONE = -1;
+
+	private final ForkJoinPool pool;
+	private final TaskProfiler profiler;
+	private final ThreadLocal<int[]> tickingPositions;
+	private final Map<Object, Integer> groupUnits;
+	private TickableTask[] dueTasks;
+	private int[] nextInUnit;
+	private int[] unitFirsts;
+	private int[] unitLasts;
+	private List<TickableTask>[] spawnedTasks;
+	private int dueTaskCount;
+	private int unitCount;
+	private long currentTick;
+
+	public ParallelTaskTicker(ForkJoinPool pool) {
+		this(pool, null);
+	}
+
+	/***
+	 * @param profiler
+	 *            Profiles every tick, or null
+	 */
+	public ParallelTaskTicker(ForkJoinPool pool, TaskProfiler profiler) {
+		this.pool = pool;
+		this.profiler = profiler;
+		tickingPositions = ThreadLocal.withInitial(() -> new int[] { NONE });
+		groupUnits = new HashMap<>();
+		allocate(64);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		dueTasks = dueTasks == null ? new TickableTask[capacity] : copyOf(dueTasks, capacity);
+		nextInUnit = new int[capacity];
+		unitFirsts = new int[capacity];
+		unitLasts = new int[capacity];
+		spawnedTasks = (List<TickableTask>[]) new List<?>[capacity];
+	}
+
+	/***
+	 * Ticks every task due at or before currentTick, and reschedules those that should run again
+	 *
+	 * @param spawnedTaskConsumer
+	 *            Receives the tasks added from within a tick, see {@link #holdSpawnedTasks}
+	 * @param finishedTaskConsumer
+	 *            Receives the tasks that should not run again
+	 */
+	public void tickDueTasks(TaskScheduler scheduler, long currentTick, Consumer<TickableTask> spawnedTaskConsumer,
+			Consumer<TickableTask> finishedTaskConsumer) {
+		this.currentTick = currentTick;
+		while (drainDueTasks(scheduler, currentTick) > 0) {
+			buildUnits();
+			if (unitCount <= UNITS_PER_TASK) {
+				tickUnits(0, unitCount);
+			} else {
+				pool.invoke(new TickAction(0, unitCount));
+			}
+			for (int position = 0; position < dueTaskCount; position++) {
+				if (spawnedTasks[position] != null) {
+					spawnedTasks[position].forEach(spawnedTaskConsumer);
+					spawnedTasks[position] = null;
+				}
+			}
+			int finishedTaskCount = 0;
+			for (int position = 0; position < dueTaskCount; position++) {
+				final TickableTask task = dueTasks[position];
+				dueTasks[position] = null;
+				if (task.shouldRunAgain()) {
+					scheduler.schedule(task);
+				} else {
+					dueTasks[finishedTaskCount++] = task;
+				}
+			}
+			for (int position = 0; position < finishedTaskCount; position++) {
+				finishedTaskConsumer.accept(dueTasks[position]);
+				dueTasks[position] = null;
+			}
+		}
+	}
+
+	/***
+	 * Shuts down the pool, for a pool owned by the engine
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/***
+	 * Called when tasks are added to the engine. If the calling thread is ticking a task for this
+	 * ticker, the tasks are held back and handed on after the barrier, in the order of the task that
+	 * added them.
+	 *
+	 * @return True if the tasks were held back
+	 */
+	public boolean holdSpawnedTasks(TickableTask... tasks) {
+		return holdSpawnedTasks(asList(tasks));
+	}
+
+	public boolean holdSpawnedTasks(Collection<? extends TickableTask> tasks) {
+		final int position = tickingPositions.get()[0];
+		if (position == NONE) {
+			return false;
+		}
+		if (spawnedTasks[position] == null) {
+			spawnedTasks[position] = new ArrayList<>();
+		}
+		spawnedTasks[position].addAll(tasks);
+		return true;
+	}
+
+	private int drainDueTasks(TaskScheduler scheduler, long currentTick) {
+		dueTaskCount = 0;
+		for (TickableTask task = scheduler.pollDue(currentTick); task != null; task = scheduler.pollDue(currentTick)) {
+			if (dueTaskCount == dueTasks.length) {
+				allocate(dueTasks.length * 2);
+			}
+			dueTasks[dueTaskCount++] = task;
+		}
+		return dueTaskCount;
+	}
+
+	/***
+	 * Every task without a conflict group is a unit of its own, and the tasks of each conflict group
+	 * are linked into one unit in the order they were drained
+	 */
+	private void buildUnits() {
+		unitCount = 0;
+		groupUnits.clear();
+		for (int position = 0; position < dueTaskCount; position++) {
+			nextInUnit[position] = NONE;
+			final Object group = dueTasks[position].getConflictGroup();
+			final Integer unit = group == null ? null : groupUnits.get(group);
+			if (unit == null) {
+				if (group != null) {
+					groupUnits.put(group, unitCount);
+				}
+				unitFirsts[unitCount] = position;
+				unitLasts[unitCount] = position;
+				unitCount++;
+			} else {
+				nextInUnit[unitLasts[unit]] = position;
+				unitLasts[unit] = position;
+			}
+		}
+	}
+
+	private void tickUnits(int from, int to) {
+		final int[] tickingPosition = tickingPositions.get();
+		try {
+			for (int unit = from; unit < to; unit++) {
+				for (int position = unitFirsts[unit]; position != NONE; position = nextInUnit[position]) {
+					tickingPosition[0] = position;
+					if (profiler == null) {
+						dueTasks[position].tick();
+					} else {
+						profiler.tick(dueTasks[position], currentTick);
+					}
+				}
+			}
+		} finally {
+			tickingPosition[0] = NONE;
+		}
+	}
+
+	private class TickAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		public TickAction(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= UNITS_PER_TASK) {
+				tickUnits(from, to);
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new TickAction(from, middle), new TickAction(middle, to));
+			}
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.util.concurrent.locks.LockSupport.park;
+import static java.util.concurrent.locks.LockSupport.parkNanos;
+
+/***
+ * Parks the engine thread until the next iteration with work. Uses no CPU while idle, but wakes up
+ * as late as the timer slack of the operating system allows.
+ */
+public class ParkingIdleStrategy implements IdleStrategy {
+	private static final long MAX_PARK_TICKS = Long.MAX_VALUE / 1000;
+
+	@Override
+	public void idle(long ticksToWait) {
+		if (ticksToWait > MAX_PARK_TICKS) {
+			park();
+		} else {
+			parkNanos(ticksToWait * 1000);
+		}
+	}
+
+	@Override
+	public void reset() {
+	}
+}
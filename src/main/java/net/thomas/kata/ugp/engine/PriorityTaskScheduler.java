@@ -0,0 +1,151 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.lang.Integer.numberOfLeadingZeros;
+import static java.lang.Math.max;
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.fill;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/***
+ * Binary heap of tasks, ordered by the tick they are due at. Scheduling and polling are O(log n).
+ * A batch is appended and the heap rebuilt in O(n) whenever that beats scheduling the tasks one at
+ * a time, and removing tasks is a single pass followed by a rebuild.
+ */
+class PriorityTaskScheduler implements TaskScheduler {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private TickableTask[] heap;
+	private int size;
+
+	public PriorityTaskScheduler() {
+		heap = new TickableTask[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	@Override
+	public void schedule(TickableTask task) {
+		ensureCapacity(size + 1);
+		siftUp(size++, task);
+	}
+
+	@Override
+	public void scheduleAll(List<TickableTask> tasks) {
+		ensureCapacity(size + tasks.size());
+		if (isRebuildCheaper(tasks.size())) {
+			for (final TickableTask task : tasks) {
+				heap[size++] = task;
+			}
+			rebuild();
+		} else {
+			for (final TickableTask task : tasks) {
+				siftUp(size++, task);
+			}
+		}
+	}
+
+	/***
+	 * A rebuild looks at every task about twice, while each task scheduled on its own may climb the
+	 * full height of the heap
+	 */
+	private boolean isRebuildCheaper(int batchSize) {
+		final int newSize = size + batchSize;
+		final int height = 32 - numberOfLeadingZeros(newSize);
+		return (long) batchSize * height > 2L * newSize;
+	}
+
+	@Override
+	public TickableTask pollDue(long currentTick) {
+		if (size > 0 && heap[0].getTimeOfNextTick() <= currentTick) {
+			final TickableTask task = heap[0];
+			final TickableTask lastTask = heap[--size];
+			heap[size] = null;
+			if (size > 0) {
+				siftDown(0, lastTask);
+			}
+			return task;
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public void removeIf(Predicate<TickableTask> filter, Consumer<TickableTask> removedTaskConsumer) {
+		int keptTaskCount = 0;
+		for (int position = 0; position < size; position++) {
+			final TickableTask task = heap[position];
+			if (filter.test(task)) {
+				removedTaskConsumer.accept(task);
+			} else {
+				heap[keptTaskCount++] = task;
+			}
+		}
+		if (keptTaskCount < size) {
+			fill(heap, keptTaskCount, size, null);
+			size = keptTaskCount;
+			rebuild();
+		}
+	}
+
+	@Override
+	public long getNextDueTick() {
+		return size == 0 ? Long.MAX_VALUE : heap[0].getTimeOfNextTick();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void forEach(Consumer<TickableTask> action) {
+		for (int position = 0; position < size; position++) {
+			action.accept(heap[position]);
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > heap.length) {
+			heap = copyOf(heap, max(capacity, heap.length * 2));
+		}
+	}
+
+	private void rebuild() {
+		for (int position = (size >>> 1) - 1; position >= 0; position--) {
+			siftDown(position, heap[position]);
+		}
+	}
+
+	private void siftUp(int position, TickableTask task) {
+		final long tick = task.getTimeOfNextTick();
+		while (position > 0) {
+			final int parent = position - 1 >>> 1;
+			if (heap[parent].getTimeOfNextTick() <= tick) {
+				break;
+			}
+			heap[position] = heap[parent];
+			position = parent;
+		}
+		heap[position] = task;
+	}
+
+	private void siftDown(int position, TickableTask task) {
+		final long tick = task.getTimeOfNextTick();
+		final int half = size >>> 1;
+		while (position < half) {
+			int child = (position << 1) + 1;
+			final int right = child + 1;
+			if (right < size && heap[right].getTimeOfNextTick() < heap[child].getTimeOfNextTick()) {
+				child = right;
+			}
+			if (tick <= heap[child].getTimeOfNextTick()) {
+				break;
+			}
+			heap[position] = heap[child];
+			position = child;
+		}
+		heap[position] = task;
+	}
+}
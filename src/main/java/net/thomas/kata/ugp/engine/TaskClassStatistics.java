@@ -0,0 +1,69 @@
+package net.thomas.kata.ugp.engine;
+
+import net.thomas.kata.ugp.util.LogHistogram;
+
+/***
+ * Copy of the figures recorded for one task class at the time the statistics were taken. Tick
+ * times are in nanoseconds, late tick distances in ticks.
+ */
+public class TaskClassStatistics {
+	private final String taskClassName;
+	private final long tickCount;
+	private final long totalTickTime;
+	private final long maxTickTime;
+	private final long medianTickTime;
+	private final long ninetyNinthPercentileTickTime;
+	private final long maxLateTicks;
+	private final long ninetyNinthPercentileLateTicks;
+
+	TaskClassStatistics(String taskClassName, LogHistogram tickTimes, LogHistogram lateTicks) {
+		this.taskClassName = taskClassName;
+		tickCount = tickTimes.getCount();
+		totalTickTime = tickTimes.getSum();
+		maxTickTime = tickTimes.getMax();
+		medianTickTime = tickTimes.getValueAtPercentile(50);
+		ninetyNinthPercentileTickTime = tickTimes.getValueAtPercentile(99);
+		maxLateTicks = lateTicks.getMax();
+		ninetyNinthPercentileLateTicks = lateTicks.getValueAtPercentile(99);
+	}
+
+	public String getTaskClassName() {
+		return taskClassName;
+	}
+
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	public long getTotalTickTime() {
+		return totalTickTime;
+	}
+
+	public long getMaxTickTime() {
+		return maxTickTime;
+	}
+
+	public long getMedianTickTime() {
+		return medianTickTime;
+	}
+
+	public long getNinetyNinthPercentileTickTime() {
+		return ninetyNinthPercentileTickTime;
+	}
+
+	/***
+	 * @return The most ticks a task of the class was ticked after the tick it was due at
+	 */
+	public long getMaxLateTicks() {
+		return maxLateTicks;
+	}
+
+	public long getNinetyNinthPercentileLateTicks() {
+		return ninetyNinthPercentileLateTicks;
+	}
+
+	@Override
+	public String toString() {
+		return taskClassName + ": " + tickCount + " ticks, " + totalTickTime + " ns in total, " + maxTickTime + " ns at most";
+	}
+}
@@ -0,0 +1,136 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.lang.System.nanoTime;
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.toList;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import net.thomas.kata.ugp.util.LogHistogram;
+
+/***
+ * Opt in profiling of the tasks ticked by a {@link TickingEngine}, see
+ * {@link TickingEngine.Builder#setTaskProfiler}. Per task class, it records how long each tick took
+ * and how many ticks late the task was ticked, and per iteration it records the number of
+ * scheduled tasks. An engine without a profiler pays a single null check per tick.<BR>
+ * Recording is lock free, so tasks ticked in parallel are profiled as well.
+ */
+public class TaskProfiler implements TaskProfilerMXBean {
+	private final Map<Class<?>, TaskClassProfile> profilesByClass;
+	private final ClassValue<TaskClassProfile> profiles;
+	private final LogHistogram queueDepths;
+	private volatile int queueDepth;
+
+	public TaskProfiler() {
+		profilesByClass = new ConcurrentHashMap<>();
+		profiles = new ClassValue<TaskClassProfile>() {
+			@Override
+			protected TaskClassProfile computeValue(Class<?> taskClass) {
+				return profilesByClass.computeIfAbsent(taskClass, TaskClassProfile::new);
+			}
+		};
+		queueDepths = new LogHistogram();
+		queueDepth = 0;
+	}
+
+	void tick(TickableTask task, long currentTick) {
+		final TaskClassProfile profile = profiles.get(task.getClass());
+		profile.lateTicks.record(currentTick - task.getTimeOfNextTick());
+		final long stamp = nanoTime();
+		task.tick();
+		profile.tickTimes.record(nanoTime() - stamp);
+	}
+
+	void recordQueueDepth(int queueDepth) {
+		this.queueDepth = queueDepth;
+		queueDepths.record(queueDepth);
+	}
+
+	/***
+	 * @return A snapshot of every task class ticked so far, the classes with the most time spent
+	 *         ticking first
+	 */
+	@Override
+	public List<TaskClassStatistics> getTaskClassStatistics() {
+		return profilesByClass.values()
+				.stream()
+				.map(TaskClassProfile::takeStatistics)
+				.sorted(comparingLong(TaskClassStatistics::getTotalTickTime).reversed())
+				.collect(toList());
+	}
+
+	/***
+	 * @return The number of tasks scheduled at the start of the latest iteration
+	 */
+	@Override
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+
+	@Override
+	public long getMaxQueueDepth() {
+		return queueDepths.getMax();
+	}
+
+	@Override
+	public double getMeanQueueDepth() {
+		return queueDepths.getMean();
+	}
+
+	@Override
+	public void reset() {
+		profilesByClass.values().forEach(TaskClassProfile::reset);
+		queueDepths.reset();
+	}
+
+	/***
+	 * Registers the profiler with the platform MBean server
+	 *
+	 * @param name
+	 *            Tells the profiled engine apart from other engines in the same JVM
+	 */
+	public ObjectName registerMBean(String name) {
+		try {
+			final ObjectName objectName = new ObjectName("net.thomas.kata.ugp:type=TaskProfiler,name=" + ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			return objectName;
+		} catch (final JMException e) {
+			throw new RuntimeException("Unable to register task profiler " + name, e);
+		}
+	}
+
+	public void unregisterMBean(ObjectName objectName) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (final JMException e) {
+			throw new RuntimeException("Unable to unregister task profiler " + objectName, e);
+		}
+	}
+
+	private static class TaskClassProfile {
+		private final String taskClassName;
+		private final LogHistogram tickTimes;
+		private final LogHistogram lateTicks;
+
+		public TaskClassProfile(Class<?> taskClass) {
+			taskClassName = taskClass.getName();
+			tickTimes = new LogHistogram();
+			lateTicks = new LogHistogram();
+		}
+
+		public TaskClassStatistics takeStatistics() {
+			return new TaskClassStatistics(taskClassName, tickTimes, lateTicks);
+		}
+
+		public void reset() {
+			tickTimes.reset();
+			lateTicks.reset();
+		}
+	}
+}
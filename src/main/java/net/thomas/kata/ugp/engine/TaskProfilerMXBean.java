@@ -0,0 +1,18 @@
+package net.thomas.kata.ugp.engine;
+
+import java.util.List;
+
+/***
+ * Management interface of {@link TaskProfiler}, see {@link TaskProfiler#registerMBean}
+ */
+public interface TaskProfilerMXBean {
+	List<TaskClassStatistics> getTaskClassStatistics();
+
+	int getQueueDepth();
+
+	long getMaxQueueDepth();
+
+	double getMeanQueueDepth();
+
+	void reset();
+}
@@ -0,0 +1,43 @@
+package net.thomas.kata.ugp.engine;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/***
+ * Keeps the tasks of a {@link TickingEngine} ordered by the tick they are due at. Only used from
+ * the engine thread.
+ */
+interface TaskScheduler {
+	void schedule(TickableTask task);
+
+	/***
+	 * Schedules a batch of tasks in O(n) of the batch, or of the batch and the tasks already
+	 * scheduled
+	 */
+	void scheduleAll(List<TickableTask> tasks);
+
+	/***
+	 * @return A task due at or before currentTick, removed from the scheduler, or null if no task is
+	 *         due
+	 */
+	TickableTask pollDue(long currentTick);
+
+	/***
+	 * @return A tick at or before the earliest tick a scheduled task is due at, or Long.MAX_VALUE if
+	 *         no task is scheduled
+	 */
+	long getNextDueTick();
+
+	/***
+	 * Removes every scheduled task accepted by the filter in a single pass over the tasks
+	 *
+	 * @param removedTaskConsumer
+	 *            Receives the tasks removed
+	 */
+	void removeIf(Predicate<TickableTask> filter, Consumer<TickableTask> removedTaskConsumer);
+
+	int size();
+
+	void forEach(Consumer<TickableTask> action);
+}
@@ -1,18 +1,42 @@
 package net.thomas.kata.ugp.engine;
 
+import static java.lang.Math.max;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /***
  * 1 tick = 1 microsecond
  */
 public abstract class TickableTask {
-	protected final int ticksPerTaskIteration;
+	private static final AtomicIntegerFieldUpdater<TickableTask> REQUESTED_TICKS_PER_TASK_ITERATION = AtomicIntegerFieldUpdater.newUpdater(TickableTask.class,
+			"requestedTicksPerTaskIteration");
+
+	protected int ticksPerTaskIteration;
 	protected TickingEngine engine;
 	private long nextTick;
 	protected boolean shouldRunAgain;
 	private float tickScale;
+	private final Object conflictGroup;
+	TickableTask nextScheduledTask;
+	private volatile boolean cancelled;
+	private volatile int requestedTicksPerTaskIteration;
 
 	protected TickableTask(int ticksPerTaskIteration) {
+		this(ticksPerTaskIteration, null);
+	}
+
+	/***
+	 * @param conflictGroup
+	 *            When the engine ticks tasks in parallel, tasks with equal conflict groups are ticked
+	 *            serially, in the order they became due. Null for a task that may tick alongside any
+	 *            other.
+	 */
+	protected TickableTask(int ticksPerTaskIteration, Object conflictGroup) {
 		this.ticksPerTaskIteration = ticksPerTaskIteration;
+		this.conflictGroup = conflictGroup;
 		shouldRunAgain = true;
+		cancelled = false;
+		requestedTicksPerTaskIteration = 0;
 	}
 
 	public void initialize(TickingEngine engine, long currentTick, float tickScale) {
@@ -29,16 +53,53 @@ public abstract class TickableTask {
 		return nextTick;
 	}
 
+	public Object getConflictGroup() {
+		return conflictGroup;
+	}
+
 	public boolean shouldRunAgain() {
 		return shouldRunAgain;
 	}
 
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	void cancel() {
+		cancelled = true;
+	}
+
+	void requestTicksPerTaskIteration(int ticksPerTaskIteration) {
+		requestedTicksPerTaskIteration = ticksPerTaskIteration;
+	}
+
+	boolean hasPendingChange() {
+		return cancelled || requestedTicksPerTaskIteration != 0;
+	}
+
+	/***
+	 * Called by the engine while the task is out of the scheduler. The next tick moves to one new
+	 * period after the previous tick, but not to before currentTick.
+	 */
+	void applyRequestedTicksPerTaskIteration(long currentTick) {
+		final int requestedTicks = REQUESTED_TICKS_PER_TASK_ITERATION.getAndSet(this, 0);
+		if (requestedTicks > 0) {
+			final long previousTick = nextTick - iterationTicks();
+			ticksPerTaskIteration = requestedTicks;
+			nextTick = max(currentTick, previousTick + iterationTicks());
+		}
+	}
+
 	public void tick() {
-		final int iterationTicks = (int) (ticksPerTaskIteration * tickScale);
+		final int iterationTicks = iterationTicks();
 		_tick(iterationTicks);
 		nextTick += iterationTicks;
 	}
 
+	private int iterationTicks() {
+		return (int) (ticksPerTaskIteration * tickScale);
+	}
+
 	protected abstract void _tick(int iterationTicks);
 
 	public void terminate() {
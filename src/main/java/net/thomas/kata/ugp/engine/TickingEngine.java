@@ -1,16 +1,22 @@
 package net.thomas.kata.ugp.engine;
 
+import static java.lang.Math.floorDiv;
+import static java.lang.Math.max;
 import static java.lang.System.nanoTime;
-import static java.lang.Thread.sleep;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.locks.LockSupport.park;
+import static java.util.concurrent.locks.LockSupport.unpark;
 import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.CREATED;
 import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.EXITING;
 import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.PAUSED;
 import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.RUNNING;
 import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.TERMINATED;
+import static net.thomas.kata.ugp.engine.TickingEngine.StepMode.AS_FAST_AS_POSSIBLE;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
 
 /***
  * 1 tick = 1 microsecond
@@ -24,43 +30,156 @@ public class TickingEngine implements Runnable {
 		TERMINATED
 	};
 
+	/***
+	 * PRIORITY_QUEUE keeps tasks in a binary heap, with O(log n) scheduling and polling.
+	 * TIMING_WHEEL keeps them in a hierarchical timing wheel with one slot per iteration, with O(1)
+	 * scheduling and polling, which pays off for many periodic tasks.
+	 */
+	public enum SchedulerType {
+		PRIORITY_QUEUE,
+		TIMING_WHEEL
+	}
+
+	/***
+	 * REAL_TIME steps once per iteration of wall time, catching up on iterations it is behind on.
+	 * AS_FAST_AS_POSSIBLE ignores the wall clock and steps straight on, passing over iterations
+	 * where no task is due. Both step the same number of ticks at a time, so a run ticks the same
+	 * tasks at the same engine ticks in either mode.
+	 */
+	public enum StepMode {
+		REAL_TIME,
+		AS_FAST_AS_POSSIBLE
+	}
+
 	public static final boolean MAY_SLEEP_BETWEEN_ITERATIONS = true;
 	public static final int DEFAULT_TICKS_PER_ITERATION = 10000;
 
 	private final int ticksPerIteration;
-	private EngineState state;
-	private final PriorityQueue<TickableTask> tasks;
-	private final List<TickableTask> newTasks;
+	private volatile EngineState state;
+	private volatile Thread runner;
+	private volatile Runnable hostWakeUp;
+	private final TaskScheduler tasks;
+	private final MpscTaskQueue newTasks;
+	private final ParallelTaskTicker parallelTicker;
+	private final boolean ownsPool;
+	private final IdleStrategy idleStrategy;
+	private final StepMode stepMode;
+	private final int maxCatchUpSteps;
+	private final EngineMetrics metrics;
+	private final TaskProfiler profiler;
+	private final List<TickableTask> includedTasks;
+	private final List<TickableTask> changedTasks;
+	private final List<TickableTask> rescheduledTasks;
+	private volatile boolean taskChangesArePending;
 	private long stamp;
 	private long currentEngineTick;
-	private float currentTickScale;
+	private int catchUpSteps;
+	private boolean pausedWhileHosted;
+	private volatile float currentTickScale;
 
-	private boolean tickScaleIsDirty;
+	private volatile boolean tickScaleIsDirty;
 	private final boolean exitWhenDone;
 
 	public TickingEngine(int ticksPerIteration, boolean exitWhenDone) {
-		this.ticksPerIteration = ticksPerIteration;
-		this.exitWhenDone = exitWhenDone;
-		tasks = new PriorityQueue<>((left, right) -> {
-			return (int) (left.getTimeOfNextTick() - right.getTimeOfNextTick());
-		});
-		newTasks = new LinkedList<>();
+		this(new Builder().setTicksPerIteration(ticksPerIteration).setExitWhenDone(exitWhenDone));
+	}
+
+	private TickingEngine(Builder builder) {
+		ticksPerIteration = builder.ticksPerIteration;
+		exitWhenDone = builder.exitWhenDone;
+		switch (builder.schedulerType) {
+			case TIMING_WHEEL:
+				tasks = new TimingWheelScheduler(ticksPerIteration);
+				break;
+			case PRIORITY_QUEUE:
+			default:
+				tasks = new PriorityTaskScheduler();
+				break;
+		}
+		newTasks = new MpscTaskQueue();
+		includedTasks = new ArrayList<>();
+		changedTasks = new ArrayList<>();
+		rescheduledTasks = new ArrayList<>();
+		taskChangesArePending = false;
+		profiler = builder.profiler;
+		if (builder.pool != null) {
+			parallelTicker = new ParallelTaskTicker(builder.pool, profiler);
+			ownsPool = false;
+		} else if (builder.parallelism > 0) {
+			parallelTicker = new ParallelTaskTicker(new ForkJoinPool(builder.parallelism), profiler);
+			ownsPool = true;
+		} else {
+			parallelTicker = null;
+			ownsPool = false;
+		}
+		if (builder.idleStrategy != null) {
+			idleStrategy = builder.idleStrategy;
+		} else {
+			idleStrategy = MAY_SLEEP_BETWEEN_ITERATIONS ? new BackoffIdleStrategy() : new BusySpinIdleStrategy();
+		}
+		stepMode = builder.stepMode;
+		maxCatchUpSteps = builder.maxCatchUpSteps;
+		metrics = new EngineMetrics();
 		currentTickScale = 1;
 		tickScaleIsDirty = true;
 		state = CREATED;
 	}
 
-	public synchronized void addTasks(TickableTask... tasks) {
-		synchronized (newTasks) {
-			for (final TickableTask task : tasks) {
-				newTasks.add(task);
-			}
+	/***
+	 * Safe to call from any thread. The tasks are included at the start of the next iteration. Tasks
+	 * added from within a parallel tick are included in the order of the tasks that added them.
+	 */
+	public void addTasks(TickableTask... tasks) {
+		addTasks(asList(tasks));
+	}
+
+	/***
+	 * As {@link #addTasks(TickableTask...)}. The tasks are handed in and scheduled as one batch.
+	 */
+	public void addTasks(Collection<? extends TickableTask> tasks) {
+		if (parallelTicker != null && parallelTicker.holdSpawnedTasks(tasks)) {
+			return;
+		}
+		newTasks.addAll(tasks);
+		wakeUp();
+	}
+
+	public void cancelTasks(TickableTask... tasks) {
+		cancelTasks(asList(tasks));
+	}
+
+	/***
+	 * Safe to call from any thread. The tasks are taken out of the engine and terminated at the start
+	 * of the next iteration, in a single pass however many tasks are cancelled. Tasks no longer in
+	 * the engine are left alone.
+	 */
+	public void cancelTasks(Collection<? extends TickableTask> tasks) {
+		tasks.forEach(TickableTask::cancel);
+		taskChangesArePending = true;
+		wakeUp();
+	}
+
+	public void rescheduleTasks(int ticksPerTaskIteration, TickableTask... tasks) {
+		rescheduleTasks(ticksPerTaskIteration, asList(tasks));
+	}
+
+	/***
+	 * Safe to call from any thread. From the start of the next iteration, the tasks tick every
+	 * ticksPerTaskIteration ticks. Their next tick is one new period after their previous tick, but
+	 * not before that iteration.
+	 */
+	public void rescheduleTasks(int ticksPerTaskIteration, Collection<? extends TickableTask> tasks) {
+		for (final TickableTask task : tasks) {
+			task.requestTicksPerTaskIteration(ticksPerTaskIteration);
 		}
+		taskChangesArePending = true;
+		wakeUp();
 	}
 
 	public void setTickScale(float tickScale) {
 		currentTickScale = tickScale;
 		tickScaleIsDirty = true;
+		wakeUp();
 	}
 
 	@Override
@@ -68,78 +187,258 @@ public class TickingEngine implements Runnable {
 		if (state == TERMINATED) {
 			return;
 		}
-		state = RUNNING;
-		currentEngineTick = 0;
-		stamp = now();
+		runner = Thread.currentThread();
+		begin();
 		while (state != EXITING) {
 			while (state == RUNNING) {
-				final long now = now();
-				final long deltaTicks = now - stamp;
-				if (deltaTicks > ticksPerIteration) {
-					currentEngineTick += ticksPerIteration;
-					updateTickScaleIfNecessary(currentTickScale);
-					includeNewTasksIfAny(currentEngineTick, currentTickScale);
-					iterateTasks();
-					stamp += ticksPerIteration;
+				if (stepMode == AS_FAST_AS_POSSIBLE) {
+					stepAsFastAsPossible();
 				} else {
-					if (MAY_SLEEP_BETWEEN_ITERATIONS) {
-						sleepSilently();
-					}
+					stepInRealTime();
 				}
 			}
 			while (state == PAUSED) {
-				sleepSilently();
+				park(this);
 				stamp = now();
 			}
 		}
+		end();
+	}
+
+	/***
+	 * Steps the engine without ever blocking, for an {@link EngineHost} running it on one of its
+	 * shards instead of on a thread of its own. Runs the iterations that are due, but no more than
+	 * maxIterations of them, so engines sharing a shard take turns.
+	 *
+	 * @return The ticks until the engine should be stepped again, 0 if it is still behind,
+	 *         Long.MAX_VALUE if only a wake up can give it more to do, or a negative number once it
+	 *         has terminated
+	 */
+	long stepHosted(int maxIterations) {
+		switch (state) {
+			case CREATED:
+				begin();
+				break;
+			case PAUSED:
+				pausedWhileHosted = true;
+				return Long.MAX_VALUE;
+			case EXITING:
+				end();
+				return -1;
+			case TERMINATED:
+				return -1;
+			default:
+				break;
+		}
+		if (pausedWhileHosted) {
+			pausedWhileHosted = false;
+			stamp = now();
+		}
+		for (int iteration = 0; iteration < maxIterations && state == RUNNING; iteration++) {
+			if (stepMode == AS_FAST_AS_POSSIBLE) {
+				if (!skipToNextDueIteration()) {
+					return Long.MAX_VALUE;
+				}
+				iterate(0);
+			} else {
+				final long deltaTicks = now() - stamp;
+				if (deltaTicks <= ticksPerIteration) {
+					catchUpSteps = 0;
+					return calculateTicksToWait(deltaTicks);
+				}
+				iterateBehindWallClock(deltaTicks);
+			}
+		}
+		return 0;
+	}
+
+	/***
+	 * Wakes the engine through its host rather than by unparking the engine thread
+	 */
+	void setHostWakeUp(Runnable hostWakeUp) {
+		this.hostWakeUp = hostWakeUp;
+	}
+
+	/***
+	 * An engine stopped before it was started stays stopped, and only terminates its tasks
+	 */
+	private synchronized void begin() {
+		if (state == CREATED) {
+			state = RUNNING;
+		}
+		currentEngineTick = 0;
+		stamp = now();
+	}
+
+	private void end() {
 		terminateTasks();
+		if (ownsPool) {
+			parallelTicker.shutdown();
+		}
 		state = TERMINATED;
 	}
 
-	private void updateTickScaleIfNecessary(float currentTickScale) {
-		if (tickScaleIsDirty) {
-			for (final TickableTask task : tasks) {
-				task.setTickScale(currentTickScale);
+	private void stepInRealTime() {
+		final long deltaTicks = now() - stamp;
+		if (deltaTicks > ticksPerIteration) {
+			iterateBehindWallClock(deltaTicks);
+			idleStrategy.reset();
+		} else {
+			catchUpSteps = 0;
+			idleStrategy.idle(calculateTicksToWait(deltaTicks));
+		}
+	}
+
+	/***
+	 * Once the engine has caught up for the maximum number of steps in a row, the iterations it is
+	 * still behind on are skipped
+	 */
+	private void iterateBehindWallClock(long deltaTicks) {
+		if (catchUpSteps >= maxCatchUpSteps) {
+			final long skippedIterations = (deltaTicks - 1) / ticksPerIteration - 1;
+			stamp += skippedIterations * ticksPerIteration;
+			metrics.recordSkippedIterations(skippedIterations);
+			catchUpSteps = 0;
+		}
+		iterate(deltaTicks - ticksPerIteration);
+		stamp += ticksPerIteration;
+		catchUpSteps++;
+	}
+
+	private void stepAsFastAsPossible() {
+		if (skipToNextDueIteration()) {
+			iterate(0);
+			idleStrategy.reset();
+		} else {
+			idleStrategy.idle(Long.MAX_VALUE);
+		}
+	}
+
+	/***
+	 * @return False if no task will ever be due without new tasks being added
+	 */
+	private boolean skipToNextDueIteration() {
+		if (newTasks.isEmpty()) {
+			final long nextDueTick = tasks.getNextDueTick();
+			if (nextDueTick == Long.MAX_VALUE) {
+				return false;
 			}
+			final long emptyIterations = max(0, -floorDiv(currentEngineTick - nextDueTick, ticksPerIteration) - 1);
+			currentEngineTick += emptyIterations * ticksPerIteration;
+		}
+		return true;
+	}
+
+	private void iterate(long lag) {
+		final long iterationStamp = nanoTime();
+		currentEngineTick += ticksPerIteration;
+		updateTickScaleIfNecessary();
+		includeNewTasksIfAny(currentEngineTick, currentTickScale);
+		applyTaskChangesIfAny();
+		if (profiler != null) {
+			profiler.recordQueueDepth(tasks.size());
+		}
+		iterateTasks();
+		metrics.recordIteration(lag, nanoTime() - iterationStamp);
+	}
+
+	/***
+	 * New tasks are included in the next iteration, otherwise nothing happens before the iteration
+	 * where the next task is due
+	 */
+	private long calculateTicksToWait(long deltaTicks) {
+		final long ticksToNextIteration = ticksPerIteration - deltaTicks + 1;
+		if (!newTasks.isEmpty()) {
+			return ticksToNextIteration;
+		}
+		final long nextDueTick = tasks.getNextDueTick();
+		if (nextDueTick == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		final long iterations = max(1, -floorDiv(currentEngineTick - nextDueTick, ticksPerIteration));
+		return ticksToNextIteration + (iterations - 1) * ticksPerIteration;
+	}
+
+	/***
+	 * The flag is cleared before the scale is read, so a scale set meanwhile is applied again in the
+	 * next iteration
+	 */
+	private void updateTickScaleIfNecessary() {
+		if (tickScaleIsDirty) {
+			tickScaleIsDirty = false;
+			final float tickScale = currentTickScale;
+			tasks.forEach(task -> task.setTickScale(tickScale));
 		}
 	}
 
 	private void includeNewTasksIfAny(long currentEngineTick, float tickScale) {
-		if (newTasks.size() > 0) {
-			synchronized (newTasks) {
-				newTasks.stream().forEachOrdered(task -> {
-					task.initialize(this, currentEngineTick, tickScale);
-					tasks.add(task);
-				});
-				newTasks.clear();
+		for (TickableTask task = newTasks.poll(); task != null; task = newTasks.poll()) {
+			task.initialize(this, currentEngineTick, tickScale);
+			includedTasks.add(task);
+		}
+		if (!includedTasks.isEmpty()) {
+			tasks.scheduleAll(includedTasks);
+			includedTasks.clear();
+		}
+	}
+
+	/***
+	 * Cancelled and rescheduled tasks come out of the scheduler in one pass, and the rescheduled ones
+	 * go back in as one batch before the cancelled ones are finished
+	 */
+	private void applyTaskChangesIfAny() {
+		if (taskChangesArePending) {
+			taskChangesArePending = false;
+			tasks.removeIf(TickableTask::hasPendingChange, changedTasks::add);
+			for (final TickableTask task : changedTasks) {
+				if (!task.isCancelled()) {
+					task.applyRequestedTicksPerTaskIteration(currentEngineTick);
+					rescheduledTasks.add(task);
+				}
 			}
+			tasks.scheduleAll(rescheduledTasks);
+			rescheduledTasks.clear();
+			for (final TickableTask task : changedTasks) {
+				if (task.isCancelled()) {
+					finishTask(task);
+				}
+			}
+			changedTasks.clear();
 		}
 	}
 
 	private void iterateTasks() {
-		while (tasks.size() > 0 && tasks.peek().getTimeOfNextTick() <= currentEngineTick) {
-			final TickableTask task = tasks.poll();
-			task.tick();
+		if (parallelTicker != null) {
+			parallelTicker.tickDueTasks(tasks, currentEngineTick, newTasks::add, this::finishTask);
+			return;
+		}
+		for (TickableTask task = tasks.pollDue(currentEngineTick); task != null; task = tasks.pollDue(currentEngineTick)) {
+			if (profiler == null) {
+				task.tick();
+			} else {
+				profiler.tick(task, currentEngineTick);
+			}
 			if (task.shouldRunAgain()) {
-				tasks.add(task);
+				tasks.schedule(task);
 			} else {
-				task.terminate();
-				if (exitWhenDone && tasks.size() == 0 && newTasks.size() == 0) {
-					stop();
-				}
+				finishTask(task);
 			}
 		}
 	}
 
-	private void sleepSilently() {
-		try {
-			sleep(0, 0);
-		} catch (final InterruptedException e) {
+	private void finishTask(TickableTask task) {
+		task.terminate();
+		if (exitWhenDone && tasks.size() == 0 && newTasks.isEmpty()) {
+			stop();
 		}
 	}
 
+	/***
+	 * Tasks added but not included yet are terminated as well
+	 */
 	private void terminateTasks() {
-		for (final TickableTask task : tasks) {
+		tasks.forEach(TickableTask::terminate);
+		for (TickableTask task = newTasks.poll(); task != null; task = newTasks.poll()) {
 			task.terminate();
 		}
 	}
@@ -148,11 +447,143 @@ public class TickingEngine implements Runnable {
 		return state;
 	}
 
+	public EngineMetrics getMetrics() {
+		return metrics;
+	}
+
+	/***
+	 * @return The profiler set on the builder, or null if the engine is not profiled
+	 */
+	public TaskProfiler getTaskProfiler() {
+		return profiler;
+	}
+
 	private long now() {
 		return nanoTime() / 1000;
 	}
 
-	public void stop() {
+	/***
+	 * Parks the engine thread until resumed. Iterations missed while paused are not caught up.
+	 */
+	public synchronized void pause() {
+		if (state == RUNNING) {
+			state = PAUSED;
+			wakeUp();
+		}
+	}
+
+	public synchronized void resume() {
+		if (state == PAUSED) {
+			state = RUNNING;
+			wakeUp();
+		}
+	}
+
+	public synchronized void stop() {
 		state = EXITING;
+		wakeUp();
+	}
+
+	private void wakeUp() {
+		final Runnable hostWakeUp = this.hostWakeUp;
+		if (hostWakeUp != null) {
+			hostWakeUp.run();
+			return;
+		}
+		final Thread runner = this.runner;
+		if (runner != null && runner != Thread.currentThread()) {
+			unpark(runner);
+		}
+	}
+
+	public static class Builder {
+		private int ticksPerIteration;
+		private boolean exitWhenDone;
+		private SchedulerType schedulerType;
+		private int parallelism;
+		private ForkJoinPool pool;
+		private IdleStrategy idleStrategy;
+		private StepMode stepMode;
+		private int maxCatchUpSteps;
+		private TaskProfiler profiler;
+
+		public Builder() {
+			ticksPerIteration = DEFAULT_TICKS_PER_ITERATION;
+			exitWhenDone = false;
+			schedulerType = SchedulerType.PRIORITY_QUEUE;
+			parallelism = 0;
+			pool = null;
+			idleStrategy = null;
+			stepMode = StepMode.REAL_TIME;
+			maxCatchUpSteps = Integer.MAX_VALUE;
+			profiler = null;
+		}
+
+		public Builder setTicksPerIteration(int ticksPerIteration) {
+			this.ticksPerIteration = ticksPerIteration;
+			return this;
+		}
+
+		public Builder setExitWhenDone(boolean exitWhenDone) {
+			this.exitWhenDone = exitWhenDone;
+			return this;
+		}
+
+		public Builder setSchedulerType(SchedulerType schedulerType) {
+			this.schedulerType = schedulerType;
+			return this;
+		}
+
+		/***
+		 * Ticks the tasks due in an iteration in parallel, on a pool of its own with this many threads
+		 * that is shut down with the engine. 0 ticks them serially on the engine thread.
+		 */
+		public Builder setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/***
+		 * Ticks the tasks due in an iteration in parallel, on a pool shared with others
+		 */
+		public Builder setPool(ForkJoinPool pool) {
+			this.pool = pool;
+			return this;
+		}
+
+		/***
+		 * What the engine thread does while ahead of schedule. Defaults to a new
+		 * {@link BackoffIdleStrategy} per engine.
+		 */
+		public Builder setIdleStrategy(IdleStrategy idleStrategy) {
+			this.idleStrategy = idleStrategy;
+			return this;
+		}
+
+		public Builder setStepMode(StepMode stepMode) {
+			this.stepMode = stepMode;
+			return this;
+		}
+
+		/***
+		 * In real time mode, the number of iterations run back to back before the engine gives up on
+		 * the iterations it is still behind on. Unlimited by default.
+		 */
+		public Builder setMaxCatchUpSteps(int maxCatchUpSteps) {
+			this.maxCatchUpSteps = maxCatchUpSteps;
+			return this;
+		}
+
+		/***
+		 * Profiles every tick of the engine. Not profiled by default.
+		 */
+		public Builder setTaskProfiler(TaskProfiler profiler) {
+			this.profiler = profiler;
+			return this;
+		}
+
+		public TickingEngine build() {
+			return new TickingEngine(this);
+		}
 	}
 }
\ No newline at end of file
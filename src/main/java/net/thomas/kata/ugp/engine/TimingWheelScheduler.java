@@ -0,0 +1,280 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.lang.Math.floorDiv;
+import static java.lang.Math.min;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/***
+ * Hierarchical timing wheel, after Varghese and Lauck. Time is cut into slots of a fixed number of
+ * ticks, and a task is due in the first slot that starts at or after its tick. The lowest wheel has
+ * a bucket for each of the next 256 slots, and each wheel above covers 256 buckets of the one below.
+ * Tasks further out than the highest wheel wait in an overflow list.<BR>
+ * Scheduling picks the bucket from the distance to the due slot, and advancing one slot empties one
+ * bucket of the lowest wheel into the list of due tasks. Every 256 slots, the next bucket of the
+ * wheel above is spread out over the wheel below. Scheduling and firing are therefore O(1), apart
+ * from a task being moved down once per wheel. Slots are skipped without looking at them while the
+ * wheels below the lowest occupied one are empty. Tasks due in the same slot fire in no particular
+ * order. Removing tasks is a single pass over every bucket.<BR>
+ * Buckets are linked lists through the tasks themselves, so a task must only be scheduled once at a
+ * time.
+ */
+class TimingWheelScheduler implements TaskScheduler {
+	private static final int SLOT_BITS = 8;
+	private static final int SLOTS_PER_WHEEL = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS_PER_WHEEL - 1;
+	private static final int WHEEL_COUNT = 4;
+	private static final int OVERFLOW = WHEEL_COUNT;
+	private static final int NONE = -1;
+
+	private final long ticksPerSlot;
+	private final TickableTask[][] wheels;
+	private final int[] waitingTaskCounts;
+	private TickableTask overflow;
+	private TickableTask firstDueTask;
+	private TickableTask lastDueTask;
+	private long currentSlot;
+	private int size;
+
+	public TimingWheelScheduler(long ticksPerSlot) {
+		this.ticksPerSlot = ticksPerSlot;
+		wheels = new TickableTask[WHEEL_COUNT][SLOTS_PER_WHEEL];
+		waitingTaskCounts = new int[WHEEL_COUNT + 1];
+		currentSlot = 0;
+		size = 0;
+	}
+
+	@Override
+	public void schedule(TickableTask task) {
+		size++;
+		place(task);
+	}
+
+	@Override
+	public void scheduleAll(List<TickableTask> tasks) {
+		size += tasks.size();
+		for (final TickableTask task : tasks) {
+			place(task);
+		}
+	}
+
+	private void place(TickableTask task) {
+		final long dueSlot = -floorDiv(-task.getTimeOfNextTick(), ticksPerSlot);
+		final long distance = dueSlot - currentSlot;
+		if (distance <= 0) {
+			appendDueTask(task);
+			return;
+		}
+		for (int wheel = 0; wheel < WHEEL_COUNT; wheel++) {
+			if (distance < 1L << SLOT_BITS * (wheel + 1)) {
+				final int bucket = (int) (dueSlot >>> SLOT_BITS * wheel) & SLOT_MASK;
+				task.nextScheduledTask = wheels[wheel][bucket];
+				wheels[wheel][bucket] = task;
+				waitingTaskCounts[wheel]++;
+				return;
+			}
+		}
+		task.nextScheduledTask = overflow;
+		overflow = task;
+		waitingTaskCounts[OVERFLOW]++;
+	}
+
+	private void appendDueTask(TickableTask task) {
+		task.nextScheduledTask = null;
+		if (lastDueTask == null) {
+			firstDueTask = task;
+		} else {
+			lastDueTask.nextScheduledTask = task;
+		}
+		lastDueTask = task;
+	}
+
+	@Override
+	public TickableTask pollDue(long currentTick) {
+		final long targetSlot = floorDiv(currentTick, ticksPerSlot);
+		while (currentSlot < targetSlot) {
+			final int lowestWheel = lowestOccupiedWheel();
+			if (lowestWheel == NONE) {
+				currentSlot = targetSlot;
+			} else {
+				final long slotsBeforeNextTurn = (currentSlot | (1L << SLOT_BITS * lowestWheel) - 1) - currentSlot;
+				currentSlot += min(slotsBeforeNextTurn, targetSlot - currentSlot - 1);
+				advance();
+			}
+		}
+		final TickableTask task = firstDueTask;
+		if (task != null) {
+			firstDueTask = task.nextScheduledTask;
+			if (firstDueTask == null) {
+				lastDueTask = null;
+			}
+			task.nextScheduledTask = null;
+			size--;
+		}
+		return task;
+	}
+
+	/***
+	 * Exact for tasks that are already due, and to the slot for the lowest wheel. Tasks in the wheels
+	 * above are not due before their wheel next comes round.
+	 */
+	@Override
+	public long getNextDueTick() {
+		if (firstDueTask != null) {
+			long nextDueTick = Long.MAX_VALUE;
+			for (TickableTask task = firstDueTask; task != null; task = task.nextScheduledTask) {
+				nextDueTick = min(nextDueTick, task.getTimeOfNextTick());
+			}
+			return nextDueTick;
+		}
+		long slot = Long.MAX_VALUE;
+		if (waitingTaskCounts[0] > 0) {
+			for (int offset = 1; offset < SLOTS_PER_WHEEL; offset++) {
+				if (wheels[0][(int) (currentSlot + offset) & SLOT_MASK] != null) {
+					slot = currentSlot + offset;
+					break;
+				}
+			}
+		}
+		for (int wheel = 1; wheel <= OVERFLOW; wheel++) {
+			if (waitingTaskCounts[wheel] > 0) {
+				slot = min(slot, (currentSlot | (1L << SLOT_BITS * wheel) - 1) + 1);
+				break;
+			}
+		}
+		return slot == Long.MAX_VALUE ? Long.MAX_VALUE : (slot - 1) * ticksPerSlot + 1;
+	}
+
+	@Override
+	public void removeIf(Predicate<TickableTask> filter, Consumer<TickableTask> removedTaskConsumer) {
+		TickableTask task = firstDueTask;
+		firstDueTask = null;
+		lastDueTask = null;
+		while (task != null) {
+			final TickableTask next = task.nextScheduledTask;
+			if (filter.test(task)) {
+				remove(task, removedTaskConsumer);
+			} else {
+				appendDueTask(task);
+			}
+			task = next;
+		}
+		for (int wheel = 0; wheel < WHEEL_COUNT; wheel++) {
+			for (int bucket = 0; bucket < SLOTS_PER_WHEEL; bucket++) {
+				wheels[wheel][bucket] = removeFromList(wheels[wheel][bucket], wheel, filter, removedTaskConsumer);
+			}
+		}
+		overflow = removeFromList(overflow, OVERFLOW, filter, removedTaskConsumer);
+	}
+
+	/***
+	 * @return The new first task of the list
+	 */
+	private TickableTask removeFromList(TickableTask first, int wheel, Predicate<TickableTask> filter, Consumer<TickableTask> removedTaskConsumer) {
+		TickableTask newFirst = null;
+		TickableTask previous = null;
+		TickableTask task = first;
+		while (task != null) {
+			final TickableTask next = task.nextScheduledTask;
+			if (filter.test(task)) {
+				waitingTaskCounts[wheel]--;
+				remove(task, removedTaskConsumer);
+			} else {
+				if (previous == null) {
+					newFirst = task;
+				} else {
+					previous.nextScheduledTask = task;
+				}
+				previous = task;
+			}
+			task = next;
+		}
+		if (previous != null) {
+			previous.nextScheduledTask = null;
+		}
+		return newFirst;
+	}
+
+	private void remove(TickableTask task, Consumer<TickableTask> removedTaskConsumer) {
+		task.nextScheduledTask = null;
+		size--;
+		removedTaskConsumer.accept(task);
+	}
+
+	private int lowestOccupiedWheel() {
+		for (int wheel = 0; wheel <= OVERFLOW; wheel++) {
+			if (waitingTaskCounts[wheel] > 0) {
+				return wheel;
+			}
+		}
+		return NONE;
+	}
+
+	/***
+	 * When the lowest wheel comes round, the next bucket of the wheel above is spread out first, and
+	 * so on upwards for every wheel that comes round as well
+	 */
+	private void advance() {
+		currentSlot++;
+		if ((currentSlot & SLOT_MASK) == 0) {
+			for (int wheel = 1; wheel <= WHEEL_COUNT; wheel++) {
+				if (wheel == OVERFLOW) {
+					final TickableTask tasks = overflow;
+					overflow = null;
+					placeAgain(tasks, OVERFLOW);
+					break;
+				}
+				final int bucket = (int) (currentSlot >>> SLOT_BITS * wheel) & SLOT_MASK;
+				final TickableTask tasks = wheels[wheel][bucket];
+				wheels[wheel][bucket] = null;
+				placeAgain(tasks, wheel);
+				if (bucket != 0) {
+					break;
+				}
+			}
+		}
+		final int bucket = (int) currentSlot & SLOT_MASK;
+		TickableTask task = wheels[0][bucket];
+		wheels[0][bucket] = null;
+		while (task != null) {
+			final TickableTask next = task.nextScheduledTask;
+			waitingTaskCounts[0]--;
+			appendDueTask(task);
+			task = next;
+		}
+	}
+
+	private void placeAgain(TickableTask tasks, int wheel) {
+		TickableTask task = tasks;
+		while (task != null) {
+			final TickableTask next = task.nextScheduledTask;
+			waitingTaskCounts[wheel]--;
+			place(task);
+			task = next;
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void forEach(Consumer<TickableTask> action) {
+		forEachInList(firstDueTask, action);
+		for (final TickableTask[] wheel : wheels) {
+			for (final TickableTask bucket : wheel) {
+				forEachInList(bucket, action);
+			}
+		}
+		forEachInList(overflow, action);
+	}
+
+	private static void forEachInList(TickableTask first, Consumer<TickableTask> action) {
+		for (TickableTask task = first; task != null; task = task.nextScheduledTask) {
+			action.accept(task);
+		}
+	}
+}
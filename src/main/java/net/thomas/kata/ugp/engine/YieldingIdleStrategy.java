@@ -0,0 +1,16 @@
+package net.thomas.kata.ugp.engine;
+
+/***
+ * Gives up the core to other runnable threads, but stays runnable itself, so an idle engine still
+ * uses a full core when nothing else wants it.
+ */
+public class YieldingIdleStrategy implements IdleStrategy {
+	@Override
+	public void idle(long ticksToWait) {
+		Thread.yield();
+	}
+
+	@Override
+	public void reset() {
+	}
+}
@@ -0,0 +1,111 @@
+package net.thomas.kata.ugp.util;
+
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.lang.Math.max;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/***
+ * Histogram of non negative values in logarithmic buckets. Every power of two is split into 8
+ * buckets, so a value read back from the histogram is at most 12.5% above the value recorded.
+ * Recording is lock free and may happen from any number of threads.
+ */
+public class LogHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts;
+	private final AtomicLong count;
+	private final AtomicLong sum;
+	private final AtomicLong max;
+
+	public LogHistogram() {
+		counts = new AtomicLongArray(BUCKET_COUNT);
+		count = new AtomicLong();
+		sum = new AtomicLong();
+		max = new AtomicLong();
+	}
+
+	public void record(long value) {
+		final long recordedValue = max(0, value);
+		counts.incrementAndGet(bucketOf(recordedValue));
+		count.incrementAndGet();
+		sum.addAndGet(recordedValue);
+		if (recordedValue > max.get()) {
+			max.accumulateAndGet(recordedValue, Math::max);
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		final long count = this.count.get();
+		return count == 0 ? 0.0 : (double) sum.get() / count;
+	}
+
+	/***
+	 * @param percentile
+	 *            Between 0 and 100
+	 * @return The highest value of the bucket holding the value at the percentile, but at most the
+	 *         highest value recorded. 0 if nothing has been recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		final long count = this.count.get();
+		if (count == 0) {
+			return 0;
+		}
+		final long rank = max(1, (long) Math.ceil(percentile / 100.0 * count));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			seen += counts.get(bucket);
+			if (seen >= rank) {
+				return Math.min(highestValueOf(bucket), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			counts.set(bucket, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	/***
+	 * Values below 8 have a bucket each. Above that, the highest bit picks the power of two and the
+	 * next 3 bits the bucket within it.
+	 */
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int exponent = 63 - numberOfLeadingZeros(value);
+		final int subBucket = (int) (value >>> exponent - SUB_BUCKET_BITS) & SUB_BUCKETS - 1;
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long highestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		final long subBucket = bucket % SUB_BUCKETS;
+		final long lowestValue = 1L << exponent | subBucket << exponent - SUB_BUCKET_BITS;
+		return lowestValue + (1L << exponent - SUB_BUCKET_BITS) - 1;
+	}
+}
@@ -2,6 +2,7 @@ package net.thomas.kata.ugp.world.action;
 
 import net.thomas.kata.ugp.engine.TickableTask;
 import net.thomas.kata.ugp.engine.TickingEngine;
+import net.thomas.kata.ugp.engine.TickingEngine.StepMode;
 
 public abstract class Scene implements Runnable {
 	private static final int HUNDRED_FPS = 10000;
@@ -12,6 +13,15 @@ public abstract class Scene implements Runnable {
 		engine = new TickingEngine(HUNDRED_FPS, EXIT_WHEN_DONE);
 	}
 
+	/***
+	 * @param stepMode
+	 *            {@link StepMode#AS_FAST_AS_POSSIBLE} replays the scene without waiting for the wall
+	 *            clock
+	 */
+	protected Scene(StepMode stepMode) {
+		engine = new TickingEngine.Builder().setTicksPerIteration(HUNDRED_FPS).setExitWhenDone(EXIT_WHEN_DONE).setStepMode(stepMode).build();
+	}
+
 	protected void addTasks(TickableTask... tasks) {
 		engine.addTasks(tasks);
 	}
@@ -24,4 +34,8 @@ public abstract class Scene implements Runnable {
 	protected void markCompleted() {
 		engine.stop();
 	}
+
+	TickingEngine getEngine() {
+		return engine;
+	}
 }
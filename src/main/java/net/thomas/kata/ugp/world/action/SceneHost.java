@@ -0,0 +1,52 @@
+package net.thomas.kata.ugp.world.action;
+
+import java.util.concurrent.TimeUnit;
+
+import net.thomas.kata.ugp.engine.EngineHost;
+
+/***
+ * Runs many scenes on a fixed number of shards instead of on a thread per scene, see
+ * {@link EngineHost}. A hosted scene is started by the host and must not be run as well.
+ */
+public class SceneHost {
+	private final EngineHost host;
+
+	/***
+	 * One shard per available processor
+	 */
+	public SceneHost() {
+		host = new EngineHost();
+	}
+
+	public SceneHost(int shardCount) {
+		host = new EngineHost(shardCount);
+	}
+
+	public void host(Scene scene) {
+		host.host(scene.getEngine());
+	}
+
+	public void migrate(Scene scene, int shardIndex) {
+		host.migrate(scene.getEngine(), shardIndex);
+	}
+
+	public void rebalance() {
+		host.rebalance();
+	}
+
+	public int getShardCount() {
+		return host.getShardCount();
+	}
+
+	public int[] getSceneCountPerShard() {
+		return host.getEngineCountPerShard();
+	}
+
+	public void shutdown() {
+		host.shutdown();
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return host.awaitTermination(timeout, unit);
+	}
+}
@@ -0,0 +1,54 @@
+package net.thomas.kata.geometry;
+
+import net.thomas.kata.geometry.objects.PolygonBuilder;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+
+/***
+ * Generators for large polygons used by the time trials.
+ */
+public class SamplePolygons {
+	/***
+	 * A comb with teeth pointing downwards. Every tooth contributes an edge to the sweep line status
+	 * at the same time, and the teeth arrive in sorted x order.
+	 */
+	public static PolygonVertex buildComb(int numberOfTeeth, double height) {
+		final PolygonBuilder builder = new PolygonBuilder();
+		for (int i = 0; i < numberOfTeeth; i++) {
+			builder.add(2 * i, 0);
+			builder.add(2 * i + 1, 0);
+			if (i < numberOfTeeth - 1) {
+				builder.add(2 * i + 1, height - 1);
+				builder.add(2 * i + 2, height - 1);
+			}
+		}
+		builder.add(2 * numberOfTeeth - 1, height);
+		builder.add(0, height);
+		return builder.build();
+	}
+
+	/***
+	 * A single corridor winding back and forth, made by alternating walls from the bottom and from
+	 * the top. Routes from one end to the other have to pass every wall.
+	 */
+	public static PolygonVertex buildSerpentine(int numberOfWalls, double height) {
+		final PolygonBuilder builder = new PolygonBuilder();
+		final int width = 4 * numberOfWalls - 1;
+		builder.add(0, 0);
+		for (int i = 0; i < numberOfWalls; i++) {
+			builder.add(4 * i + 1, 0);
+			builder.add(4 * i + 1, height - 2);
+			builder.add(4 * i + 2, height - 2);
+			builder.add(4 * i + 2, 0);
+		}
+		builder.add(width, 0);
+		builder.add(width, height);
+		for (int i = numberOfWalls - 2; i >= 0; i--) {
+			builder.add(4 * i + 4, height);
+			builder.add(4 * i + 4, 2);
+			builder.add(4 * i + 3, 2);
+			builder.add(4 * i + 3, height);
+		}
+		builder.add(0, height);
+		return builder.build();
+	}
+}
@@ -5,6 +5,6 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ SweeplineUnitTest.class, VertexSideMapForMonotonePolygonUnitTest.class, EdgeUnitTest.class, PolygonUtilImplUnitTest.class,
-		StatusSearchTreeUnitTest.class })
+		StatusSearchTreeUnitTest.class, GeometricPredicatesUnitTest.class })
 public class AlgorithmTestSuite {
 }
\ No newline at end of file
@@ -43,4 +43,19 @@ public class EdgeUnitTest {
 		final Edge edge = new Edge(new PolygonVertex(1, -1), new PolygonVertex(1, 1));
 		assertFalse(edge.isLeftOf(new PolygonVertex(2, 0)));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void shouldBeLeftOfHorizontalEdgeWhenBelowIt() {
+		final Edge edge = new Edge(new PolygonVertex(2, 1), new PolygonVertex(0, 1));
+		assertTrue(edge.isLeftOf(new PolygonVertex(5, 0)));
+		assertFalse(edge.isLeftOf(new PolygonVertex(-5, 2)));
+	}
+
+	@Test
+	public void shouldDecideNearlyCollinearVertexExactly() {
+		final double offset = 1.0e9;
+		final Edge edge = new Edge(new PolygonVertex(offset, offset), new PolygonVertex(offset + 2, offset + 2));
+		assertTrue(edge.isLeftOf(new PolygonVertex(offset + 1 - Math.ulp(offset), offset + 1)));
+		assertFalse(edge.isLeftOf(new PolygonVertex(offset + 1 + Math.ulp(offset), offset + 1)));
+	}
+}
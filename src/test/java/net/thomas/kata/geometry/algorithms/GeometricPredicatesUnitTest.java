@@ -0,0 +1,65 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.lang.Math.ulp;
+import static net.thomas.kata.geometry.algorithms.GeometricPredicates.incircle;
+import static net.thomas.kata.geometry.algorithms.GeometricPredicates.orient2d;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GeometricPredicatesUnitTest {
+	@Test
+	public void shouldBePositiveForCounterclockwiseTriangle() {
+		assertTrue(orient2d(0, 0, 1, 0, 0, 1) > 0);
+	}
+
+	@Test
+	public void shouldBeNegativeForClockwiseTriangle() {
+		assertTrue(orient2d(0, 0, 0, 1, 1, 0) < 0);
+	}
+
+	@Test
+	public void shouldBeZeroForCollinearPoints() {
+		assertEquals(0.0, orient2d(0, 0, 1, 1, 3, 3), 0.0);
+	}
+
+	@Test
+	public void shouldOrientNearlyCollinearPointsExactly() {
+		final double x = 0.5 + 3 * ulp(0.5);
+		final double y = 0.5 + 2 * ulp(0.5);
+		assertTrue(orient2d(x, y, 12, 12, 24, 24) < 0);
+		assertTrue(orient2d(y, x, 12, 12, 24, 24) > 0);
+		assertEquals(0.0, orient2d(x, x, 12, 12, 24, 24), 0.0);
+	}
+
+	@Test
+	public void shouldOrientNearlyCollinearPointsAtLargeCoordinates() {
+		final double offset = 1.0e9;
+		assertTrue(orient2d(offset, offset, offset + 1, offset + 1, offset + 2, offset + 2 + ulp(offset)) > 0);
+		assertTrue(orient2d(offset, offset, offset + 1, offset + 1, offset + 2, offset + 2 - ulp(offset)) < 0);
+	}
+
+	@Test
+	public void shouldBePositiveForPointInsideCircle() {
+		assertTrue(incircle(0, 0, 2, 0, 0, 2, 1, 1) > 0);
+	}
+
+	@Test
+	public void shouldBeNegativeForPointOutsideCircle() {
+		assertTrue(incircle(0, 0, 2, 0, 0, 2, 3, 3) < 0);
+	}
+
+	@Test
+	public void shouldBeZeroForCocircularPoints() {
+		assertEquals(0.0, incircle(0, 0, 2, 0, 2, 2, 0, 2), 0.0);
+	}
+
+	@Test
+	public void shouldDecideNearlyCocircularPointsExactly() {
+		final double offset = 1.0e6;
+		final double nudge = ulp(offset + 2);
+		assertTrue(incircle(offset, offset, offset + 2, offset, offset + 2, offset + 2, offset + nudge, offset + 2) > 0);
+		assertTrue(incircle(offset, offset, offset + 2, offset, offset + 2, offset + 2, offset - nudge, offset + 2) < 0);
+	}
+}
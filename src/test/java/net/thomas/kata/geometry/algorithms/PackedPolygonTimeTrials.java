@@ -0,0 +1,51 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.lang.System.nanoTime;
+import static java.util.Collections.singletonList;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.objects.PackedPolygons;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+
+/***
+ * Compares time and allocated heap per vertex for triangulating with {@link PolygonVertex} and
+ * {@link PackedPolygons}.
+ */
+public class PackedPolygonTimeTrials {
+	private static final int[] SIZES = { 1000, 10000, 100000, 250000 };
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) {
+		final PolygonUtil util = new PolygonUtilImpl();
+		for (final int size : SIZES) {
+			final PolygonVertex comb = buildComb(size, 1000);
+			final int vertexCount = 4 * size;
+			executeTest("Object triangulation of comb with " + vertexCount + " vertices:", vertexCount, () -> {
+				final Collection<PolygonVertex> monotoneParts = util.getMonotoneParts(singletonList(comb));
+				util.triangulateMonotonePolygons(monotoneParts);
+			});
+			final PackedPolygons packedComb = PackedPolygons.pack(singletonList(comb));
+			executeTest("Packed triangulation of comb with " + vertexCount + " vertices:", vertexCount, () -> {
+				final PackedPolygons monotoneParts = util.getMonotoneParts(packedComb);
+				util.triangulateMonotonePolygons(monotoneParts);
+			});
+		}
+	}
+
+	private static void executeTest(String description, int vertexCount, Runnable test) {
+		final long allocatedBytes = allocatedBytes();
+		final long stamp = nanoTime();
+		test.run();
+		final long timeSpend = nanoTime() - stamp;
+		final long bytesPerVertex = (allocatedBytes() - allocatedBytes) / vertexCount;
+		System.out.println(description + " " + timeSpend / 10000 / 100.0d + " ms, " + bytesPerVertex + " bytes allocated per vertex");
+	}
+
+	private static long allocatedBytes() {
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,61 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.lang.System.nanoTime;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.objects.PolygonBuilder;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+
+/***
+ * Compares sequential and fork join triangulation of a map made from many disjoint combs.
+ */
+public class ParallelTriangulationTimeTrials {
+	private static final int COMB_COUNT = 64;
+	private static final int TEETH_PER_COMB = 2000;
+
+	public static void main(String[] args) {
+		final List<PolygonVertex> combs = new ArrayList<>();
+		for (int i = 0; i < COMB_COUNT; i++) {
+			combs.add(translate(buildComb(TEETH_PER_COMB, 100), 0, i * 200));
+		}
+		final PolygonUtil sequentialUtil = new PolygonUtilImpl();
+		final PolygonUtil parallelUtil = new PolygonUtilImpl(ForkJoinPool.commonPool());
+		for (int round = 0; round < 3; round++) {
+			executeTest("Sequential triangulation of " + COMB_COUNT + " combs:", () -> {
+				sequentialUtil.triangulateMonotonePolygons(sequentialUtil.getMonotoneParts(copy(combs)));
+			});
+			executeTest("Parallel triangulation of " + COMB_COUNT + " combs (parallelism " + ForkJoinPool.commonPool().getParallelism() + "):", () -> {
+				parallelUtil.triangulateMonotonePolygons(parallelUtil.getMonotoneParts(copy(combs)));
+			});
+		}
+	}
+
+	private static Collection<PolygonVertex> copy(List<PolygonVertex> polygons) {
+		final List<PolygonVertex> copies = new ArrayList<>();
+		for (final PolygonVertex polygon : polygons) {
+			copies.add(translate(polygon, 0, 0));
+		}
+		return copies;
+	}
+
+	private static PolygonVertex translate(PolygonVertex polygon, double dx, double dy) {
+		final PolygonBuilder builder = new PolygonBuilder();
+		for (final PolygonVertex vertex : polygon) {
+			builder.add(vertex.x + dx, vertex.y + dy);
+		}
+		return builder.build();
+	}
+
+	private static void executeTest(String description, Runnable test) {
+		final long stamp = nanoTime();
+		test.run();
+		final long timeSpend = nanoTime() - stamp;
+		System.out.println(description + " " + timeSpend / 10000 / 100.0d + " ms");
+	}
+}
@@ -1,19 +1,45 @@
 package net.thomas.kata.geometry.algorithms;
 
 import static java.util.Arrays.asList;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+import static net.thomas.kata.geometry.objects.PackedPolygons.NONE;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide.TRIANGLE_SIDES;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_1;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_2;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.VERTEX_3;
+import static net.thomas.kata.geometry.objects.PolygonTriangle.TriangleVertex.matchingSide;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.objects.PackedPolygons;
+import net.thomas.kata.geometry.objects.PackedTriangles;
 import net.thomas.kata.geometry.objects.PolygonBuilder;
+import net.thomas.kata.geometry.objects.PolygonTriangle;
+import net.thomas.kata.geometry.objects.PolygonTriangle.TriangleSide;
 import net.thomas.kata.geometry.objects.PolygonVertex;
+import net.thomas.kata.geometry.pathfinding.PathfindingUtil;
+import net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
 
 public class PolygonUtilImplUnitTest {
+	private static final double EPSILON = 0.0000001d;
 	private PolygonUtil util;
 	private PolygonBuilder builder;
 
@@ -126,4 +152,343 @@ public class PolygonUtilImplUnitTest {
 		assertEquals(vertex2, monotoneParts.next());
 		assertFalse(monotoneParts.hasNext());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void shouldNotChangeSimplePackedPolygon() {
+		final PackedPolygons polygons = new PackedPolygons();
+		final int root = polygons.addPolygon(0, 0, 1, 1, 0, 1);
+		final PackedPolygons monotoneParts = util.getMonotoneParts(polygons);
+		assertEquals(1, monotoneParts.getPolygonCount());
+		assertEquals(3, monotoneParts.countVertices(monotoneParts.getPolygonRoot(0)));
+		assertEquals(root, monotoneParts.getPolygonRoot(0));
+	}
+
+	@Test
+	public void shouldHandlePackedMergeCasesCorrectly() {
+		final PackedPolygons polygons = new PackedPolygons();
+		polygons.addPolygon(0, 0, 6, 0, 6, 4, 5, 3, 4, 4, 3, 2, 2, 3, 1, 2, 0, 4);
+		final PackedPolygons monotoneParts = util.getMonotoneParts(polygons);
+		assertEquals(4, monotoneParts.getPolygonCount());
+	}
+
+	@Test
+	public void shouldHandlePackedSplitCaseCorrectly() {
+		final PackedPolygons polygons = new PackedPolygons();
+		polygons.addPolygon(0, 0, 1, 1, 2, 0, 2, 2, 0, 2);
+		final PackedPolygons monotoneParts = util.getMonotoneParts(polygons);
+		assertEquals(2, monotoneParts.getPolygonCount());
+	}
+
+	@Test
+	public void shouldTriangulatePackedPolygon() {
+		final PackedPolygons polygons = new PackedPolygons();
+		polygons.addPolygon(0, 0, 6, 0, 6, 4, 5, 3, 4, 4, 3, 2, 2, 3, 1, 2, 0, 4);
+		final PackedPolygons monotoneParts = util.getMonotoneParts(polygons);
+		final PackedTriangles triangles = util.triangulateMonotonePolygons(monotoneParts);
+		assertEquals(7, triangles.getTriangleCount());
+		for (int triangle = 0; triangle < triangles.getTriangleCount(); triangle++) {
+			assertTrue("Triangle " + triangle + " was not counterclockwise", signedArea(triangles, triangle) > 0);
+		}
+	}
+
+	@Test
+	public void shouldConnectPackedTrianglesBothWays() {
+		final PackedPolygons polygons = new PackedPolygons();
+		polygons.addPolygon(0, 0, 2, 0, 3, 1, 2, 2, 0, 2, -1, 1);
+		final PackedTriangles triangles = util.triangulateMonotonePolygons(util.getMonotoneParts(polygons));
+		assertEquals(4, triangles.getTriangleCount());
+		int connections = 0;
+		for (int triangle = 0; triangle < triangles.getTriangleCount(); triangle++) {
+			for (int side = 0; side < 3; side++) {
+				final int neighbour = triangles.getNeighbour(triangle, side);
+				if (neighbour != NONE) {
+					assertNotEquals(NONE, sideTowards(triangles, neighbour, triangle));
+					connections++;
+				}
+			}
+		}
+		assertEquals(6, connections);
+	}
+
+	@Test
+	public void shouldCutPackedDiagonalsFromCopyOfHelperFacingThem() {
+		final PackedPolygons polygons = new PackedPolygons();
+		polygons.addPolygon(0, 0, 100, 0, 100, 100, 0, 100);
+		polygons.addPolygon(14, 8, 14, 10, 19, 10, 19, 8);
+		polygons.addPolygon(52, 9, 52, 12, 55, 12, 55, 9);
+		final PackedPolygons monotoneParts = util.getMonotoneParts(polygons);
+		assertEquals(3, monotoneParts.getPolygonCount());
+		assertEquals(100 * 100 - 5 * 2 - 3 * 3, totalArea(util.triangulateMonotonePolygons(monotoneParts)), EPSILON);
+	}
+
+	@Test
+	public void shouldTriangulateRegionsWithSeveralHolesToTheSameAreaInBothPipelines() {
+		final double[] square = { 0, 0, 100, 0, 100, 100, 0, 100 };
+		final double[][][] holeLayouts = { { { 14, 8, 14, 10, 19, 10, 19, 8 }, { 52, 9, 52, 12, 55, 12, 55, 9 } },
+				{ { 10, 10, 10, 15, 20, 15, 20, 10 }, { 30, 20, 30, 30, 35, 30, 35, 20 }, { 60, 5, 60, 12, 70, 12, 70, 5 } },
+				{ { 10, 40, 10, 50, 20, 50, 20, 40 }, { 30, 40, 30, 50, 40, 50, 40, 40 }, { 50, 40, 50, 50, 60, 50, 60, 40 } } };
+		for (final double[][] holes : holeLayouts) {
+			double expectedArea = 100 * 100;
+			final List<PolygonVertex> polygons = new ArrayList<>(asList(buildPolygon(square)));
+			final PackedPolygons packedPolygons = new PackedPolygons();
+			packedPolygons.addPolygon(square);
+			for (final double[] hole : holes) {
+				expectedArea -= (hole[4] - hole[0]) * (hole[5] - hole[1]);
+				polygons.add(buildPolygon(hole));
+				packedPolygons.addPolygon(hole);
+			}
+			assertEquals(expectedArea, totalArea(util.triangulateMonotonePolygons(util.getMonotoneParts(polygons))), EPSILON);
+			assertEquals(expectedArea, totalArea(util.triangulateMonotonePolygons(util.getMonotoneParts(packedPolygons))), EPSILON);
+		}
+	}
+
+	@Test
+	public void shouldSweepDisjointPolygonsIndependentlyInInputOrder() {
+		final List<PolygonVertex> polygons = asList(buildMergePolygon(20, 0), buildMergePolygon(0, 0), buildMergePolygon(10, 10));
+		final PolygonUtil parallelUtil = new PolygonUtilImpl(new ForkJoinPool(4));
+		final Iterator<PolygonVertex> monotoneParts = parallelUtil.getMonotoneParts(polygons).iterator();
+		for (final double[] offset : new double[][] { { 20, 0 }, { 0, 0 }, { 10, 10 } }) {
+			for (final PolygonVertex expectedPart : util.getMonotoneParts(asList(buildMergePolygon(offset[0], offset[1])))) {
+				assertEquals(expectedPart, monotoneParts.next());
+			}
+		}
+		assertFalse(monotoneParts.hasNext());
+	}
+
+	@Test
+	public void shouldKeepHoleInSameGroupAsItsPolygon() {
+		final PolygonVertex outer = builder.add(0, 0).add(6, 0).add(6, 6).add(0, 6).build();
+		final PolygonVertex hole = new PolygonBuilder().add(2, 2).add(2, 4).add(4, 4).add(4, 2).build();
+		final PolygonVertex other = new PolygonBuilder().add(10, 0).add(12, 0).add(12, 2).add(10, 2).build();
+		final PolygonUtil parallelUtil = new PolygonUtilImpl(new ForkJoinPool(4));
+		final Collection<PolygonVertex> monotoneParts = parallelUtil.getMonotoneParts(asList(outer, hole, other));
+		final Collection<PolygonTriangle> triangles = parallelUtil.triangulateMonotonePolygons(monotoneParts);
+		assertEquals(monotoneParts.size(), triangles.size());
+		assertEquals(6 * 6 - 2 * 2 + 2 * 2, totalArea(triangles), EPSILON);
+	}
+
+	@Test
+	public void shouldCutDiagonalsFromCopyOfHelperFacingThem() {
+		final PolygonVertex outer = builder.add(0, 0).add(100, 0).add(100, 100).add(0, 100).build();
+		final PolygonVertex lowerHole = new PolygonBuilder().add(14, 8).add(14, 10).add(19, 10).add(19, 8).build();
+		final PolygonVertex upperHole = new PolygonBuilder().add(52, 9).add(52, 12).add(55, 12).add(55, 9).build();
+		final Collection<PolygonVertex> monotoneParts = util.getMonotoneParts(asList(outer, lowerHole, upperHole));
+		assertEquals(3, monotoneParts.size());
+		assertEquals(100 * 100 - 5 * 2 - 3 * 3, totalArea(util.triangulateMonotonePolygons(monotoneParts)), EPSILON);
+	}
+
+	@Test
+	public void shouldTreatThinSpikeAsStartVertex() {
+		final PolygonVertex polygon = builder.add(0, -1).add(10, -1).add(10, 0).add(5.000001, 0).add(5, 100).add(4.999999, 0).add(0, 0).build();
+		final Collection<PolygonVertex> monotoneParts = util.getMonotoneParts(asList(polygon));
+		assertEquals(2, monotoneParts.size());
+		assertEquals(10 * 1 + 0.000002 * 100 / 2, totalArea(util.triangulateMonotonePolygons(monotoneParts)), EPSILON);
+	}
+
+	@Test
+	public void shouldTriangulateInParallelInInputOrder() {
+		final List<PolygonVertex> polygons = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			polygons.add(buildMergePolygon(i * 10, 0));
+		}
+		final PolygonUtil parallelUtil = new PolygonUtilImpl(new ForkJoinPool(4));
+		final List<PolygonTriangle> triangles = new ArrayList<>(parallelUtil.triangulateMonotonePolygons(parallelUtil.getMonotoneParts(polygons)));
+		final List<PolygonTriangle> expectedTriangles = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			expectedTriangles.addAll(util.triangulateMonotonePolygons(util.getMonotoneParts(asList(buildMergePolygon(i * 10, 0)))));
+		}
+		assertEquals(expectedTriangles.size(), triangles.size());
+		for (int i = 0; i < triangles.size(); i++) {
+			assertEquals(totalArea(asList(expectedTriangles.get(i))), totalArea(asList(triangles.get(i))), EPSILON);
+			assertEquals(expectedTriangles.get(i).getVertex(VERTEX_1), triangles.get(i).getVertex(VERTEX_1));
+		}
+	}
+
+	@Test
+	public void shouldConnectAllInteriorEdgesOfMonotonePieces() {
+		final Collection<PolygonVertex> monotoneParts = util.getMonotoneParts(asList(buildComb(50, 10)));
+		for (final PolygonVertex part : monotoneParts) {
+			final Collection<PolygonTriangle> triangleGraph = util.triangulateMonotonePolygons(asList(part));
+			final Set<PolygonTriangle> triangles = collectTriangles(triangleGraph);
+			int connectedSides = 0;
+			for (final PolygonTriangle triangle : triangles) {
+				for (final TriangleSide side : TRIANGLE_SIDES) {
+					if (triangle.getNeighbour(side) != null) {
+						assertTrue(triangle.getNeighbour(side).isConnectedTo(triangle));
+						connectedSides++;
+					}
+				}
+			}
+			assertEquals(countVertices(part) - 2, triangles.size());
+			assertEquals(2 * (triangles.size() - 1), connectedSides);
+		}
+	}
+
+	@Test
+	public void shouldConvertLongTriangleStripWithoutRecursion() {
+		final int length = 50000;
+		final PolygonBuilder stripBuilder = new PolygonBuilder();
+		for (int i = 0; i <= length; i++) {
+			stripBuilder.add(i, 0);
+		}
+		for (int i = length - 1; i >= 0; i--) {
+			stripBuilder.add(i + 0.5, 1);
+		}
+		final Collection<PolygonTriangle> triangles = util.triangulateMonotonePolygons(util.getMonotoneParts(asList(stripBuilder.build())));
+		final PathfindingUtil pathfindingUtil = util.buildPathFindingUtil(triangles);
+		final Path path = pathfindingUtil.buildPath(new Point2D.Double(0.5, 0.9), new Point2D.Double(length - 0.5, 0.1), OptimizationTechnique.NONE);
+		assertEquals(2 * length - 2, path.route.size());
+	}
+
+	@Test
+	public void shouldReplaceLongDiagonalWhenRefining() {
+		final PolygonVertex rhombus = builder.add(0, 0).add(5, -1).add(10, 0).add(5, 1).build();
+		final Collection<PolygonTriangle> triangles = util.refineToConstrainedDelaunay(util.triangulateMonotonePolygons(util.getMonotoneParts(asList(rhombus))));
+		for (final PolygonTriangle triangle : collectTriangles(triangles)) {
+			assertNotNull(triangle.getVertexId(new PolygonVertex(5, -1)));
+			assertNotNull(triangle.getVertexId(new PolygonVertex(5, 1)));
+		}
+	}
+
+	@Test
+	public void shouldOnlyLeaveDelaunaySidesWhenRefining() {
+		final Collection<PolygonTriangle> triangles = util
+				.refineToConstrainedDelaunay(util.triangulateMonotonePolygons(util.getMonotoneParts(asList(buildComb(50, 10), buildCombHole()))));
+		for (final PolygonTriangle triangle : collectTriangles(triangles)) {
+			for (final TriangleSide side : TRIANGLE_SIDES) {
+				final PolygonTriangle neighbour = triangle.getNeighbour(side);
+				if (neighbour != null) {
+					assertTrue(neighbour.isConnectedTo(triangle));
+					final PolygonVertex a = triangle.getVertex(matchingSide(side));
+					final PolygonVertex b = triangle.getVertex(matchingSide(side).next());
+					final PolygonVertex c = triangle.getVertex(matchingSide(side).next().next());
+					final PolygonVertex d = neighbour.getVertex(neighbour.getVertexId(a).next());
+					assertTrue(GeometricPredicates.incircle(a.x, a.y, b.x, b.y, c.x, c.y, d.x, d.y) <= 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void shouldKeepPolygonEdgesWhenRefining() {
+		final Collection<PolygonTriangle> original = util.triangulateMonotonePolygons(util.getMonotoneParts(asList(buildComb(50, 10), buildCombHole())));
+		final double area = totalArea(original);
+		final int triangleCount = collectTriangles(original).size();
+		final Set<Set<Point2D>> polygonEdges = collectPolygonEdges(original);
+		final Collection<PolygonTriangle> refined = util.refineToConstrainedDelaunay(
+				util.triangulateMonotonePolygons(util.getMonotoneParts(asList(buildComb(50, 10), buildCombHole()))));
+		assertEquals(area, totalArea(refined), EPSILON);
+		assertEquals(triangleCount, collectTriangles(refined).size());
+		assertEquals(polygonEdges, collectPolygonEdges(refined));
+	}
+
+	private int countVertices(PolygonVertex polygon) {
+		int count = 0;
+		for (@SuppressWarnings("unused")
+		final PolygonVertex vertex : polygon) {
+			count++;
+		}
+		return count;
+	}
+
+	private PolygonVertex buildCombHole() {
+		return new PolygonBuilder().add(40.25, 2).add(40.25, 6).add(40.75, 6).add(40.75, 2).build();
+	}
+
+	/***
+	 * Sides found in only one of the triangles, as unordered pairs of end points. Monotone pieces are
+	 * not linked to each other before refining, so sides shared by two triangles are told apart by
+	 * their end points rather than by the neighbours of the triangles.
+	 */
+	private Set<Set<Point2D>> collectPolygonEdges(Collection<PolygonTriangle> triangleGraphs) {
+		final Set<Set<Point2D>> sides = new HashSet<>();
+		final Set<Set<Point2D>> sharedSides = new HashSet<>();
+		for (final PolygonTriangle triangle : collectTriangles(triangleGraphs)) {
+			for (final TriangleSide side : TRIANGLE_SIDES) {
+				final Set<Point2D> ends = asSet(triangle.getVertex(matchingSide(side)), triangle.getVertex(matchingSide(side).next()));
+				if (!sides.add(ends)) {
+					sharedSides.add(ends);
+				}
+			}
+		}
+		sides.removeAll(sharedSides);
+		return sides;
+	}
+
+	private Set<Point2D> asSet(Point2D first, Point2D second) {
+		return new HashSet<>(asList(new Point2D.Double(first.getX(), first.getY()), new Point2D.Double(second.getX(), second.getY())));
+	}
+
+	private Set<PolygonTriangle> collectTriangles(Collection<PolygonTriangle> triangleGraphs) {
+		final Set<PolygonTriangle> visited = new HashSet<>();
+		final Stack<PolygonTriangle> pending = new Stack<>();
+		pending.addAll(triangleGraphs);
+		while (!pending.isEmpty()) {
+			final PolygonTriangle triangle = pending.pop();
+			if (triangle != null && visited.add(triangle)) {
+				for (final TriangleSide side : TRIANGLE_SIDES) {
+					pending.push(triangle.getNeighbour(side));
+				}
+			}
+		}
+		return visited;
+	}
+
+	private PolygonVertex buildPolygon(double... coordinates) {
+		final PolygonBuilder polygonBuilder = new PolygonBuilder();
+		for (int i = 0; i < coordinates.length; i += 2) {
+			polygonBuilder.add(coordinates[i], coordinates[i + 1]);
+		}
+		return polygonBuilder.build();
+	}
+
+	private PolygonVertex buildMergePolygon(double x, double y) {
+		return new PolygonBuilder().add(x, y)
+			.add(x + 6, y)
+			.add(x + 6, y + 4)
+			.add(x + 5, y + 3)
+			.add(x + 4, y + 4)
+			.add(x + 3, y + 2)
+			.add(x + 2, y + 3)
+			.add(x + 1, y + 2)
+			.add(x, y + 4)
+			.build();
+	}
+
+	private double totalArea(Collection<PolygonTriangle> triangleGraphs) {
+		double area = 0.0;
+		for (final PolygonTriangle triangle : collectTriangles(triangleGraphs)) {
+			final PolygonVertex a = triangle.getVertex(VERTEX_1);
+			final PolygonVertex b = triangle.getVertex(VERTEX_2);
+			final PolygonVertex c = triangle.getVertex(VERTEX_3);
+			area += ((b.x - a.x) * (c.y - a.y) - (b.y - a.y) * (c.x - a.x)) / 2.0;
+		}
+		return area;
+	}
+
+	private double totalArea(PackedTriangles triangles) {
+		double area = 0.0;
+		for (int triangle = 0; triangle < triangles.getTriangleCount(); triangle++) {
+			area += signedArea(triangles, triangle) / 2.0;
+		}
+		return area;
+	}
+
+	private double signedArea(PackedTriangles triangles, int triangle) {
+		final PackedPolygons vertices = triangles.getVertices();
+		final int a = triangles.getVertex(triangle, 0);
+		final int b = triangles.getVertex(triangle, 1);
+		final int c = triangles.getVertex(triangle, 2);
+		return (vertices.getX(b) - vertices.getX(a)) * (vertices.getY(c) - vertices.getY(a))
+				- (vertices.getY(b) - vertices.getY(a)) * (vertices.getX(c) - vertices.getX(a));
+	}
+
+	private int sideTowards(PackedTriangles triangles, int triangle, int neighbour) {
+		for (int side = 0; side < 3; side++) {
+			if (triangles.getNeighbour(triangle, side) == neighbour) {
+				return side;
+			}
+		}
+		return NONE;
+	}
+}
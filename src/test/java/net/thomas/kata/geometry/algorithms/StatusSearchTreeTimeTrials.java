@@ -0,0 +1,182 @@
+package net.thomas.kata.geometry.algorithms;
+
+import static java.lang.System.nanoTime;
+import static java.util.Collections.singletonList;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.thomas.kata.geometry.objects.PolygonVertex;
+
+public class StatusSearchTreeTimeTrials {
+	private static final int[] SIZES = { 1000, 2000, 4000, 8000, 16000, 32000 };
+
+	public static void main(String[] args) {
+		for (final int size : SIZES) {
+			final List<Edge> edges = createEdgesInSortedOrder(size);
+			executeTest("Unbalanced tree with " + size + " edges:", () -> replay(new UnbalancedStatusSearchTree(), edges));
+			executeTest("Balanced tree with " + size + " edges:", () -> replay(new StatusSearchTree(), edges));
+		}
+		for (final int size : SIZES) {
+			executeTest("Monotone parts for comb with " + size + " teeth:", () -> {
+				new PolygonUtilImpl().getMonotoneParts(singletonList(buildComb(size, 1000)));
+			});
+		}
+	}
+
+	private static void replay(UnbalancedStatusSearchTree tree, List<Edge> edges) {
+		for (final Edge edge : edges) {
+			tree.insert(edge);
+			tree.locateNearestEdgeToTheLeft(edge.getBottomVertex());
+		}
+		for (final Edge edge : edges) {
+			tree.deleteEdge(edge);
+		}
+	}
+
+	private static void replay(StatusSearchTree tree, List<Edge> edges) {
+		for (final Edge edge : edges) {
+			tree.insert(edge);
+			tree.locateNearestEdgeToTheLeft(edge.getBottomVertex());
+		}
+		for (final Edge edge : edges) {
+			tree.deleteEdge(edge);
+		}
+	}
+
+	private static void executeTest(String description, Runnable test) {
+		final long stamp = nanoTime();
+		test.run();
+		System.out.println(description + " " + calculateTimeSpend(stamp));
+	}
+
+	private static String calculateTimeSpend(long stamp) {
+		return (nanoTime() - stamp) / 10000 / 100.0d + " ms";
+	}
+
+	private static List<Edge> createEdgesInSortedOrder(int count) {
+		final List<Edge> edges = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			edges.add(new Edge(new PolygonVertex(2 * i, 0), new PolygonVertex(2 * i + 1, 10)));
+		}
+		return edges;
+	}
+
+	/***
+	 * The original unbalanced status tree, kept for comparison.
+	 */
+	private static class UnbalancedStatusSearchTree {
+		class Node {
+			public Node left;
+			public Node right;
+			public Edge contents;
+
+			public Node(Edge contents) {
+				this.contents = contents;
+				left = right = null;
+			}
+		}
+
+		private Node root;
+
+		public void insert(Edge edge) {
+			if (root == null) {
+				root = new Node(edge);
+			} else {
+				Node current = root;
+				boolean searching = true;
+				while (searching) {
+					if (current.contents.isLeftOf(edge.getTopVertex())) {
+						if (current.right != null) {
+							current = current.right;
+						} else {
+							current.right = new Node(edge);
+							searching = false;
+						}
+					} else {
+						if (current.left != null) {
+							current = current.left;
+						} else {
+							current.left = new Node(edge);
+							searching = false;
+						}
+					}
+				}
+			}
+		}
+
+		public void deleteEdge(Edge edge) {
+			if (root.contents == edge) {
+				root = removeElement(root);
+				return;
+			}
+			Node current = root;
+			boolean searching = true;
+			while (searching) {
+				if (current.contents.isLeftOf(edge.getBottomVertex())) {
+					if (current.right.contents == edge) {
+						current.right = removeElement(current.right);
+						searching = false;
+					} else {
+						current = current.right;
+					}
+				} else {
+					if (current.left.contents == edge) {
+						current.left = removeElement(current.left);
+						searching = false;
+					} else {
+						current = current.left;
+					}
+				}
+			}
+		}
+
+		public Edge locateNearestEdgeToTheLeft(final PolygonVertex vertex) {
+			Node current = root;
+			Node closest = null;
+			while (true) {
+				if (current == null) {
+					return closest != null ? closest.contents : null;
+				} else if (current.contents.isLeftOf(vertex)) {
+					current = current.right;
+				} else {
+					closest = current;
+					current = current.left;
+				}
+			}
+		}
+
+		private Node removeElement(Node element) {
+			if (element.left != null) {
+				Node current = element.left;
+				if (current.right == null) {
+					current.right = element.right;
+					return current;
+				}
+				while (current.right.right != null) {
+					current = current.right;
+				}
+				final Node newRoot = current.right;
+				current.right = current.right.left;
+				newRoot.left = element.left;
+				newRoot.right = element.right;
+				return newRoot;
+			} else if (element.right != null) {
+				Node current = element.right;
+				if (current.left == null) {
+					return current;
+				}
+				while (current.left.left != null) {
+					current = current.left;
+				}
+				final Node newRoot = current.left;
+				current.left = current.left.right;
+				newRoot.left = element.left;
+				newRoot.right = element.right;
+				return newRoot;
+			}
+			return null;
+		}
+	}
+}
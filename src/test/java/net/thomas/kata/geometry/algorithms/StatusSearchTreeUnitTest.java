@@ -2,6 +2,7 @@ package net.thomas.kata.geometry.algorithms;
 
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -55,4 +56,47 @@ public class StatusSearchTreeUnitTest {
 		final Edge result = searchTree.locateNearestEdgeToTheLeft(new PolygonVertex(3, 0));
 		assertSame(expectedEdge, result);
 	}
+
+	@Test
+	public void shouldNotReturnDeletedEdge() {
+		final Edge deletedEdge = new Edge(new PolygonVertex(0, 0), new PolygonVertex(1, 1));
+		searchTree.insert(deletedEdge);
+		searchTree.deleteEdge(deletedEdge);
+		final Edge result = searchTree.locateNearestEdgeToTheLeft(new PolygonVertex(1, 0));
+		assertNull(result);
+	}
+
+	@Test
+	public void shouldReturnRemainingEdgeAfterDeletion() {
+		final Edge expectedEdge = new Edge(new PolygonVertex(0, 0), new PolygonVertex(1, 1));
+		final Edge deletedEdge = new Edge(new PolygonVertex(2, 0), new PolygonVertex(3, 1));
+		searchTree.insert(expectedEdge);
+		searchTree.insert(deletedEdge);
+		searchTree.deleteEdge(deletedEdge);
+		final Edge result = searchTree.locateNearestEdgeToTheLeft(new PolygonVertex(3, 0));
+		assertSame(expectedEdge, result);
+	}
+
+	@Test
+	public void shouldStayBalancedWhenEdgesArriveInOrder() {
+		final int numberOfEdges = 1024;
+		for (int i = 0; i < numberOfEdges; i++) {
+			searchTree.insert(new Edge(new PolygonVertex(2 * i, 0), new PolygonVertex(2 * i, 1)));
+		}
+		assertTrue("Tree height was " + searchTree.height(), searchTree.height() <= 2 * 11);
+	}
+
+	@Test
+	public void shouldLocateCorrectEdgeAfterManyInsertionsAndDeletions() {
+		final Edge[] edges = new Edge[256];
+		for (int i = 0; i < edges.length; i++) {
+			edges[i] = new Edge(new PolygonVertex(2 * i, 0), new PolygonVertex(2 * i, 1));
+			searchTree.insert(edges[i]);
+		}
+		for (int i = 1; i < edges.length; i += 2) {
+			searchTree.deleteEdge(edges[i]);
+		}
+		final Edge result = searchTree.locateNearestEdgeToTheLeft(new PolygonVertex(2 * 101 + 1, 0));
+		assertSame(edges[100], result);
+	}
 }
@@ -4,6 +4,6 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ PolygonVertexUnitTest.class })
+@Suite.SuiteClasses({ PolygonVertexUnitTest.class, PackedPolygonsUnitTest.class })
 public class ObjectTestSuite {
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package net.thomas.kata.geometry.objects;
+
+import static java.util.Arrays.asList;
+import static net.thomas.kata.geometry.objects.PackedPolygons.NONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PackedPolygonsUnitTest {
+	private static final double EPSILON = 0.000001d;
+	private PackedPolygons polygons;
+
+	@Before
+	public void setUp() {
+		polygons = new PackedPolygons(2);
+	}
+
+	@Test
+	public void shouldHaveValues() {
+		final int vertex = polygons.addVertex(1, 2);
+		assertEquals(1.0d, polygons.getX(vertex), EPSILON);
+		assertEquals(2.0d, polygons.getY(vertex), EPSILON);
+	}
+
+	@Test
+	public void shouldHaveSelfAsNextAndPrevious() {
+		final int vertex = polygons.addVertex(1, 1);
+		assertEquals(vertex, polygons.getNext(vertex));
+		assertEquals(vertex, polygons.getPrevious(vertex));
+	}
+
+	@Test
+	public void shouldLinkPolygonInOrder() {
+		final int root = polygons.addPolygon(0, 0, 1, 0, 1, 1);
+		assertEquals(root + 1, polygons.getNext(root));
+		assertEquals(root + 2, polygons.getPrevious(root));
+		assertEquals(3, polygons.countVertices(root));
+		assertEquals(1, polygons.getPolygonCount());
+	}
+
+	@Test
+	public void shouldPackPolygonVertices() {
+		final PolygonVertex polygon = new PolygonBuilder().add(0, 0).add(1, 0).add(1, 1).build();
+		final PackedPolygons packedPolygons = PackedPolygons.pack(asList(polygon));
+		final int root = packedPolygons.getPolygonRoot(0);
+		assertEquals(polygon.x, packedPolygons.getX(root), EPSILON);
+		assertEquals(polygon.getAfter().x, packedPolygons.getX(packedPolygons.getNext(root)), EPSILON);
+		assertEquals(3, packedPolygons.countVertices(root));
+	}
+
+	@Test
+	public void shouldNotHaveTwinsInitially() {
+		final int vertex = polygons.addVertex(1, 1);
+		assertFalse(polygons.hasTwins(vertex));
+		assertEquals(NONE, polygons.getFirstTwinEntry(vertex));
+	}
+
+	@Test
+	public void shouldHaveTwinsAfterCut() {
+		final int root = polygons.addPolygon(0, 0, 1, 0, 1, 1, 0, 1);
+		final int clone = polygons.cutIntoTwoPolygons(root, root + 2);
+		assertTrue(polygons.hasTwins(root));
+		assertEquals(root, polygons.getTwin(polygons.getFirstTwinEntry(clone)));
+	}
+
+	@Test
+	public void shouldSplitPolygonIntoTwoWhenCut() {
+		final int root = polygons.addPolygon(0, 0, 1, 0, 1, 1, 0, 1);
+		final int clone = polygons.cutIntoTwoPolygons(root, root + 2);
+		assertEquals(3, polygons.countVertices(root));
+		assertEquals(3, polygons.countVertices(clone));
+		assertEquals(root + 2, polygons.getNext(root));
+	}
+}
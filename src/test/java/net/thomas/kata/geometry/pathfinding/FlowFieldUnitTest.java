@@ -0,0 +1,154 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.NONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.PolygonUtilImpl;
+import net.thomas.kata.geometry.objects.PolygonBuilder;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
+
+public class FlowFieldUnitTest {
+	private static final double DELTA = 0.0001;
+	private static final int NUMBER_OF_TEETH = 30;
+	private static final Point2D RALLY_POINT = POINT(30.5, 4.0);
+
+	private PolygonUtil util;
+	private PathfindingUtil pathfindingUtil;
+
+	@Before
+	public void setUp() {
+		util = new PolygonUtilImpl();
+		pathfindingUtil = buildUtil(buildComb(NUMBER_OF_TEETH, 10));
+	}
+
+	@Test
+	public void shouldMatchSearchedRouteLengths() {
+		final FlowField flowField = pathfindingUtil.getFlowField(RALLY_POINT);
+		final Random random = new Random(1234);
+		for (int i = 0; i < 50; i++) {
+			final Point2D location = randomToothPoint(random);
+			assertEquals(calculateLength(pathfindingUtil.buildPath(location, RALLY_POINT, NONE)), flowField.getDistance(location), DELTA);
+		}
+	}
+
+	@Test
+	public void shouldMatchFlatFieldWhenFilledInByRegions() {
+		final FlowField flatField = pathfindingUtil.getFlowField(RALLY_POINT);
+		final PathfindingUtil hierarchicalUtil = new PathfindingUtil(pathfindingUtil.getSnapshot().portalGraph, 16, 0);
+		final FlowField regionField = hierarchicalUtil.getFlowField(RALLY_POINT);
+		final Random random = new Random(4321);
+		for (int i = 0; i < 100; i++) {
+			final Point2D location = randomToothPoint(random);
+			assertEquals(flatField.getDistance(location), regionField.getDistance(location), DELTA);
+			assertEquals(flatField.getNextPortal(location), regionField.getNextPortal(location));
+		}
+	}
+
+	@Test
+	public void shouldLeadAgentToDestination() {
+		final PathfindingUtil squareUtil = buildUtil(new PolygonBuilder().add(0, 0).add(20, 0).add(20, 20).add(0, 20).build());
+		squareUtil.updateHoles(util, singleton(new PolygonBuilder().add(8, 8).add(8, 12).add(12, 12).add(12, 8).build()), emptySet());
+		final Point2D destination = POINT(18.0, 10.0);
+		final FlowField flowField = squareUtil.getFlowField(destination);
+		final Point2D agent = POINT(2.0, 10.0);
+		for (int step = 0; step < 200 && agent.distance(destination) > 0.1; step++) {
+			final Point2D direction = flowField.getDirection(agent);
+			agent.setLocation(agent.getX() + direction.getX() * 0.1, agent.getY() + direction.getY() * 0.1);
+		}
+		assertTrue(agent.distance(destination) <= 0.1);
+	}
+
+	@Test
+	public void shouldPointStraightAtDestinationInItsTriangle() {
+		final FlowField flowField = pathfindingUtil.getFlowField(RALLY_POINT);
+		final Point2D direction = flowField.getDirection(POINT(30.5, 1.0));
+		assertEquals(0.0, direction.getX(), DELTA);
+		assertEquals(1.0, direction.getY(), DELTA);
+		assertNull(flowField.getNextPortal(POINT(30.5, 1.0)));
+	}
+
+	@Test
+	public void shouldNotReachDestinationFromSeparatePolygon() {
+		final PolygonVertex left = new PolygonBuilder().add(0, 0).add(4, 0).add(4, 4).add(0, 4).build();
+		final PolygonVertex right = new PolygonBuilder().add(6, 0).add(10, 0).add(10, 4).add(6, 4).build();
+		pathfindingUtil = util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(asList(left, right))));
+		final FlowField flowField = pathfindingUtil.getFlowField(POINT(9, 3));
+		assertEquals(Double.POSITIVE_INFINITY, flowField.getDistance(POINT(1, 1)), 0.0);
+		assertNull(flowField.getDirection(POINT(1, 1)));
+		assertNull(flowField.getNextPortal(POINT(1, 1)));
+	}
+
+	@Test
+	public void shouldNotBuildFieldForDestinationOutsideMesh() {
+		assertNull(pathfindingUtil.getFlowField(POINT(1.5, 1.0)));
+	}
+
+	@Test
+	public void shouldCacheFieldUntilReleased() {
+		final FlowField flowField = pathfindingUtil.getFlowField(RALLY_POINT);
+		assertSame(flowField, pathfindingUtil.getFlowField(POINT(30.5, 4.0)));
+		pathfindingUtil.releaseFlowField(RALLY_POINT);
+		assertNotSame(flowField, pathfindingUtil.getFlowField(RALLY_POINT));
+	}
+
+	@Test
+	public void shouldHandSameFieldToConcurrentRequests() throws InterruptedException, ExecutionException {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<FlowField>> flowFields = new ArrayList<>();
+			for (int request = 0; request < 8; request++) {
+				flowFields.add(executor.submit(() -> pathfindingUtil.getFlowField(RALLY_POINT)));
+			}
+			for (final Future<FlowField> flowField : flowFields) {
+				assertSame(flowFields.get(0).get(), flowField.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private PathfindingUtil buildUtil(PolygonVertex polygon) {
+		return util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(polygon))));
+	}
+
+	private static Point2D randomToothPoint(Random random) {
+		return POINT(2 * random.nextInt(NUMBER_OF_TEETH) + 0.5, 0.5 + random.nextInt(8));
+	}
+
+	private static double calculateLength(Path path) {
+		double length = 0.0;
+		Point2D previous = path.origin;
+		for (final PortalStep step : path.route) {
+			length += previous.distance(step.waypoint);
+			previous = step.waypoint;
+		}
+		return length + previous.distance(path.destination);
+	}
+
+	private static Point2D POINT(double x, double y) {
+		return new Point2D.Double(x, y);
+	}
+}
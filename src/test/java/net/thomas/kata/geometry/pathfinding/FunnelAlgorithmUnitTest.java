@@ -0,0 +1,91 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Collections.singleton;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.FUNNEL;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.NONE;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.TRIPPLE_PASS_SMOOTHING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.PolygonUtilImpl;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
+
+public class FunnelAlgorithmUnitTest {
+	private static final int NUMBER_OF_TEETH = 6;
+	private static final double HEIGHT = 10.0;
+
+	private PathfindingUtil pathfindingUtil;
+
+	@Before
+	public void setUp() {
+		final PolygonUtil util = new PolygonUtilImpl();
+		pathfindingUtil = util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(buildComb(NUMBER_OF_TEETH, HEIGHT)))));
+	}
+
+	@Test
+	public void shouldKeepPathWithoutPortals() {
+		final Path path = new Path(POINT(0.0, 0.0), POINT(1.0, 1.0));
+		final Path tautPath = new FunnelAlgorithm(path).pullString();
+		assertEquals(path.origin, tautPath.origin);
+		assertEquals(path.destination, tautPath.destination);
+		assertTrue(tautPath.route.isEmpty());
+	}
+
+	@Test
+	public void shouldDropAllWaypointsWithLineOfSight() {
+		final Path path = pathfindingUtil.buildPath(POINT(0.5, 0.5), POINT(0.5, HEIGHT - 0.5), FUNNEL);
+		assertTrue(path.route.isEmpty());
+	}
+
+	@Test
+	public void shouldBendAroundTopOfTeeth() {
+		final Path path = pathfindingUtil.buildPath(POINT(0.5, 0.5), POINT(6.5, 0.5), FUNNEL);
+		assertEquals(2, path.route.size());
+		assertEquals(POINT(1.0, HEIGHT - 1), path.route.get(0).waypoint);
+		assertEquals(POINT(6.0, HEIGHT - 1), path.route.get(1).waypoint);
+	}
+
+	@Test
+	public void shouldBendAroundTopOfTeethInBothDirections() {
+		final Path path = pathfindingUtil.buildPath(POINT(6.5, 0.5), POINT(0.5, 0.5), FUNNEL);
+		assertEquals(2, path.route.size());
+		assertEquals(POINT(6.0, HEIGHT - 1), path.route.get(0).waypoint);
+		assertEquals(POINT(1.0, HEIGHT - 1), path.route.get(1).waypoint);
+	}
+
+	@Test
+	public void shouldNeverBeLongerThanSmoothedPath() {
+		for (int from = 0; from < NUMBER_OF_TEETH; from++) {
+			for (int to = 0; to < NUMBER_OF_TEETH; to++) {
+				final Point2D origin = POINT(2 * from + 0.25, 0.5 + from);
+				final Point2D destination = POINT(2 * to + 0.75, 0.5 + to);
+				final Path funnelPath = pathfindingUtil.buildPath(origin, destination, FUNNEL);
+				final Path smoothedPath = pathfindingUtil.buildPath(origin, destination, TRIPPLE_PASS_SMOOTHING);
+				assertTrue(calculateLength(funnelPath) <= calculateLength(smoothedPath) + 1e-9);
+				assertTrue(funnelPath.route.size() <= pathfindingUtil.buildPath(origin, destination, NONE).route.size());
+			}
+		}
+	}
+
+	private static double calculateLength(Path path) {
+		double length = 0.0;
+		Point2D last = path.origin;
+		for (final PortalStep step : path.route) {
+			length += last.distance(step.waypoint);
+			last = step.waypoint;
+		}
+		return length + last.distance(path.destination);
+	}
+
+	private static Point2D POINT(double x, double y) {
+		return new Point2D.Double(x, y);
+	}
+}
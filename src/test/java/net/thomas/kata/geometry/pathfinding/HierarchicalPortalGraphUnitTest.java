@@ -0,0 +1,134 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Collections.singleton;
+import static net.thomas.kata.geometry.SamplePolygons.buildSerpentine;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.NONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.PolygonUtilImpl;
+import net.thomas.kata.geometry.objects.PolygonTriangle;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
+
+public class HierarchicalPortalGraphUnitTest {
+	private static final int NUMBER_OF_WALLS = 10;
+	private static final double HEIGHT = 10.0;
+	private static final int NODES_PER_REGION = 8;
+
+	private PathfindingUtil flatUtil;
+	private PathfindingUtil hierarchicalUtil;
+	private PortalGraph portalGraph;
+	private HierarchicalPortalGraph hierarchy;
+
+	@Before
+	public void setUp() {
+		final PolygonUtil util = new PolygonUtilImpl();
+		final Collection<PolygonTriangle> triangles = util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(buildSerpentine(NUMBER_OF_WALLS, HEIGHT))));
+		flatUtil = util.buildPathFindingUtil(triangles);
+		hierarchicalUtil = util.buildPathFindingUtil(triangles, NODES_PER_REGION);
+		portalGraph = hierarchicalUtil.getSnapshot().portalGraph;
+		hierarchy = hierarchicalUtil.getSnapshot().hierarchy;
+	}
+
+	@Test
+	public void shouldBoundRegionSize() {
+		final int[] regionSizes = new int[hierarchy.getRegionCount()];
+		for (int node = 0; node < portalGraph.getNodeCount(); node++) {
+			regionSizes[hierarchy.getRegion(node)]++;
+		}
+		for (final int size : regionSizes) {
+			assertTrue(size > 0 && size <= NODES_PER_REGION);
+		}
+	}
+
+	@Test
+	public void shouldMarkNodesWithNeighboursInOtherRegionsAsEntrances() {
+		for (int node = 0; node < portalGraph.getNodeCount(); node++) {
+			boolean hasNeighbourInOtherRegion = false;
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				hasNeighbourInOtherRegion |= hierarchy.getRegion(portalGraph.getNeighbour(entry)) != hierarchy.getRegion(node);
+			}
+			assertEquals(hasNeighbourInOtherRegion, hierarchy.isEntrance(node));
+		}
+	}
+
+	@Test
+	public void shouldOnlyAddShortcutsBetweenEntrancesInSameRegion() {
+		for (int node = 0; node < portalGraph.getNodeCount(); node++) {
+			for (int entry = hierarchy.getFirstShortcutEntry(node); entry < hierarchy.getFirstShortcutEntry(node + 1); entry++) {
+				final int target = hierarchy.getShortcutTarget(entry);
+				assertTrue(hierarchy.isEntrance(node));
+				assertTrue(hierarchy.isEntrance(target));
+				assertEquals(hierarchy.getRegion(node), hierarchy.getRegion(target));
+				assertTrue(hierarchy.getShortcutCost(entry) >= portalGraph.distance(node, target) - 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void shouldStoreConnectedRouteForEachShortcut() {
+		for (int node = 0; node < portalGraph.getNodeCount(); node++) {
+			for (int shortcut = hierarchy.getFirstShortcutEntry(node); shortcut < hierarchy.getFirstShortcutEntry(node + 1); shortcut++) {
+				int previous = node;
+				double cost = 0.0;
+				for (int entry = hierarchy.getFirstRouteEntry(shortcut); entry < hierarchy.getFirstRouteEntry(shortcut + 1); entry++) {
+					final int current = hierarchy.getRouteNode(entry);
+					assertEquals(hierarchy.getRegion(node), hierarchy.getRegion(current));
+					cost += portalGraph.distance(previous, current);
+					previous = current;
+				}
+				assertEquals(hierarchy.getShortcutTarget(shortcut), previous);
+				assertEquals(hierarchy.getShortcutCost(shortcut), cost, 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void shouldFindRoutesAsShortAsFlatSearch() {
+		final Random random = new Random(1234);
+		for (int i = 0; i < 200; i++) {
+			final Point2D origin = randomPoint(random);
+			final Point2D destination = randomPoint(random);
+			final Path flatPath = flatUtil.buildPath(origin, destination, NONE);
+			final Path hierarchicalPath = hierarchicalUtil.buildPath(origin, destination, NONE);
+			assertNotNull(hierarchicalPath);
+			assertEquals(calculateLength(flatPath), calculateLength(hierarchicalPath), 1e-9);
+		}
+	}
+
+	@Test
+	public void shouldExpandFewerNodesForLongRoutes() {
+		final SearchScratchSpace flatScratchSpace = new SearchScratchSpace();
+		final SearchScratchSpace hierarchicalScratchSpace = new SearchScratchSpace();
+		final Point2D origin = new Point2D.Double(0.5, 0.5);
+		final Point2D destination = new Point2D.Double(4 * NUMBER_OF_WALLS - 1.5, 0.5);
+		flatUtil.buildPath(origin, destination, NONE, flatScratchSpace);
+		hierarchicalUtil.buildPath(origin, destination, NONE, hierarchicalScratchSpace);
+		assertTrue(hierarchicalScratchSpace.expandedNodeCount < flatScratchSpace.expandedNodeCount);
+	}
+
+	private static Point2D randomPoint(Random random) {
+		final int corridor = random.nextInt(2 * NUMBER_OF_WALLS - 1);
+		return new Point2D.Double(2 * corridor + 0.5, 2.5 + random.nextDouble() * (HEIGHT - 5));
+	}
+
+	private static double calculateLength(Path path) {
+		double length = 0.0;
+		Point2D last = path.origin;
+		for (final PortalStep step : path.route) {
+			length += last.distance(step.waypoint);
+			last = step.waypoint;
+		}
+		return length + last.distance(path.destination);
+	}
+}
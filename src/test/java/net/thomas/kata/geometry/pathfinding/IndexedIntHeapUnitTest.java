@@ -0,0 +1,111 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexedIntHeapUnitTest {
+	private IndexedIntHeap heap;
+
+	@Before
+	public void setUp() {
+		heap = new IndexedIntHeap(8);
+	}
+
+	@Test
+	public void shouldStartEmpty() {
+		assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void shouldPollLowestPriorityFirst() {
+		heap.insertOrDecrease(0, 3.0);
+		heap.insertOrDecrease(1, 1.0);
+		heap.insertOrDecrease(2, 2.0);
+		assertEquals(1, heap.poll());
+		assertEquals(2, heap.poll());
+		assertEquals(0, heap.poll());
+		assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void shouldDecreasePriorityInPlace() {
+		heap.insertOrDecrease(0, 1.0);
+		heap.insertOrDecrease(1, 2.0);
+		heap.insertOrDecrease(1, 0.5);
+		assertEquals(2, heap.size());
+		assertEquals(1, heap.poll());
+	}
+
+	@Test
+	public void shouldIgnoreHigherPriorityForContainedId() {
+		heap.insertOrDecrease(0, 1.0);
+		heap.insertOrDecrease(1, 2.0);
+		heap.insertOrDecrease(0, 3.0);
+		assertEquals(0, heap.poll());
+	}
+
+	@Test
+	public void shouldPeekLowestPriority() {
+		heap.insertOrDecrease(0, 3.0);
+		heap.insertOrDecrease(1, 1.5);
+		assertEquals(1.5, heap.peekPriority(), 0.0);
+		assertEquals(2, heap.size());
+	}
+
+	@Test
+	public void shouldForgetPolledIds() {
+		heap.insertOrDecrease(0, 1.0);
+		heap.poll();
+		assertFalse(heap.contains(0));
+	}
+
+	@Test
+	public void shouldForgetClearedIds() {
+		heap.insertOrDecrease(0, 1.0);
+		heap.insertOrDecrease(1, 2.0);
+		heap.clear();
+		assertTrue(heap.isEmpty());
+		assertFalse(heap.contains(0));
+		assertFalse(heap.contains(1));
+	}
+
+	@Test
+	public void shouldGrowToNewIds() {
+		heap.ensureCapacity(100);
+		heap.insertOrDecrease(99, 1.0);
+		assertTrue(heap.contains(99));
+		assertFalse(heap.contains(50));
+	}
+
+	@Test
+	public void shouldSortRandomPriorities() {
+		final Random random = new Random(1234);
+		heap.ensureCapacity(1000);
+		for (int id = 0; id < 1000; id++) {
+			heap.insertOrDecrease(id, random.nextDouble());
+		}
+		for (int id = 0; id < 1000; id += 3) {
+			heap.insertOrDecrease(id, random.nextDouble() / 2);
+		}
+		final double[] priorities = new double[1000];
+		final Random replay = new Random(1234);
+		for (int id = 0; id < 1000; id++) {
+			priorities[id] = replay.nextDouble();
+		}
+		for (int id = 0; id < 1000; id += 3) {
+			priorities[id] = Math.min(priorities[id], replay.nextDouble() / 2);
+		}
+		double lastPriority = Double.NEGATIVE_INFINITY;
+		while (!heap.isEmpty()) {
+			final double priority = priorities[heap.poll()];
+			assertTrue(priority >= lastPriority);
+			lastPriority = priority;
+		}
+	}
+}
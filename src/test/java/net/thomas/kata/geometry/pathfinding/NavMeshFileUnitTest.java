@@ -0,0 +1,154 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.Arrays.copyOf;
+import static java.util.Collections.singleton;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.FUNNEL;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.NONE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.PolygonUtilImpl;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
+
+public class NavMeshFileUnitTest {
+	private static final int NUMBER_OF_TEETH = 8;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private PathfindingUtil pathfindingUtil;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		final PolygonUtil util = new PolygonUtilImpl();
+		pathfindingUtil = util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(buildComb(NUMBER_OF_TEETH, 10)))));
+		file = folder.newFile("comb.navmesh");
+	}
+
+	@Test
+	public void shouldFindSamePathsAfterLoading() throws IOException {
+		NavMeshFile.save(pathfindingUtil, file);
+		final PathfindingUtil loadedUtil = NavMeshFile.load(file);
+		for (int from = 0; from < NUMBER_OF_TEETH; from++) {
+			for (int to = 0; to < NUMBER_OF_TEETH; to++) {
+				final Point2D origin = POINT(2 * from + 0.5, 0.5);
+				final Point2D destination = POINT(2 * to + 0.5, 0.5);
+				assertSamePath(pathfindingUtil.buildPath(origin, destination, FUNNEL), loadedUtil.buildPath(origin, destination, FUNNEL));
+			}
+		}
+	}
+
+	@Test
+	public void shouldKeepPointLocationAfterLoading() throws IOException {
+		NavMeshFile.save(pathfindingUtil, file);
+		final PathfindingUtil loadedUtil = NavMeshFile.load(file);
+		assertNull(loadedUtil.buildPath(POINT(-1.0, -1.0), POINT(0.5, 0.5), NONE));
+		assertNull(loadedUtil.buildPath(POINT(1.5, 0.5), POINT(0.5, 0.5), NONE));
+	}
+
+	@Test
+	public void shouldApplySettingsGivenWhenLoading() throws IOException {
+		NavMeshFile.save(pathfindingUtil, file);
+		final PathfindingUtil loadedUtil = NavMeshFile.load(file, 4, 16);
+		assertNotNull(loadedUtil.getPathCache());
+		assertSamePath(pathfindingUtil.buildPath(POINT(0.5, 0.5), POINT(14.5, 0.5), FUNNEL), loadedUtil.buildPath(POINT(0.5, 0.5), POINT(14.5, 0.5), FUNNEL));
+	}
+
+	@Test
+	public void shouldSaveLoadedMeshToSameBytes() throws IOException {
+		NavMeshFile.save(pathfindingUtil, file);
+		final File copy = folder.newFile("copy.navmesh");
+		NavMeshFile.save(NavMeshFile.load(file), copy);
+		assertArrayEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(copy.toPath()));
+	}
+
+	@Test
+	public void shouldKeepMeshAfterLoading() throws IOException {
+		NavMeshFile.save(pathfindingUtil, file);
+		final PortalGraph portalGraph = pathfindingUtil.getSnapshot().portalGraph;
+		final PortalGraph loadedPortalGraph = NavMeshFile.load(file).getSnapshot().portalGraph;
+		final NavMesh mesh = portalGraph.getMesh();
+		final NavMesh loadedMesh = loadedPortalGraph.getMesh();
+		assertEquals(mesh.getVertexCount(), loadedMesh.getVertexCount());
+		assertEquals(mesh.getTriangleCount(), loadedMesh.getTriangleCount());
+		assertEquals(mesh.getPortalCount(), loadedMesh.getPortalCount());
+		assertEquals(portalGraph.getNodeCount(), loadedPortalGraph.getNodeCount());
+		for (int triangle = 0; triangle < mesh.getTriangleCount(); triangle++) {
+			assertEquals(mesh.getTriangle(triangle), loadedMesh.getTriangle(triangle));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldRejectFileWithoutMagicNumber() throws IOException {
+		Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		NavMeshFile.load(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldRejectUnknownVersion() throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(8).order(LITTLE_ENDIAN);
+		header.putInt(NavMeshFile.MAGIC).putInt(NavMeshFile.VERSION + 1);
+		Files.write(file.toPath(), header.array());
+		NavMeshFile.load(file);
+	}
+
+	@Test
+	public void shouldRejectTruncatedFile() throws IOException {
+		NavMeshFile.save(pathfindingUtil, file);
+		final byte[] bytes = Files.readAllBytes(file.toPath());
+		for (int cut = 1; cut < bytes.length - 8; cut += 1 + cut / 2) {
+			final int length = bytes.length - cut;
+			Files.write(file.toPath(), copyOf(bytes, length));
+			try {
+				NavMeshFile.load(file);
+				fail("Loaded navmesh file truncated to " + length + " of " + bytes.length + " bytes");
+			} catch (final IOException e) {
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldRejectFileWithCorruptCount() throws IOException {
+		NavMeshFile.save(pathfindingUtil, file);
+		final ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(LITTLE_ENDIAN);
+		bytes.putInt(8, Integer.MAX_VALUE);
+		Files.write(file.toPath(), bytes.array());
+		NavMeshFile.load(file);
+	}
+
+	private void assertSamePath(Path expected, Path actual) {
+		assertEquals(expected.origin, actual.origin);
+		assertEquals(expected.destination, actual.destination);
+		assertEquals(expected.route.size(), actual.route.size());
+		final Iterator<PortalStep> actualSteps = actual.route.iterator();
+		for (final PortalStep step : expected.route) {
+			final PortalStep actualStep = actualSteps.next();
+			assertEquals(step.portal, actualStep.portal);
+			assertEquals(step.waypoint, actualStep.waypoint);
+		}
+	}
+
+	private static Point2D POINT(double x, double y) {
+		return new Point2D.Double(x, y);
+	}
+}
@@ -0,0 +1,317 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+import static net.thomas.kata.geometry.SamplePolygons.buildSerpentine;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.FUNNEL;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.NONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.PolygonUtilImpl;
+import net.thomas.kata.geometry.objects.PolygonBuilder;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
+
+public class NavMeshPatchUnitTest {
+	private static final double DELTA = 0.0001;
+	private static final Point2D LEFT_OF_HOLE = POINT(2.0, 10.0);
+	private static final Point2D RIGHT_OF_HOLE = POINT(18.0, 10.0);
+	private static final Point2D INSIDE_HOLE = POINT(10.0, 10.0);
+
+	private PolygonUtil util;
+	private PathfindingUtil pathfindingUtil;
+
+	@Before
+	public void setUp() {
+		util = new PolygonUtilImpl();
+		pathfindingUtil = buildUtil(buildSquare(), 0);
+	}
+
+	@Test
+	public void shouldNotFindPathIntoAddedHole() {
+		pathfindingUtil.updateHoles(util, singleton(buildHole()), emptySet());
+		assertNull(pathfindingUtil.buildPath(INSIDE_HOLE, LEFT_OF_HOLE, NONE));
+	}
+
+	@Test
+	public void shouldRouteAroundAddedHole() {
+		pathfindingUtil.updateHoles(util, singleton(buildHole()), emptySet());
+		final Path path = pathfindingUtil.buildPath(LEFT_OF_HOLE, RIGHT_OF_HOLE, FUNNEL);
+		assertEquals(2 * Math.sqrt(6 * 6 + 2 * 2) + 4, calculateLength(path), DELTA);
+	}
+
+	@Test
+	public void shouldRestoreStraightPathWhenHoleIsRemoved() {
+		pathfindingUtil.updateHoles(util, singleton(buildHole()), emptySet());
+		pathfindingUtil.updateHoles(util, emptySet(), singleton(buildHole()));
+		assertEquals(16.0, calculateLength(pathfindingUtil.buildPath(LEFT_OF_HOLE, RIGHT_OF_HOLE, FUNNEL)), DELTA);
+		assertNotNull(pathfindingUtil.buildPath(INSIDE_HOLE, LEFT_OF_HOLE, NONE));
+	}
+
+	@Test
+	public void shouldRemoveHoleFromOriginalTriangulation() {
+		pathfindingUtil = buildUtil(Arrays.asList(buildSquare(), buildHole()), 0);
+		pathfindingUtil.updateHoles(util, emptySet(), singleton(buildHole()));
+		assertEquals(16.0, calculateLength(pathfindingUtil.buildPath(LEFT_OF_HOLE, RIGHT_OF_HOLE, FUNNEL)), DELTA);
+	}
+
+	@Test
+	public void shouldNotGrowMeshWhenHoleIsAddedAndRemovedRepeatedly() {
+		pathfindingUtil.updateHoles(util, singleton(buildHole()), emptySet());
+		pathfindingUtil.updateHoles(util, emptySet(), singleton(buildHole()));
+		final NavMesh mesh = pathfindingUtil.getSnapshot().portalGraph.getMesh();
+		for (int i = 0; i < 10; i++) {
+			pathfindingUtil.updateHoles(util, singleton(buildHole()), emptySet());
+			pathfindingUtil.updateHoles(util, emptySet(), singleton(buildHole()));
+		}
+		final NavMesh finalMesh = pathfindingUtil.getSnapshot().portalGraph.getMesh();
+		assertEquals(mesh.getVertexCount(), finalMesh.getVertexCount());
+		assertEquals(mesh.getTriangleCount(), finalMesh.getTriangleCount());
+	}
+
+	@Test
+	public void shouldOnlyRetriangulateAroundHole() {
+		pathfindingUtil = buildUtil(singleton(buildComb(50, 10)), 0);
+		final NavMesh mesh = pathfindingUtil.getSnapshot().portalGraph.getMesh();
+		final Path farPathBefore = pathfindingUtil.buildPath(POINT(80.5, 1.0), POINT(96.5, 1.0), FUNNEL);
+		final PolygonVertex hole = new PolygonBuilder().add(0.25, 4).add(0.25, 6).add(0.75, 6).add(0.75, 4).build();
+		final NavMeshPatch patch = new NavMeshPatch(pathfindingUtil.getSnapshot().portalGraph, pathfindingUtil.getSnapshot().triangleGrid, util,
+				singleton(hole), emptySet());
+		final NavMesh patchedMesh = patch.getPortalGraph().getMesh();
+		int unchangedTriangles = 0;
+		for (int triangle = 0; triangle < Math.min(mesh.getTriangleCount(), patchedMesh.getTriangleCount()); triangle++) {
+			if (mesh.getTriangle(triangle).equals(patchedMesh.getTriangle(triangle))) {
+				unchangedTriangles++;
+			}
+		}
+		assertTrue(unchangedTriangles > mesh.getTriangleCount() - 20);
+		pathfindingUtil.updateHoles(util, singleton(hole), emptySet());
+		assertSamePath(farPathBefore, pathfindingUtil.buildPath(POINT(80.5, 1.0), POINT(96.5, 1.0), FUNNEL));
+		assertTrue(calculateLength(pathfindingUtil.buildPath(POINT(0.5, 1.0), POINT(0.5, 9.0), FUNNEL)) > 8.0);
+	}
+
+	@Test
+	public void shouldKeepPatchedGraphConsistentWithMesh() {
+		pathfindingUtil = buildUtil(singleton(buildComb(20, 10)), 0);
+		final PolygonVertex firstHole = new PolygonBuilder().add(0.25, 4).add(0.25, 6).add(0.75, 6).add(0.75, 4).build();
+		final PolygonVertex secondHole = new PolygonBuilder().add(30.25, 4).add(30.25, 6).add(30.75, 6).add(30.75, 4).build();
+		pathfindingUtil.updateHoles(util, Arrays.asList(firstHole, secondHole), emptySet());
+		assertConsistent(pathfindingUtil.getSnapshot());
+		pathfindingUtil.updateHoles(util, emptySet(), singleton(firstHole));
+		assertConsistent(pathfindingUtil.getSnapshot());
+		pathfindingUtil.updateHoles(util, singleton(firstHole), singleton(secondHole));
+		assertConsistent(pathfindingUtil.getSnapshot());
+		pathfindingUtil.updateHoles(util, emptySet(), singleton(firstHole));
+		assertConsistent(pathfindingUtil.getSnapshot());
+	}
+
+	@Test
+	public void shouldCarryClearanceOverOnUpdate() {
+		final Collection<PolygonVertex> polygons = new ArrayList<>(singleton(buildSquare()));
+		for (int x = 2; x < 20; x += 4) {
+			for (int y = 2; y < 20; y += 4) {
+				polygons.add(new PolygonBuilder().add(x, y).add(x, y + 1).add(x + 1, y + 1).add(x + 1, y).build());
+			}
+		}
+		pathfindingUtil = buildUtil(polygons, 0);
+		final PolygonVertex hole = new PolygonBuilder().add(8, 8).add(8, 9).add(9, 9).add(9, 8).build();
+		pathfindingUtil.updateHoles(util, singleton(hole), emptySet());
+		assertSameClearance(pathfindingUtil.getSnapshot());
+		pathfindingUtil.updateHoles(util, emptySet(), singleton(hole));
+		assertSameClearance(pathfindingUtil.getSnapshot());
+	}
+
+	@Test
+	public void shouldKeepHierarchyConsistentOnUpdate() {
+		final int nodesPerRegion = 8;
+		final Collection<PolygonVertex> serpentine = singleton(buildSerpentine(10, 10.0));
+		final PathfindingUtil flatUtil = util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(serpentine)));
+		pathfindingUtil = util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(serpentine)), nodesPerRegion);
+		final PolygonVertex hole = new PolygonBuilder().add(8.25, 4).add(8.25, 6).add(8.75, 6).add(8.75, 4).build();
+		flatUtil.updateHoles(util, singleton(hole), emptySet());
+		pathfindingUtil.updateHoles(util, singleton(hole), emptySet());
+		assertConsistentHierarchy(pathfindingUtil.getSnapshot(), nodesPerRegion);
+		assertSameRoutes(flatUtil, pathfindingUtil);
+		flatUtil.updateHoles(util, emptySet(), singleton(hole));
+		pathfindingUtil.updateHoles(util, emptySet(), singleton(hole));
+		assertConsistentHierarchy(pathfindingUtil.getSnapshot(), nodesPerRegion);
+		assertSameRoutes(flatUtil, pathfindingUtil);
+	}
+
+	@Test
+	public void shouldStartNewPathCacheOnUpdate() {
+		pathfindingUtil = buildUtil(singleton(buildSquare()), 16);
+		final PathCache cache = pathfindingUtil.getPathCache();
+		pathfindingUtil.buildPath(LEFT_OF_HOLE, RIGHT_OF_HOLE, FUNNEL);
+		pathfindingUtil.updateHoles(util, singleton(buildHole()), emptySet());
+		assertNotSame(cache, pathfindingUtil.getPathCache());
+		assertEquals(2 * Math.sqrt(6 * 6 + 2 * 2) + 4, calculateLength(pathfindingUtil.buildPath(LEFT_OF_HOLE, RIGHT_OF_HOLE, FUNNEL)), DELTA);
+	}
+
+	@Test
+	public void shouldKeepSearchingOldMeshFromSnapshotTakenBeforeUpdate() {
+		final PathfindingUtil.Snapshot snapshot = pathfindingUtil.getSnapshot();
+		pathfindingUtil.updateHoles(util, singleton(buildHole()), emptySet());
+		assertNotSame(snapshot, pathfindingUtil.getSnapshot());
+		assertTrue(snapshot.triangleGrid.locateTriangleAt(INSIDE_HOLE.getX(), INSIDE_HOLE.getY()) != NavMesh.NONE);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectCounterclockwiseHole() {
+		pathfindingUtil.updateHoles(util, singleton(new PolygonBuilder().add(8, 8).add(12, 8).add(12, 12).add(8, 12).build()), emptySet());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectHoleOutsideMesh() {
+		pathfindingUtil.updateHoles(util, singleton(new PolygonBuilder().add(18, 18).add(18, 22).add(22, 22).add(22, 18).build()), emptySet());
+	}
+
+	@Test
+	public void shouldLeaveMeshUnchangedWhenRemovingUnknownHole() {
+		final PathfindingUtil.Snapshot snapshot = pathfindingUtil.getSnapshot();
+		try {
+			pathfindingUtil.updateHoles(util, emptySet(), singleton(buildHole()));
+		} catch (final IllegalArgumentException e) {
+			assertEquals(snapshot, pathfindingUtil.getSnapshot());
+			return;
+		}
+		throw new AssertionError("Removing a hole that is not in the mesh should fail");
+	}
+
+	private PathfindingUtil buildUtil(PolygonVertex polygon, int pathCacheSize) {
+		return buildUtil(singleton(polygon), pathCacheSize);
+	}
+
+	private PathfindingUtil buildUtil(Collection<PolygonVertex> polygons, int pathCacheSize) {
+		final PathfindingUtil builtUtil = util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(polygons)));
+		return pathCacheSize > 0 ? new PathfindingUtil(builtUtil.getSnapshot().portalGraph, 0, pathCacheSize) : builtUtil;
+	}
+
+	private static PolygonVertex buildSquare() {
+		return new PolygonBuilder().add(0, 0).add(20, 0).add(20, 20).add(0, 20).build();
+	}
+
+	private static PolygonVertex buildHole() {
+		return new PolygonBuilder().add(8, 8).add(8, 12).add(12, 12).add(12, 8).build();
+	}
+
+	private static double calculateLength(Path path) {
+		double length = 0.0;
+		Point2D previous = path.origin;
+		for (final PortalStep step : path.route) {
+			length += previous.distance(step.waypoint);
+			previous = step.waypoint;
+		}
+		return length + previous.distance(path.destination);
+	}
+
+	private static void assertConsistent(PathfindingUtil.Snapshot snapshot) {
+		final PortalGraph portalGraph = snapshot.portalGraph;
+		final NavMesh mesh = portalGraph.getMesh();
+		for (int triangle = 0; triangle < mesh.getTriangleCount(); triangle++) {
+			final double x = (mesh.getTriangleX(triangle, 0) + mesh.getTriangleX(triangle, 1) + mesh.getTriangleX(triangle, 2)) / 3;
+			final double y = (mesh.getTriangleY(triangle, 0) + mesh.getTriangleY(triangle, 1) + mesh.getTriangleY(triangle, 2)) / 3;
+			assertEquals(triangle, snapshot.triangleGrid.locateTriangleAt(x, y));
+			for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+				final int node = portalGraph.getTriangleNode(entry);
+				assertTrue(portalGraph.getNodeTriangle(node, 0) == triangle || portalGraph.getNodeTriangle(node, 1) == triangle);
+			}
+		}
+		for (int node = 0; node < portalGraph.getNodeCount(); node++) {
+			final Set<Integer> expectedNeighbours = new HashSet<>();
+			for (int side = 0; side < 2; side++) {
+				final int triangle = portalGraph.getNodeTriangle(node, side);
+				assertFalse(triangle == NavMesh.NONE);
+				for (int entry = portalGraph.getFirstTriangleNodeEntry(triangle); entry < portalGraph.getFirstTriangleNodeEntry(triangle + 1); entry++) {
+					if (portalGraph.getTriangleNode(entry) != node) {
+						expectedNeighbours.add(portalGraph.getTriangleNode(entry));
+					}
+				}
+			}
+			final Set<Integer> neighbours = new HashSet<>();
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				neighbours.add(portalGraph.getNeighbour(entry));
+			}
+			assertEquals(expectedNeighbours, neighbours);
+		}
+	}
+
+	private static void assertSameClearance(PathfindingUtil.Snapshot snapshot) {
+		final PortalClearance expected = new PortalClearance(snapshot.portalGraph);
+		for (int node = 0; node < snapshot.portalGraph.getNodeCount(); node++) {
+			assertEquals(expected.getPortalWidth(node), snapshot.clearance.getPortalWidth(node), 0.0);
+			for (int entry = snapshot.portalGraph.getFirstNeighbourEntry(node); entry < snapshot.portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				assertEquals(expected.getTransitionWidth(entry), snapshot.clearance.getTransitionWidth(entry), 0.0);
+			}
+		}
+	}
+
+	private static void assertConsistentHierarchy(PathfindingUtil.Snapshot snapshot, int nodesPerRegion) {
+		final PortalGraph portalGraph = snapshot.portalGraph;
+		final HierarchicalPortalGraph hierarchy = snapshot.hierarchy;
+		final int[] regionSizes = new int[hierarchy.getRegionCount()];
+		for (int node = 0; node < portalGraph.getNodeCount(); node++) {
+			regionSizes[hierarchy.getRegion(node)]++;
+			boolean hasNeighbourInOtherRegion = false;
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				hasNeighbourInOtherRegion |= hierarchy.getRegion(portalGraph.getNeighbour(entry)) != hierarchy.getRegion(node);
+			}
+			assertEquals(hasNeighbourInOtherRegion, hierarchy.isEntrance(node));
+			for (int shortcut = hierarchy.getFirstShortcutEntry(node); shortcut < hierarchy.getFirstShortcutEntry(node + 1); shortcut++) {
+				int previous = node;
+				double cost = 0.0;
+				for (int entry = hierarchy.getFirstRouteEntry(shortcut); entry < hierarchy.getFirstRouteEntry(shortcut + 1); entry++) {
+					final int current = hierarchy.getRouteNode(entry);
+					assertEquals(hierarchy.getRegion(node), hierarchy.getRegion(current));
+					cost += portalGraph.distance(previous, current);
+					previous = current;
+				}
+				assertEquals(hierarchy.getShortcutTarget(shortcut), previous);
+				assertEquals(hierarchy.getShortcutCost(shortcut), cost, 1e-9);
+			}
+		}
+		for (final int size : regionSizes) {
+			assertTrue(size <= nodesPerRegion);
+		}
+	}
+
+	private static void assertSameRoutes(PathfindingUtil flatUtil, PathfindingUtil hierarchicalUtil) {
+		final Random random = new Random(1234);
+		for (int i = 0; i < 200; i++) {
+			final Point2D origin = POINT(2 * random.nextInt(19) + 0.1 + random.nextDouble() * 0.1, 2.5 + random.nextDouble() * 5);
+			final Point2D destination = POINT(2 * random.nextInt(19) + 0.1 + random.nextDouble() * 0.1, 2.5 + random.nextDouble() * 5);
+			final Path flatPath = flatUtil.buildPath(origin, destination, NONE);
+			final Path hierarchicalPath = hierarchicalUtil.buildPath(origin, destination, NONE);
+			assertNotNull(hierarchicalPath);
+			assertEquals(calculateLength(flatPath), calculateLength(hierarchicalPath), 1e-9);
+		}
+	}
+
+	private static void assertSamePath(Path expected, Path actual) {
+		assertEquals(expected.route.size(), actual.route.size());
+		assertEquals(calculateLength(expected), calculateLength(actual), DELTA);
+	}
+
+	private static Point2D POINT(double x, double y) {
+		return new Point2D.Double(x, y);
+	}
+}
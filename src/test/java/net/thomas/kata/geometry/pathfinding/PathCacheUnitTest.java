@@ -0,0 +1,144 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Collections.singleton;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.FUNNEL;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.PolygonUtilImpl;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.PathQuery;
+
+public class PathCacheUnitTest {
+	private static final int SOME_TRIANGLE = 0;
+	private static final int SOME_OTHER_TRIANGLE = 1;
+	private static final int SOME_THIRD_TRIANGLE = 2;
+	private static final int[] SOME_CORRIDOR = { 1, 2, 3 };
+	private static final int[] SOME_OTHER_CORRIDOR = { 4, 5 };
+	private static final int[] SOME_THIRD_CORRIDOR = { 6 };
+
+	private PathCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new PathCache(2, 1);
+	}
+
+	@Test
+	public void shouldCountMiss() {
+		assertNull(cache.get(SOME_TRIANGLE, SOME_OTHER_TRIANGLE));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0, cache.getHitCount());
+	}
+
+	@Test
+	public void shouldCountHit() {
+		cache.put(SOME_TRIANGLE, SOME_OTHER_TRIANGLE, SOME_CORRIDOR);
+		assertSame(SOME_CORRIDOR, cache.get(SOME_TRIANGLE, SOME_OTHER_TRIANGLE));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+
+	@Test
+	public void shouldKeepDirectionsApart() {
+		cache.put(SOME_TRIANGLE, SOME_OTHER_TRIANGLE, SOME_CORRIDOR);
+		assertNull(cache.get(SOME_OTHER_TRIANGLE, SOME_TRIANGLE));
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyUsedRoute() {
+		cache.put(SOME_TRIANGLE, SOME_OTHER_TRIANGLE, SOME_CORRIDOR);
+		cache.put(SOME_OTHER_TRIANGLE, SOME_THIRD_TRIANGLE, SOME_OTHER_CORRIDOR);
+		cache.get(SOME_TRIANGLE, SOME_OTHER_TRIANGLE);
+		cache.put(SOME_TRIANGLE, SOME_THIRD_TRIANGLE, SOME_THIRD_CORRIDOR);
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(2, cache.size());
+		assertSame(SOME_CORRIDOR, cache.get(SOME_TRIANGLE, SOME_OTHER_TRIANGLE));
+		assertNull(cache.get(SOME_OTHER_TRIANGLE, SOME_THIRD_TRIANGLE));
+	}
+
+	@Test
+	public void shouldDropRoutesOnInvalidation() {
+		cache.put(SOME_TRIANGLE, SOME_OTHER_TRIANGLE, SOME_CORRIDOR);
+		cache.invalidate();
+		assertEquals(0, cache.size());
+		assertNull(cache.get(SOME_TRIANGLE, SOME_OTHER_TRIANGLE));
+	}
+
+	@Test
+	public void shouldReuseCorridorForOtherPointsInSameTriangles() {
+		final PathfindingUtil pathfindingUtil = buildCombUtil(10);
+		final Path firstPath = pathfindingUtil.buildPath(POINT(0.5, 0.5), POINT(6.5, 0.5), FUNNEL);
+		final Path secondPath = pathfindingUtil.buildPath(POINT(0.6, 0.5), POINT(6.6, 0.5), FUNNEL);
+		assertEquals(1, pathfindingUtil.getPathCache().getMissCount());
+		assertEquals(1, pathfindingUtil.getPathCache().getHitCount());
+		assertEquals(POINT(0.6, 0.5), secondPath.origin);
+		assertEquals(POINT(6.6, 0.5), secondPath.destination);
+		assertEquals(firstPath.route.size(), secondPath.route.size());
+	}
+
+	@Test
+	public void shouldMatchUncachedPathsWhenSharedBetweenThreads() {
+		final PathfindingUtil cachedUtil = buildCombUtil(64);
+		final PathfindingUtil uncachedUtil = buildCombUtil(0);
+		final List<PathQuery> queries = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			queries.add(new PathQuery(POINT(2 * (i % 6) + 0.5, 0.5), POINT(2 * ((i / 6 + i) % 6) + 0.5, 0.5)));
+		}
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final List<Path> cachedPaths = new PathQueryService(cachedUtil, pool).buildPaths(queries, FUNNEL);
+			final List<Path> uncachedPaths = new PathQueryService(uncachedUtil, pool).buildPaths(queries, FUNNEL);
+			for (int i = 0; i < queries.size(); i++) {
+				assertArrayEquals(waypointsOf(uncachedPaths.get(i)), waypointsOf(cachedPaths.get(i)));
+			}
+			final PathCache cache = cachedUtil.getPathCache();
+			assertEquals(cache.getHitCount() + cache.getMissCount(), countQueriesBetweenTeeth(queries));
+			assertTrue(cache.getHitCount() > 0);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static PathfindingUtil buildCombUtil(int pathCacheSize) {
+		final PolygonUtil util = new PolygonUtilImpl();
+		final PathfindingUtil pathfindingUtil = util
+				.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(buildComb(6, 10)))));
+		return new PathfindingUtil(pathfindingUtil.getSnapshot().portalGraph, 0, pathCacheSize);
+	}
+
+	private static int countQueriesBetweenTeeth(List<PathQuery> queries) {
+		int count = 0;
+		for (final PathQuery query : queries) {
+			if (query.origin.getX() != query.destination.getX()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static Point2D[] waypointsOf(Path path) {
+		final Point2D[] waypoints = new Point2D[path.route.size()];
+		for (int i = 0; i < waypoints.length; i++) {
+			waypoints[i] = path.route.get(i).waypoint;
+		}
+		return waypoints;
+	}
+
+	private static Point2D POINT(double x, double y) {
+		return new Point2D.Double(x, y);
+	}
+}
@@ -0,0 +1,113 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Collections.singleton;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.TRIPPLE_PASS_SMOOTHING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.PolygonUtilImpl;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
+import net.thomas.kata.geometry.pathfinding.objects.PathQuery;
+
+public class PathQueryServiceUnitTest {
+	private static final int NUMBER_OF_TEETH = 8;
+
+	private PathfindingUtil pathfindingUtil;
+	private ForkJoinPool pool;
+	private PathQueryService service;
+
+	@Before
+	public void setUp() {
+		final PolygonUtil util = new PolygonUtilImpl();
+		pathfindingUtil = util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(buildComb(NUMBER_OF_TEETH, 10)))));
+		pool = new ForkJoinPool(4);
+		service = new PathQueryService(pathfindingUtil, pool);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void shouldReturnPathsInQueryOrder() {
+		final List<PathQuery> queries = buildQueriesBetweenAllTeeth();
+		final List<Path> paths = service.buildPaths(queries, TRIPPLE_PASS_SMOOTHING);
+		assertEquals(queries.size(), paths.size());
+		for (int i = 0; i < queries.size(); i++) {
+			assertEquals(queries.get(i).origin, paths.get(i).origin);
+			assertEquals(queries.get(i).destination, paths.get(i).destination);
+		}
+	}
+
+	@Test
+	public void shouldMatchSequentialPaths() {
+		final List<PathQuery> queries = buildQueriesBetweenAllTeeth();
+		final List<Path> paths = service.buildPaths(queries, TRIPPLE_PASS_SMOOTHING);
+		for (int i = 0; i < queries.size(); i++) {
+			final PathQuery query = queries.get(i);
+			assertSamePath(pathfindingUtil.buildPath(query.origin, query.destination, TRIPPLE_PASS_SMOOTHING), paths.get(i));
+		}
+	}
+
+	@Test
+	public void shouldReturnSamePathsForRepeatedBatches() {
+		final List<PathQuery> queries = buildQueriesBetweenAllTeeth();
+		final List<Path> firstPaths = service.buildPaths(queries, TRIPPLE_PASS_SMOOTHING);
+		final List<Path> secondPaths = service.buildPaths(queries, TRIPPLE_PASS_SMOOTHING);
+		for (int i = 0; i < queries.size(); i++) {
+			assertSamePath(firstPaths.get(i), secondPaths.get(i));
+		}
+	}
+
+	@Test
+	public void shouldReturnNullForQueryOutsideMesh() {
+		final List<PathQuery> queries = new ArrayList<>();
+		queries.add(new PathQuery(POINT(0.5, 0.5), POINT(-5.0, -5.0)));
+		queries.add(new PathQuery(POINT(0.5, 0.5), POINT(2.5, 0.5)));
+		final List<Path> paths = service.buildPaths(queries, TRIPPLE_PASS_SMOOTHING);
+		assertNull(paths.get(0));
+		assertNotNull(paths.get(1));
+	}
+
+	@Test
+	public void shouldHandleEmptyBatch() {
+		assertEquals(0, service.buildPaths(new ArrayList<>(), TRIPPLE_PASS_SMOOTHING).size());
+	}
+
+	private List<PathQuery> buildQueriesBetweenAllTeeth() {
+		final List<PathQuery> queries = new ArrayList<>();
+		for (int from = 0; from < NUMBER_OF_TEETH; from++) {
+			for (int to = 0; to < NUMBER_OF_TEETH; to++) {
+				queries.add(new PathQuery(POINT(2 * from + 0.5, 0.5), POINT(2 * to + 0.5, 0.5)));
+			}
+		}
+		return queries;
+	}
+
+	private void assertSamePath(Path expected, Path actual) {
+		assertEquals(expected.route.size(), actual.route.size());
+		final Iterator<PortalStep> actualSteps = actual.route.iterator();
+		for (final PortalStep expectedStep : expected.route) {
+			assertEquals(expectedStep.waypoint, actualSteps.next().waypoint);
+		}
+	}
+
+	private static Point2D POINT(double x, double y) {
+		return new Point2D.Double(x, y);
+	}
+}
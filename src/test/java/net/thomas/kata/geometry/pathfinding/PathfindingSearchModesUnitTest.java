@@ -0,0 +1,143 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+import static net.thomas.kata.geometry.SamplePolygons.buildSerpentine;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.FUNNEL;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.NONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.PolygonUtilImpl;
+import net.thomas.kata.geometry.objects.PolygonBuilder;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
+
+public class PathfindingSearchModesUnitTest {
+	private static final double DELTA = 0.0001;
+	private static final int NUMBER_OF_TEETH = 20;
+	private static final Point2D FIRST_TOOTH_BOTTOM = POINT(0.5, 1.0);
+	private static final Point2D FIRST_TOOTH_TOP = POINT(0.5, 8.0);
+	private static final Point2D SECOND_TOOTH_BOTTOM = POINT(2.5, 1.0);
+	private static final Point2D BETWEEN_TEETH = POINT(1.5, 1.0);
+
+	private PolygonUtil util;
+	private PathfindingUtil pathfindingUtil;
+
+	@Before
+	public void setUp() {
+		util = new PolygonUtilImpl();
+		pathfindingUtil = buildUtil(buildComb(NUMBER_OF_TEETH, 10));
+	}
+
+	@Test
+	public void shouldFindSameRouteLengthBidirectionally() {
+		final Random random = new Random(1234);
+		for (int i = 0; i < 50; i++) {
+			final Point2D origin = randomToothPoint(random);
+			final Point2D destination = randomToothPoint(random);
+			assertEquals(calculateLength(pathfindingUtil.buildPath(origin, destination, NONE)),
+					calculateLength(pathfindingUtil.buildBidirectionalPath(origin, destination, NONE)), DELTA);
+		}
+	}
+
+	@Test
+	public void shouldFindSameFunnelPathBidirectionallyInSerpentine() {
+		pathfindingUtil = buildUtil(buildSerpentine(10, 20));
+		final Path path = pathfindingUtil.buildPath(POINT(0.5, 10), POINT(38.5, 10), FUNNEL);
+		final Path bidirectionalPath = pathfindingUtil.buildBidirectionalPath(POINT(0.5, 10), POINT(38.5, 10), FUNNEL);
+		assertEquals(path.route.size(), bidirectionalPath.route.size());
+		assertEquals(calculateLength(path), calculateLength(bidirectionalPath), DELTA);
+	}
+
+	@Test
+	public void shouldBuildBidirectionalPathWithinTriangle() {
+		final Path path = pathfindingUtil.buildBidirectionalPath(FIRST_TOOTH_BOTTOM, POINT(0.5, 1.1), NONE);
+		assertTrue(path.route.isEmpty());
+	}
+
+	@Test
+	public void shouldNotFindBidirectionalPathBetweenSeparatePolygons() {
+		final PolygonVertex left = new PolygonBuilder().add(0, 0).add(4, 0).add(4, 4).add(0, 4).build();
+		final PolygonVertex right = new PolygonBuilder().add(6, 0).add(10, 0).add(10, 4).add(6, 4).build();
+		pathfindingUtil = util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(asList(left, right))));
+		assertNull(pathfindingUtil.buildBidirectionalPath(POINT(1, 1), POINT(9, 3), NONE));
+	}
+
+	@Test
+	public void shouldPickDestinationWithShortestRouteRatherThanShortestDistance() {
+		final Path path = pathfindingUtil.buildPathToNearest(FIRST_TOOTH_BOTTOM, asList(SECOND_TOOTH_BOTTOM, FIRST_TOOTH_TOP), FUNNEL);
+		assertEquals(FIRST_TOOTH_TOP, path.destination);
+		assertEquals(7.0, calculateLength(path), DELTA);
+	}
+
+	@Test
+	public void shouldPickDestinationInStartTriangle() {
+		final Point2D nearby = POINT(0.5, 1.1);
+		final Path path = pathfindingUtil.buildPathToNearest(FIRST_TOOTH_BOTTOM, asList(FIRST_TOOTH_TOP, nearby), NONE);
+		assertEquals(nearby, path.destination);
+		assertTrue(path.route.isEmpty());
+	}
+
+	@Test
+	public void shouldIgnoreDestinationsOutsideMesh() {
+		final Path path = pathfindingUtil.buildPathToNearest(FIRST_TOOTH_BOTTOM, asList(BETWEEN_TEETH, SECOND_TOOTH_BOTTOM), NONE);
+		assertEquals(SECOND_TOOTH_BOTTOM, path.destination);
+	}
+
+	@Test
+	public void shouldNotFindPathWhenAllDestinationsAreOutsideMesh() {
+		assertNull(pathfindingUtil.buildPathToNearest(FIRST_TOOTH_BOTTOM, singleton(BETWEEN_TEETH), NONE));
+	}
+
+	@Test
+	public void shouldMatchShortestOfSeparateSearches() {
+		final Random random = new Random(4321);
+		final SearchScratchSpace scratchSpace = new SearchScratchSpace();
+		for (int i = 0; i < 20; i++) {
+			final Point2D origin = randomToothPoint(random);
+			final List<Point2D> destinations = new ArrayList<>();
+			double shortestLength = Double.POSITIVE_INFINITY;
+			for (int j = 0; j < 4; j++) {
+				final Point2D destination = randomToothPoint(random);
+				destinations.add(destination);
+				shortestLength = Math.min(shortestLength, calculateLength(pathfindingUtil.buildPath(origin, destination, NONE, scratchSpace)));
+			}
+			assertEquals(shortestLength, calculateLength(pathfindingUtil.buildPathToNearest(origin, destinations, NONE, scratchSpace)), DELTA);
+		}
+	}
+
+	private PathfindingUtil buildUtil(PolygonVertex polygon) {
+		return util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(polygon))));
+	}
+
+	private static Point2D randomToothPoint(Random random) {
+		return POINT(2 * random.nextInt(NUMBER_OF_TEETH) + 0.5, 0.5 + random.nextInt(8));
+	}
+
+	private static double calculateLength(Path path) {
+		double length = 0.0;
+		Point2D previous = path.origin;
+		for (final PortalStep step : path.route) {
+			length += previous.distance(step.waypoint);
+			previous = step.waypoint;
+		}
+		return length + previous.distance(path.destination);
+	}
+
+	private static Point2D POINT(double x, double y) {
+		return new Point2D.Double(x, y);
+	}
+}
@@ -6,6 +6,6 @@ import org.junit.runners.Suite;
 import net.thomas.kata.geometry.pathfinding.objects.ObjectTestSuite;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ PathfindingUtilUnitTest.class, ObjectTestSuite.class })
+@Suite.SuiteClasses({ PathfindingUtilUnitTest.class, TriangleGridUnitTest.class, PathQueryServiceUnitTest.class, IndexedIntHeapUnitTest.class, FunnelAlgorithmUnitTest.class, HierarchicalPortalGraphUnitTest.class, PathCacheUnitTest.class, NavMeshFileUnitTest.class, NavMeshPatchUnitTest.class, PortalClearanceUnitTest.class, PathfindingSearchModesUnitTest.class, FlowFieldUnitTest.class, ObjectTestSuite.class })
 public class PathfindingTestSuite {
 }
\ No newline at end of file
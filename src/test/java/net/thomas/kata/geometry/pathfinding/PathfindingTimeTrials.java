@@ -0,0 +1,441 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.lang.System.nanoTime;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static net.thomas.kata.geometry.SamplePolygons.buildComb;
+import static net.thomas.kata.geometry.SamplePolygons.buildSerpentine;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.FUNNEL;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.NONE;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.TRIPPLE_PASS_SMOOTHING;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.PolygonUtilImpl;
+import net.thomas.kata.geometry.objects.PolygonBuilder;
+import net.thomas.kata.geometry.objects.PolygonTriangle;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+import net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
+import net.thomas.kata.geometry.pathfinding.objects.PathQuery;
+import net.thomas.kata.geometry.pathfinding.objects.PortalGraphNode;
+import net.thomas.kata.geometry.pathfinding.objects.Triangle;
+
+public class PathfindingTimeTrials {
+	private static final int NUMBER_OF_TEETH = 200;
+	private static final int[] BATCH_SIZES = { 1000, 4000, 16000 };
+	private static final int NUMBER_OF_WALLS = 400;
+	private static final int[] NODES_PER_REGION = { 16, 64, 256 };
+
+	public static void main(String[] args) {
+		final PolygonUtil util = new PolygonUtilImpl();
+		final PathfindingUtil pathfindingUtil = util
+				.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(buildComb(NUMBER_OF_TEETH, 100)))));
+		final StepObjectPathfinder stepObjectPathfinder = new StepObjectPathfinder(pathfindingUtil);
+		final SearchScratchSpace scratchSpace = new SearchScratchSpace();
+		for (final int size : BATCH_SIZES) {
+			final List<PathQuery> queries = buildRandomQueries(size);
+			executeTest("Step object A* for " + size + " queries:", () -> {
+				for (final PathQuery query : queries) {
+					stepObjectPathfinder.buildPath(query.origin, query.destination);
+				}
+			});
+			executeTest("Indexed A* for " + size + " queries:", () -> {
+				for (final PathQuery query : queries) {
+					pathfindingUtil.buildPath(query.origin, query.destination, NONE, scratchSpace);
+				}
+			});
+			double stepObjectLength = 0.0;
+			double indexedLength = 0.0;
+			for (final PathQuery query : queries) {
+				stepObjectLength += calculateLength(stepObjectPathfinder.buildPath(query.origin, query.destination));
+				indexedLength += calculateLength(pathfindingUtil.buildPath(query.origin, query.destination, NONE, scratchSpace));
+			}
+			System.out.println("Total route length for " + size + " queries, step object A*: " + (int) stepObjectLength + ", indexed A*: " + (int) indexedLength);
+		}
+		for (final int size : BATCH_SIZES) {
+			final List<PathQuery> queries = buildRandomQueries(size);
+			for (final OptimizationTechnique technique : new OptimizationTechnique[] { TRIPPLE_PASS_SMOOTHING, FUNNEL }) {
+				executeTest(technique + " for " + size + " queries:", () -> {
+					for (final PathQuery query : queries) {
+						pathfindingUtil.buildPath(query.origin, query.destination, technique, scratchSpace);
+					}
+				});
+				double length = 0.0;
+				int waypoints = 0;
+				for (final PathQuery query : queries) {
+					final Path path = pathfindingUtil.buildPath(query.origin, query.destination, technique, scratchSpace);
+					length += calculateLength(path);
+					waypoints += path.route.size();
+				}
+				System.out.println("Total route length for " + size + " queries with " + technique + ": " + (int) length + ", waypoints: " + waypoints);
+			}
+		}
+		compareHierarchicalSearch(util);
+		compareCachedSearch(pathfindingUtil);
+		compareNavMeshLoading(util);
+		compareHoleUpdates(util);
+		compareDelaunayRefinement(util);
+		compareBidirectionalSearch(util);
+		compareNearestTargetSearch(pathfindingUtil);
+		compareFlowField(pathfindingUtil);
+		final PathQueryService service = new PathQueryService(pathfindingUtil);
+		for (final int size : BATCH_SIZES) {
+			final List<PathQuery> queries = buildRandomQueries(size);
+			executeTest("Sequential paths for " + size + " queries:", () -> {
+				for (final PathQuery query : queries) {
+					pathfindingUtil.buildPath(query.origin, query.destination, TRIPPLE_PASS_SMOOTHING);
+				}
+			});
+			executeTest("Parallel paths for " + size + " queries:", () -> service.buildPaths(queries, TRIPPLE_PASS_SMOOTHING));
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void compareHierarchicalSearch(PolygonUtil util) {
+		final Map<Triangle, Collection<PortalGraphNode>> triangles2Portals = util
+				.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(buildSerpentine(NUMBER_OF_WALLS, 20)))))
+				.getTriangle2PortalNodeMap();
+		final List<PathQuery> queries = buildLongSerpentineQueries(200);
+		long stamp = nanoTime();
+		final PathfindingUtil flatUtil = new PathfindingUtil(triangles2Portals);
+		System.out.println("Flat build for " + NUMBER_OF_WALLS + " walls: " + calculateTimeSpend(stamp));
+		final SearchScratchSpace flatScratchSpace = new SearchScratchSpace();
+		executeTest("Flat search for " + queries.size() + " long queries:", () -> {
+			for (final PathQuery query : queries) {
+				flatUtil.buildPath(query.origin, query.destination, NONE, flatScratchSpace);
+			}
+		});
+		System.out.println("Flat search expanded " + flatScratchSpace.expandedNodeCount / queries.size() + " nodes per query");
+		final PortalGraph portalGraph = new PortalGraph(triangles2Portals);
+		for (final int nodesPerRegion : NODES_PER_REGION) {
+			stamp = nanoTime();
+			final PathfindingUtil hierarchicalUtil = new PathfindingUtil(triangles2Portals, nodesPerRegion);
+			System.out.println("Hierarchical build with " + nodesPerRegion + " nodes per region: " + calculateTimeSpend(stamp));
+			final HierarchicalPortalGraph hierarchy = new HierarchicalPortalGraph(portalGraph, nodesPerRegion);
+			final long overhead = portalGraph.getNodeCount() * (4L + 1L + 4L) + hierarchy.getShortcutCount() * (4L + 8L + 4L)
+					+ hierarchy.getShortcutRouteLength() * 4L;
+			System.out.println("Hierarchy overhead: " + hierarchy.getRegionCount() + " regions, " + hierarchy.getShortcutCount() + " shortcuts, about "
+					+ overhead / 1024 + " KiB for " + portalGraph.getNodeCount() + " portal nodes");
+			final SearchScratchSpace hierarchicalScratchSpace = new SearchScratchSpace();
+			executeTest("Hierarchical search for " + queries.size() + " long queries:", () -> {
+				for (final PathQuery query : queries) {
+					hierarchicalUtil.buildPath(query.origin, query.destination, NONE, hierarchicalScratchSpace);
+				}
+			});
+			System.out.println("Hierarchical search expanded " + hierarchicalScratchSpace.expandedNodeCount / queries.size() + " nodes per query");
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void compareCachedSearch(PathfindingUtil pathfindingUtil) {
+		final PathfindingUtil cachedUtil = new PathfindingUtil(pathfindingUtil.getTriangle2PortalNodeMap(), 0, 1000);
+		final List<PathQuery> hotspots = buildRandomQueries(300);
+		final Random random = new Random(1234);
+		final List<PathQuery> queries = new ArrayList<>();
+		for (int i = 0; i < 16000; i++) {
+			queries.add(hotspots.get(random.nextInt(hotspots.size())));
+		}
+		final SearchScratchSpace scratchSpace = new SearchScratchSpace();
+		executeTest("Uncached FUNNEL for " + queries.size() + " hotspot queries:", () -> {
+			for (final PathQuery query : queries) {
+				pathfindingUtil.buildPath(query.origin, query.destination, FUNNEL, scratchSpace);
+			}
+		});
+		executeTest("Cached FUNNEL for " + queries.size() + " hotspot queries:", () -> {
+			for (final PathQuery query : queries) {
+				cachedUtil.buildPath(query.origin, query.destination, FUNNEL, scratchSpace);
+			}
+		});
+		System.out.println(cachedUtil.getPathCache());
+	}
+
+	private static void compareNavMeshLoading(PolygonUtil util) {
+		final File file;
+		try {
+			file = File.createTempFile("serpentine", ".navmesh");
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		file.deleteOnExit();
+		final AtomicReference<PathfindingUtil> builtUtil = new AtomicReference<>();
+		executeTest("Triangulation and build for " + NUMBER_OF_WALLS + " walls:", () -> builtUtil.set(util
+				.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(buildSerpentine(NUMBER_OF_WALLS, 20)))))));
+		executeTest("Saving navmesh for " + NUMBER_OF_WALLS + " walls:", () -> {
+			try {
+				NavMeshFile.save(builtUtil.get(), file);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		executeTest("Loading navmesh of " + file.length() + " bytes:", () -> {
+			try {
+				NavMeshFile.load(file);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	private static void compareHoleUpdates(PolygonUtil util) {
+		final PolygonVertex hole = new PolygonBuilder().add(2.25, 5).add(2.25, 6).add(2.75, 6).add(2.75, 5).build();
+		final PathfindingUtil pathfindingUtil = util
+				.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(asList(buildSerpentine(NUMBER_OF_WALLS, 20)))));
+		executeTest("Full rebuild with a hole for " + NUMBER_OF_WALLS + " walls:", () -> util.buildPathFindingUtil(
+				util.triangulateMonotonePolygons(util.getMonotoneParts(asList(buildSerpentine(NUMBER_OF_WALLS, 20), hole.createClone())))));
+		executeTest("Adding and removing a hole 100 times for " + NUMBER_OF_WALLS + " walls:", () -> {
+			for (int i = 0; i < 100; i++) {
+				pathfindingUtil.updateHoles(util, singleton(hole), emptySet());
+				pathfindingUtil.updateHoles(util, emptySet(), singleton(hole));
+			}
+		});
+	}
+
+	private static void compareDelaunayRefinement(PolygonUtil util) {
+		final List<PathQuery> queries = buildRandomQueries(BATCH_SIZES[BATCH_SIZES.length - 1]);
+		final AtomicReference<Collection<PolygonTriangle>> triangles = new AtomicReference<>();
+		for (final boolean refine : new boolean[] { false, true }) {
+			final String name = refine ? "Delaunay" : "Monotone";
+			executeTest(name + " triangulation for " + NUMBER_OF_TEETH + " teeth:", () -> {
+				final Collection<PolygonTriangle> monotoneTriangles = util
+						.triangulateMonotonePolygons(util.getMonotoneParts(singleton(buildComb(NUMBER_OF_TEETH, 100))));
+				triangles.set(refine ? util.refineToConstrainedDelaunay(monotoneTriangles) : monotoneTriangles);
+			});
+			final PathfindingUtil pathfindingUtil = util.buildPathFindingUtil(triangles.get());
+			final SearchScratchSpace scratchSpace = new SearchScratchSpace();
+			executeTest(name + " search for " + queries.size() + " queries:", () -> {
+				for (final PathQuery query : queries) {
+					pathfindingUtil.buildPath(query.origin, query.destination, NONE, scratchSpace);
+				}
+			});
+			double length = 0.0;
+			for (final PathQuery query : queries) {
+				length += calculateLength(pathfindingUtil.buildPath(query.origin, query.destination, NONE, scratchSpace));
+			}
+			System.out.println(name + " search expanded " + scratchSpace.expandedNodeCount / (2 * queries.size()) + " nodes per query, total route length: "
+					+ (int) length);
+		}
+	}
+
+	private static void compareBidirectionalSearch(PolygonUtil util) {
+		final PathfindingUtil pathfindingUtil = util
+				.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(singleton(buildSerpentine(NUMBER_OF_WALLS, 20)))));
+		final List<PathQuery> queries = buildLongSerpentineQueries(200);
+		final SearchScratchSpace forwardScratchSpace = new SearchScratchSpace();
+		executeTest("Forward search for " + queries.size() + " long queries:", () -> {
+			for (final PathQuery query : queries) {
+				pathfindingUtil.buildPath(query.origin, query.destination, NONE, forwardScratchSpace);
+			}
+		});
+		final SearchScratchSpace bidirectionalScratchSpace = new SearchScratchSpace();
+		executeTest("Bidirectional search for " + queries.size() + " long queries:", () -> {
+			for (final PathQuery query : queries) {
+				pathfindingUtil.buildBidirectionalPath(query.origin, query.destination, NONE, bidirectionalScratchSpace);
+			}
+		});
+		System.out.println("Forward search expanded " + forwardScratchSpace.expandedNodeCount / queries.size() + " nodes per query, bidirectional search "
+				+ bidirectionalScratchSpace.expandedNodeCount / queries.size());
+	}
+
+	private static void compareNearestTargetSearch(PathfindingUtil pathfindingUtil) {
+		final Random random = new Random(1234);
+		final List<Point2D> origins = new ArrayList<>();
+		final List<List<Point2D>> destinations = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			origins.add(randomToothPoint(random));
+			final List<Point2D> depots = new ArrayList<>();
+			for (int j = 0; j < 8; j++) {
+				depots.add(randomToothPoint(random));
+			}
+			destinations.add(depots);
+		}
+		final SearchScratchSpace scratchSpace = new SearchScratchSpace();
+		executeTest("Separate searches to nearest of 8 for " + origins.size() + " queries:", () -> {
+			for (int i = 0; i < origins.size(); i++) {
+				Path nearest = null;
+				for (final Point2D destination : destinations.get(i)) {
+					final Path path = pathfindingUtil.buildPath(origins.get(i), destination, FUNNEL, scratchSpace);
+					if (nearest == null || calculateLength(path) < calculateLength(nearest)) {
+						nearest = path;
+					}
+				}
+			}
+		});
+		executeTest("Single search to nearest of 8 for " + origins.size() + " queries:", () -> {
+			for (int i = 0; i < origins.size(); i++) {
+				pathfindingUtil.buildPathToNearest(origins.get(i), destinations.get(i), FUNNEL, scratchSpace);
+			}
+		});
+	}
+
+	private static void compareFlowField(PathfindingUtil pathfindingUtil) {
+		final Random random = new Random(1234);
+		final Point2D rallyPoint = randomToothPoint(random);
+		final List<Point2D> units = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			units.add(randomToothPoint(random));
+		}
+		final SearchScratchSpace scratchSpace = new SearchScratchSpace();
+		executeTest("Separate FUNNEL paths for " + units.size() + " units:", () -> {
+			for (final Point2D unit : units) {
+				pathfindingUtil.buildPath(unit, rallyPoint, FUNNEL, scratchSpace);
+			}
+		});
+		executeTest("Flow field and directions for " + units.size() + " units:", () -> {
+			final FlowField flowField = pathfindingUtil.getFlowField(rallyPoint);
+			for (final Point2D unit : units) {
+				flowField.getDirection(unit);
+			}
+		});
+		pathfindingUtil.releaseFlowField(rallyPoint);
+		final PathfindingUtil hierarchicalUtil = new PathfindingUtil(pathfindingUtil.getSnapshot().portalGraph, NODES_PER_REGION[1], 0);
+		executeTest("Flow field filled in by regions:", () -> hierarchicalUtil.getFlowField(rallyPoint));
+		final FlowField flowField = pathfindingUtil.getFlowField(rallyPoint);
+		executeTest("Directions for " + units.size() + " units from a cached field:", () -> {
+			for (final Point2D unit : units) {
+				flowField.getDirection(unit);
+			}
+		});
+	}
+
+	private static List<PathQuery> buildLongSerpentineQueries(int count) {
+		final Random random = new Random(1234);
+		final List<PathQuery> queries = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final int firstCorridor = random.nextInt(NUMBER_OF_WALLS / 4);
+			final int lastCorridor = 2 * NUMBER_OF_WALLS - 2 - random.nextInt(NUMBER_OF_WALLS / 4);
+			queries.add(new PathQuery(new Point2D.Double(2 * firstCorridor + 0.5, 10), new Point2D.Double(2 * lastCorridor + 0.5, 10)));
+		}
+		return queries;
+	}
+
+	private static double calculateLength(Path path) {
+		double length = 0.0;
+		Point2D last = path.origin;
+		for (final PortalStep step : path.route) {
+			length += last.distance(step.waypoint);
+			last = step.waypoint;
+		}
+		return length + last.distance(path.destination);
+	}
+
+	private static List<PathQuery> buildRandomQueries(int count) {
+		final Random random = new Random(1234);
+		final List<PathQuery> queries = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			queries.add(new PathQuery(randomToothPoint(random), randomToothPoint(random)));
+		}
+		return queries;
+	}
+
+	private static Point2D randomToothPoint(Random random) {
+		return new Point2D.Double(2 * random.nextInt(NUMBER_OF_TEETH) + 0.5, 0.5);
+	}
+
+	private static void executeTest(String description, Runnable test) {
+		final long stamp = nanoTime();
+		test.run();
+		System.out.println(description + " " + calculateTimeSpend(stamp));
+	}
+
+	private static String calculateTimeSpend(long stamp) {
+		return (nanoTime() - stamp) / 10000 / 100.0d + " ms";
+	}
+
+	/***
+	 * The original search, kept for comparison. Nodes are marked as visited when they are queued,
+	 * costs are squared distances, and every expansion allocates a new step.
+	 */
+	@SuppressWarnings("deprecation")
+	private static class StepObjectPathfinder {
+		private final Map<Triangle, Collection<PortalGraphNode>> triangles2Portals;
+		private final TriangleGrid triangleGrid;
+
+		public StepObjectPathfinder(PathfindingUtil pathfindingUtil) {
+			triangles2Portals = pathfindingUtil.getTriangle2PortalNodeMap();
+			triangleGrid = new TriangleGrid(triangles2Portals.keySet());
+		}
+
+		public Path buildPath(Point2D origin, Point2D destination) {
+			final Triangle startTriangle = triangleGrid.lookupTriangleAt(origin);
+			final Triangle endTriangle = triangleGrid.lookupTriangleAt(destination);
+			final Set<PortalGraphNode> visitedNodes = new HashSet<>();
+			final PriorityQueue<Step> candidateSteps = new PriorityQueue<>();
+			for (final PortalGraphNode node : triangles2Portals.get(startTriangle)) {
+				visitedNodes.add(node);
+				candidateSteps.add(buildStep(null, node, origin, destination));
+			}
+			final Collection<PortalGraphNode> endNodes = triangles2Portals.get(endTriangle);
+			final Path path = new Path(origin, destination);
+			while (!candidateSteps.isEmpty()) {
+				final Step currentStep = candidateSteps.poll();
+				if (endNodes.contains(currentStep.node)) {
+					final LinkedList<Step> steps = new LinkedList<>();
+					for (Step step = currentStep; step != null; step = step.previousStep) {
+						steps.addFirst(step);
+					}
+					for (final Step step : steps) {
+						path.addPortal(step.node.getPortal());
+					}
+					break;
+				} else {
+					for (final PortalGraphNode neighbour : currentStep.node) {
+						if (!visitedNodes.contains(neighbour)) {
+							visitedNodes.add(neighbour);
+							candidateSteps.add(buildStep(currentStep, neighbour, origin, destination));
+						}
+					}
+				}
+			}
+			return path;
+		}
+
+		private Step buildStep(Step previousStep, PortalGraphNode node, Point2D origin, Point2D destination) {
+			double distanceTravelled = 0.0;
+			if (previousStep != null) {
+				distanceTravelled += previousStep.squaredDistanceTravelled;
+				distanceTravelled += node.getPortal().getCenter().distanceSq(previousStep.node.getCenterOfPortal());
+			} else {
+				distanceTravelled += node.getPortal().getCenter().distanceSq(origin);
+			}
+			final double remainingDistance = node.getCenterOfPortal().distanceSq(destination);
+			return new Step(distanceTravelled, remainingDistance, node, previousStep);
+		}
+
+		private static class Step implements Comparable<Step> {
+			public final double squaredDistanceTravelled;
+			public final double estimatedSquaredDistanceRemaining;
+			public final PortalGraphNode node;
+			public final Step previousStep;
+
+			public Step(double squaredDistanceTravelled, double estimatedSquaredDistanceRemaining, PortalGraphNode node, Step previousStep) {
+				this.squaredDistanceTravelled = squaredDistanceTravelled;
+				this.estimatedSquaredDistanceRemaining = estimatedSquaredDistanceRemaining;
+				this.node = node;
+				this.previousStep = previousStep;
+			}
+
+			@Override
+			public int compareTo(Step other) {
+				return Double.compare(squaredDistanceTravelled + estimatedSquaredDistanceRemaining,
+						other.squaredDistanceTravelled + other.estimatedSquaredDistanceRemaining);
+			}
+		}
+	}
+}
@@ -126,6 +126,42 @@ public class PathfindingUtilUnitTest {
 		assertNull(path);
 	}
 
+	@Test
+	public void shouldPreferShorterRouteFoundAfterLongerRoute() {
+		final PortalGraphNode startNodeNearOrigin = new PortalGraphNode(new Portal(POINT(-1.0, 1.0), POINT(1.0, 1.0)));
+		final PortalGraphNode startNodeTowardsDestination = new PortalGraphNode(new Portal(POINT(10.0, -0.5), POINT(10.0, 1.5)));
+		final PortalGraphNode middleNode = new PortalGraphNode(new Portal(POINT(4.0, -5.0), POINT(6.0, -5.0)));
+		final PortalGraphNode endNode = new PortalGraphNode(new Portal(POINT(19.0, -1.0), POINT(21.0, -1.0)));
+		connect(startNodeNearOrigin, middleNode);
+		connect(startNodeTowardsDestination, middleNode);
+		connect(middleNode, endNode);
+		final Triangle startTriangle = new Triangle(POINT(-1.0, -1.0), POINT(1.0, -1.0), POINT(0.0, 1.0));
+		final Triangle endTriangle = new Triangle(POINT(19.0, -1.0), POINT(21.0, -1.0), POINT(20.0, 1.0));
+		final PathfindingUtil util = new PathfindingUtil.Builder().addTriangleWithNodes(startTriangle, asList(startNodeNearOrigin, startNodeTowardsDestination))
+				.addTriangleWithNodes(endTriangle, singleton(endNode))
+				.build();
+		final Path path = util.buildPath(POINT(0.0, 0.0), POINT(20.0, 0.0), NONE);
+		assertEquals(3, path.route.size());
+		assertEquals(startNodeNearOrigin.getPortal(), path.route.get(0).portal);
+		assertEquals(middleNode.getPortal(), path.route.get(1).portal);
+		assertEquals(endNode.getPortal(), path.route.get(2).portal);
+	}
+
+	@Test
+	public void shouldReuseScratchSpaceBetweenSearches() {
+		final SearchScratchSpace scratchSpace = new SearchScratchSpace();
+		final Path firstPath = util.buildPath(SOME_POINT_IN_FIRST_TRIANGLE, SOME_POINT_IN_THIRD_TRIANGLE, NONE, scratchSpace);
+		final Path secondPath = util.buildPath(SOME_POINT_IN_FIRST_TRIANGLE, SOME_POINT_IN_THIRD_TRIANGLE, NONE, scratchSpace);
+		assertEquals(2, firstPath.route.size());
+		assertEquals(2, secondPath.route.size());
+		assertEquals(firstPath.route.get(1).portal, secondPath.route.get(1).portal);
+	}
+
+	private static void connect(PortalGraphNode node, PortalGraphNode otherNode) {
+		node.addNeighbour(otherNode);
+		otherNode.addNeighbour(node);
+	}
+
 	abstract class TriangleMap implements Map<Triangle, Collection<PortalGraphNode>> {
 	}
 }
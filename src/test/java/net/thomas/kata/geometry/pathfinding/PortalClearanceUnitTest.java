@@ -0,0 +1,130 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Arrays.asList;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.DUAL_PASS_SMOOTHING;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.FUNNEL;
+import static net.thomas.kata.geometry.pathfinding.PathfindingUtil.OptimizationTechnique.NONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Point2D;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.thomas.kata.geometry.PolygonUtil;
+import net.thomas.kata.geometry.algorithms.PolygonUtilImpl;
+import net.thomas.kata.geometry.objects.PolygonBuilder;
+import net.thomas.kata.geometry.objects.PolygonVertex;
+import net.thomas.kata.geometry.pathfinding.objects.Path;
+import net.thomas.kata.geometry.pathfinding.objects.Path.PortalStep;
+
+/***
+ * The map is a square with a wall in the middle, leaving a gap of width 1 below the wall and a gap
+ * of width 2 above it.
+ */
+public class PortalClearanceUnitTest {
+	private static final double DELTA = 0.0001;
+	private static final Point2D LEFT_OF_WALL = POINT(2.0, 0.5);
+	private static final Point2D RIGHT_OF_WALL = POINT(18.0, 0.5);
+	private static final Point2D[] WALL_CORNERS = { POINT(9, 1), POINT(9, 18), POINT(11, 18), POINT(11, 1) };
+
+	private PathfindingUtil pathfindingUtil;
+
+	@Before
+	public void setUp() {
+		final PolygonUtil util = new PolygonUtilImpl();
+		final PolygonVertex square = new PolygonBuilder().add(0, 0).add(20, 0).add(20, 20).add(0, 20).build();
+		final PolygonVertex wall = new PolygonBuilder().add(9, 1).add(9, 18).add(11, 18).add(11, 1).build();
+		pathfindingUtil = util.buildPathFindingUtil(util.triangulateMonotonePolygons(util.getMonotoneParts(asList(square, wall))));
+	}
+
+	@Test
+	public void shouldUsePortalLengthAsPortalWidth() {
+		final PortalGraph portalGraph = pathfindingUtil.getSnapshot().portalGraph;
+		final PortalClearance clearance = pathfindingUtil.getSnapshot().clearance;
+		final NavMesh mesh = portalGraph.getMesh();
+		for (int node = 0; node < portalGraph.getNodeCount(); node++) {
+			final double dx = mesh.getVertexX(mesh.getPortalVertex(node, 0)) - mesh.getVertexX(mesh.getPortalVertex(node, 1));
+			final double dy = mesh.getVertexY(mesh.getPortalVertex(node, 0)) - mesh.getVertexY(mesh.getPortalVertex(node, 1));
+			assertEquals(Math.sqrt(dx * dx + dy * dy), clearance.getPortalWidth(node), DELTA);
+		}
+	}
+
+	@Test
+	public void shouldNeverReportTransitionWiderThanItsPortals() {
+		final PortalGraph portalGraph = pathfindingUtil.getSnapshot().portalGraph;
+		final PortalClearance clearance = pathfindingUtil.getSnapshot().clearance;
+		for (int node = 0; node < portalGraph.getNodeCount(); node++) {
+			for (int entry = portalGraph.getFirstNeighbourEntry(node); entry < portalGraph.getFirstNeighbourEntry(node + 1); entry++) {
+				final double width = clearance.getTransitionWidth(entry);
+				assertTrue(width > 0.0);
+				assertTrue(width <= Math.max(clearance.getPortalWidth(node), clearance.getPortalWidth(portalGraph.getNeighbour(entry))) + DELTA);
+			}
+		}
+	}
+
+	@Test
+	public void shouldFindSamePathWithZeroRadius() {
+		final Path path = pathfindingUtil.buildPath(LEFT_OF_WALL, RIGHT_OF_WALL, FUNNEL);
+		final Path pathWithRadius = pathfindingUtil.buildPath(LEFT_OF_WALL, RIGHT_OF_WALL, 0.0, FUNNEL);
+		assertEquals(path.route.size(), pathWithRadius.route.size());
+		assertEquals(calculateLength(path), calculateLength(pathWithRadius), DELTA);
+	}
+
+	@Test
+	public void shouldPassThroughGapWideEnoughForAgent() {
+		final Path path = pathfindingUtil.buildPath(LEFT_OF_WALL, RIGHT_OF_WALL, 0.4, FUNNEL);
+		assertTrue(calculateLength(path) < 20.0);
+	}
+
+	@Test
+	public void shouldDetourAroundGapTooNarrowForAgent() {
+		final Path path = pathfindingUtil.buildPath(LEFT_OF_WALL, RIGHT_OF_WALL, 0.75, FUNNEL);
+		assertNotNull(path);
+		assertTrue(calculateLength(path) > 34.0);
+	}
+
+	@Test
+	public void shouldNotFindPathWhenEveryGapIsTooNarrowForAgent() {
+		assertNull(pathfindingUtil.buildPath(LEFT_OF_WALL, RIGHT_OF_WALL, 1.5, NONE));
+	}
+
+	@Test
+	public void shouldKeepFunnelWaypointsAwayFromCorners() {
+		assertWaypointsKeepDistance(pathfindingUtil.buildPath(LEFT_OF_WALL, RIGHT_OF_WALL, 0.75, FUNNEL), 0.75);
+	}
+
+	@Test
+	public void shouldKeepSmoothedWaypointsAwayFromPortalEnds() {
+		final Path path = pathfindingUtil.buildPath(LEFT_OF_WALL, RIGHT_OF_WALL, 0.75, DUAL_PASS_SMOOTHING);
+		for (final PortalStep step : path.route) {
+			assertTrue(step.waypoint.distance(step.portal.getP1()) >= 0.75 - DELTA);
+			assertTrue(step.waypoint.distance(step.portal.getP2()) >= 0.75 - DELTA);
+		}
+	}
+
+	private static void assertWaypointsKeepDistance(Path path, double radius) {
+		for (final PortalStep step : path.route) {
+			for (final Point2D corner : WALL_CORNERS) {
+				assertTrue(step.waypoint + " is too close to " + corner, step.waypoint.distance(corner) >= radius - DELTA);
+			}
+		}
+	}
+
+	private static double calculateLength(Path path) {
+		double length = 0.0;
+		Point2D previous = path.origin;
+		for (final PortalStep step : path.route) {
+			length += previous.distance(step.waypoint);
+			previous = step.waypoint;
+		}
+		return length + previous.distance(path.destination);
+	}
+
+	private static Point2D POINT(double x, double y) {
+		return new Point2D.Double(x, y);
+	}
+}
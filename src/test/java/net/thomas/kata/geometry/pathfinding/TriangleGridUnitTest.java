@@ -0,0 +1,84 @@
+package net.thomas.kata.geometry.pathfinding;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.thomas.kata.geometry.pathfinding.objects.Triangle;
+
+public class TriangleGridUnitTest {
+	private static final Triangle SOME_TRIANGLE = new Triangle(POINT(0.0, 0.0), POINT(5.0, 0.0), POINT(0.0, 5.0));
+	private static final Triangle SOME_NEIGHBOUR_TRIANGLE = new Triangle(POINT(5.0, 0.0), POINT(5.0, 5.0), POINT(0.0, 5.0));
+	private static final Triangle SOME_DISTANT_TRIANGLE = new Triangle(POINT(-5.0, -5.0), POINT(-10.0, -10.0), POINT(-5.0, -10.0));
+
+	private static Point2D POINT(double x, double y) {
+		return new Point2D.Double(x, y);
+	}
+
+	private TriangleGrid grid;
+
+	@Before
+	public void setUp() {
+		grid = new TriangleGrid(asList(SOME_TRIANGLE, SOME_NEIGHBOUR_TRIANGLE, SOME_DISTANT_TRIANGLE));
+	}
+
+	@Test
+	public void shouldLocateTriangle() {
+		assertSame(SOME_TRIANGLE, grid.lookupTriangleAt(POINT(1.0, 1.0)));
+	}
+
+	@Test
+	public void shouldLocateNeighbourTriangle() {
+		assertSame(SOME_NEIGHBOUR_TRIANGLE, grid.lookupTriangleAt(POINT(4.0, 4.0)));
+	}
+
+	@Test
+	public void shouldLocateDistantTriangle() {
+		assertSame(SOME_DISTANT_TRIANGLE, grid.lookupTriangleAt(POINT(-6.0, -7.0)));
+	}
+
+	@Test
+	public void shouldNotLocateAnythingOutsideGrid() {
+		assertNull(grid.lookupTriangleAt(POINT(20.0, 20.0)));
+	}
+
+	@Test
+	public void shouldNotLocateAnythingBetweenTriangles() {
+		assertNull(grid.lookupTriangleAt(POINT(-1.0, -1.0)));
+	}
+
+	@Test
+	public void shouldNotLocateAnythingInEmptyGrid() {
+		assertNull(new TriangleGrid(emptySet()).lookupTriangleAt(POINT(0.0, 0.0)));
+	}
+
+	@Test
+	public void shouldLocateTrianglesInLargeStrip() {
+		final List<Triangle> strip = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			strip.add(new Triangle(POINT(i, 0.0), POINT(i + 1, 0.0), POINT(i, 1.0)));
+			strip.add(new Triangle(POINT(i + 1, 0.0), POINT(i + 1, 1.0), POINT(i, 1.0)));
+		}
+		final TriangleGrid stripGrid = new TriangleGrid(strip);
+		assertSame(strip.get(2 * 500), stripGrid.lookupTriangleAt(POINT(500.25, 0.25)));
+		assertSame(strip.get(2 * 500 + 1), stripGrid.lookupTriangleAt(POINT(500.75, 0.75)));
+	}
+
+	@Test
+	public void shouldLocateTrianglesInFanOfLongTriangles() {
+		final List<Triangle> fan = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) {
+			fan.add(new Triangle(POINT(i, 0.0), POINT(i + 1, 0.0), POINT(100000.0, 1.0)));
+		}
+		final TriangleGrid fanGrid = new TriangleGrid(fan);
+		assertSame(fan.get(10), fanGrid.lookupTriangleAt(POINT(10.5, 0.000001)));
+	}
+}
@@ -91,6 +91,36 @@ public class PortalUnitTest {
 		assertEquals(SOME_OTHER_POINT.getY(), point.getY(), EPSILON);
 	}
 
+	@Test
+	public void shouldDetermineBestIntersectionPointAsMiddlePointForParallelLine() {
+		final Line2D line = asLine(new Point2D.Double(1, 0), new Point2D.Double(3, 2));
+		final Point2D point = defaultPortal.getBestIntersectionPoint(line);
+		assertEquals(MIDDLE_POINT, point);
+	}
+
+	@Test
+	public void shouldDetermineBestIntersectionPointExactlyAtEndOnLine() {
+		final Portal portal = new Portal(new Point2D.Double(0.1, 0.7), new Point2D.Double(0.3, 0.9));
+		final Line2D line = asLine(new Point2D.Double(0.3, 0.9), new Point2D.Double(0.9, -0.1));
+		final Point2D point = portal.getBestIntersectionPoint(line);
+		assertEquals(portal.getP2(), point);
+	}
+
+	@Test
+	public void shouldMoveBothEndsInwardsWhenShrinking() {
+		final Portal portal = new Portal(new Point2D.Double(0, 0), new Point2D.Double(4, 0)).shrink(1.0);
+		assertEquals(1.0, portal.x1, EPSILON);
+		assertEquals(3.0, portal.x2, EPSILON);
+		assertEquals(0.0, portal.y1, EPSILON);
+	}
+
+	@Test
+	public void shouldShrinkToMiddlePointWhenTooShort() {
+		final Portal portal = defaultPortal.shrink(10.0);
+		assertEquals(MIDDLE_POINT, portal.getP1());
+		assertEquals(MIDDLE_POINT, portal.getP2());
+	}
+
 	private Double asLine(Point2D start, Point2D end) {
 		return new Line2D.Double(start, end);
 	}
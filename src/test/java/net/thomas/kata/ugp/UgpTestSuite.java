@@ -3,9 +3,17 @@ package net.thomas.kata.ugp;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import net.thomas.kata.ugp.engine.EngineHostUnitTest;
+import net.thomas.kata.ugp.engine.MpscTaskQueueUnitTest;
+import net.thomas.kata.ugp.engine.ParallelTaskTickerUnitTest;
+import net.thomas.kata.ugp.engine.PriorityTaskSchedulerUnitTest;
+import net.thomas.kata.ugp.engine.TaskProfilerUnitTest;
 import net.thomas.kata.ugp.engine.TickingEngineUnitTest;
+import net.thomas.kata.ugp.engine.TimingWheelSchedulerUnitTest;
+import net.thomas.kata.ugp.util.LogHistogramUnitTest;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ TickingEngineUnitTest.class })
+@Suite.SuiteClasses({ TickingEngineUnitTest.class, TimingWheelSchedulerUnitTest.class, PriorityTaskSchedulerUnitTest.class, MpscTaskQueueUnitTest.class, ParallelTaskTickerUnitTest.class,
+		LogHistogramUnitTest.class, TaskProfilerUnitTest.class, EngineHostUnitTest.class })
 public class UgpTestSuite {
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.lang.Math.max;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.RUNNING;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Scene density: engines at 100 Hz with a handful of tasks each, run on a thread per engine and on
+ * an {@link EngineHost} with a shard per processor
+ */
+public class EngineHostTimeTrials {
+	private static final int[] ENGINE_COUNTS = { 100, 500, 1000 };
+	private static final int TICKS_PER_ITERATION = 10000;
+	private static final int TASKS_PER_ENGINE = 10;
+	private static final int BUSY_TASK_WORK = 20;
+	private static final int RUN_TIME_IN_MILLISECONDS = 2000;
+
+	public static void main(String[] args) throws InterruptedException {
+		for (final int engineCount : ENGINE_COUNTS) {
+			final List<TickingEngine> threadedEngines = buildEngines(engineCount);
+			executeTest("Thread per engine, " + engineCount + " engines:", threadedEngines, runOnThreads(threadedEngines));
+			final List<TickingEngine> hostedEngines = buildEngines(engineCount);
+			executeTest("Engine host with " + Runtime.getRuntime().availableProcessors() + " shards, " + engineCount + " engines:", hostedEngines,
+					runOnHost(hostedEngines));
+		}
+	}
+
+	private static List<TickingEngine> buildEngines(int engineCount) {
+		final List<TickingEngine> engines = new ArrayList<>();
+		for (int engine = 0; engine < engineCount; engine++) {
+			final TickingEngine tickingEngine = new TickingEngine(TICKS_PER_ITERATION, false);
+			for (int task = 0; task < TASKS_PER_ENGINE; task++) {
+				tickingEngine.addTasks(new BusyTask());
+			}
+			engines.add(tickingEngine);
+		}
+		return engines;
+	}
+
+	/***
+	 * An engine stopped before its thread gets to run it would not run at all, so every engine is
+	 * running before they are stopped
+	 *
+	 * @return The nanoseconds the engines ran for
+	 */
+	private static long runOnThreads(List<TickingEngine> engines) throws InterruptedException {
+		final List<Thread> threads = new ArrayList<>();
+		final long stamp = nanoTime();
+		for (final TickingEngine engine : engines) {
+			final Thread thread = new Thread(engine);
+			thread.start();
+			threads.add(thread);
+		}
+		while (engines.stream().anyMatch(engine -> engine.getCurrentState() != RUNNING)) {
+			Thread.sleep(1);
+		}
+		Thread.sleep(RUN_TIME_IN_MILLISECONDS);
+		engines.forEach(TickingEngine::stop);
+		final long runTime = nanoTime() - stamp;
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		return runTime;
+	}
+
+	/***
+	 * @return The nanoseconds the engines ran for
+	 */
+	private static long runOnHost(List<TickingEngine> engines) throws InterruptedException {
+		final EngineHost host = new EngineHost();
+		final long stamp = nanoTime();
+		engines.forEach(host::host);
+		Thread.sleep(RUN_TIME_IN_MILLISECONDS);
+		host.shutdown();
+		final long runTime = nanoTime() - stamp;
+		host.awaitTermination(10, SECONDS);
+		return runTime;
+	}
+
+	/***
+	 * An engine on time runs one iteration per 10 ms of run time
+	 */
+	private static void executeTest(String description, List<TickingEngine> engines, long runTime) {
+		long iterations = 0;
+		long skippedIterations = 0;
+		long maxLag = 0;
+		for (final TickingEngine engine : engines) {
+			final EngineMetrics metrics = engine.getMetrics();
+			iterations += metrics.getIterationCount();
+			skippedIterations += metrics.getSkippedIterationCount();
+			maxLag = max(maxLag, metrics.getMaxLag());
+		}
+		final long expectedIterations = engines.size() * (runTime / 1000 / TICKS_PER_ITERATION);
+		System.out.println(description + " " + iterations + " of " + expectedIterations + " iterations, " + skippedIterations + " skipped, " + maxLag / 1000.0d
+				+ " ms max lag");
+	}
+
+	private static class BusyTask extends TickableTask {
+		private double state;
+
+		public BusyTask() {
+			super(TICKS_PER_ITERATION);
+			state = 0;
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+			for (int step = 0; step < BUSY_TASK_WORK; step++) {
+				state = Math.sqrt(state + step);
+			}
+		}
+	}
+}
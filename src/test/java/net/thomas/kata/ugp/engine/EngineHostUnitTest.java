@@ -0,0 +1,244 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.lang.Math.abs;
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.PAUSED;
+import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.TERMINATED;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EngineHostUnitTest {
+	private static final int SHARD_COUNT = 2;
+	private static final boolean KEEP_RUNNING_WHEN_DONE = false;
+	private static final boolean EXIT_WHEN_DONE = true;
+	private static final int MINIMUM_TICK_SIZE_IN_MICROSECONDS = 100;
+	private static final int TICKS_BETWEEN_TASK_EXECUTIONS = 100;
+	private static final int EXECUTION_TIMEOUT = 1000;
+	private static final int SHUTDOWN_TIMEOUT = 1000;
+	private EngineHost host;
+
+	@Before
+	public void setUpHost() {
+		host = new EngineHost(SHARD_COUNT);
+	}
+
+	@After
+	public void shutDownHost() throws InterruptedException {
+		host.shutdown();
+		host.awaitTermination(SHUTDOWN_TIMEOUT, MILLISECONDS);
+	}
+
+	@Test(timeout = 2000)
+	public void shouldTickTasksOfEveryHostedEngine() {
+		final CountingTask[] tasks = new CountingTask[4];
+		for (int index = 0; index < tasks.length; index++) {
+			tasks[index] = new CountingTask();
+			host.host(buildEngineWith(tasks[index]));
+		}
+		for (final CountingTask task : tasks) {
+			waitUntil(() -> task.getTimesRun() >= 2, EXECUTION_TIMEOUT);
+			assertTrue("Expected at least 2 ticks, got " + task.getTimesRun(), task.getTimesRun() >= 2);
+		}
+	}
+
+	@Test
+	public void shouldSpreadEnginesOverShards() {
+		for (int index = 0; index < 5; index++) {
+			host.host(new TickingEngine(MINIMUM_TICK_SIZE_IN_MICROSECONDS, KEEP_RUNNING_WHEN_DONE));
+		}
+		final int[] engineCounts = host.getEngineCountPerShard();
+		assertEquals(1, abs(engineCounts[0] - engineCounts[1]));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void shouldRefuseEngineHostedAlready() {
+		final TickingEngine engine = new TickingEngine(MINIMUM_TICK_SIZE_IN_MICROSECONDS, KEEP_RUNNING_WHEN_DONE);
+		host.host(engine);
+		host.host(engine);
+	}
+
+	@Test(timeout = 2000)
+	public void shouldLetGoOfEngineThatExitsWhenDone() {
+		final TickingEngine engine = new TickingEngine(MINIMUM_TICK_SIZE_IN_MICROSECONDS, EXIT_WHEN_DONE);
+		final CountingTask task = new CountingTask(3);
+		engine.addTasks(task);
+		host.host(engine);
+		waitUntil(() -> engine.getCurrentState() == TERMINATED, EXECUTION_TIMEOUT);
+		waitUntil(() -> host.getEngineCountPerShard()[0] + host.getEngineCountPerShard()[1] == 0, EXECUTION_TIMEOUT);
+		assertEquals(3, task.getTimesRun());
+		assertTrue(task.isTerminated());
+		assertArrayEquals(new int[] { 0, 0 }, host.getEngineCountPerShard());
+	}
+
+	@Test(timeout = 2000)
+	public void shouldStepIdleEngineWhenTasksAreAdded() {
+		final TickingEngine engine = new TickingEngine(MINIMUM_TICK_SIZE_IN_MICROSECONDS, KEEP_RUNNING_WHEN_DONE);
+		host.host(engine);
+		sleepSilently(10);
+		final CountingTask task = new CountingTask();
+		engine.addTasks(task);
+		waitUntil(() -> task.getTimesRun() >= 1, EXECUTION_TIMEOUT);
+		assertTrue(task.getTimesRun() >= 1);
+	}
+
+	@Test(timeout = 2000)
+	public void shouldNotTickTasksWhilePaused() {
+		final CountingTask task = new CountingTask();
+		final TickingEngine engine = buildEngineWith(task);
+		host.host(engine);
+		waitUntil(() -> task.getTimesRun() >= 1, EXECUTION_TIMEOUT);
+		engine.pause();
+		waitUntil(() -> engine.getCurrentState() == PAUSED, EXECUTION_TIMEOUT);
+		sleepSilently(5);
+		final int timesRunWhenPaused = task.getTimesRun();
+		sleepSilently(20);
+		assertEquals(timesRunWhenPaused, task.getTimesRun());
+		engine.resume();
+		waitUntil(() -> task.getTimesRun() > timesRunWhenPaused, EXECUTION_TIMEOUT);
+		assertTrue(task.getTimesRun() > timesRunWhenPaused);
+	}
+
+	@Test(timeout = 2000)
+	public void shouldKeepTickingOnShardEngineIsMigratedTo() {
+		final CountingTask task = new CountingTask();
+		final TickingEngine engine = buildEngineWith(task);
+		host.host(engine);
+		final int shardIndex = host.getEngineCountPerShard()[0] == 1 ? 0 : 1;
+		waitUntil(() -> task.getTimesRun() >= 1, EXECUTION_TIMEOUT);
+		host.migrate(engine, 1 - shardIndex);
+		assertEquals(1, host.getEngineCountPerShard()[1 - shardIndex]);
+		final String shardName = "EngineHost shard " + (1 - shardIndex);
+		waitUntil(() -> shardName.equals(task.getLatestThreadName()), EXECUTION_TIMEOUT);
+		final int timesRunAfterMigration = task.getTimesRun();
+		waitUntil(() -> task.getTimesRun() > timesRunAfterMigration, EXECUTION_TIMEOUT);
+		assertEquals(shardName, task.getLatestThreadName());
+		assertTrue(task.getTimesRun() > timesRunAfterMigration);
+	}
+
+	@Test
+	public void shouldEvenOutShardsWhenRebalanced() {
+		final TickingEngine[] engines = new TickingEngine[4];
+		for (int index = 0; index < engines.length; index++) {
+			engines[index] = new TickingEngine(MINIMUM_TICK_SIZE_IN_MICROSECONDS, KEEP_RUNNING_WHEN_DONE);
+			host.host(engines[index]);
+			host.migrate(engines[index], 0);
+		}
+		assertArrayEquals(new int[] { 4, 0 }, host.getEngineCountPerShard());
+		host.rebalance();
+		assertArrayEquals(new int[] { 2, 2 }, host.getEngineCountPerShard());
+	}
+
+	@Test(timeout = 2000)
+	public void shouldTerminateEnginesWhenShutDown() throws InterruptedException {
+		final CountingTask task = new CountingTask();
+		final TickingEngine engine = buildEngineWith(task);
+		host.host(engine);
+		waitUntil(() -> task.getTimesRun() >= 1, EXECUTION_TIMEOUT);
+		host.shutdown();
+		assertTrue(host.awaitTermination(SHUTDOWN_TIMEOUT, MILLISECONDS));
+		assertEquals(TERMINATED, engine.getCurrentState());
+		assertTrue(task.isTerminated());
+	}
+
+	@Test(timeout = 2000)
+	public void shouldTerminateEnginesMigratedJustBeforeShutdown() throws InterruptedException {
+		final CountingTask[] tasks = new CountingTask[8];
+		final TickingEngine[] engines = new TickingEngine[tasks.length];
+		for (int index = 0; index < tasks.length; index++) {
+			tasks[index] = new CountingTask();
+			engines[index] = buildEngineWith(tasks[index]);
+			host.host(engines[index]);
+		}
+		waitUntil(() -> tasks[tasks.length - 1].getTimesRun() >= 1, EXECUTION_TIMEOUT);
+		for (final TickingEngine engine : engines) {
+			host.migrate(engine, 0);
+		}
+		host.shutdown();
+		assertTrue(host.awaitTermination(SHUTDOWN_TIMEOUT, MILLISECONDS));
+		for (int index = 0; index < tasks.length; index++) {
+			assertEquals(TERMINATED, engines[index].getCurrentState());
+			assertTrue(tasks[index].isTerminated());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void shouldRefuseEngineAfterShutdown() {
+		host.shutdown();
+		host.host(new TickingEngine(MINIMUM_TICK_SIZE_IN_MICROSECONDS, KEEP_RUNNING_WHEN_DONE));
+	}
+
+	private TickingEngine buildEngineWith(TickableTask task) {
+		final TickingEngine engine = new TickingEngine(MINIMUM_TICK_SIZE_IN_MICROSECONDS, KEEP_RUNNING_WHEN_DONE);
+		engine.addTasks(task);
+		return engine;
+	}
+
+	private void waitUntil(BooleanSupplier condition, int timeoutInMilliseconds) {
+		final long stamp = currentTimeMillis();
+		while (!condition.getAsBoolean() && stamp + timeoutInMilliseconds >= currentTimeMillis()) {
+			sleepSilently(1);
+		}
+	}
+
+	private void sleepSilently(int timeInMilliseconds) {
+		try {
+			Thread.sleep(timeInMilliseconds);
+		} catch (final InterruptedException e) {
+		}
+	}
+
+	private static class CountingTask extends TickableTask {
+		private final int timesToRun;
+		private volatile int timesRun;
+		private volatile String latestThreadName;
+		private volatile boolean terminated;
+
+		public CountingTask() {
+			this(Integer.MAX_VALUE);
+		}
+
+		public CountingTask(int timesToRun) {
+			super(TICKS_BETWEEN_TASK_EXECUTIONS);
+			this.timesToRun = timesToRun;
+			timesRun = 0;
+			latestThreadName = null;
+			terminated = false;
+		}
+
+		@Override
+		public boolean shouldRunAgain() {
+			return timesRun < timesToRun;
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+			latestThreadName = Thread.currentThread().getName();
+			timesRun++;
+		}
+
+		@Override
+		public void terminate() {
+			terminated = true;
+		}
+
+		public int getTimesRun() {
+			return timesRun;
+		}
+
+		public String getLatestThreadName() {
+			return latestThreadName;
+		}
+
+		public boolean isTerminated() {
+			return terminated;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.lang.System.nanoTime;
+import static java.util.Arrays.sort;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Supplier;
+
+/***
+ * Runs an engine with one task per iteration for each idle strategy, and compares how late the
+ * task ticks against how much CPU the engine thread uses
+ */
+public class IdleStrategyTimeTrials {
+	private static final int TICKS_PER_ITERATION = 1000;
+	private static final int ITERATIONS = 2000;
+
+	public static void main(String[] args) throws InterruptedException {
+		executeTest("Busy spin:", BusySpinIdleStrategy::new);
+		executeTest("Yield:", YieldingIdleStrategy::new);
+		executeTest("Park:", ParkingIdleStrategy::new);
+		executeTest("Backoff:", BackoffIdleStrategy::new);
+	}
+
+	private static void executeTest(String description, Supplier<IdleStrategy> idleStrategy) throws InterruptedException {
+		final TickingEngine engine = new TickingEngine.Builder().setTicksPerIteration(TICKS_PER_ITERATION).setIdleStrategy(idleStrategy.get()).build();
+		final StampingTask task = new StampingTask(ITERATIONS);
+		engine.addTasks(task);
+		final Thread thread = new Thread(engine);
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		final long stamp = nanoTime();
+		thread.start();
+		while (!task.isDone()) {
+			Thread.sleep(10);
+		}
+		final long cpuTime = threads.getThreadCpuTime(thread.getId());
+		final long wallTime = nanoTime() - stamp;
+		engine.stop();
+		thread.join();
+		final long[] latenesses = task.calculateLatenesses();
+		sort(latenesses);
+		System.out.println(description + " lateness median " + latenesses[latenesses.length / 2] / 1000 + " us, 99th percentile "
+				+ latenesses[latenesses.length * 99 / 100] / 1000 + " us, max " + latenesses[latenesses.length - 1] / 1000 + " us, CPU "
+				+ cpuTime * 100 / wallTime + " %");
+	}
+
+	/***
+	 * Notes the time of every tick. Lateness is measured against the time of the first tick plus
+	 * whole iterations.
+	 */
+	private static class StampingTask extends TickableTask {
+		private final long[] stamps;
+		private volatile int count;
+
+		public StampingTask(int iterations) {
+			super(TICKS_PER_ITERATION);
+			stamps = new long[iterations];
+			count = 0;
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+			stamps[count] = nanoTime();
+			count++;
+			shouldRunAgain = count < stamps.length;
+		}
+
+		public boolean isDone() {
+			return count == stamps.length;
+		}
+
+		public long[] calculateLatenesses() {
+			final long[] latenesses = new long[stamps.length];
+			long earliest = Long.MAX_VALUE;
+			for (int iteration = 0; iteration < stamps.length; iteration++) {
+				earliest = Math.min(earliest, stamps[iteration] - iteration * TICKS_PER_ITERATION * 1000L);
+			}
+			for (int iteration = 0; iteration < stamps.length; iteration++) {
+				latenesses[iteration] = stamps[iteration] - iteration * TICKS_PER_ITERATION * 1000L - earliest;
+			}
+			return latenesses;
+		}
+	}
+}
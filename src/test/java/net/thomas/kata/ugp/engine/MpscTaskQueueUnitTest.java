@@ -0,0 +1,115 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MpscTaskQueueUnitTest {
+	private static final int PRODUCERS = 4;
+	private static final int TASKS_PER_PRODUCER = 20000;
+	private MpscTaskQueue queue;
+
+	@Before
+	public void setUpQueue() {
+		queue = new MpscTaskQueue();
+	}
+
+	@Test
+	public void shouldBeEmptyWhenCreated() {
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void shouldReturnTasksInOrderAdded() {
+		final TickableTask first = new IdleTask();
+		final TickableTask second = new IdleTask();
+		queue.add(first);
+		queue.add(second);
+		assertFalse(queue.isEmpty());
+		assertSame(first, queue.poll());
+		assertSame(second, queue.poll());
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void shouldReturnBatchInOrderAddedAfterEarlierTasks() {
+		final TickableTask first = new IdleTask();
+		final TickableTask second = new IdleTask();
+		final TickableTask third = new IdleTask();
+		queue.add(first);
+		queue.addAll(asList(second, third));
+		assertSame(first, queue.poll());
+		assertSame(second, queue.poll());
+		assertSame(third, queue.poll());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test(timeout = 10000)
+	public void shouldReturnEveryTaskFromConcurrentProducersInOrderPerProducer() throws InterruptedException {
+		final TickableTask[][] tasks = new TickableTask[PRODUCERS][TASKS_PER_PRODUCER];
+		final List<Thread> producers = new ArrayList<>();
+		for (int producer = 0; producer < PRODUCERS; producer++) {
+			final TickableTask[] producerTasks = tasks[producer];
+			for (int sequence = 0; sequence < TASKS_PER_PRODUCER; sequence++) {
+				producerTasks[sequence] = new IdleTask();
+			}
+			producers.add(new Thread(() -> {
+				for (final TickableTask task : producerTasks) {
+					queue.add(task);
+				}
+			}));
+		}
+		producers.forEach(Thread::start);
+		final int[] nextSequences = new int[PRODUCERS];
+		int received = 0;
+		while (received < PRODUCERS * TASKS_PER_PRODUCER) {
+			final TickableTask task = queue.poll();
+			if (task != null) {
+				final int producer = findProducerExpecting(task, tasks, nextSequences);
+				assertTrue("Task received out of order", producer >= 0);
+				nextSequences[producer]++;
+				received++;
+			}
+		}
+		for (final Thread producer : producers) {
+			producer.join();
+		}
+		assertTrue(queue.isEmpty());
+		for (final int nextSequence : nextSequences) {
+			assertEquals(TASKS_PER_PRODUCER, nextSequence);
+		}
+	}
+
+	/***
+	 * @return The producer whose next task in order is the given task, or -1 if there is none
+	 */
+	private static int findProducerExpecting(TickableTask task, TickableTask[][] tasks, int[] nextSequences) {
+		for (int producer = 0; producer < PRODUCERS; producer++) {
+			if (nextSequences[producer] < TASKS_PER_PRODUCER && tasks[producer][nextSequences[producer]] == task) {
+				return producer;
+			}
+		}
+		return -1;
+	}
+
+	private static class IdleTask extends TickableTask {
+		public IdleTask() {
+			super(1);
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package net.thomas.kata.ugp.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelTaskTickerUnitTest {
+	private static final int THREADS = 4;
+	private static final int GROUPS = 8;
+	private static final int ITERATIONS = 50;
+	private static final int TICKS_PER_ITERATION = 100;
+	private ForkJoinPool pool;
+	private ParallelTaskTicker ticker;
+	private TaskScheduler scheduler;
+	private List<TickableTask> spawnedTasks;
+	private List<TickableTask> finishedTasks;
+	private Map<TickableTask, Integer> taskIds;
+
+	@Before
+	public void setUpTicker() {
+		pool = new ForkJoinPool(THREADS);
+		ticker = new ParallelTaskTicker(pool);
+		scheduler = new PriorityTaskScheduler();
+		spawnedTasks = new ArrayList<>();
+		finishedTasks = new ArrayList<>();
+		taskIds = new IdentityHashMap<>();
+	}
+
+	@After
+	public void shutDownPool() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void shouldTickEveryDueTaskOnceAndRescheduleIt() {
+		final List<LoggingTask> tasks = new ArrayList<>();
+		for (int id = 0; id < 1000; id++) {
+			tasks.add(schedule(new LoggingTask(id, null, 1000, id)));
+		}
+		tickDueTasks(999);
+		for (final LoggingTask task : tasks) {
+			assertEquals(1, task.timesRun);
+		}
+		assertEquals(1000, scheduler.size());
+	}
+
+	@Test
+	public void shouldTickTaskDueAgainWithinIterationInNextRound() {
+		final LoggingTask task = schedule(new LoggingTask(0, null, 50, 0));
+		tickDueTasks(100);
+		assertEquals(3, task.timesRun);
+	}
+
+	@Test
+	public void shouldTickConflictGroupSeriallyInDueOrder() {
+		final GroupLog[] groups = buildGroups();
+		for (int id = 0; id < 2000; id++) {
+			schedule(new LoggingTask(id, groups[id % GROUPS], 10000, id));
+		}
+		tickDueTasks(1999);
+		for (final GroupLog group : groups) {
+			assertFalse("Tasks of one group ticked concurrently", group.overlapped.get());
+			for (int index = 1; index < group.ids.size(); index++) {
+				assertTrue("Tasks of one group ticked out of order", group.ids.get(index - 1) < group.ids.get(index));
+			}
+		}
+	}
+
+	@Test
+	public void shouldHandOnSpawnedAndFinishedTasksInDueOrder() {
+		for (int id = 0; id < 200; id++) {
+			schedule(new SpawningTask(id, id));
+		}
+		tickDueTasks(199);
+		assertEquals(200, spawnedTasks.size());
+		assertEquals(200, finishedTasks.size());
+		for (int id = 0; id < 200; id++) {
+			assertEquals(id, idOf(spawnedTasks.get(id)));
+			assertEquals(id, idOf(finishedTasks.get(id)));
+		}
+	}
+
+	@Test
+	public void shouldGiveSameOutcomeForAnyNumberOfThreads() {
+		final List<Integer> serialOutcome = simulate(1);
+		final List<Integer> parallelOutcome = simulate(THREADS);
+		assertEquals(serialOutcome, parallelOutcome);
+	}
+
+	@Test
+	public void shouldProfileTicksOnEveryThread() {
+		final TaskProfiler profiler = new TaskProfiler();
+		ticker = new ParallelTaskTicker(pool, profiler);
+		for (int id = 0; id < 1000; id++) {
+			schedule(new LoggingTask(id, null, 1000, id));
+		}
+		tickDueTasks(999);
+		assertEquals(1000, profiler.getTaskClassStatistics().get(0).getTickCount());
+		assertEquals(999, profiler.getTaskClassStatistics().get(0).getMaxLateTicks());
+	}
+
+	private List<Integer> simulate(int threads) {
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			ticker = new ParallelTaskTicker(pool);
+			scheduler = new TimingWheelScheduler(TICKS_PER_ITERATION);
+			spawnedTasks.clear();
+			finishedTasks.clear();
+			final GroupLog[] groups = buildGroups();
+			for (int id = 0; id < 500; id++) {
+				schedule(new LoggingTask(id, id % 3 == 0 ? null : groups[id % GROUPS], 30 + id % 170, id % 250));
+				if (id % 5 == 0) {
+					schedule(new SpawningTask(1000 + id, id * 7));
+				}
+			}
+			final List<Integer> outcome = new ArrayList<>();
+			for (int iteration = 1; iteration <= ITERATIONS; iteration++) {
+				tickDueTasks((long) iteration * TICKS_PER_ITERATION);
+				for (final TickableTask task : spawnedTasks) {
+					outcome.add(idOf(task));
+					task.initialize(null, (long) iteration * TICKS_PER_ITERATION, 1);
+					scheduler.schedule(task);
+				}
+				spawnedTasks.clear();
+			}
+			for (final GroupLog group : groups) {
+				outcome.addAll(group.ids);
+			}
+			for (final TickableTask task : finishedTasks) {
+				outcome.add(idOf(task));
+			}
+			return outcome;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private GroupLog[] buildGroups() {
+		final GroupLog[] groups = new GroupLog[GROUPS];
+		for (int group = 0; group < GROUPS; group++) {
+			groups[group] = new GroupLog();
+		}
+		return groups;
+	}
+
+	private <T extends TickableTask> T schedule(T task) {
+		scheduler.schedule(task);
+		return task;
+	}
+
+	private void tickDueTasks(long currentTick) {
+		ticker.tickDueTasks(scheduler, currentTick, spawnedTasks::add, finishedTasks::add);
+	}
+
+	private int idOf(TickableTask task) {
+		return taskIds.get(task);
+	}
+
+	private static class GroupLog {
+		private final List<Integer> ids = new ArrayList<>();
+		private final AtomicInteger activeTasks = new AtomicInteger();
+		private final AtomicBoolean overlapped = new AtomicBoolean();
+	}
+
+	private static class LoggingTask extends TickableTask {
+		private final int id;
+		private final GroupLog group;
+		private int timesRun;
+
+		public LoggingTask(int id, GroupLog group, int ticksPerTaskIteration, long firstTick) {
+			super(ticksPerTaskIteration, group);
+			this.id = id;
+			this.group = group;
+			initialize(null, firstTick, 1);
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+			timesRun++;
+			if (group != null) {
+				if (group.activeTasks.incrementAndGet() != 1) {
+					group.overlapped.set(true);
+				}
+				group.ids.add(id);
+				Thread.yield();
+				group.activeTasks.decrementAndGet();
+			}
+		}
+	}
+
+	/***
+	 * Spawns its task, created up front so both can be found in taskIds under the same id
+	 */
+	private class SpawningTask extends TickableTask {
+		private final LoggingTask spawnedTask;
+
+		public SpawningTask(int id, long firstTick) {
+			super(TICKS_PER_ITERATION);
+			spawnedTask = new LoggingTask(id, null, TICKS_PER_ITERATION, 0);
+			taskIds.put(this, id);
+			taskIds.put(spawnedTask, id);
+			shouldRunAgain = false;
+			initialize(null, firstTick, 1);
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+			assertTrue(ticker.holdSpawnedTasks(spawnedTask));
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package net.thomas.kata.ugp.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PriorityTaskSchedulerUnitTest {
+	private PriorityTaskScheduler scheduler;
+	private Random random;
+
+	@Before
+	public void setUpScheduler() {
+		scheduler = new PriorityTaskScheduler();
+		random = new Random(1234);
+	}
+
+	@Test
+	public void shouldReturnTasksInOrderOfTheirTicks() {
+		final TickableTask laterTask = new IdleTask(200);
+		final TickableTask earlierTask = new IdleTask(100);
+		scheduler.schedule(laterTask);
+		scheduler.schedule(earlierTask);
+		assertSame(earlierTask, scheduler.pollDue(200));
+		assertSame(laterTask, scheduler.pollDue(200));
+	}
+
+	@Test
+	public void shouldOrderTasksWhoseTicksAreFurtherApartThanAnInt() {
+		final TickableTask farTask = new IdleTask(1L << 40);
+		final TickableTask nearTask = new IdleTask(5);
+		scheduler.schedule(farTask);
+		scheduler.schedule(nearTask);
+		assertSame(nearTask, scheduler.pollDue(10));
+		assertNull(scheduler.pollDue(10));
+	}
+
+	@Test
+	public void shouldGiveTickOfEarliestTaskAsNextDueTick() {
+		assertEquals(Long.MAX_VALUE, scheduler.getNextDueTick());
+		scheduler.schedule(new IdleTask(200));
+		scheduler.schedule(new IdleTask(100));
+		assertEquals(100, scheduler.getNextDueTick());
+	}
+
+	@Test
+	public void shouldReturnTasksScheduledInSmallBatchInOrderOfTheirTicks() {
+		scheduleAll(1000);
+		scheduleAll(10);
+		assertTasksComeOutInOrderOfTheirTicks(1010);
+	}
+
+	@Test
+	public void shouldReturnTasksScheduledInLargeBatchInOrderOfTheirTicks() {
+		scheduleAll(10);
+		scheduleAll(1000);
+		assertTasksComeOutInOrderOfTheirTicks(1010);
+	}
+
+	@Test
+	public void shouldRemoveTasksAcceptedByFilterOnly() {
+		scheduleAll(1000);
+		final List<TickableTask> removedTasks = new ArrayList<>();
+		scheduler.removeIf(task -> task.getTimeOfNextTick() % 2 == 0, removedTasks::add);
+		assertEquals(1000, removedTasks.size() + scheduler.size());
+		assertFalse(removedTasks.isEmpty());
+		for (final TickableTask task : removedTasks) {
+			assertEquals(0, task.getTimeOfNextTick() % 2);
+		}
+		assertTasksComeOutInOrderOfTheirTicks(scheduler.size());
+	}
+
+	private void scheduleAll(int taskCount) {
+		final List<TickableTask> tasks = new ArrayList<>();
+		for (int task = 0; task < taskCount; task++) {
+			tasks.add(new IdleTask(random.nextInt(100000)));
+		}
+		scheduler.scheduleAll(tasks);
+	}
+
+	private void assertTasksComeOutInOrderOfTheirTicks(int taskCount) {
+		long previousTick = Long.MIN_VALUE;
+		for (int task = 0; task < taskCount; task++) {
+			final TickableTask dueTask = scheduler.pollDue(Long.MAX_VALUE);
+			assertTrue(dueTask.getTimeOfNextTick() >= previousTick);
+			previousTick = dueTask.getTimeOfNextTick();
+		}
+		assertNull(scheduler.pollDue(Long.MAX_VALUE));
+	}
+
+	private static class IdleTask extends TickableTask {
+		public IdleTask(long firstTick) {
+			super(1);
+			initialize(null, firstTick, 1);
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+		}
+	}
+}
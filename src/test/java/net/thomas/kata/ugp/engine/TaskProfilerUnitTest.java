@@ -0,0 +1,135 @@
+package net.thomas.kata.ugp.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TaskProfilerUnitTest {
+	private static final int TICKS_PER_TASK_ITERATION = 100;
+	private static final long BUSY_TICK_TIME = 2000000;
+	private TaskProfiler profiler;
+
+	@Before
+	public void setUpProfiler() {
+		profiler = new TaskProfiler();
+	}
+
+	@Test
+	public void shouldCountTicksPerTaskClass() {
+		tick(new IdleTask(0), 0, 3);
+		tick(new BusyTask(0), 0, 2);
+		final List<TaskClassStatistics> statistics = profiler.getTaskClassStatistics();
+		assertEquals(2, statistics.size());
+		assertEquals(3, statisticsOf(IdleTask.class).getTickCount());
+		assertEquals(2, statisticsOf(BusyTask.class).getTickCount());
+	}
+
+	@Test
+	public void shouldPutTaskClassWithMostTickTimeFirst() {
+		tick(new IdleTask(0), 0, 10);
+		tick(new BusyTask(0), 0, 1);
+		assertEquals(BusyTask.class.getName(), profiler.getTaskClassStatistics().get(0).getTaskClassName());
+	}
+
+	@Test
+	public void shouldRecordTickTimes() {
+		tick(new BusyTask(0), 0, 2);
+		final TaskClassStatistics statistics = statisticsOf(BusyTask.class);
+		assertTrue(statistics.getMaxTickTime() >= BUSY_TICK_TIME);
+		assertTrue(statistics.getMedianTickTime() >= BUSY_TICK_TIME);
+		assertTrue(statistics.getTotalTickTime() >= 2 * BUSY_TICK_TIME);
+	}
+
+	@Test
+	public void shouldRecordHowLateTasksAreTicked() {
+		profiler.tick(new IdleTask(100), 100);
+		profiler.tick(new IdleTask(100), 350);
+		final TaskClassStatistics statistics = statisticsOf(IdleTask.class);
+		assertEquals(250, statistics.getMaxLateTicks());
+		assertEquals(250, statistics.getNinetyNinthPercentileLateTicks());
+	}
+
+	@Test
+	public void shouldRecordQueueDepths() {
+		profiler.recordQueueDepth(10);
+		profiler.recordQueueDepth(30);
+		profiler.recordQueueDepth(20);
+		assertEquals(20, profiler.getQueueDepth());
+		assertEquals(30, profiler.getMaxQueueDepth());
+		assertEquals(20.0, profiler.getMeanQueueDepth(), 0.0);
+	}
+
+	@Test
+	public void shouldForgetRecordedFiguresWhenReset() {
+		tick(new IdleTask(0), 0, 3);
+		profiler.recordQueueDepth(10);
+		profiler.reset();
+		assertEquals(0, statisticsOf(IdleTask.class).getTickCount());
+		assertEquals(0, profiler.getMaxQueueDepth());
+	}
+
+	@Test
+	public void shouldExposeStatisticsThroughJmx() throws JMException {
+		tick(new IdleTask(0), 0, 3);
+		final ObjectName objectName = profiler.registerMBean("shouldExposeStatisticsThroughJmx");
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final CompositeData[] statistics = (CompositeData[]) server.getAttribute(objectName, "TaskClassStatistics");
+			assertEquals(1, statistics.length);
+			assertEquals(IdleTask.class.getName(), statistics[0].get("taskClassName"));
+			assertEquals(3L, statistics[0].get("tickCount"));
+		} finally {
+			profiler.unregisterMBean(objectName);
+		}
+	}
+
+	private void tick(TickableTask task, long currentTick, int times) {
+		for (int time = 0; time < times; time++) {
+			profiler.tick(task, currentTick + (long) time * TICKS_PER_TASK_ITERATION);
+		}
+	}
+
+	private TaskClassStatistics statisticsOf(Class<?> taskClass) {
+		return profiler.getTaskClassStatistics()
+				.stream()
+				.filter(statistics -> statistics.getTaskClassName().equals(taskClass.getName()))
+				.findFirst()
+				.get();
+	}
+
+	private static class IdleTask extends TickableTask {
+		public IdleTask(long firstTick) {
+			super(TICKS_PER_TASK_ITERATION);
+			initialize(null, firstTick, 1);
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+		}
+	}
+
+	private static class BusyTask extends TickableTask {
+		public BusyTask(long firstTick) {
+			super(TICKS_PER_TASK_ITERATION);
+			initialize(null, firstTick, 1);
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+			final long stamp = System.nanoTime();
+			while (System.nanoTime() - stamp < BUSY_TICK_TIME) {
+				Thread.onSpinWait();
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package net.thomas.kata.ugp.engine;
+
+import static java.lang.System.nanoTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class TickingEngineTimeTrials {
+	private static final int[] TASK_COUNTS = { 10000, 100000, 1000000 };
+	private static final int TICKS_PER_ITERATION = 1000;
+	private static final int TICKS_PER_TASK_ITERATION = 10000;
+	private static final int ITERATIONS = 200;
+	private static final int BUSY_TASK_COUNT = 100000;
+	private static final int BUSY_TASK_WORK = 200;
+	private static final int PROFILED_TASK_COUNT = 100000;
+	private static final int WAVE_TASK_COUNT = 50000;
+	private static final int WAVES = 20;
+
+	public static void main(String[] args) {
+		for (final int taskCount : TASK_COUNTS) {
+			final TaskScheduler priorityQueue = buildScheduler(new PriorityTaskScheduler(), taskCount);
+			executeTest("Priority queue, " + taskCount + " tasks at 100 Hz for " + ITERATIONS + " iterations:", () -> iterate(priorityQueue));
+			final TaskScheduler timingWheel = buildScheduler(new TimingWheelScheduler(TICKS_PER_ITERATION), taskCount);
+			executeTest("Timing wheel, " + taskCount + " tasks at 100 Hz for " + ITERATIONS + " iterations:", () -> iterate(timingWheel));
+		}
+		final TaskProfiler profiler = new TaskProfiler();
+		final TaskScheduler profiledTasks = buildScheduler(new TimingWheelScheduler(TICKS_PER_ITERATION), PROFILED_TASK_COUNT);
+		executeTest("Timing wheel, profiled, " + PROFILED_TASK_COUNT + " tasks at 100 Hz for " + ITERATIONS + " iterations:",
+				() -> iterateProfiled(profiledTasks, profiler));
+		executeTest("Priority queue, " + WAVES + " waves of " + WAVE_TASK_COUNT + " tasks scheduled one at a time:",
+				() -> spawnWaves(new PriorityTaskScheduler(), false));
+		executeTest("Priority queue, " + WAVES + " waves of " + WAVE_TASK_COUNT + " tasks scheduled as batches:", () -> spawnWaves(new PriorityTaskScheduler(), true));
+		final TaskScheduler serialTasks = buildBusyScheduler(BUSY_TASK_COUNT);
+		executeTest("Serial ticks, " + BUSY_TASK_COUNT + " busy tasks for " + ITERATIONS + " iterations:", () -> iterate(serialTasks));
+		final ParallelTaskTicker ticker = new ParallelTaskTicker(ForkJoinPool.commonPool());
+		final TaskScheduler parallelTasks = buildBusyScheduler(BUSY_TASK_COUNT);
+		executeTest("Parallel ticks on " + ForkJoinPool.commonPool().getParallelism() + " threads, " + BUSY_TASK_COUNT + " busy tasks for " + ITERATIONS
+				+ " iterations:", () -> {
+					for (long currentTick = TICKS_PER_ITERATION; currentTick <= (long) ITERATIONS * TICKS_PER_ITERATION; currentTick += TICKS_PER_ITERATION) {
+						ticker.tickDueTasks(parallelTasks, currentTick, task -> {
+						}, task -> {
+						});
+					}
+				});
+	}
+
+	private static TaskScheduler buildBusyScheduler(int taskCount) {
+		final TaskScheduler scheduler = new TimingWheelScheduler(TICKS_PER_ITERATION);
+		final Random random = new Random(1234);
+		for (int task = 0; task < taskCount; task++) {
+			scheduler.schedule(new BusyTask(random.nextInt(TICKS_PER_TASK_ITERATION)));
+		}
+		return scheduler;
+	}
+
+	private static TaskScheduler buildScheduler(TaskScheduler scheduler, int taskCount) {
+		final Random random = new Random(1234);
+		for (int task = 0; task < taskCount; task++) {
+			scheduler.schedule(new PeriodicTask(random.nextInt(TICKS_PER_TASK_ITERATION)));
+		}
+		return scheduler;
+	}
+
+	/***
+	 * The same loop as the engine runs per iteration, without waiting for the clock
+	 */
+	private static void iterate(TaskScheduler scheduler) {
+		for (long currentTick = TICKS_PER_ITERATION; currentTick <= (long) ITERATIONS * TICKS_PER_ITERATION; currentTick += TICKS_PER_ITERATION) {
+			for (TickableTask task = scheduler.pollDue(currentTick); task != null; task = scheduler.pollDue(currentTick)) {
+				task.tick();
+				scheduler.schedule(task);
+			}
+		}
+	}
+
+	/***
+	 * As in the engine, new tasks are due at once while the tasks already scheduled are due later, so
+	 * scheduled one at a time each new task climbs to the top of the heap
+	 */
+	private static void spawnWaves(TaskScheduler scheduler, boolean asBatches) {
+		final Random random = new Random(1234);
+		final List<TickableTask> scheduledTasks = new ArrayList<>();
+		for (int task = 0; task < WAVE_TASK_COUNT; task++) {
+			scheduledTasks.add(new PeriodicTask(1 + random.nextInt(TICKS_PER_TASK_ITERATION)));
+		}
+		scheduler.scheduleAll(scheduledTasks);
+		for (int wave = 0; wave < WAVES; wave++) {
+			final List<TickableTask> tasks = new ArrayList<>();
+			for (int task = 0; task < WAVE_TASK_COUNT; task++) {
+				tasks.add(new PeriodicTask(0));
+			}
+			if (asBatches) {
+				scheduler.scheduleAll(tasks);
+			} else {
+				tasks.forEach(scheduler::schedule);
+			}
+			while (scheduler.pollDue(0) != null) {
+			}
+		}
+	}
+
+	private static void iterateProfiled(TaskScheduler scheduler, TaskProfiler profiler) {
+		for (long currentTick = TICKS_PER_ITERATION; currentTick <= (long) ITERATIONS * TICKS_PER_ITERATION; currentTick += TICKS_PER_ITERATION) {
+			profiler.recordQueueDepth(scheduler.size());
+			for (TickableTask task = scheduler.pollDue(currentTick); task != null; task = scheduler.pollDue(currentTick)) {
+				profiler.tick(task, currentTick);
+				scheduler.schedule(task);
+			}
+		}
+	}
+
+	private static void executeTest(String description, Runnable test) {
+		final long stamp = nanoTime();
+		test.run();
+		System.out.println(description + " " + calculateTimeSpend(stamp));
+	}
+
+	private static String calculateTimeSpend(long stamp) {
+		return (nanoTime() - stamp) / 10000 / 100.0d + " ms";
+	}
+
+	private static class PeriodicTask extends TickableTask {
+		public PeriodicTask(long firstTick) {
+			super(TICKS_PER_TASK_ITERATION);
+			initialize(null, firstTick, 1);
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+		}
+	}
+
+	private static class BusyTask extends TickableTask {
+		private double state;
+
+		public BusyTask(long firstTick) {
+			super(TICKS_PER_TASK_ITERATION);
+			state = firstTick;
+			initialize(null, firstTick, 1);
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+			for (int step = 0; step < BUSY_TASK_WORK; step++) {
+				state = Math.sqrt(state + step);
+			}
+		}
+	}
+}
@@ -1,36 +1,59 @@
 package net.thomas.kata.ugp.engine;
 
 import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.asList;
 import static net.thomas.kata.ugp.engine.TickingEngine.DEFAULT_TICKS_PER_ITERATION;
 import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.CREATED;
+import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.PAUSED;
 import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.RUNNING;
 import static net.thomas.kata.ugp.engine.TickingEngine.EngineState.TERMINATED;
+import static net.thomas.kata.ugp.engine.TickingEngine.SchedulerType.TIMING_WHEEL;
+import static net.thomas.kata.ugp.engine.TickingEngine.StepMode.AS_FAST_AS_POSSIBLE;
+import static net.thomas.kata.ugp.engine.TickingEngine.StepMode.REAL_TIME;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import net.thomas.kata.ugp.engine.TickingEngine.EngineState;
+import net.thomas.kata.ugp.engine.TickingEngine.StepMode;
 
 public class TickingEngineUnitTest {
 	private static final boolean KEEP_RUNNING_WHEN_DONE = false;
 	private static final boolean EXIT_WHEN_DONE = true;
 	private static final int SOME_TIME_SCALE = 2;
-	private static final int EXECUTION_TIMEOUT = 10;
+	private static final int EXECUTION_TIMEOUT = 500;
 	private static final int SHUTDOWN_TIMEOUT = 1000;
 	private static final boolean SHOULD_RUN_FOREVER = true;
 	private static final boolean SHOULD_RUN_ONCE = false;
 	private static final int MINIMUM_TICK_SIZE_IN_MICROSECONDS = 100;
 	private static final int TICKS_BETWEEN_TASK_EXECUTIONS = 100;
+	private static final int PARALLELISM = 4;
 	private TickingEngine continuousEngine;
 	private TickingEngine onceOffEngine;
+	private TickingEngine timingWheelEngine;
+	private TickingEngine parallelEngine;
 
 	@Before
 	public void setUpEngine() {
 		continuousEngine = new TickingEngine(MINIMUM_TICK_SIZE_IN_MICROSECONDS, KEEP_RUNNING_WHEN_DONE);
 		onceOffEngine = new TickingEngine(MINIMUM_TICK_SIZE_IN_MICROSECONDS, EXIT_WHEN_DONE);
+		timingWheelEngine = new TickingEngine.Builder().setTicksPerIteration(MINIMUM_TICK_SIZE_IN_MICROSECONDS)
+				.setExitWhenDone(EXIT_WHEN_DONE)
+				.setSchedulerType(TIMING_WHEEL)
+				.build();
+		parallelEngine = new TickingEngine.Builder().setTicksPerIteration(MINIMUM_TICK_SIZE_IN_MICROSECONDS)
+				.setExitWhenDone(EXIT_WHEN_DONE)
+				.setParallelism(PARALLELISM)
+				.build();
 	}
 
 	@Test(timeout = 1000)
@@ -45,7 +68,7 @@ public class TickingEngineUnitTest {
 		continuousEngine.addTasks(task);
 		new Thread(continuousEngine).start();
 		waitForEngineState(continuousEngine, RUNNING, EXECUTION_TIMEOUT);
-		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS * 100);
+		waitUntil(() -> task.getTimesRun() >= 2, EXECUTION_TIMEOUT);
 		assertTrue("Expected at least 2 ticks, got " + task.getTimesRun(), task.getTimesRun() >= 2);
 	}
 
@@ -55,19 +78,30 @@ public class TickingEngineUnitTest {
 		continuousEngine.addTasks(task);
 		new Thread(continuousEngine).start();
 		waitForEngineState(continuousEngine, RUNNING, EXECUTION_TIMEOUT);
-		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS);
+		waitUntil(() -> task.getTimesRun() >= 1, EXECUTION_TIMEOUT);
 		continuousEngine.stop();
 		waitForEngineState(continuousEngine, TERMINATED, SHUTDOWN_TIMEOUT);
 		assertTrue("Task failed to terminate after engine shutdown", task.isTerminated());
 	}
 
+	@Test(timeout = 1000)
+	public void shouldOnlyTerminateTasksWhenStoppedBeforeRunning() {
+		final TimeTickableTask task = new TimeTickableTask(TICKS_BETWEEN_TASK_EXECUTIONS, SHOULD_RUN_FOREVER);
+		continuousEngine.addTasks(task);
+		continuousEngine.stop();
+		new Thread(continuousEngine).start();
+		waitForEngineState(continuousEngine, TERMINATED, SHUTDOWN_TIMEOUT);
+		assertEquals(0, task.getTimesRun());
+		assertTrue("Task failed to terminate after engine shutdown", task.isTerminated());
+	}
+
 	@Test(timeout = 1000)
 	public void shouldTerminateTaskAfterExecution() {
 		final TimeTickableTask task = new TimeTickableTask(TICKS_BETWEEN_TASK_EXECUTIONS, SHOULD_RUN_ONCE);
 		continuousEngine.addTasks(task);
 		new Thread(continuousEngine).start();
 		waitForEngineState(continuousEngine, RUNNING, EXECUTION_TIMEOUT);
-		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS);
+		waitUntil(task::isTerminated, EXECUTION_TIMEOUT);
 		assertTrue("Task failed to terminate after task execution", task.isTerminated());
 	}
 
@@ -77,7 +111,7 @@ public class TickingEngineUnitTest {
 		continuousEngine.addTasks(task);
 		new Thread(continuousEngine).start();
 		waitForEngineState(continuousEngine, RUNNING, EXECUTION_TIMEOUT);
-		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS * 100);
+		waitUntil(task::isTerminated, EXECUTION_TIMEOUT);
 		assertTrue("Expected 1 tick, got " + task.getTimesRun(), task.getTimesRun() == 1);
 	}
 
@@ -109,7 +143,7 @@ public class TickingEngineUnitTest {
 		continuousEngine.addTasks(task2);
 		new Thread(continuousEngine).start();
 		waitForEngineState(continuousEngine, RUNNING, EXECUTION_TIMEOUT);
-		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS * 200);
+		waitUntil(() -> task1.getTimesRun() >= 2 && task2.getTimesRun() >= 2, EXECUTION_TIMEOUT);
 		assertTrue("Expected at least 2 ticks for task 1, got " + task1.getTimesRun(), task1.getTimesRun() >= 2);
 		assertTrue("Expected at least 2 ticks for task 2, got " + task2.getTimesRun(), task2.getTimesRun() >= 2);
 	}
@@ -124,7 +158,8 @@ public class TickingEngineUnitTest {
 		continuousEngine.addTasks(task3);
 		new Thread(continuousEngine).start();
 		waitForEngineState(continuousEngine, RUNNING, EXECUTION_TIMEOUT);
-		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS * 100);
+		waitUntil(() -> task3.getTimesRun() >= 5, EXECUTION_TIMEOUT);
+		shutDownEngineIfRunning(continuousEngine);
 		assertTrue("Task 1 should have been run more often than task 2, was (" + task1.getTimesRun() + ", " + task2.getTimesRun() + ")",
 				task1.getTimesRun() > task2.getTimesRun());
 		assertTrue("Task 2 should have been run more often than task 3, was (" + task2.getTimesRun() + ", " + task3.getTimesRun() + ")",
@@ -137,7 +172,8 @@ public class TickingEngineUnitTest {
 		continuousEngine.addTasks(task);
 		new Thread(continuousEngine).start();
 		waitForEngineState(continuousEngine, RUNNING, EXECUTION_TIMEOUT);
-		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS * 100);
+		waitUntil(() -> task.getTimesRun() >= 10, EXECUTION_TIMEOUT);
+		shutDownEngineIfRunning(continuousEngine);
 		assertEquals(task.getTimesRun() * TICKS_BETWEEN_TASK_EXECUTIONS, task.getTotalTicks());
 	}
 
@@ -148,14 +184,245 @@ public class TickingEngineUnitTest {
 		continuousEngine.setTickScale(SOME_TIME_SCALE);
 		new Thread(continuousEngine).start();
 		waitForEngineState(continuousEngine, RUNNING, EXECUTION_TIMEOUT);
-		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS * 100);
+		waitUntil(() -> task.getTimesRun() >= 10, EXECUTION_TIMEOUT);
+		shutDownEngineIfRunning(continuousEngine);
 		assertEquals(task.getTimesRun() * TICKS_BETWEEN_TASK_EXECUTIONS * SOME_TIME_SCALE, task.getTotalTicks());
 	}
 
+	@Test(timeout = 1000)
+	public void shouldExecuteCountdownTaskFullyThenShutDownOnTimingWheel() {
+		new Thread(timingWheelEngine).start();
+		waitForEngineState(timingWheelEngine, RUNNING, EXECUTION_TIMEOUT);
+		final CountDownTask task = new CountDownTask(2);
+		timingWheelEngine.addTasks(task);
+		waitForEngineState(timingWheelEngine, TERMINATED, SHUTDOWN_TIMEOUT);
+		assertEquals(0, task.getCount());
+	}
+
+	@Test(timeout = 1000)
+	public void shouldRunMultipleTasksAtDifferentRatesOnTimingWheel() {
+		final TimeTickableTask task1 = new TimeTickableTask(1 * TICKS_BETWEEN_TASK_EXECUTIONS, SHOULD_RUN_FOREVER);
+		final TimeTickableTask task2 = new TimeTickableTask(2 * TICKS_BETWEEN_TASK_EXECUTIONS, SHOULD_RUN_FOREVER);
+		final TimeTickableTask task3 = new TimeTickableTask(3 * TICKS_BETWEEN_TASK_EXECUTIONS, SHOULD_RUN_FOREVER);
+		timingWheelEngine.addTasks(task1, task2, task3);
+		new Thread(timingWheelEngine).start();
+		waitForEngineState(timingWheelEngine, RUNNING, EXECUTION_TIMEOUT);
+		waitUntil(() -> task3.getTimesRun() >= 5, EXECUTION_TIMEOUT);
+		shutDownEngineIfRunning(timingWheelEngine);
+		assertTrue("Task 1 should have been run more often than task 2, was (" + task1.getTimesRun() + ", " + task2.getTimesRun() + ")",
+				task1.getTimesRun() > task2.getTimesRun());
+		assertTrue("Task 2 should have been run more often than task 3, was (" + task2.getTimesRun() + ", " + task3.getTimesRun() + ")",
+				task2.getTimesRun() > task3.getTimesRun());
+	}
+
+	@Test(timeout = 1000)
+	public void shouldExecuteSubTaskFullyInParallel() {
+		new Thread(parallelEngine).start();
+		waitForEngineState(parallelEngine, RUNNING, EXECUTION_TIMEOUT);
+		final TaskSpawningTask task = new TaskSpawningTask(2);
+		parallelEngine.addTasks(task);
+		waitForEngineState(parallelEngine, TERMINATED, SHUTDOWN_TIMEOUT);
+		assertEquals(0, task.getCount());
+	}
+
+	@Test(timeout = 1000)
+	public void shouldRunManyTasksAtLeastTwiceEachInParallel() {
+		final TimeTickableTask[] tasks = new TimeTickableTask[100];
+		for (int task = 0; task < tasks.length; task++) {
+			tasks[task] = new TimeTickableTask(TICKS_BETWEEN_TASK_EXECUTIONS, SHOULD_RUN_FOREVER);
+		}
+		parallelEngine.addTasks(tasks);
+		new Thread(parallelEngine).start();
+		waitForEngineState(parallelEngine, RUNNING, EXECUTION_TIMEOUT);
+		waitUntil(() -> Arrays.stream(tasks).allMatch(task -> task.getTimesRun() >= 2), EXECUTION_TIMEOUT);
+		for (final TimeTickableTask task : tasks) {
+			assertTrue("Expected at least 2 ticks, got " + task.getTimesRun(), task.getTimesRun() >= 2);
+		}
+	}
+
+	@Test(timeout = 1000)
+	public void shouldNotRunTasksWhilePaused() {
+		final TimeTickableTask task = new TimeTickableTask(TICKS_BETWEEN_TASK_EXECUTIONS, SHOULD_RUN_FOREVER);
+		continuousEngine.addTasks(task);
+		new Thread(continuousEngine).start();
+		waitForEngineState(continuousEngine, RUNNING, EXECUTION_TIMEOUT);
+		waitUntil(() -> task.getTimesRun() >= 1, EXECUTION_TIMEOUT);
+		continuousEngine.pause();
+		assertEquals(PAUSED, continuousEngine.getCurrentState());
+		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS * 20);
+		final int timesRunWhenPaused = task.getTimesRun();
+		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS * 50);
+		assertEquals(timesRunWhenPaused, task.getTimesRun());
+		continuousEngine.resume();
+		waitUntil(() -> task.getTimesRun() > timesRunWhenPaused, EXECUTION_TIMEOUT);
+		assertTrue("Expected more ticks after resuming, got " + task.getTimesRun(), task.getTimesRun() > timesRunWhenPaused);
+	}
+
+	@Test(timeout = 1000)
+	public void shouldStopEngineParkedWithoutTasks() {
+		final TickingEngine engine = new TickingEngine.Builder().setTicksPerIteration(MINIMUM_TICK_SIZE_IN_MICROSECONDS)
+				.setIdleStrategy(new ParkingIdleStrategy())
+				.build();
+		new Thread(engine).start();
+		waitForEngineState(engine, RUNNING, EXECUTION_TIMEOUT);
+		sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS * 20);
+		engine.stop();
+		waitForEngineState(engine, TERMINATED, SHUTDOWN_TIMEOUT);
+		assertEquals(TERMINATED, engine.getCurrentState());
+	}
+
+	@Test(timeout = 2000)
+	public void shouldRunTaskAtLeastTwiceWithEveryIdleStrategy() {
+		for (final IdleStrategy idleStrategy : new IdleStrategy[] { new BusySpinIdleStrategy(), new YieldingIdleStrategy(), new ParkingIdleStrategy(),
+				new BackoffIdleStrategy() }) {
+			final TickingEngine engine = new TickingEngine.Builder().setTicksPerIteration(MINIMUM_TICK_SIZE_IN_MICROSECONDS)
+					.setIdleStrategy(idleStrategy)
+					.build();
+			final TimeTickableTask task = new TimeTickableTask(TICKS_BETWEEN_TASK_EXECUTIONS, SHOULD_RUN_FOREVER);
+			engine.addTasks(task);
+			new Thread(engine).start();
+			waitForEngineState(engine, RUNNING, EXECUTION_TIMEOUT);
+			waitUntil(() -> task.getTimesRun() >= 2, EXECUTION_TIMEOUT);
+			shutDownEngineIfRunning(engine);
+			assertTrue(idleStrategy.getClass().getSimpleName() + " expected at least 2 ticks, got " + task.getTimesRun(), task.getTimesRun() >= 2);
+		}
+	}
+
+	@Test(timeout = 1000)
+	public void shouldRunSimulatedSecondsWithinMillisecondsAsFastAsPossible() {
+		final TickingEngine engine = new TickingEngine.Builder().setExitWhenDone(EXIT_WHEN_DONE).setStepMode(AS_FAST_AS_POSSIBLE).build();
+		final CountDownTask task = new CountDownTask(1000);
+		engine.addTasks(task);
+		new Thread(engine).start();
+		waitForEngineState(engine, TERMINATED, SHUTDOWN_TIMEOUT);
+		assertEquals(0, task.getCount());
+	}
+
+	@Test(timeout = 1000)
+	public void shouldTickTasksAtSameEngineTicksInEveryStepMode() {
+		assertEquals(recordEngineTicks(REAL_TIME), recordEngineTicks(AS_FAST_AS_POSSIBLE));
+	}
+
+	@Test(timeout = 2000)
+	public void shouldSkipIterationsWhenCatchUpIsLimited() {
+		final TickingEngine engine = new TickingEngine.Builder().setTicksPerIteration(MINIMUM_TICK_SIZE_IN_MICROSECONDS).setMaxCatchUpSteps(1).build();
+		engine.addTasks(new StallingTask(TICKS_BETWEEN_TASK_EXECUTIONS, TICKS_BETWEEN_TASK_EXECUTIONS * 50));
+		new Thread(engine).start();
+		waitForEngineState(engine, RUNNING, EXECUTION_TIMEOUT);
+		waitUntil(() -> engine.getMetrics().getSkippedIterationCount() > 0, EXECUTION_TIMEOUT);
+		shutDownEngineIfRunning(engine);
+		assertTrue("Expected skipped iterations", engine.getMetrics().getSkippedIterationCount() > 0);
+	}
+
+	@Test(timeout = 2000)
+	public void shouldCatchUpOnEveryIterationByDefault() {
+		final TickingEngine engine = new TickingEngine.Builder().setTicksPerIteration(MINIMUM_TICK_SIZE_IN_MICROSECONDS).build();
+		engine.addTasks(new StallingTask(TICKS_BETWEEN_TASK_EXECUTIONS, TICKS_BETWEEN_TASK_EXECUTIONS * 50));
+		new Thread(engine).start();
+		waitForEngineState(engine, RUNNING, EXECUTION_TIMEOUT);
+		waitUntil(() -> engine.getMetrics().getMaxLag() >= TICKS_BETWEEN_TASK_EXECUTIONS * 40, EXECUTION_TIMEOUT);
+		shutDownEngineIfRunning(engine);
+		final EngineMetrics metrics = engine.getMetrics();
+		assertEquals(0, metrics.getSkippedIterationCount());
+		assertTrue("Expected lag after stalling, got " + metrics.getMaxLag(), metrics.getMaxLag() >= TICKS_BETWEEN_TASK_EXECUTIONS * 40);
+		assertEquals(metrics.getIterationCount(), metrics.getIterationDurations().getCount());
+	}
+
+	@Test(timeout = 1000)
+	public void shouldApplyTickScaleChangedWhileRunning() {
+		final TimeTickableTask task = new TimeTickableTask(TICKS_BETWEEN_TASK_EXECUTIONS, SHOULD_RUN_FOREVER);
+		continuousEngine.addTasks(task);
+		new Thread(continuousEngine).start();
+		waitForEngineState(continuousEngine, RUNNING, EXECUTION_TIMEOUT);
+		waitUntil(() -> task.getTimesRun() >= 1, EXECUTION_TIMEOUT);
+		continuousEngine.setTickScale(SOME_TIME_SCALE);
+		waitUntil(() -> task.getTotalTicks() > task.getTimesRun() * TICKS_BETWEEN_TASK_EXECUTIONS, EXECUTION_TIMEOUT);
+		shutDownEngineIfRunning(continuousEngine);
+		assertTrue("Expected scaled ticks, got " + task.getTotalTicks() + " ticks in " + task.getTimesRun() + " runs",
+				task.getTotalTicks() > task.getTimesRun() * TICKS_BETWEEN_TASK_EXECUTIONS);
+	}
+
+	@Test(timeout = 1000)
+	public void shouldProfileEveryTickWhenProfilerIsSet() {
+		final TaskProfiler profiler = new TaskProfiler();
+		final TickingEngine engine = new TickingEngine.Builder().setExitWhenDone(EXIT_WHEN_DONE)
+				.setStepMode(AS_FAST_AS_POSSIBLE)
+				.setTaskProfiler(profiler)
+				.build();
+		engine.addTasks(new CountDownTask(10));
+		new Thread(engine).start();
+		waitForEngineState(engine, TERMINATED, SHUTDOWN_TIMEOUT);
+		final List<TaskClassStatistics> statistics = profiler.getTaskClassStatistics();
+		assertEquals(1, statistics.size());
+		assertEquals(CountDownTask.class.getName(), statistics.get(0).getTaskClassName());
+		assertEquals(10, statistics.get(0).getTickCount());
+		assertEquals(1, profiler.getMaxQueueDepth());
+	}
+
+	@Test(timeout = 1000)
+	public void shouldCancelTaskByHandleAtNextIteration() {
+		final TickingEngine engine = buildEngineRunningAsFastAsPossible();
+		final TimeTickableTask task = new TimeTickableTask(TICKS_BETWEEN_TASK_EXECUTIONS, SHOULD_RUN_FOREVER);
+		engine.addTasks(asList(task, new ChangingTask(5, changedEngine -> changedEngine.cancelTasks(task))));
+		new Thread(engine).start();
+		waitForEngineState(engine, TERMINATED, SHUTDOWN_TIMEOUT);
+		assertTrue(task.isCancelled());
+		assertTrue(task.isTerminated());
+		assertEquals(5, task.getTimesRun());
+	}
+
+	@Test(timeout = 1000)
+	public void shouldCancelEveryTaskOfSet() {
+		final TickingEngine engine = buildEngineRunningAsFastAsPossible();
+		final List<TimeTickableTask> tasks = new ArrayList<>();
+		for (int task = 0; task < 100; task++) {
+			tasks.add(new TimeTickableTask(TICKS_BETWEEN_TASK_EXECUTIONS * (1 + task % 7), SHOULD_RUN_FOREVER));
+		}
+		engine.addTasks(tasks);
+		engine.addTasks(new ChangingTask(3, changedEngine -> changedEngine.cancelTasks(tasks)));
+		new Thread(engine).start();
+		waitForEngineState(engine, TERMINATED, SHUTDOWN_TIMEOUT);
+		for (final TimeTickableTask task : tasks) {
+			assertTrue(task.isTerminated());
+		}
+	}
+
+	@Test(timeout = 1000)
+	public void shouldTickRescheduledTaskOneNewPeriodAfterItsPreviousTick() {
+		final TickingEngine engine = buildEngineRunningAsFastAsPossible();
+		final List<Long> engineTicks = new ArrayList<>();
+		final RecordingTask task = new RecordingTask(engineTicks, 1, 1, 6);
+		engine.addTasks(task, new ChangingTask(3, changedEngine -> changedEngine.rescheduleTasks(4 * MINIMUM_TICK_SIZE_IN_MICROSECONDS, task)));
+		new Thread(engine).start();
+		waitForEngineState(engine, TERMINATED, SHUTDOWN_TIMEOUT);
+		assertEquals(asList(1L, 100L, 1L, 200L, 1L, 300L, 1L, 700L, 1L, 1100L, 1L, 1500L), engineTicks);
+	}
+
+	private TickingEngine buildEngineRunningAsFastAsPossible() {
+		return new TickingEngine.Builder().setTicksPerIteration(MINIMUM_TICK_SIZE_IN_MICROSECONDS)
+				.setExitWhenDone(EXIT_WHEN_DONE)
+				.setStepMode(AS_FAST_AS_POSSIBLE)
+				.build();
+	}
+
+	private List<Long> recordEngineTicks(StepMode stepMode) {
+		final TickingEngine engine = new TickingEngine.Builder().setTicksPerIteration(MINIMUM_TICK_SIZE_IN_MICROSECONDS)
+				.setExitWhenDone(EXIT_WHEN_DONE)
+				.setStepMode(stepMode)
+				.build();
+		final List<Long> engineTicks = new ArrayList<>();
+		engine.addTasks(new RecordingTask(engineTicks, 1, 3, 10), new RecordingTask(engineTicks, 2, 7, 5));
+		new Thread(engine).start();
+		waitForEngineState(engine, TERMINATED, SHUTDOWN_TIMEOUT);
+		return engineTicks;
+	}
+
 	@After
 	public void shutDownEngines() {
 		shutDownEngineIfRunning(continuousEngine);
 		shutDownEngineIfRunning(onceOffEngine);
+		shutDownEngineIfRunning(timingWheelEngine);
+		shutDownEngineIfRunning(parallelEngine);
 	}
 
 	private void shutDownEngineIfRunning(TickingEngine engine) {
@@ -178,10 +445,17 @@ public class TickingEngineUnitTest {
 		}
 	}
 
+	private void waitUntil(BooleanSupplier condition, int timeoutInMilliseconds) {
+		final long stamp = currentTimeMillis();
+		while (!condition.getAsBoolean() && stamp + timeoutInMilliseconds >= currentTimeMillis()) {
+			sleepSilently(TICKS_BETWEEN_TASK_EXECUTIONS);
+		}
+	}
+
 	private static class TimeTickableTask extends TickableTask {
-		private int timesRun;
-		private int totalTicks;
-		private boolean terminated;
+		private volatile int timesRun;
+		private volatile int totalTicks;
+		private volatile boolean terminated;
 
 		public TimeTickableTask(int timeInTicksBetweenIterations, boolean shouldRunAgain) {
 			super(timeInTicksBetweenIterations);
@@ -264,6 +538,80 @@ public class TickingEngineUnitTest {
 		}
 	}
 
+	private static class StallingTask extends TickableTask {
+		private final int stallInMicroseconds;
+		private boolean hasStalled;
+
+		public StallingTask(int ticksPerTaskIteration, int stallInMicroseconds) {
+			super(ticksPerTaskIteration);
+			this.stallInMicroseconds = stallInMicroseconds;
+			hasStalled = false;
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+			if (!hasStalled) {
+				hasStalled = true;
+				try {
+					Thread.sleep(stallInMicroseconds / 1000);
+				} catch (final InterruptedException e) {
+				}
+			}
+		}
+	}
+
+	/***
+	 * Notes its id and the tick it is due at, every time it ticks
+	 */
+	private static class ChangingTask extends TickableTask {
+		private final Consumer<TickingEngine> change;
+		private int ticksBeforeChange;
+
+		public ChangingTask(int ticksBeforeChange, Consumer<TickingEngine> change) {
+			super(MINIMUM_TICK_SIZE_IN_MICROSECONDS);
+			this.ticksBeforeChange = ticksBeforeChange;
+			this.change = change;
+		}
+
+		@Override
+		public boolean shouldRunAgain() {
+			return ticksBeforeChange > 0;
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+			ticksBeforeChange--;
+			if (ticksBeforeChange == 0) {
+				change.accept(engine);
+			}
+		}
+	}
+
+	private static class RecordingTask extends TickableTask {
+		private final List<Long> engineTicks;
+		private final long id;
+		private int count;
+
+		public RecordingTask(List<Long> engineTicks, long id, int iterationsBetweenTicks, int count) {
+			super(iterationsBetweenTicks * MINIMUM_TICK_SIZE_IN_MICROSECONDS);
+			this.engineTicks = engineTicks;
+			this.id = id;
+			this.count = count;
+		}
+
+		@Override
+		public boolean shouldRunAgain() {
+			return count > 0;
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+			engineTicks.add(id);
+			engineTicks.add(getTimeOfNextTick());
+			count--;
+		}
+	}
+
 	private void sleepSilently(int timeInMicroseconds) {
 		try {
 			Thread.sleep(timeInMicroseconds / 1000, timeInMicroseconds % 1000 * 1000);
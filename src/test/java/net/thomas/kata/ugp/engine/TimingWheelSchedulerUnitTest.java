@@ -0,0 +1,198 @@
+package net.thomas.kata.ugp.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimingWheelSchedulerUnitTest {
+	private static final int TICKS_PER_SLOT = 100;
+	private static final int ITERATIONS = 3000;
+	private TimingWheelScheduler scheduler;
+	private Map<TickableTask, Integer> taskIds;
+
+	@Before
+	public void setUpScheduler() {
+		scheduler = new TimingWheelScheduler(TICKS_PER_SLOT);
+		taskIds = new IdentityHashMap<>();
+	}
+
+	@Test
+	public void shouldNotReturnTaskBeforeItsTick() {
+		final CountingTask task = newTask(0, TICKS_PER_SLOT, 250);
+		scheduler.schedule(task);
+		assertNull(scheduler.pollDue(200));
+		assertSame(task, scheduler.pollDue(300));
+		assertNull(scheduler.pollDue(300));
+	}
+
+	@Test
+	public void shouldReturnTaskDueAtExactStartOfSlot() {
+		final CountingTask task = newTask(0, TICKS_PER_SLOT, 300);
+		scheduler.schedule(task);
+		assertNull(scheduler.pollDue(299));
+		assertSame(task, scheduler.pollDue(300));
+	}
+
+	@Test
+	public void shouldReturnTaskScheduledInThePastAtOnce() {
+		scheduler.pollDue(1000);
+		final CountingTask task = newTask(0, TICKS_PER_SLOT, 500);
+		scheduler.schedule(task);
+		assertSame(task, scheduler.pollDue(1000));
+	}
+
+	@Test
+	public void shouldReturnTaskRescheduledWithinSameSlotInSameIteration() {
+		final CountingTask task = newTask(0, 0, 1000);
+		scheduler.schedule(task);
+		assertSame(task, scheduler.pollDue(1000));
+		task.tick();
+		scheduler.schedule(task);
+		assertSame(task, scheduler.pollDue(1000));
+	}
+
+	@Test
+	public void shouldReturnTaskBeyondAllWheels() {
+		scheduler = new TimingWheelScheduler(1);
+		final long farTick = (1L << 33) + 7;
+		final CountingTask farTask = newTask(0, 1, farTick);
+		final CountingTask nearTask = newTask(1, 1, 300);
+		scheduler.schedule(farTask);
+		scheduler.schedule(nearTask);
+		assertNull(scheduler.pollDue(299));
+		assertSame(nearTask, scheduler.pollDue(300));
+		assertNull(scheduler.pollDue(farTick - 1));
+		assertSame(farTask, scheduler.pollDue(farTick));
+		assertEquals(0, scheduler.size());
+	}
+
+	@Test
+	public void shouldHaveNoNextDueTickWhenEmpty() {
+		assertEquals(Long.MAX_VALUE, scheduler.getNextDueTick());
+	}
+
+	@Test
+	public void shouldGiveStartOfDueSlotAsNextDueTick() {
+		scheduler.schedule(newTask(0, TICKS_PER_SLOT, 250));
+		assertEquals(201, scheduler.getNextDueTick());
+	}
+
+	@Test
+	public void shouldGiveNextTurnOfWheelAsNextDueTickForDistantTask() {
+		scheduler.schedule(newTask(0, TICKS_PER_SLOT, 1000000));
+		assertEquals(255 * TICKS_PER_SLOT + 1, scheduler.getNextDueTick());
+	}
+
+	@Test
+	public void shouldVisitEveryScheduledTask() {
+		for (int task = 0; task < 10; task++) {
+			scheduler.schedule(newTask(task, TICKS_PER_SLOT, task * 100000L));
+		}
+		final List<TickableTask> visitedTasks = new ArrayList<>();
+		scheduler.forEach(visitedTasks::add);
+		assertEquals(10, visitedTasks.size());
+		assertEquals(10, scheduler.size());
+	}
+
+	@Test
+	public void shouldFireTasksInSameIterationsAsPriorityQueue() {
+		final Random random = new Random(1234);
+		final PriorityTaskScheduler reference = new PriorityTaskScheduler();
+		final int taskCount = 500;
+		for (int id = 0; id < taskCount; id++) {
+			final int period = 1 + random.nextInt(100000);
+			final long firstTick = random.nextInt(200000);
+			scheduler.schedule(newTask(id, period, firstTick));
+			reference.schedule(newTask(id, period, firstTick));
+		}
+		for (int iteration = 1; iteration <= ITERATIONS; iteration++) {
+			final long currentTick = (long) iteration * TICKS_PER_SLOT;
+			assertArrayEquals("Tasks fired in iteration " + iteration, fireDueTasks(reference, currentTick), fireDueTasks(scheduler, currentTick));
+			assertTrue("Next due tick after iteration " + iteration, scheduler.getNextDueTick() <= reference.getNextDueTick());
+		}
+		assertEquals(taskCount, scheduler.size());
+	}
+
+	@Test
+	public void shouldFireBatchScheduledTasksInSameIterationsAsPriorityQueue() {
+		final Random random = new Random(1234);
+		final PriorityTaskScheduler reference = new PriorityTaskScheduler();
+		final List<TickableTask> batch = new ArrayList<>();
+		final List<TickableTask> referenceBatch = new ArrayList<>();
+		for (int id = 0; id < 500; id++) {
+			final int period = 1 + random.nextInt(100000);
+			final long firstTick = random.nextInt(200000);
+			batch.add(newTask(id, period, firstTick));
+			referenceBatch.add(newTask(id, period, firstTick));
+		}
+		scheduler.scheduleAll(batch);
+		reference.scheduleAll(referenceBatch);
+		assertEquals(500, scheduler.size());
+		for (int iteration = 1; iteration <= ITERATIONS; iteration++) {
+			final long currentTick = (long) iteration * TICKS_PER_SLOT;
+			assertArrayEquals("Tasks fired in iteration " + iteration, fireDueTasks(reference, currentTick), fireDueTasks(scheduler, currentTick));
+		}
+	}
+
+	@Test
+	public void shouldRemoveMatchingTasksWhereverTheyWait() {
+		scheduler.pollDue(1000);
+		final long[] ticks = { 500, 1200, 500000, 100L << 40 };
+		for (int id = 0; id < 8; id++) {
+			scheduler.schedule(newTask(id, TICKS_PER_SLOT, ticks[id / 2]));
+		}
+		final List<TickableTask> removedTasks = new ArrayList<>();
+		scheduler.removeIf(task -> idOf(task) % 2 == 0, removedTasks::add);
+		assertArrayEquals(new int[] { 0, 2, 4, 6 }, removedTasks.stream().mapToInt(this::idOf).sorted().toArray());
+		assertEquals(4, scheduler.size());
+		for (int id = 1; id < 8; id += 2) {
+			assertEquals(id, idOf(scheduler.pollDue(ticks[id / 2])));
+			assertNull(scheduler.pollDue(ticks[id / 2]));
+		}
+		assertEquals(0, scheduler.size());
+	}
+
+	private int[] fireDueTasks(TaskScheduler scheduler, long currentTick) {
+		final List<TickableTask> firedTasks = new ArrayList<>();
+		for (TickableTask task = scheduler.pollDue(currentTick); task != null; task = scheduler.pollDue(currentTick)) {
+			task.tick();
+			firedTasks.add(task);
+		}
+		for (final TickableTask task : firedTasks) {
+			scheduler.schedule(task);
+		}
+		return firedTasks.stream().mapToInt(this::idOf).sorted().toArray();
+	}
+
+	private CountingTask newTask(int id, int ticksPerTaskIteration, long firstTick) {
+		final CountingTask task = new CountingTask(ticksPerTaskIteration, firstTick);
+		taskIds.put(task, id);
+		return task;
+	}
+
+	private int idOf(TickableTask task) {
+		return taskIds.get(task);
+	}
+
+	private static class CountingTask extends TickableTask {
+		public CountingTask(int ticksPerTaskIteration, long firstTick) {
+			super(ticksPerTaskIteration);
+			initialize(null, firstTick, 1);
+		}
+
+		@Override
+		protected void _tick(int iterationTicks) {
+		}
+	}
+}
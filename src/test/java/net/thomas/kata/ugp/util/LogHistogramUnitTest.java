@@ -0,0 +1,67 @@
+package net.thomas.kata.ugp.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogHistogramUnitTest {
+	private LogHistogram histogram;
+
+	@Before
+	public void setUpHistogram() {
+		histogram = new LogHistogram();
+	}
+
+	@Test
+	public void shouldBeEmptyWhenCreated() {
+		assertEquals(0, histogram.getCount());
+		assertEquals(0.0, histogram.getMean(), 0.0);
+		assertEquals(0, histogram.getValueAtPercentile(50));
+	}
+
+	@Test
+	public void shouldKeepSmallValuesExactly() {
+		for (long value = 0; value < 8; value++) {
+			assertEquals(value, LogHistogram.highestValueOf(LogHistogram.bucketOf(value)));
+		}
+	}
+
+	@Test
+	public void shouldPlaceEveryValueInBucketWithinOneEighthAboveIt() {
+		for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+			final long highestValue = LogHistogram.highestValueOf(LogHistogram.bucketOf(value));
+			assertTrue("Bucket of " + value + " ends below it at " + highestValue, highestValue >= value);
+			assertTrue("Bucket of " + value + " ends too far above it at " + highestValue, highestValue <= value + value / 8);
+		}
+	}
+
+	@Test
+	public void shouldCountSumAndMaximum() {
+		histogram.record(10);
+		histogram.record(20);
+		histogram.record(30);
+		assertEquals(3, histogram.getCount());
+		assertEquals(20.0, histogram.getMean(), 0.0);
+		assertEquals(30, histogram.getMax());
+	}
+
+	@Test
+	public void shouldFindValuesAtPercentiles() {
+		for (long value = 1; value <= 1000; value++) {
+			histogram.record(value);
+		}
+		assertEquals(500, histogram.getValueAtPercentile(50), 500 / 8);
+		assertEquals(990, histogram.getValueAtPercentile(99), 990 / 8);
+		assertEquals(1000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void shouldForgetEverythingOnReset() {
+		histogram.record(10);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+}